@@ -0,0 +1,415 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ *
+ * http://sangupta.com/projects/jerry-http
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.sangupta.jerry.http;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.http.HttpHost;
+import org.apache.http.client.utils.URIUtils;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+
+/**
+ * Controller that grows or shrinks the maximum number of connections per route
+ * of a {@link PoolingHttpClientConnectionManager} based on what is observed for
+ * the route, using an additive-increase/multiplicative-decrease scheme:
+ *
+ * <ul>
+ * <li>if the average latency over the last interval is more than
+ * <code>latencyTolerance</code> times the baseline latency of the route, the
+ * limit is multiplied by <code>backoffRatio</code></li>
+ * <li>else if requests were waiting to lease a connection, or all permitted
+ * connections were in flight, the limit is increased by one</li>
+ * </ul>
+ *
+ * The limit always stays between the configured minimum and maximum. The
+ * baseline latency is the lowest observed interval average, slowly decayed
+ * upwards so that the controller follows a host whose normal latency changes.
+ *
+ * @author sangupta
+ *
+ * @since 2.0.1
+ */
+public class AdaptiveRouteLimitController {
+
+	/**
+	 * Shared daemon scheduler that runs the adjustments of all controllers
+	 */
+	private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "jerry-http-adaptive-route-limits");
+			thread.setDaemon(true);
+			return thread;
+		}
+
+	});
+
+	/**
+	 * Default interval between two adjustments
+	 */
+	public static final long DEFAULT_INTERVAL_MILLIS = 1000;
+
+	/**
+	 * Default latency multiple over baseline that is considered congestion
+	 */
+	public static final double DEFAULT_LATENCY_TOLERANCE = 2.0d;
+
+	/**
+	 * Default ratio by which the limit is reduced on congestion
+	 */
+	public static final double DEFAULT_BACKOFF_RATIO = 0.75d;
+
+	/**
+	 * Rate at which the baseline latency decays upwards each interval
+	 */
+	private static final double BASELINE_DECAY = 1.01d;
+
+	/**
+	 * The connection manager whose route limits are controlled
+	 */
+	private final PoolingHttpClientConnectionManager connectionManager;
+
+	/**
+	 * The lower bound for a route limit
+	 */
+	private final int minPerRoute;
+
+	/**
+	 * The upper bound for a route limit
+	 */
+	private final int maxPerRoute;
+
+	/**
+	 * Latency multiple over the baseline that is considered congestion
+	 */
+	private final double latencyTolerance;
+
+	/**
+	 * Ratio by which the limit is reduced on congestion
+	 */
+	private final double backoffRatio;
+
+	/**
+	 * The observations per route
+	 */
+	private final Map<HttpRoute, RouteState> routes = new ConcurrentHashMap<>();
+
+	/**
+	 * The handle to the scheduled adjustment task, if started
+	 */
+	private ScheduledFuture<?> task;
+
+	/**
+	 * Create a controller with default tolerance and backoff.
+	 *
+	 * @param connectionManager
+	 *            the {@link PoolingHttpClientConnectionManager} to control
+	 *
+	 * @param minPerRoute
+	 *            the lower bound for a route limit
+	 *
+	 * @param maxPerRoute
+	 *            the upper bound for a route limit
+	 */
+	public AdaptiveRouteLimitController(PoolingHttpClientConnectionManager connectionManager, int minPerRoute, int maxPerRoute) {
+		this(connectionManager, minPerRoute, maxPerRoute, DEFAULT_LATENCY_TOLERANCE, DEFAULT_BACKOFF_RATIO);
+	}
+
+	/**
+	 * Create a controller.
+	 *
+	 * @param connectionManager
+	 *            the {@link PoolingHttpClientConnectionManager} to control
+	 *
+	 * @param minPerRoute
+	 *            the lower bound for a route limit
+	 *
+	 * @param maxPerRoute
+	 *            the upper bound for a route limit
+	 *
+	 * @param latencyTolerance
+	 *            the multiple of baseline latency that is considered
+	 *            congestion, must be greater than <code>1</code>
+	 *
+	 * @param backoffRatio
+	 *            the ratio by which the limit is reduced on congestion,
+	 *            between <code>0</code> and <code>1</code>
+	 *
+	 * @throws IllegalArgumentException
+	 *             if any of the values is out of range
+	 */
+	public AdaptiveRouteLimitController(PoolingHttpClientConnectionManager connectionManager, int minPerRoute, int maxPerRoute, double latencyTolerance, double backoffRatio) {
+		if(connectionManager == null) {
+			throw new IllegalArgumentException("Connection manager cannot be null");
+		}
+
+		if(minPerRoute < 1) {
+			throw new IllegalArgumentException("Minimum connections per route cannot be less than 1");
+		}
+
+		if(maxPerRoute < minPerRoute) {
+			throw new IllegalArgumentException("Maximum connections per route cannot be less than the minimum");
+		}
+
+		if(latencyTolerance <= 1.0d) {
+			throw new IllegalArgumentException("Latency tolerance must be greater than 1");
+		}
+
+		if(backoffRatio <= 0.0d || backoffRatio >= 1.0d) {
+			throw new IllegalArgumentException("Backoff ratio must be between 0 and 1");
+		}
+
+		this.connectionManager = connectionManager;
+		this.minPerRoute = minPerRoute;
+		this.maxPerRoute = maxPerRoute;
+		this.latencyTolerance = latencyTolerance;
+		this.backoffRatio = backoffRatio;
+	}
+
+	/**
+	 * Start adjusting the route limits at the given interval.
+	 *
+	 * @param interval
+	 *            the interval between two adjustments
+	 *
+	 * @param timeUnit
+	 *            the {@link TimeUnit} of the interval
+	 *
+	 * @return this very {@link AdaptiveRouteLimitController}
+	 */
+	public synchronized AdaptiveRouteLimitController start(long interval, TimeUnit timeUnit) {
+		if(this.task != null) {
+			throw new IllegalStateException("Controller has already been started");
+		}
+
+		this.task = SCHEDULER.scheduleWithFixedDelay(new Runnable() {
+
+			@Override
+			public void run() {
+				adjust();
+			}
+
+		}, interval, interval, timeUnit);
+
+		return this;
+	}
+
+	/**
+	 * Stop adjusting the route limits. The limits are left as they are.
+	 *
+	 */
+	public synchronized void stop() {
+		if(this.task != null) {
+			this.task.cancel(false);
+			this.task = null;
+		}
+	}
+
+	/**
+	 * Record that a request to the given {@link URI} is about to be sent.
+	 *
+	 * @param uri
+	 *            the {@link URI} being requested
+	 *
+	 * @return the state of the route to be passed to
+	 *         {@link #requestCompleted(RouteState, long)}, or <code>null</code>
+	 *         if the route cannot be determined
+	 */
+	RouteState requestStarted(URI uri) {
+		HttpRoute route = getRoute(uri);
+		if(route == null) {
+			return null;
+		}
+
+		RouteState state = this.routes.get(route);
+		if(state == null) {
+			RouteState created = new RouteState(route, this.connectionManager.getMaxPerRoute(route));
+			state = this.routes.putIfAbsent(route, created);
+			if(state == null) {
+				state = created;
+			}
+		}
+
+		// remember if the route was saturated during this interval
+		if(state.inFlight.incrementAndGet() >= state.limit) {
+			state.saturated = true;
+		}
+
+		return state;
+	}
+
+	/**
+	 * Record that a request started via {@link #requestStarted(URI)} has
+	 * received its response or failed.
+	 *
+	 * @param state
+	 *            the route state as returned at start, may be <code>null</code>
+	 *
+	 * @param latencyNanos
+	 *            the time taken in nanoseconds
+	 */
+	void requestCompleted(RouteState state, long latencyNanos) {
+		if(state == null) {
+			return;
+		}
+
+		state.inFlight.decrementAndGet();
+		state.count.increment();
+		state.latencyNanos.add(latencyNanos);
+	}
+
+	/**
+	 * Run one adjustment over all observed routes.
+	 *
+	 */
+	void adjust() {
+		for(RouteState state : this.routes.values()) {
+			long count = state.count.sumThenReset();
+			long latency = state.latencyNanos.sumThenReset();
+			boolean saturated = state.saturated;
+			state.saturated = false;
+
+			if(count == 0) {
+				continue;
+			}
+
+			double average = (double) latency / count;
+			if(state.baselineNanos <= 0 || average < state.baselineNanos) {
+				state.baselineNanos = average;
+			} else {
+				state.baselineNanos = state.baselineNanos * BASELINE_DECAY;
+			}
+
+			PoolStats stats = this.connectionManager.getStats(state.route);
+			if(stats != null && stats.getPending() > 0) {
+				saturated = true;
+			}
+
+			int limit = state.limit;
+			if(average > state.baselineNanos * this.latencyTolerance) {
+				limit = Math.max(this.minPerRoute, (int) (limit * this.backoffRatio));
+			} else if(saturated) {
+				limit = Math.min(this.maxPerRoute, limit + 1);
+			}
+
+			limit = Math.max(this.minPerRoute, Math.min(this.maxPerRoute, limit));
+			if(limit != state.limit) {
+				state.limit = limit;
+				this.connectionManager.setMaxPerRoute(state.route, limit);
+			}
+		}
+	}
+
+	/**
+	 * Return the current limit of the route for the given {@link URI} as set
+	 * by this controller.
+	 *
+	 * @param uri
+	 *            the {@link URI} to check
+	 *
+	 * @return the current limit, or <code>-1</code> if the route has not been
+	 *         observed yet
+	 */
+	public int getCurrentLimit(URI uri) {
+		HttpRoute route = getRoute(uri);
+		if(route == null) {
+			return -1;
+		}
+
+		RouteState state = this.routes.get(route);
+		if(state == null) {
+			return -1;
+		}
+
+		return state.limit;
+	}
+
+	/**
+	 * Determine the {@link HttpRoute} that the connection manager will use for
+	 * a direct connection to the given {@link URI}.
+	 *
+	 * @param uri
+	 *            the {@link URI}
+	 *
+	 * @return the {@link HttpRoute}, or <code>null</code> if no host is present
+	 */
+	static HttpRoute getRoute(URI uri) {
+		if(uri == null) {
+			return null;
+		}
+
+		HttpHost host = URIUtils.extractHost(uri);
+		if(host == null) {
+			return null;
+		}
+
+		boolean secure = "https".equalsIgnoreCase(host.getSchemeName());
+		int port = host.getPort();
+		if(port <= 0) {
+			port = secure ? 443 : 80;
+		}
+
+		return new HttpRoute(new HttpHost(host.getHostName(), port, host.getSchemeName()), null, secure);
+	}
+
+	/**
+	 * Observations and current limit of a single route
+	 *
+	 * @author sangupta
+	 *
+	 */
+	static class RouteState {
+
+		final HttpRoute route;
+
+		final AtomicInteger inFlight = new AtomicInteger();
+
+		final LongAdder count = new LongAdder();
+
+		final LongAdder latencyNanos = new LongAdder();
+
+		volatile boolean saturated;
+
+		volatile int limit;
+
+		double baselineNanos;
+
+		RouteState(HttpRoute route, int limit) {
+			this.route = route;
+			this.limit = limit;
+		}
+
+	}
+
+}
@@ -0,0 +1,125 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Contract for an interceptor that can be added to the {@link HttpExecutor} to
+ * add non-blocking hooks before and after invocation. Unlike
+ * {@link HttpInvocationInterceptor} the hooks return futures, and the
+ * after-invocation hook is handed the {@link WebRawResponse} whose body has
+ * not been read yet - so work like refreshing an auth token, looking up a
+ * cache or recording metrics can be done without blocking a thread and
+ * without buffering the response body.
+ * 
+ * Asynchronous interceptors wrap the {@link HttpInvocationInterceptor}s of an
+ * executor: their before-invocation hooks run first, and their
+ * after-invocation hooks run last. Within themselves they are run in the order
+ * of their priority, the highest priority first.
+ * 
+ * The futures returned must never be <code>null</code>.
+ * 
+ * @author sangupta
+ * 
+ * @since 2.0.1
+ */
+public interface AsyncHttpInvocationInterceptor {
+	
+	/**
+	 * Return the priority of the interceptor. The higher the priority the
+	 * earlier it is executed in the interception chain.
+	 * 
+	 * @return the priority of this interceptor
+	 */
+	public int getPriority();
+	
+	/**
+	 * Intercepting method that is invoked before each {@link WebRequest} is run
+	 * using the {@link HttpExecutor} - this provides a way to modify the
+	 * request prior to run, if needed.
+	 * 
+	 * @param request
+	 *            the {@link WebRequest} object
+	 * 
+	 * @return a future completing with <code>null</code> if the execution
+	 *         chain should continue, or with a {@link WebResponse} that breaks
+	 *         the execution chain and is returned to the callee. A future that
+	 *         completes exceptionally fails the execution.
+	 */
+	public CompletableFuture<WebResponse> beforeInvocation(WebRequest request);
+	
+	/**
+	 * Intercepting method that is invoked after each request is processed via
+	 * {@link HttpExecutor}. The response handed over is not consumed, so that
+	 * its status and headers can be inspected without reading the body - the
+	 * interceptor should return it as is to let the caller stream it, or must
+	 * discard it via {@link WebRawResponse#discardContent()} when returning a
+	 * different one.
+	 * 
+	 * @param request
+	 *            the {@link WebRequest} that was run
+	 * 
+	 * @param response
+	 *            the {@link WebRawResponse} as received from the server, or
+	 *            <code>null</code> if the request failed
+	 * 
+	 * @param exception
+	 *            the {@link IOException} if thrown when hitting the webservice
+	 * 
+	 * @return a future completing with the {@link WebRawResponse} to be sent
+	 *         back to the calling code, or completing exceptionally with the
+	 *         failure to be raised instead
+	 */
+	public CompletableFuture<WebRawResponse> afterInvocation(WebRequest request, WebRawResponse response, IOException exception);
+	
+	/**
+	 * Indicate whether this interceptor implements
+	 * {@link #beforeInvocation(WebRequest)}. An interceptor that returns
+	 * <code>false</code> is never invoked before a request runs.
+	 * 
+	 * The value is read once when the interceptor is added to the
+	 * {@link HttpExecutor} and must not change afterwards.
+	 * 
+	 * @return <code>true</code> by default
+	 */
+	public default boolean interceptsBefore() {
+		return true;
+	}
+	
+	/**
+	 * Indicate whether this interceptor implements
+	 * {@link #afterInvocation(WebRequest, WebRawResponse, IOException)}. An
+	 * interceptor that returns <code>false</code> is never invoked after a
+	 * request runs.
+	 * 
+	 * The value is read once when the interceptor is added to the
+	 * {@link HttpExecutor} and must not change afterwards.
+	 * 
+	 * @return <code>true</code> by default
+	 */
+	public default boolean interceptsAfter() {
+		return true;
+	}
+	
+}
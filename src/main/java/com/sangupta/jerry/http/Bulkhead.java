@@ -0,0 +1,210 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A named limit on the number of concurrent calls, that isolates a group of
+ * requests - like all calls to one dependency - from the rest, so that one
+ * slow dependency cannot tie up every caller thread.
+ * 
+ * A call that finds the bulkhead saturated waits in a fair queue for at most
+ * the configured wait, and is then rejected with an
+ * {@link HttpBulkheadFullException}. By default calls are rejected right
+ * away. A permit is held from the start of an execution till its response
+ * body has been read, or handed over for streaming.
+ * 
+ * <pre>
+ * Bulkhead batch = new Bulkhead("batch", 10).maxWait(50, TimeUnit.MILLISECONDS);
+ * WebRequest.get("http://batch.example.com/report").bulkhead(batch).execute();
+ * </pre>
+ * 
+ * @author sangupta
+ * 
+ * @since 2.0.1
+ */
+public class Bulkhead {
+	
+	/**
+	 * The name of the bulkhead
+	 */
+	private final String name;
+	
+	/**
+	 * The maximum number of concurrent calls
+	 */
+	private final int maxConcurrentCalls;
+	
+	/**
+	 * The permits for concurrent calls, handed out in order of arrival
+	 */
+	private final Semaphore permits;
+	
+	/**
+	 * The maximum time a call waits for a permit
+	 */
+	private volatile long maxWaitMillis = 0;
+	
+	/**
+	 * Number of calls rejected as the bulkhead was saturated
+	 */
+	private final LongAdder rejectedCount = new LongAdder();
+	
+	/**
+	 * Create a bulkhead that rejects calls as soon as it is saturated.
+	 * 
+	 * @param name
+	 *            the name of the bulkhead
+	 * 
+	 * @param maxConcurrentCalls
+	 *            the maximum number of concurrent calls
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the name is empty or the limit is less than
+	 *             <code>1</code>
+	 */
+	public Bulkhead(String name, int maxConcurrentCalls) {
+		if(name == null || name.isEmpty()) {
+			throw new IllegalArgumentException("Bulkhead name cannot be empty");
+		}
+		
+		if(maxConcurrentCalls < 1) {
+			throw new IllegalArgumentException("Maximum concurrent calls cannot be less than 1");
+		}
+		
+		this.name = name;
+		this.maxConcurrentCalls = maxConcurrentCalls;
+		this.permits = new Semaphore(maxConcurrentCalls, true);
+	}
+	
+	/**
+	 * Set the maximum time a call waits for a permit when the bulkhead is
+	 * saturated. Asynchronous executions never wait.
+	 * 
+	 * @param maxWait
+	 *            the maximum wait, <code>0</code> to reject right away
+	 * 
+	 * @param timeUnit
+	 *            the {@link TimeUnit} of the wait
+	 * 
+	 * @return this very {@link Bulkhead}
+	 */
+	public Bulkhead maxWait(long maxWait, TimeUnit timeUnit) {
+		if(timeUnit == null) {
+			throw new IllegalArgumentException("TimeUnit cannot be null");
+		}
+		
+		if(maxWait < 0) {
+			throw new IllegalArgumentException("Maximum wait cannot be negative");
+		}
+		
+		this.maxWaitMillis = timeUnit.toMillis(maxWait);
+		return this;
+	}
+	
+	/**
+	 * @return the name of the bulkhead
+	 */
+	public String getName() {
+		return this.name;
+	}
+	
+	/**
+	 * @return the maximum number of concurrent calls
+	 */
+	public int getMaxConcurrentCalls() {
+		return this.maxConcurrentCalls;
+	}
+	
+	/**
+	 * @return the maximum time in millis a call waits for a permit
+	 */
+	public long getMaxWaitMillis() {
+		return this.maxWaitMillis;
+	}
+	
+	/**
+	 * @return the number of calls currently holding a permit
+	 */
+	public int getActiveCount() {
+		return this.maxConcurrentCalls - this.permits.availablePermits();
+	}
+	
+	/**
+	 * @return the number of calls rejected as the bulkhead was saturated
+	 */
+	public long getRejectedCount() {
+		return this.rejectedCount.sum();
+	}
+	
+	/**
+	 * Acquire a permit, waiting at most the given time.
+	 * 
+	 * @param waitMillis
+	 *            the maximum millis to wait
+	 * 
+	 * @return <code>true</code> if the permit was acquired
+	 * 
+	 * @throws InterruptedIOException
+	 *             if interrupted while waiting
+	 */
+	boolean tryAcquire(long waitMillis) throws InterruptedIOException {
+		try {
+			if(this.permits.tryAcquire(Math.max(0, waitMillis), TimeUnit.MILLISECONDS)) {
+				return true;
+			}
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for bulkhead: " + this.name);
+		}
+		
+		this.rejectedCount.increment();
+		return false;
+	}
+	
+	/**
+	 * Release a permit acquired earlier.
+	 * 
+	 */
+	void release() {
+		this.permits.release();
+	}
+	
+	/**
+	 * Create the exception that signals a rejected call.
+	 * 
+	 * @return the {@link HttpBulkheadFullException}
+	 */
+	HttpBulkheadFullException rejected() {
+		return new HttpBulkheadFullException("Bulkhead is full: " + this.name);
+	}
+	
+	@Override
+	public String toString() {
+		return "Bulkhead[" + this.name + ", active=" + this.getActiveCount() + "/" + this.maxConcurrentCalls + "]";
+	}
+	
+}
@@ -0,0 +1,197 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pool of byte arrays in power-of-two size classes, used to read response
+ * bodies without allocating a fresh array for every response. Arrays larger
+ * than the biggest size class are allocated exactly and never pooled.
+ * 
+ * The pool is lock-free and bounded: each size class retains at most a
+ * configured number of arrays, the rest are left to the garbage collector.
+ * 
+ * @author sangupta
+ * 
+ * @since 2.0.1
+ */
+public class ByteArrayPool {
+	
+	/**
+	 * The shared pool used by default
+	 */
+	public static final ByteArrayPool DEFAULT = new ByteArrayPool(1 << 24, 16);
+	
+	/**
+	 * The smallest size class - 1 KB
+	 */
+	private static final int MIN_SHIFT = 10;
+	
+	/**
+	 * The largest size class, as a power of two
+	 */
+	private final int maxShift;
+	
+	/**
+	 * Maximum number of arrays retained per size class
+	 */
+	private final int maxPerClass;
+	
+	/**
+	 * Arrays retained per size class
+	 */
+	private final Queue<byte[]>[] classes;
+	
+	/**
+	 * Number of arrays retained per size class
+	 */
+	private final AtomicInteger[] counts;
+	
+	/**
+	 * Create a new pool.
+	 * 
+	 * @param maxPooledSize
+	 *            the size of the largest array to be pooled, rounded up to a
+	 *            power of two
+	 * 
+	 * @param maxPerClass
+	 *            the maximum number of arrays retained per size class
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the values are zero/negative
+	 */
+	@SuppressWarnings("unchecked")
+	public ByteArrayPool(int maxPooledSize, int maxPerClass) {
+		if(maxPooledSize <= 0) {
+			throw new IllegalArgumentException("Maximum pooled size cannot be zero/negative");
+		}
+		
+		if(maxPerClass <= 0) {
+			throw new IllegalArgumentException("Maximum arrays per class cannot be zero/negative");
+		}
+		
+		this.maxShift = Math.min(30, Math.max(MIN_SHIFT, shiftFor(maxPooledSize)));
+		this.maxPerClass = maxPerClass;
+		
+		int numClasses = this.maxShift - MIN_SHIFT + 1;
+		this.classes = new Queue[numClasses];
+		this.counts = new AtomicInteger[numClasses];
+		for(int index = 0; index < numClasses; index++) {
+			this.classes[index] = new ConcurrentLinkedQueue<byte[]>();
+			this.counts[index] = new AtomicInteger();
+		}
+	}
+	
+	/**
+	 * Obtain an array of at least the given size. The contents of the array
+	 * are undefined.
+	 * 
+	 * @param minSize
+	 *            the minimum size needed
+	 * 
+	 * @return a byte array with length of at least <code>minSize</code>
+	 */
+	public byte[] acquire(int minSize) {
+		if(minSize < 0) {
+			throw new IllegalArgumentException("Size cannot be negative");
+		}
+		
+		int shift = Math.max(MIN_SHIFT, shiftFor(minSize));
+		if(shift > this.maxShift) {
+			return new byte[minSize];
+		}
+		
+		int index = shift - MIN_SHIFT;
+		byte[] array = this.classes[index].poll();
+		if(array != null) {
+			this.counts[index].decrementAndGet();
+			return array;
+		}
+		
+		return new byte[1 << shift];
+	}
+	
+	/**
+	 * Return an array to the pool. Arrays not obtained from a pool of this
+	 * shape, or in excess of the per-class bound, are dropped.
+	 * 
+	 * @param array
+	 *            the array to return, may be <code>null</code>
+	 */
+	public void release(byte[] array) {
+		if(array == null) {
+			return;
+		}
+		
+		int length = array.length;
+		if(length < (1 << MIN_SHIFT) || Integer.bitCount(length) != 1) {
+			return;
+		}
+		
+		int shift = Integer.numberOfTrailingZeros(length);
+		if(shift > this.maxShift) {
+			return;
+		}
+		
+		int index = shift - MIN_SHIFT;
+		if(this.counts[index].incrementAndGet() > this.maxPerClass) {
+			this.counts[index].decrementAndGet();
+			return;
+		}
+		
+		this.classes[index].offer(array);
+	}
+	
+	/**
+	 * Return the number of arrays currently retained in the pool.
+	 * 
+	 * @return the number of arrays
+	 */
+	public int getRetainedCount() {
+		int total = 0;
+		for(AtomicInteger count : this.counts) {
+			total += count.get();
+		}
+		
+		return total;
+	}
+	
+	/**
+	 * Compute the power of two that is at least the given size.
+	 * 
+	 * @param size
+	 *            the size
+	 * 
+	 * @return the exponent
+	 */
+	private static int shiftFor(int size) {
+		if(size <= 1) {
+			return 0;
+		}
+		
+		return 32 - Integer.numberOfLeadingZeros(size - 1);
+	}
+	
+}
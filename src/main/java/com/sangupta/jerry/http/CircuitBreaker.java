@@ -0,0 +1,530 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.http.conn.routing.HttpRoute;
+
+/**
+ * Per-route circuit breaker that makes an {@link HttpExecutor} fail fast with
+ * an {@link HttpCircuitOpenException} - before a connection is leased - while
+ * a host is failing or too slow, instead of tying up a thread and a pooled
+ * connection until the socket times out.
+ * 
+ * Every route is in one of three states:
+ * 
+ * <ul>
+ * <li>{@link State#CLOSED}: requests flow and their outcomes are recorded in
+ * a rolling window of the last calls. Once the window holds at least the
+ * minimum number of calls and either the failure rate or the slow-call rate
+ * reaches its threshold, the circuit opens</li>
+ * <li>{@link State#OPEN}: requests are rejected until the open duration has
+ * passed, after which the circuit turns half-open</li>
+ * <li>{@link State#HALF_OPEN}: a few trial requests are let through; if all
+ * of them succeed in time the circuit closes, else it opens again</li>
+ * </ul>
+ * 
+ * A call fails when it raises an {@link java.io.IOException} or receives a
+ * <code>5xx</code> response; it is slow when the response headers take
+ * longer than the slow-call duration. Requests aborted by the caller are not
+ * counted.
+ * 
+ * <pre>
+ * CircuitBreaker breaker = new CircuitBreaker().failureRateThreshold(0.5).slowCallThreshold(0.8, 2, TimeUnit.SECONDS).openDuration(30, TimeUnit.SECONDS);
+ * HttpExecutor.DEFAULT.setCircuitBreaker(breaker);
+ * </pre>
+ * 
+ * @author sangupta
+ * 
+ * @since 2.0.1
+ */
+public class CircuitBreaker {
+	
+	/**
+	 * The state of the circuit of a route
+	 * 
+	 * @author sangupta
+	 *
+	 */
+	public static enum State {
+		
+		CLOSED,
+		
+		OPEN,
+		
+		HALF_OPEN;
+		
+	}
+	
+	/**
+	 * Default number of recent calls the rates are computed over
+	 */
+	public static final int DEFAULT_WINDOW_SIZE = 100;
+	
+	/**
+	 * Default minimum number of calls before the circuit may open
+	 */
+	public static final int DEFAULT_MINIMUM_CALLS = 20;
+	
+	/**
+	 * Default failure rate at which the circuit opens
+	 */
+	public static final double DEFAULT_FAILURE_RATE_THRESHOLD = 0.5d;
+	
+	/**
+	 * Default time the circuit stays open
+	 */
+	public static final long DEFAULT_OPEN_DURATION_MILLIS = 30000;
+	
+	/**
+	 * Default number of trial calls in the half-open state
+	 */
+	public static final int DEFAULT_HALF_OPEN_CALLS = 5;
+	
+	/**
+	 * Number of recent calls the rates are computed over
+	 */
+	private int windowSize = DEFAULT_WINDOW_SIZE;
+	
+	/**
+	 * Minimum number of calls before the circuit may open
+	 */
+	private int minimumCalls = DEFAULT_MINIMUM_CALLS;
+	
+	/**
+	 * Failure rate at which the circuit opens
+	 */
+	private double failureRateThreshold = DEFAULT_FAILURE_RATE_THRESHOLD;
+	
+	/**
+	 * Slow-call rate at which the circuit opens, above <code>1</code> when
+	 * slow calls are not considered
+	 */
+	private double slowCallRateThreshold = 2.0d;
+	
+	/**
+	 * Duration after which a call is considered slow
+	 */
+	private long slowCallNanos = Long.MAX_VALUE;
+	
+	/**
+	 * Time the circuit stays open
+	 */
+	private long openDurationNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_OPEN_DURATION_MILLIS);
+	
+	/**
+	 * Number of trial calls in the half-open state
+	 */
+	private int halfOpenCalls = DEFAULT_HALF_OPEN_CALLS;
+	
+	/**
+	 * The circuit of every route seen
+	 */
+	private final Map<HttpRoute, Circuit> circuits = new ConcurrentHashMap<>();
+	
+	/**
+	 * Number of requests rejected as the circuit was open
+	 */
+	private final LongAdder rejectedCount = new LongAdder();
+	
+	/**
+	 * Set the number of recent calls per route that the failure and slow-call
+	 * rates are computed over.
+	 * 
+	 * @param windowSize
+	 *            the number of calls
+	 * 
+	 * @return this very {@link CircuitBreaker}
+	 */
+	public CircuitBreaker windowSize(int windowSize) {
+		if(windowSize < 1) {
+			throw new IllegalArgumentException("Window size cannot be less than 1");
+		}
+		
+		this.windowSize = windowSize;
+		return this;
+	}
+	
+	/**
+	 * Set the minimum number of calls in the window before the circuit of a
+	 * route may open.
+	 * 
+	 * @param minimumCalls
+	 *            the number of calls
+	 * 
+	 * @return this very {@link CircuitBreaker}
+	 */
+	public CircuitBreaker minimumCalls(int minimumCalls) {
+		if(minimumCalls < 1) {
+			throw new IllegalArgumentException("Minimum calls cannot be less than 1");
+		}
+		
+		this.minimumCalls = minimumCalls;
+		return this;
+	}
+	
+	/**
+	 * Set the failure rate at which the circuit opens.
+	 * 
+	 * @param threshold
+	 *            the rate, greater than <code>0</code> and up to
+	 *            <code>1</code>
+	 * 
+	 * @return this very {@link CircuitBreaker}
+	 */
+	public CircuitBreaker failureRateThreshold(double threshold) {
+		if(threshold <= 0 || threshold > 1) {
+			throw new IllegalArgumentException("Failure rate threshold must be between 0 and 1");
+		}
+		
+		this.failureRateThreshold = threshold;
+		return this;
+	}
+	
+	/**
+	 * Open the circuit when the given rate of calls is slower than the given
+	 * duration. Slow calls are not considered unless set.
+	 * 
+	 * @param threshold
+	 *            the rate, greater than <code>0</code> and up to
+	 *            <code>1</code>
+	 * 
+	 * @param duration
+	 *            the duration after which a call is slow
+	 * 
+	 * @param timeUnit
+	 *            the {@link TimeUnit} of the duration
+	 * 
+	 * @return this very {@link CircuitBreaker}
+	 */
+	public CircuitBreaker slowCallThreshold(double threshold, long duration, TimeUnit timeUnit) {
+		if(threshold <= 0 || threshold > 1) {
+			throw new IllegalArgumentException("Slow call rate threshold must be between 0 and 1");
+		}
+		
+		if(timeUnit == null) {
+			throw new IllegalArgumentException("TimeUnit cannot be null");
+		}
+		
+		if(duration <= 0) {
+			throw new IllegalArgumentException("Slow call duration must be positive");
+		}
+		
+		this.slowCallRateThreshold = threshold;
+		this.slowCallNanos = timeUnit.toNanos(duration);
+		return this;
+	}
+	
+	/**
+	 * Set how long the circuit stays open before trial calls are let
+	 * through.
+	 * 
+	 * @param duration
+	 *            the duration
+	 * 
+	 * @param timeUnit
+	 *            the {@link TimeUnit} of the duration
+	 * 
+	 * @return this very {@link CircuitBreaker}
+	 */
+	public CircuitBreaker openDuration(long duration, TimeUnit timeUnit) {
+		if(timeUnit == null) {
+			throw new IllegalArgumentException("TimeUnit cannot be null");
+		}
+		
+		if(duration < 0) {
+			throw new IllegalArgumentException("Open duration cannot be negative");
+		}
+		
+		this.openDurationNanos = timeUnit.toNanos(duration);
+		return this;
+	}
+	
+	/**
+	 * Set the number of trial calls let through in the half-open state, all
+	 * of which must succeed for the circuit to close.
+	 * 
+	 * @param calls
+	 *            the number of calls
+	 * 
+	 * @return this very {@link CircuitBreaker}
+	 */
+	public CircuitBreaker halfOpenCalls(int calls) {
+		if(calls < 1) {
+			throw new IllegalArgumentException("Half-open calls cannot be less than 1");
+		}
+		
+		this.halfOpenCalls = calls;
+		return this;
+	}
+	
+	/**
+	 * Return the state of the circuit for the route of the given {@link URI}.
+	 * 
+	 * @param uri
+	 *            the {@link URI} to check
+	 * 
+	 * @return the {@link State}, {@link State#CLOSED} for routes not seen yet
+	 */
+	public State getState(URI uri) {
+		HttpRoute route = AdaptiveRouteLimitController.getRoute(uri);
+		Circuit circuit = route == null ? null : this.circuits.get(route);
+		if(circuit == null) {
+			return State.CLOSED;
+		}
+		
+		return circuit.getState();
+	}
+	
+	/**
+	 * Close the circuits of all routes and forget all recorded calls.
+	 * 
+	 */
+	public void reset() {
+		this.circuits.clear();
+	}
+	
+	/**
+	 * @return the number of requests rejected as the circuit was open
+	 */
+	public long getRejectedCount() {
+		return this.rejectedCount.sum();
+	}
+	
+	/**
+	 * Acquire the permission to send a request to the given {@link URI}.
+	 * 
+	 * @param uri
+	 *            the {@link URI} of the request
+	 * 
+	 * @return the {@link Permit} to report the outcome on, or
+	 *         <code>null</code> if the route cannot be determined
+	 * 
+	 * @throws HttpCircuitOpenException
+	 *             if the circuit of the route is open
+	 */
+	Permit acquire(URI uri) {
+		HttpRoute route = AdaptiveRouteLimitController.getRoute(uri);
+		if(route == null) {
+			return null;
+		}
+		
+		Circuit circuit = this.circuits.computeIfAbsent(route, key -> new Circuit());
+		Permit permit = circuit.acquire();
+		if(permit == null) {
+			this.rejectedCount.increment();
+			throw new HttpCircuitOpenException("Circuit is open for route: " + route);
+		}
+		
+		return permit;
+	}
+	
+	/**
+	 * The permission to send one request, on which its outcome is reported
+	 * 
+	 * @author sangupta
+	 *
+	 */
+	final class Permit {
+		
+		private final Circuit circuit;
+		
+		private final long generation;
+		
+		Permit(Circuit circuit, long generation) {
+			this.circuit = circuit;
+			this.generation = generation;
+		}
+		
+		/**
+		 * Report that a response was received.
+		 * 
+		 * @param statusCode
+		 *            the status code of the response
+		 * 
+		 * @param latencyNanos
+		 *            the time taken in nanoseconds
+		 */
+		void onResponse(int statusCode, long latencyNanos) {
+			this.circuit.record(this.generation, statusCode >= 500, latencyNanos >= slowCallNanos);
+		}
+		
+		/**
+		 * Report that the request failed.
+		 * 
+		 * @param latencyNanos
+		 *            the time taken in nanoseconds
+		 */
+		void onFailure(long latencyNanos) {
+			this.circuit.record(this.generation, true, latencyNanos >= slowCallNanos);
+		}
+		
+		/**
+		 * Report that the request ended without an outcome that says anything
+		 * about the host, like when aborted.
+		 * 
+		 */
+		void release() {
+			this.circuit.release(this.generation);
+		}
+		
+	}
+	
+	/**
+	 * The state and recent calls of one route
+	 * 
+	 * @author sangupta
+	 *
+	 */
+	final class Circuit {
+		
+		private State state = State.CLOSED;
+		
+		/**
+		 * Bumped on every state change, so that outcomes of calls permitted
+		 * in an earlier state are ignored
+		 */
+		private long generation;
+		
+		private long openedAt;
+		
+		private final boolean[] failures = new boolean[windowSize];
+		
+		private final boolean[] slowCalls = new boolean[windowSize];
+		
+		private int calls;
+		
+		private int next;
+		
+		private int failureCount;
+		
+		private int slowCount;
+		
+		private int trialsPermitted;
+		
+		private int trialsSucceeded;
+		
+		synchronized State getState() {
+			if(this.state == State.OPEN && System.nanoTime() - this.openedAt >= openDurationNanos) {
+				return State.HALF_OPEN;
+			}
+			
+			return this.state;
+		}
+		
+		synchronized Permit acquire() {
+			if(this.state == State.OPEN) {
+				if(System.nanoTime() - this.openedAt < openDurationNanos) {
+					return null;
+				}
+				
+				this.transition(State.HALF_OPEN);
+			}
+			
+			if(this.state == State.HALF_OPEN) {
+				if(this.trialsPermitted >= halfOpenCalls) {
+					return null;
+				}
+				
+				this.trialsPermitted++;
+			}
+			
+			return new Permit(this, this.generation);
+		}
+		
+		synchronized void record(long generation, boolean failed, boolean slow) {
+			if(generation != this.generation) {
+				return;
+			}
+			
+			if(this.state == State.HALF_OPEN) {
+				if(failed || slow) {
+					this.transition(State.OPEN);
+					return;
+				}
+				
+				if(++this.trialsSucceeded >= halfOpenCalls) {
+					this.transition(State.CLOSED);
+				}
+				
+				return;
+			}
+			
+			// closed - roll the window
+			if(this.calls == this.failures.length) {
+				if(this.failures[this.next]) {
+					this.failureCount--;
+				}
+				
+				if(this.slowCalls[this.next]) {
+					this.slowCount--;
+				}
+			} else {
+				this.calls++;
+			}
+			
+			this.failures[this.next] = failed;
+			this.slowCalls[this.next] = slow;
+			this.next = (this.next + 1) % this.failures.length;
+			if(failed) {
+				this.failureCount++;
+			}
+			
+			if(slow) {
+				this.slowCount++;
+			}
+			
+			if(this.calls < minimumCalls) {
+				return;
+			}
+			
+			if(this.failureCount >= failureRateThreshold * this.calls || this.slowCount >= slowCallRateThreshold * this.calls) {
+				this.transition(State.OPEN);
+			}
+		}
+		
+		synchronized void release(long generation) {
+			if(generation == this.generation && this.state == State.HALF_OPEN) {
+				this.trialsPermitted--;
+			}
+		}
+		
+		private void transition(State state) {
+			this.state = state;
+			this.generation++;
+			this.openedAt = System.nanoTime();
+			this.trialsPermitted = 0;
+			this.trialsSucceeded = 0;
+			this.calls = 0;
+			this.next = 0;
+			this.failureCount = 0;
+			this.slowCount = 0;
+		}
+		
+	}
+	
+}
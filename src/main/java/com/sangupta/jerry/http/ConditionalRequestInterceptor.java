@@ -0,0 +1,246 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpRequestBase;
+
+/**
+ * {@link HttpInvocationInterceptor} that makes <code>GET</code> requests
+ * conditional. The last successful response for each {@link URI} that carried
+ * an <code>ETag</code> or <code>Last-Modified</code> header is remembered;
+ * the next request to the same {@link URI} is sent with
+ * <code>If-None-Match</code> and/or <code>If-Modified-Since</code>, and a
+ * <code>304 Not Modified</code> answer is transparently turned into a copy of
+ * the remembered response.
+ * 
+ * Requests that already carry a conditional header set by the caller are left
+ * untouched. Responses marked <code>no-store</code> are never remembered, and
+ * a successful unsafe request (<code>POST</code>, <code>PUT</code>,
+ * <code>PATCH</code> or <code>DELETE</code>) to a {@link URI} forgets it. At
+ * most <code>maxEntries</code> responses are kept, least recently used ones
+ * being dropped first.
+ * 
+ * <pre>
+ * executor.addInvocationInterception(new ConditionalRequestInterceptor());
+ * </pre>
+ * 
+ * @author sangupta
+ * 
+ * @since 2.0.1
+ */
+public class ConditionalRequestInterceptor implements HttpInvocationInterceptor {
+	
+	/**
+	 * Default maximum number of remembered responses
+	 */
+	public static final int DEFAULT_MAX_ENTRIES = 1000;
+	
+	/**
+	 * Default priority - run before other interceptors so that they see the
+	 * remembered response instead of a <code>304</code>
+	 */
+	public static final int DEFAULT_PRIORITY = Integer.MAX_VALUE;
+	
+	/**
+	 * The priority of this interceptor
+	 */
+	private final int priority;
+	
+	/**
+	 * The maximum number of remembered responses
+	 */
+	private final int maxEntries;
+	
+	/**
+	 * The remembered responses in access order, guarded by <code>this</code>
+	 */
+	private final LinkedHashMap<URI, WebResponse> responses;
+	
+	/**
+	 * Number of <code>304</code> responses served from memory
+	 */
+	private final LongAdder notModifiedCount = new LongAdder();
+	
+	/**
+	 * Create an interceptor with default priority and size.
+	 * 
+	 */
+	public ConditionalRequestInterceptor() {
+		this(DEFAULT_MAX_ENTRIES, DEFAULT_PRIORITY);
+	}
+	
+	/**
+	 * Create an interceptor.
+	 * 
+	 * @param maxEntries
+	 *            the maximum number of remembered responses
+	 * 
+	 * @param priority
+	 *            the priority of the interceptor
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the maximum number of entries is less than <code>1</code>
+	 */
+	public ConditionalRequestInterceptor(final int maxEntries, int priority) {
+		if(maxEntries < 1) {
+			throw new IllegalArgumentException("Maximum entries cannot be less than 1");
+		}
+		
+		this.maxEntries = maxEntries;
+		this.priority = priority;
+		this.responses = new LinkedHashMap<URI, WebResponse>(16, 0.75f, true) {
+			
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<URI, WebResponse> eldest) {
+				return this.size() > ConditionalRequestInterceptor.this.maxEntries;
+			}
+			
+		};
+	}
+	
+	@Override
+	public int getPriority() {
+		return this.priority;
+	}
+	
+	@Override
+	public WebResponse beforeInvocation(WebRequest request) {
+		if(request.getWebRequestMethod() != WebRequestMethod.GET) {
+			return null;
+		}
+		
+		HttpRequestBase httpRequest = request.getHttpRequest();
+		if(httpRequest.containsHeader(HttpHeaders.IF_NONE_MATCH) || httpRequest.containsHeader(HttpHeaders.IF_MODIFIED_SINCE)) {
+			return null;
+		}
+		
+		WebResponse remembered = this.get(request.getURI());
+		if(remembered == null) {
+			return null;
+		}
+		
+		String etag = remembered.getETag();
+		if(etag != null) {
+			request.addHeader(HttpHeaders.IF_NONE_MATCH, etag);
+		}
+		
+		String lastModified = remembered.getHeader(HttpHeaders.LAST_MODIFIED);
+		if(lastModified != null) {
+			request.addHeader(HttpHeaders.IF_MODIFIED_SINCE, lastModified);
+		}
+		
+		return null;
+	}
+	
+	@Override
+	public WebResponse afterInvocation(WebResponse response, IOException exception) {
+		return response;
+	}
+	
+	@Override
+	public WebResponse afterInvocation(WebRequest request, WebResponse response, IOException exception) {
+		if(response == null) {
+			return response;
+		}
+		
+		URI uri = request.getURI();
+		WebRequestMethod method = request.getWebRequestMethod();
+		if(method != WebRequestMethod.GET) {
+			if(response.isSuccess() && method != WebRequestMethod.HEAD && method != WebRequestMethod.OPTIONS && method != WebRequestMethod.TRACE) {
+				this.remove(uri);
+			}
+			
+			return response;
+		}
+		
+		int code = response.getResponseCode();
+		if(code == HttpStatus.SC_NOT_MODIFIED) {
+			WebResponse remembered = this.get(uri);
+			if(remembered == null) {
+				return response;
+			}
+			
+			this.notModifiedCount.increment();
+			return WebResponse.copyOf(remembered);
+		}
+		
+		if(code != HttpStatus.SC_OK) {
+			return response;
+		}
+		
+		String cacheControl = response.getHeader(HttpHeaders.CACHE_CONTROL);
+		if((cacheControl != null && cacheControl.toLowerCase().contains("no-store")) || (response.getETag() == null && response.getHeader(HttpHeaders.LAST_MODIFIED) == null)) {
+			this.remove(uri);
+			return response;
+		}
+		
+		// keep a private copy - the caller may hold a pooled or mutable body
+		this.put(uri, WebResponse.copyOf(response));
+		return response;
+	}
+	
+	/**
+	 * Forget all remembered responses.
+	 * 
+	 */
+	public synchronized void clear() {
+		this.responses.clear();
+	}
+	
+	/**
+	 * @return the number of remembered responses
+	 */
+	public synchronized int getEntryCount() {
+		return this.responses.size();
+	}
+	
+	/**
+	 * @return the number of <code>304</code> responses that were served from
+	 *         memory
+	 */
+	public long getNotModifiedCount() {
+		return this.notModifiedCount.sum();
+	}
+	
+	private synchronized WebResponse get(URI uri) {
+		return this.responses.get(uri);
+	}
+	
+	private synchronized void put(URI uri, WebResponse response) {
+		this.responses.put(uri, response);
+	}
+	
+	private synchronized void remove(URI uri) {
+		this.responses.remove(uri);
+	}
+	
+}
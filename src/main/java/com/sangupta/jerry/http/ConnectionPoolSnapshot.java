@@ -0,0 +1,235 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.http.HttpHost;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+
+/**
+ * Point-in-time view of a connection pool: the connections leased and
+ * available, the requests waiting for one and the limits - in total and for
+ * every route the pool has seen.
+ * 
+ * @author sangupta
+ * 
+ * @since 2.0.1
+ */
+public final class ConnectionPoolSnapshot {
+	
+	private final int leased;
+	
+	private final int available;
+	
+	private final int pending;
+	
+	private final int max;
+	
+	private final int defaultMaxPerRoute;
+	
+	private final List<RouteStats> routes;
+	
+	private ConnectionPoolSnapshot(PoolStats total, int defaultMaxPerRoute, List<RouteStats> routes) {
+		this.leased = total.getLeased();
+		this.available = total.getAvailable();
+		this.pending = total.getPending();
+		this.max = total.getMax();
+		this.defaultMaxPerRoute = defaultMaxPerRoute;
+		this.routes = Collections.unmodifiableList(routes);
+	}
+	
+	/**
+	 * Take a snapshot of the given connection manager.
+	 * 
+	 * @param manager
+	 *            the {@link PoolingHttpClientConnectionManager}
+	 * 
+	 * @return the {@link ConnectionPoolSnapshot}
+	 */
+	static ConnectionPoolSnapshot of(PoolingHttpClientConnectionManager manager) {
+		List<RouteStats> routes = new ArrayList<>();
+		for(HttpRoute route : manager.getRoutes()) {
+			routes.add(new RouteStats(toString(route), manager.getStats(route)));
+		}
+		
+		return new ConnectionPoolSnapshot(manager.getTotalStats(), manager.getDefaultMaxPerRoute(), routes);
+	}
+	
+	/**
+	 * Return the route as a URI-like string, such as
+	 * <code>https://example.com:443</code>, that is understood by
+	 * {@link HttpExecutor#maxConnectionsOnHost(java.net.URI, int)}.
+	 * 
+	 * @param route
+	 *            the {@link HttpRoute}
+	 * 
+	 * @return the string form of the route
+	 */
+	private static String toString(HttpRoute route) {
+		HttpHost host = route.getTargetHost();
+		return host.getSchemeName() + "://" + host.getHostName() + ":" + host.getPort();
+	}
+	
+	/**
+	 * @return the number of connections in use, across all routes
+	 */
+	public int getLeased() {
+		return this.leased;
+	}
+	
+	/**
+	 * @return the number of idle connections kept, across all routes
+	 */
+	public int getAvailable() {
+		return this.available;
+	}
+	
+	/**
+	 * @return the number of requests waiting for a connection, across all
+	 *         routes
+	 */
+	public int getPending() {
+		return this.pending;
+	}
+	
+	/**
+	 * @return the maximum number of connections in the pool
+	 */
+	public int getMax() {
+		return this.max;
+	}
+	
+	/**
+	 * @return the maximum number of connections per route, unless set for
+	 *         the route
+	 */
+	public int getDefaultMaxPerRoute() {
+		return this.defaultMaxPerRoute;
+	}
+	
+	/**
+	 * @return the statistics of every route known to the pool, that is, every
+	 *         route a connection has been leased for
+	 */
+	public List<RouteStats> getRoutes() {
+		return this.routes;
+	}
+	
+	/**
+	 * Return the statistics of the given route.
+	 * 
+	 * @param route
+	 *            the route, as returned by {@link RouteStats#getRoute()}
+	 * 
+	 * @return the {@link RouteStats}, or <code>null</code> if the route is not
+	 *         known to the pool
+	 */
+	public RouteStats getRoute(String route) {
+		for(RouteStats stats : this.routes) {
+			if(stats.getRoute().equalsIgnoreCase(route)) {
+				return stats;
+			}
+		}
+		
+		return null;
+	}
+	
+	@Override
+	public String toString() {
+		return "ConnectionPoolSnapshot [leased=" + this.leased + ", available=" + this.available + ", pending=" + this.pending + ", max=" + this.max + ", routes=" + this.routes + "]";
+	}
+	
+	/**
+	 * Point-in-time statistics of a single route of the pool
+	 * 
+	 * @author sangupta
+	 *
+	 */
+	public static final class RouteStats {
+		
+		private final String route;
+		
+		private final int leased;
+		
+		private final int available;
+		
+		private final int pending;
+		
+		private final int max;
+		
+		RouteStats(String route, PoolStats stats) {
+			this.route = route;
+			this.leased = stats.getLeased();
+			this.available = stats.getAvailable();
+			this.pending = stats.getPending();
+			this.max = stats.getMax();
+		}
+		
+		/**
+		 * @return the route, like <code>https://example.com:443</code>
+		 */
+		public String getRoute() {
+			return this.route;
+		}
+		
+		/**
+		 * @return the number of connections of the route in use
+		 */
+		public int getLeased() {
+			return this.leased;
+		}
+		
+		/**
+		 * @return the number of idle connections of the route kept
+		 */
+		public int getAvailable() {
+			return this.available;
+		}
+		
+		/**
+		 * @return the number of requests waiting for a connection to the
+		 *         route
+		 */
+		public int getPending() {
+			return this.pending;
+		}
+		
+		/**
+		 * @return the maximum number of connections to the route
+		 */
+		public int getMax() {
+			return this.max;
+		}
+		
+		@Override
+		public String toString() {
+			return this.route + " [leased=" + this.leased + ", available=" + this.available + ", pending=" + this.pending + ", max=" + this.max + "]";
+		}
+		
+	}
+	
+}
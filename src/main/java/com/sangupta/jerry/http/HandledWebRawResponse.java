@@ -23,9 +23,15 @@ package com.sangupta.jerry.http;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Map;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.http.Header;
+import org.apache.http.HttpVersion;
 import org.apache.http.client.ClientProtocolException;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.message.BasicHttpResponse;
 
 /**
  * An already-handled version of {@link WebRawResponse} that uses a
@@ -42,11 +48,12 @@ public class HandledWebRawResponse extends WebRawResponse {
 	private final WebResponse webResponse;
 
 	/**
-	 * Constructor
+	 * Constructor - also used by an {@link AsyncHttpInvocationInterceptor} to
+	 * replace the response of a request.
 	 * 
 	 * @param response the {@link WebResponse} that will be returned
 	 */
-	HandledWebRawResponse(WebResponse response) {
+	public HandledWebRawResponse(WebResponse response) {
 		super(null, null, null);
 		this.webResponse = response;
 	}
@@ -61,6 +68,54 @@ public class HandledWebRawResponse extends WebRawResponse {
 		throw new IllegalStateException("RawResponse has already been handled.");
 	}
 
+	@Override
+	public StreamingWebResponse streamingResponse() {
+		if(this.webResponse == null) {
+			throw new IllegalStateException("No response is available to stream");
+		}
+		
+		BasicHttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, this.webResponse.getResponseCode(), this.webResponse.getMessage());
+		for(Map.Entry<String, String> entry : this.webResponse.getHeaders().entrySet()) {
+			response.addHeader(entry.getKey(), entry.getValue());
+		}
+		
+		byte[] bytes = this.webResponse.getBytes();
+		if(bytes != null) {
+			ByteArrayEntity entity = new ByteArrayEntity(bytes);
+			entity.setContentType(this.webResponse.getContentType());
+			response.setEntity(entity);
+		}
+		
+		return new StreamingWebResponse(this.webResponse.getURI(), response, null, null);
+	}
+	
+	@Override
+	void attachDeadline(RequestDeadline deadline) {
+		// the response is already read in full
+		deadline.cancel();
+	}
+	
+	@Override
+	void whenConsumed(Runnable action) {
+		// the response is already read in full
+		action.run();
+	}
+	
+	@Override
+	public int getStatusCode() {
+		return this.webResponse.getResponseCode();
+	}
+	
+	@Override
+	public Header getFirstHeader(String name) {
+		String value = this.webResponse.getHeader(name);
+		if(value == null) {
+			return null;
+		}
+		
+		return new BasicHeader(name, value);
+	}
+	
 	@Override
 	public void writeToFile(File file) throws IOException {
         byte[] bytes = webResponse.getBytes();
@@ -0,0 +1,328 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.http.conn.routing.HttpRoute;
+
+/**
+ * Policy that decides when an {@link HttpExecutor} sends a duplicate of a
+ * slow request, to cut the tail latency caused by an occasional slow
+ * replica. If no response has arrived within the hedging delay, another copy
+ * of the request is sent and whichever copy responds first wins; all others
+ * are aborted.
+ * 
+ * The delay is either fixed, or follows a percentile of the latencies
+ * recently observed on the route of the request - so that only the slowest
+ * few percent of requests are hedged. Until enough latencies have been
+ * observed on a route, the fixed delay is used.
+ * 
+ * Only safe requests are hedged, i.e. <code>GET</code>, <code>HEAD</code>,
+ * <code>OPTIONS</code> and <code>TRACE</code>, as the duplicates run
+ * concurrently on the server.
+ * 
+ * The original request runs on the calling thread, the duplicates on a
+ * bounded pool of threads shared by all executors. When the pool is busy, as
+ * during an outage, no duplicate is sent.
+ * 
+ * <pre>
+ * HedgingPolicy policy = new HedgingPolicy().delay(50, TimeUnit.MILLISECONDS).percentile(0.95);
+ * HttpExecutor.DEFAULT.setHedgingPolicy(policy);
+ * </pre>
+ * 
+ * @author sangupta
+ * 
+ * @since 2.0.1
+ */
+public class HedgingPolicy {
+	
+	/**
+	 * Default delay after which a request is hedged
+	 */
+	public static final long DEFAULT_DELAY_MILLIS = 100;
+	
+	/**
+	 * Default maximum number of duplicates sent for a request
+	 */
+	public static final int DEFAULT_MAX_HEDGES = 1;
+	
+	/**
+	 * Number of recent latencies kept per route
+	 */
+	private static final int LATENCY_WINDOW = 128;
+	
+	/**
+	 * Minimum number of latencies observed on a route before the percentile
+	 * is used
+	 */
+	private static final int MIN_SAMPLES = 20;
+	
+	/**
+	 * The methods that are safe to send concurrently, as per RFC 7231
+	 */
+	private static final Set<WebRequestMethod> SAFE_METHODS = EnumSet.of(WebRequestMethod.GET, WebRequestMethod.HEAD, WebRequestMethod.OPTIONS, WebRequestMethod.TRACE);
+	
+	/**
+	 * The fixed delay after which a request is hedged
+	 */
+	private long delayMillis = DEFAULT_DELAY_MILLIS;
+	
+	/**
+	 * The percentile of route latency after which a request is hedged,
+	 * <code>0</code> to always use the fixed delay
+	 */
+	private double percentile = 0;
+	
+	/**
+	 * Maximum number of duplicates sent for a request
+	 */
+	private int maxHedges = DEFAULT_MAX_HEDGES;
+	
+	/**
+	 * The recent latencies per route
+	 */
+	private final Map<HttpRoute, LatencyWindow> latencies = new ConcurrentHashMap<>();
+	
+	/**
+	 * Number of duplicates sent under this policy
+	 */
+	private final LongAdder hedgeCount = new LongAdder();
+	
+	/**
+	 * Number of requests where a duplicate responded first
+	 */
+	private final LongAdder hedgeWinCount = new LongAdder();
+	
+	/**
+	 * Set the fixed delay after which a request is hedged.
+	 * 
+	 * @param delay
+	 *            the delay
+	 * 
+	 * @param timeUnit
+	 *            the {@link TimeUnit} of the delay
+	 * 
+	 * @return this very {@link HedgingPolicy}
+	 */
+	public HedgingPolicy delay(long delay, TimeUnit timeUnit) {
+		if(timeUnit == null) {
+			throw new IllegalArgumentException("TimeUnit cannot be null");
+		}
+		
+		if(delay < 0) {
+			throw new IllegalArgumentException("Hedging delay cannot be negative");
+		}
+		
+		this.delayMillis = timeUnit.toMillis(delay);
+		return this;
+	}
+	
+	/**
+	 * Hedge requests that take longer than the given percentile of the
+	 * latencies recently observed on their route, but never earlier than the
+	 * fixed delay.
+	 * 
+	 * @param percentile
+	 *            the percentile between <code>0</code> and <code>1</code>,
+	 *            like <code>0.95</code>; <code>0</code> to always use the
+	 *            fixed delay
+	 * 
+	 * @return this very {@link HedgingPolicy}
+	 */
+	public HedgingPolicy percentile(double percentile) {
+		if(percentile < 0 || percentile >= 1) {
+			throw new IllegalArgumentException("Percentile must be between 0 and 1");
+		}
+		
+		this.percentile = percentile;
+		return this;
+	}
+	
+	/**
+	 * Set the maximum number of duplicates sent for a single request. Every
+	 * further duplicate is sent after another hedging delay.
+	 * 
+	 * @param maxHedges
+	 *            the maximum number of duplicates
+	 * 
+	 * @return this very {@link HedgingPolicy}
+	 */
+	public HedgingPolicy maxHedges(int maxHedges) {
+		if(maxHedges < 1) {
+			throw new IllegalArgumentException("Maximum hedges cannot be less than 1");
+		}
+		
+		this.maxHedges = maxHedges;
+		return this;
+	}
+	
+	/**
+	 * @return the maximum number of duplicates sent for a request
+	 */
+	public int getMaxHedges() {
+		return this.maxHedges;
+	}
+	
+	/**
+	 * @return the number of duplicates sent under this policy
+	 */
+	public long getHedgeCount() {
+		return this.hedgeCount.sum();
+	}
+	
+	/**
+	 * @return the number of requests where a duplicate responded first
+	 */
+	public long getHedgeWinCount() {
+		return this.hedgeWinCount.sum();
+	}
+	
+	/**
+	 * Check if the given request may be hedged at all.
+	 * 
+	 * @param request
+	 *            the {@link WebRequest} to check
+	 * 
+	 * @return <code>true</code> if duplicates of the request may be sent
+	 */
+	boolean isHedgeable(WebRequest request) {
+		return SAFE_METHODS.contains(request.getWebRequestMethod());
+	}
+	
+	/**
+	 * Return the delay after which a request to the given {@link URI} is
+	 * hedged.
+	 * 
+	 * @param uri
+	 *            the {@link URI} of the request
+	 * 
+	 * @return the delay in millis
+	 */
+	long getHedgeDelay(URI uri) {
+		if(this.percentile <= 0) {
+			return this.delayMillis;
+		}
+		
+		HttpRoute route = AdaptiveRouteLimitController.getRoute(uri);
+		LatencyWindow window = route == null ? null : this.latencies.get(route);
+		if(window == null) {
+			return this.delayMillis;
+		}
+		
+		long observed = window.getPercentile(this.percentile);
+		if(observed < 0) {
+			return this.delayMillis;
+		}
+		
+		return Math.max(this.delayMillis, TimeUnit.NANOSECONDS.toMillis(observed));
+	}
+	
+	/**
+	 * Record the latency of a response received from the given {@link URI}.
+	 * 
+	 * @param uri
+	 *            the {@link URI} of the request
+	 * 
+	 * @param latencyNanos
+	 *            the time taken in nanoseconds
+	 */
+	void recordLatency(URI uri, long latencyNanos) {
+		if(this.percentile <= 0) {
+			return;
+		}
+		
+		HttpRoute route = AdaptiveRouteLimitController.getRoute(uri);
+		if(route == null) {
+			return;
+		}
+		
+		this.latencies.computeIfAbsent(route, key -> new LatencyWindow()).add(latencyNanos);
+	}
+	
+	/**
+	 * Record that a duplicate was sent.
+	 * 
+	 */
+	void hedgeSent() {
+		this.hedgeCount.increment();
+	}
+	
+	/**
+	 * Record that a duplicate responded first.
+	 * 
+	 */
+	void hedgeWon() {
+		this.hedgeWinCount.increment();
+	}
+	
+	/**
+	 * Ring of the most recent latencies of a route
+	 * 
+	 * @author sangupta
+	 *
+	 */
+	static class LatencyWindow {
+		
+		private final long[] samples = new long[LATENCY_WINDOW];
+		
+		private int count;
+		
+		private int next;
+		
+		synchronized void add(long latencyNanos) {
+			this.samples[this.next] = latencyNanos;
+			this.next = (this.next + 1) % this.samples.length;
+			if(this.count < this.samples.length) {
+				this.count++;
+			}
+		}
+		
+		/**
+		 * @return the given percentile of the latencies, or <code>-1</code>
+		 *         if too few have been observed
+		 */
+		long getPercentile(double percentile) {
+			long[] sorted;
+			synchronized(this) {
+				if(this.count < MIN_SAMPLES) {
+					return -1;
+				}
+				
+				sorted = Arrays.copyOf(this.samples, this.count);
+			}
+			
+			Arrays.sort(sorted);
+			int index = (int) Math.ceil(percentile * sorted.length) - 1;
+			return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+		}
+		
+	}
+	
+}
@@ -0,0 +1,50 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http;
+
+/**
+ * Runtime exception that signifies that a request was not sent because the
+ * {@link CircuitBreaker} of its route is open, i.e. the host has recently
+ * been failing or too slow.
+ * 
+ * @author sangupta
+ * 
+ * @since 2.0.1
+ */
+public class HttpCircuitOpenException extends RuntimeException {
+
+	/**
+	 * Generated via Eclipse
+	 */
+	private static final long serialVersionUID = 3920412894587265109L;
+
+	/**
+	 * Convenience constructor
+	 * 
+	 * @param message
+	 *            the error message to use
+	 */
+	public HttpCircuitOpenException(String message) {
+		super(message);
+	}
+	
+}
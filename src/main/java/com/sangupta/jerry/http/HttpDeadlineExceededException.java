@@ -0,0 +1,60 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http;
+
+import java.io.InterruptedIOException;
+
+/**
+ * Exception that signifies that a request did not complete - from leasing a
+ * connection till reading the last byte of the body - within the deadline
+ * set via {@link WebRequest#deadline(long, java.util.concurrent.TimeUnit)},
+ * and was aborted.
+ * 
+ * @author sangupta
+ * 
+ * @since 2.0.1
+ */
+public class HttpDeadlineExceededException extends InterruptedIOException {
+
+	/**
+	 * Generated via Eclipse
+	 */
+	private static final long serialVersionUID = 6235518071412245377L;
+
+	/**
+	 * Convenience constructor
+	 * 
+	 * @param message
+	 *            the error message to use
+	 * 
+	 * @param cause
+	 *            the failure caused by aborting the request, may be
+	 *            <code>null</code>
+	 */
+	public HttpDeadlineExceededException(String message, Throwable cause) {
+		super(message);
+		if(cause != null) {
+			this.initCause(cause);
+		}
+	}
+	
+}
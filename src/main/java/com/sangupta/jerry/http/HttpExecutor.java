@@ -22,16 +22,45 @@
 package com.sangupta.jerry.http;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
 import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
-import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
 
 import javax.net.ssl.SSLContext;
 
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpHeaders;
 import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.Credentials;
 import org.apache.http.auth.UsernamePasswordCredentials;
@@ -41,7 +70,9 @@ import org.apache.http.client.CookieStore;
 import org.apache.http.client.CredentialsProvider;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.methods.RequestBuilder;
 import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.concurrent.FutureCallback;
 import org.apache.http.config.Registry;
 import org.apache.http.config.RegistryBuilder;
 import org.apache.http.conn.routing.HttpRoute;
@@ -55,11 +86,19 @@ import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.execchain.RequestAbortedException;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.reactor.IOReactorException;
 import org.apache.http.protocol.BasicHttpContext;
 import org.apache.http.protocol.HttpContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.sangupta.jerry.http.metrics.HttpMetricsRegistry;
 import com.sangupta.jerry.util.AssertUtils;
 
 /**
@@ -94,20 +133,94 @@ public class HttpExecutor {
 	 * Time after which the connection should be checked for validity
 	 */
 	private static final int VALIDATE_CONNECTION_AFTER_INACTIVITY_MILLIS = 1000; // 1 second
+
+	/**
+	 * Number of I/O dispatch threads used by the non-blocking client
+	 */
+	private static final int ASYNC_IO_THREADS = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * Flag that signifies if the default non-blocking client has been
+	 * started, so that connection limits can be mirrored onto it
+	 */
+	private static volatile boolean asyncClientStarted = false;
+
+	/**
+	 * Headers whose values distinguish otherwise identical requests when
+	 * coalescing, unless specified otherwise
+	 */
+	public static final String[] DEFAULT_COALESCING_HEADERS = { HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING, HttpHeaders.ACCEPT_LANGUAGE, HttpHeaders.AUTHORIZATION, "Cookie" };
+	
+	/**
+	 * Maximum number of hedged copies in flight across all executors
+	 */
+	private static final int MAX_HEDGING_THREADS = 64;
+	
+	/**
+	 * Shared daemon threads that run the hedged copies of requests - the
+	 * original copy runs on the calling thread. A copy that finds all threads
+	 * busy is not sent.
+	 */
+	private static final ExecutorService HEDGING_EXECUTOR = new ThreadPoolExecutor(0, MAX_HEDGING_THREADS, 60, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), new ThreadFactory() {
+		
+		private final AtomicInteger count = new AtomicInteger();
+		
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "jerry-http-hedging-" + this.count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+		
+	});
+	
+	/**
+	 * Shared daemon timer that sends the hedged copies once their delay has
+	 * passed
+	 */
+	private static final ScheduledExecutorService HEDGING_TIMER = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+		
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "jerry-http-hedging-timer");
+			thread.setDaemon(true);
+			return thread;
+		}
+		
+	});
 	
 	/**
 	 * The singleton instance of HttpClient
 	 */
 	public static final HttpClient HTTP_CLIENT;
 	
-	private final List<HttpInvocationInterceptor> interceptors = new ArrayList<>();
-	
-	private final HttpInvocationInterceptorComparator interceptorComparator = new HttpInvocationInterceptorComparator();
+	/**
+	 * The immutable chain of interceptors, replaced as a whole whenever an
+	 * interceptor is added or removed so that running requests never see a
+	 * partially updated chain
+	 */
+	private final AtomicReference<HttpInvocationInterceptorChain> interceptors = new AtomicReference<>(HttpInvocationInterceptorChain.EMPTY);
 	
 	/**
 	 * Build up the default instance
 	 */
 	static {
+        HTTP_CONNECTION_MANAGER = new MeteredConnectionManager(createSocketFactoryRegistry(), -1, TimeUnit.MILLISECONDS);
+        HTTP_CONNECTION_MANAGER.setDefaultMaxPerRoute(MAX_CONNECTIONS_PER_ROUTE);
+        HTTP_CONNECTION_MANAGER.setMaxTotal(MAX_TOTAL_CONNECTIONS);
+        HTTP_CONNECTION_MANAGER.setValidateAfterInactivity(VALIDATE_CONNECTION_AFTER_INACTIVITY_MILLIS);
+        
+        CloseableHttpClient closeableHttpClient = HttpClientBuilder.create().setConnectionManager(HTTP_CONNECTION_MANAGER).build();
+        HTTP_CLIENT = new HttpRateLimitingClient(closeableHttpClient);
+	}
+	
+	/**
+	 * Create the socket factory registry for plain and SSL connections, falling
+	 * back to a default TLS context if the system one cannot be initialized.
+	 * 
+	 * @return the {@link Registry} of {@link ConnectionSocketFactory}s
+	 */
+	private static Registry<ConnectionSocketFactory> createSocketFactoryRegistry() {
 		LayeredConnectionSocketFactory ssl = null;
         try {
             ssl = SSLConnectionSocketFactory.getSystemSocketFactory();
@@ -126,25 +239,59 @@ public class HttpExecutor {
             }
         }
 
-        final Registry<ConnectionSocketFactory> sfr = RegistryBuilder.<ConnectionSocketFactory>create()
+        return RegistryBuilder.<ConnectionSocketFactory>create()
             .register("http", PlainConnectionSocketFactory.getSocketFactory())
             .register("https", ssl != null ? ssl : SSLConnectionSocketFactory.getSocketFactory())
             .build();
-        
-        HTTP_CONNECTION_MANAGER = new PoolingHttpClientConnectionManager(sfr);
-        HTTP_CONNECTION_MANAGER.setDefaultMaxPerRoute(MAX_CONNECTIONS_PER_ROUTE);
-        HTTP_CONNECTION_MANAGER.setMaxTotal(MAX_TOTAL_CONNECTIONS);
-        HTTP_CONNECTION_MANAGER.setValidateAfterInactivity(VALIDATE_CONNECTION_AFTER_INACTIVITY_MILLIS);
-        
-        CloseableHttpClient closeableHttpClient = HttpClientBuilder.create().setConnectionManager(HTTP_CONNECTION_MANAGER).build();
-        HTTP_CLIENT = new HttpRateLimitingClient(closeableHttpClient);
+	}
+	
+	/**
+	 * Create a new pooling connection manager for the non-blocking client
+	 * running over the given number of I/O dispatch threads.
+	 * 
+	 * @param ioThreads
+	 *            the number of I/O dispatch threads
+	 * 
+	 * @return the {@link PoolingNHttpClientConnectionManager} instance
+	 */
+	private static PoolingNHttpClientConnectionManager createAsyncConnectionManager(int ioThreads) {
+		IOReactorConfig config = IOReactorConfig.custom().setIoThreadCount(ioThreads).setSoKeepAlive(true).build();
+		try {
+			return new PoolingNHttpClientConnectionManager(new DefaultConnectingIOReactor(config));
+		} catch(IOReactorException e) {
+			throw new IllegalStateException("Unable to initialize the I/O reactor", e);
+		}
 	}
 	
 	/**
 	 * Default {@link HttpExecutor} instance that can be used across application
 	 */
 	public static final HttpExecutor DEFAULT = new HttpExecutor(HTTP_CLIENT);
-	
+
+	/**
+	 * Lazy holder for the default non-blocking client. The I/O reactor threads
+	 * are only started when the first asynchronous request is made, and the
+	 * pool starts with the same limits as the blocking pool.
+	 *
+	 */
+	private static class AsyncClientHolder {
+
+		static final PoolingNHttpClientConnectionManager CONNECTION_MANAGER;
+
+		static final CloseableHttpAsyncClient CLIENT;
+
+		static {
+			CONNECTION_MANAGER = createAsyncConnectionManager(ASYNC_IO_THREADS);
+			CONNECTION_MANAGER.setDefaultMaxPerRoute(HTTP_CONNECTION_MANAGER.getDefaultMaxPerRoute());
+			CONNECTION_MANAGER.setMaxTotal(HTTP_CONNECTION_MANAGER.getMaxTotal());
+
+			CLIENT = HttpAsyncClients.custom().setConnectionManager(CONNECTION_MANAGER).build();
+			CLIENT.start();
+
+			asyncClientStarted = true;
+		}
+	}
+
 	/**
 	 * Return the underlying {@link HttpClient} instance that can be used to
 	 * make web requests. All requests shot using this client honor
@@ -158,17 +305,58 @@ public class HttpExecutor {
 	
 	/**
 	 * Get a new {@link HttpExecutor} instance based on the underlying
-	 * {@link HttpClient}.
+	 * {@link HttpClient}. The instance shares the connection pool with
+	 * {@link #DEFAULT} but has its own rate-limiting rules.
 	 * 
 	 * @return a new {@link HttpExecutor} instance
 	 */
 	public static final HttpExecutor newInstance() {
-		return new HttpExecutor(HTTP_CLIENT);
+		return new HttpExecutor(new HttpRateLimitingClient(((HttpRateLimitingClient) HTTP_CLIENT).getActualClient()));
+	}
+	
+	/**
+	 * Get a new {@link HttpExecutor} instance that shares the connection pool
+	 * with {@link #DEFAULT} but serves responses from the given cache where
+	 * possible. As the non-blocking client does not consult the cache, the
+	 * instance does not support {@link #executeAsync(WebRequest)}.
+	 * 
+	 * @param cache
+	 *            the {@link HttpResponseCache} to use
+	 * 
+	 * @return a new {@link HttpExecutor} instance
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the cache is <code>null</code>
+	 */
+	public static final HttpExecutor newCachingInstance(HttpResponseCache cache) {
+		if(cache == null) {
+			throw new IllegalArgumentException("HttpResponseCache cannot be null");
+		}
+		
+		CloseableHttpClient client = cache.newClientBuilder().setConnectionManager(HTTP_CONNECTION_MANAGER).setConnectionManagerShared(true).build();
+		HttpExecutor executor = new HttpExecutor(new HttpRateLimitingClient(client));
+		executor.responseCache = cache;
+		return executor;
+	}
+	
+	/**
+	 * Return a new {@link Builder} that can be used to create an
+	 * {@link HttpExecutor} with its own, isolated connection pool. Such
+	 * executors do not share connections with {@link #DEFAULT} or with each
+	 * other, and thus a slow host on one executor cannot exhaust the pool of
+	 * another.
+	 * 
+	 * @return a new {@link Builder} instance
+	 */
+	public static final Builder builder() {
+		return new Builder();
 	}
 	
 	/**
 	 * Get a new {@link HttpExecutor} instance based on given {@link HttpClient}
-	 * instance
+	 * instance. As the configuration of the client cannot be carried over to
+	 * the non-blocking client, the instance does not support
+	 * {@link #executeAsync(WebRequest)}.
 	 * 
 	 * @param client
 	 *            the {@link HttpClient} to use
@@ -183,7 +371,9 @@ public class HttpExecutor {
 			throw new IllegalArgumentException("HttpClient instance cannot be null");
 		}
 		
-		return new HttpExecutor(client);
+		HttpExecutor executor = new HttpExecutor(client);
+		executor.customClient = true;
+		return executor;
 	}
 	
 	/**
@@ -202,6 +392,9 @@ public class HttpExecutor {
 		}
 		
 		HTTP_CONNECTION_MANAGER.setMaxTotal(numConnections);
+		if(asyncClientStarted) {
+			AsyncClientHolder.CONNECTION_MANAGER.setMaxTotal(numConnections);
+		}
 	}
 	
 	/**
@@ -220,6 +413,9 @@ public class HttpExecutor {
 		}
 		
 		HTTP_CONNECTION_MANAGER.setDefaultMaxPerRoute(numConnections);
+		if(asyncClientStarted) {
+			AsyncClientHolder.CONNECTION_MANAGER.setDefaultMaxPerRoute(numConnections);
+		}
 	}
 	
 	/**
@@ -239,6 +435,9 @@ public class HttpExecutor {
 		}
 		
 		HTTP_CONNECTION_MANAGER.setMaxPerRoute(route, numConnections);
+		if(asyncClientStarted) {
+			AsyncClientHolder.CONNECTION_MANAGER.setMaxPerRoute(route, numConnections);
+		}
 	}
 	
 	/**
@@ -303,6 +502,9 @@ public class HttpExecutor {
 	 */
 	public static void closeIdleConnections(long idleForMillis) {
 		HTTP_CONNECTION_MANAGER.closeIdleConnections(idleForMillis, TimeUnit.MILLISECONDS);
+		if(asyncClientStarted) {
+			AsyncClientHolder.CONNECTION_MANAGER.closeIdleConnections(idleForMillis, TimeUnit.MILLISECONDS);
+		}
 	}
 	
 	/**
@@ -311,6 +513,9 @@ public class HttpExecutor {
 	 */
 	public static void closeExpiredConnections() {
 		HTTP_CONNECTION_MANAGER.closeExpiredConnections();
+		if(asyncClientStarted) {
+			AsyncClientHolder.CONNECTION_MANAGER.closeExpiredConnections();
+		}
 	}
 	
 	// Instance class starts from here
@@ -337,13 +542,94 @@ public class HttpExecutor {
 	 */
 	private CookieStore cookieStore;
 	
+	/**
+	 * The connection pool owned by this executor, <code>null</code> when the
+	 * executor works over the shared pool or an external {@link HttpClient}
+	 */
+	private final PoolingHttpClientConnectionManager connectionManager;
+	
+	/**
+	 * Number of I/O dispatch threads for the non-blocking client of an
+	 * executor that owns its connection pool
+	 */
+	private final int asyncIoThreads;
+	
+	/**
+	 * The non-blocking connection pool owned by this executor, created lazily
+	 */
+	private volatile PoolingNHttpClientConnectionManager asyncConnectionManager;
+	
+	/**
+	 * The non-blocking client owned by this executor, created lazily
+	 */
+	private volatile CloseableHttpAsyncClient asyncClient;
+	
+	/**
+	 * The controller that adapts per-route limits of the pool in use, if
+	 * enabled
+	 */
+	private volatile AdaptiveRouteLimitController routeLimitController;
+	
+	/**
+	 * The cache responses are served from, if any
+	 */
+	private HttpResponseCache responseCache;
+	
+	/**
+	 * Whether the executor wraps a client supplied by the caller, that the
+	 * non-blocking client cannot mirror
+	 */
+	private boolean customClient;
+	
+	/**
+	 * The policy by which failed requests are retried, if any
+	 */
+	private volatile RetryPolicy retryPolicy;
+	
+	/**
+	 * The policy by which slow requests are hedged, if any
+	 */
+	private volatile HedgingPolicy hedgingPolicy;
+	
+	/**
+	 * The circuit breaker that rejects requests to failing routes, if any
+	 */
+	private volatile CircuitBreaker circuitBreaker;
+	
+	/**
+	 * The registry that receives the measurements of every request, if any
+	 */
+	private volatile HttpMetricsRegistry metricsRegistry;
+	
+	/**
+	 * Names of the headers that are part of the coalescing key,
+	 * <code>null</code> when requests are not coalesced
+	 */
+	private volatile String[] coalescingHeaders;
+	
+	/**
+	 * The requests in flight that identical requests are coalesced onto
+	 */
+	private final ConcurrentMap<String, CompletableFuture<WebResponse>> inFlightRequests = new ConcurrentHashMap<>();
+	
+	/**
+	 * Number of requests that were served by another request in flight
+	 */
+	private final LongAdder coalescedRequestCount = new LongAdder();
+	
 	private HttpExecutor(final HttpClient client) {
+		this(client, null, ASYNC_IO_THREADS);
+	}
+	
+	private HttpExecutor(final HttpClient client, final PoolingHttpClientConnectionManager connectionManager, int asyncIoThreads) {
 		if(client == null) {
 			throw new IllegalArgumentException("Cannot create executor over null client instance");
 		}
 
 		this.client = client;
 		this.authCache = new BasicAuthCache();
+		this.connectionManager = connectionManager;
+		this.asyncIoThreads = asyncIoThreads;
 	}
 	
 	/**
@@ -361,382 +647,2123 @@ public class HttpExecutor {
 	 *             if something fails
 	 */
 	public WebRawResponse execute(WebRequest webRequest) throws ClientProtocolException, IOException {
-		boolean interceptRequest = !this.interceptors.isEmpty();
-		if(!interceptRequest) {
-			return this.executeInternal(webRequest);
+		RequestDeadline deadline = RequestDeadline.start(webRequest);
+		Bulkhead bulkhead = webRequest.getBulkhead();
+		if(deadline == null && bulkhead == null) {
+			return this.executeIntercepted(webRequest);
+		}
+		
+		if(deadline != null) {
+			deadline.track(webRequest.getHttpRequest());
+			webRequest.setActiveDeadline(deadline);
+		}
+		
+		boolean admitted = false;
+		try {
+			if(bulkhead != null) {
+				admit(bulkhead, deadline);
+				admitted = true;
+			}
+			
+			WebRawResponse response = this.executeIntercepted(webRequest);
+			
+			// the deadline and the bulkhead permit last till the body has been read
+			if(deadline != null) {
+				response.attachDeadline(deadline);
+			}
+			
+			if(bulkhead != null) {
+				response.whenConsumed(bulkhead::release);
+				admitted = false;
+			}
+			
+			return response;
+		} catch(IOException e) {
+			if(deadline == null) {
+				throw e;
+			}
+			
+			deadline.cancel();
+			throw deadline.translate(e);
+		} catch(RuntimeException | Error e) {
+			if(deadline != null) {
+				deadline.cancel();
+			}
+			
+			throw e;
+		} finally {
+			if(admitted) {
+				bulkhead.release();
+			}
+			
+			webRequest.setActiveDeadline(null);
+		}
+	}
+	
+	/**
+	 * Acquire a permit of the given bulkhead, waiting no longer than the
+	 * deadline allows.
+	 * 
+	 * @param bulkhead
+	 *            the {@link Bulkhead} to enter
+	 * 
+	 * @param deadline
+	 *            the deadline of the execution, may be <code>null</code>
+	 * 
+	 * @throws IOException
+	 *             if interrupted, or the deadline expired while waiting
+	 * 
+	 * @throws HttpBulkheadFullException
+	 *             if the bulkhead stayed saturated for the maximum wait
+	 */
+	private static void admit(Bulkhead bulkhead, RequestDeadline deadline) throws IOException {
+		long wait = bulkhead.getMaxWaitMillis();
+		boolean bounded = deadline != null && deadline.getRemainingMillis() < wait;
+		if(bounded) {
+			wait = deadline.getRemainingMillis();
+		}
+		
+		if(bulkhead.tryAcquire(wait)) {
+			return;
+		}
+		
+		if(bounded) {
+			throw deadline.exceeded(null);
+		}
+		
+		throw bulkhead.rejected();
+	}
+	
+	/**
+	 * Execute the given web request through the invocation interceptors.
+	 * 
+	 * @param webRequest
+	 *            the {@link WebRequest} to be executed
+	 * 
+	 * @return the {@link WebRawResponse} obtained after execution
+	 * 
+	 * @throws IOException
+	 *             if something fails
+	 */
+	private WebRawResponse executeIntercepted(WebRequest webRequest) throws ClientProtocolException, IOException {
+		final HttpInvocationInterceptorChain chain = this.interceptors.get();
+		if(chain.isEmpty()) {
+			return this.executeCoalesced(webRequest);
+		}
+		
+		if(chain.asyncBefore.length > 0) {
+			WebResponse response = await(interceptBeforeAsync(chain, webRequest), webRequest.getActiveDeadline(), "request interceptor");
+			if(response != null) {
+				return new HandledWebRawResponse(response);
+			}
 		}
 		
-		for(HttpInvocationInterceptor interceptor : this.interceptors) {
+		for(HttpInvocationInterceptor interceptor : chain.before) {
 			WebResponse response = interceptor.beforeInvocation(webRequest);
 			if(response != null) {
 				return new HandledWebRawResponse(response);
 			}
 		}
+		
+		if(chain.after.length == 0 && chain.asyncAfter.length == 0) {
+			return this.executeCoalesced(webRequest);
+		}
 
 		IOException exception = null;
 		WebRawResponse response = null;
 		try {
-			response = this.executeInternal(webRequest);
+			response = this.executeCoalesced(webRequest);
 		} catch(IOException e) {
-			exception = e;
+			RequestDeadline deadline = webRequest.getActiveDeadline();
+			exception = deadline == null ? e : deadline.translate(e);
 		}
 		
-		WebResponse actualResponse = null;
-		if(response != null) {
-			actualResponse = response.webResponse();
+		if(chain.after.length > 0) {
+			WebResponse actualResponse = null;
+			if(response != null) {
+				actualResponse = response.webResponse();
+			}
+			
+			for(HttpInvocationInterceptor interceptor : chain.after) {
+				actualResponse = interceptor.afterInvocation(webRequest, actualResponse, exception);
+			}
+			
+			response = new HandledWebRawResponse(actualResponse);
+			exception = null;
 		}
 		
-		for(HttpInvocationInterceptor interceptor : this.interceptors) {
-			actualResponse = interceptor.afterInvocation(actualResponse, exception);
+		if(chain.asyncAfter.length == 0) {
+			return response;
 		}
 		
-		return new HandledWebRawResponse(actualResponse);
-	}
-	
-	private WebRawResponse executeInternal(WebRequest webRequest) throws ClientProtocolException, IOException {
-		// sharing the context may lead to circular redirects in case
-		// of redirections from two request objects towards a single
-		// URI - like hitting http://google.com twice leads to circular
-		// redirects in the second request
-		HttpContext localHttpContext = new BasicHttpContext();
-		
-        localHttpContext.setAttribute(HttpClientContext.CREDS_PROVIDER, this.credentialsProvider);
-        localHttpContext.setAttribute(HttpClientContext.AUTH_CACHE, this.authCache);
-        localHttpContext.setAttribute(HttpClientContext.COOKIE_STORE, this.cookieStore);
-        
-        HttpRequestBase httpRequest = webRequest.getHttpRequest();
-        httpRequest.reset();
-        
-        return new WebRawResponse(httpRequest.getURI(), this.client.execute(httpRequest, localHttpContext), localHttpContext);
+		// asynchronous interceptors see the response before its body is read
+		final AtomicReference<WebRawResponse> seen = new AtomicReference<>();
+		CompletableFuture<WebRawResponse> call = interceptAfterAsync(chain, webRequest, response, exception, seen);
+		try {
+			return await(call, webRequest.getActiveDeadline(), "request interceptor");
+		} catch(IOException e) {
+			if(!call.isDone()) {
+				// nobody waits for the interceptors any more
+				discard(seen.get());
+				call.thenAccept(HttpExecutor::discard);
+			}
+			
+			throw e;
+		}
 	}
-    
-	// Methods related to rate limiting
 	
 	/**
-	 * Add new rate limiting for the given host.
+	 * Run the before-invocation hooks of the asynchronous interceptors one
+	 * after the other, stopping at the first that supplies a response.
 	 * 
-	 * @param hostName
-	 *            the hostname to add rate limit to
-	 * 
-	 * @param limit
-	 *            the limit to be used
+	 * @param chain
+	 *            the {@link HttpInvocationInterceptorChain} to run
 	 * 
-	 * @param timeUnit
-	 *            the time unit against which we are setting rate limit
+	 * @param webRequest
+	 *            the {@link WebRequest} to be executed
 	 * 
-	 * @return this very {@link HttpExecutor} instance
+	 * @return the {@link CompletableFuture} that completes with the
+	 *         {@link WebResponse} supplied by an interceptor, or
+	 *         <code>null</code> if the request should be executed
 	 */
-	public HttpExecutor addRateLimiting(String hostName, int limit, TimeUnit timeUnit) {
-		if(this.client instanceof HttpRateLimitingClient) {
-			((HttpRateLimitingClient) this.client).addRateLimiting(hostName, limit, timeUnit);
-			return this;
+	private static CompletableFuture<WebResponse> interceptBeforeAsync(HttpInvocationInterceptorChain chain, WebRequest webRequest) {
+		CompletableFuture<WebResponse> future = CompletableFuture.completedFuture(null);
+		for(AsyncHttpInvocationInterceptor interceptor : chain.asyncBefore) {
+			future = future.thenCompose(response -> response != null ? CompletableFuture.completedFuture(response) : interceptor.beforeInvocation(webRequest));
 		}
 		
-		throw new IllegalStateException("Current client does not support rate-limiting");
+		return future;
 	}
 	
 	/**
-	 * Remove any previous rate limiting that has been set for the host.
+	 * Run the after-invocation hooks of the asynchronous interceptors one
+	 * after the other, each being handed the outcome of the previous one. An
+	 * {@link IOException} is handed over to the next interceptor, while any
+	 * other failure skips the remaining interceptors and discards the content
+	 * of the last response handed over, so that its connection is released.
 	 * 
-	 * @param hostName
-	 *            the host name for which we need to remove rate limiting
+	 * @param chain
+	 *            the {@link HttpInvocationInterceptorChain} to run
 	 * 
-	 * @return this very {@link HttpExecutor} instance
+	 * @param webRequest
+	 *            the {@link WebRequest} that was executed
+	 * 
+	 * @param response
+	 *            the {@link WebRawResponse} obtained, if any
+	 * 
+	 * @param exception
+	 *            the {@link IOException} encountered, if any
+	 * 
+	 * @param seen
+	 *            updated with the last {@link WebRawResponse} handed to an
+	 *            interceptor
+	 * 
+	 * @return the {@link CompletableFuture} that completes with the
+	 *         {@link WebRawResponse} to return, or exceptionally with the
+	 *         failure to raise
 	 */
-	public HttpExecutor removeRateLimiting(String hostName) {
-		if(this.client instanceof HttpRateLimitingClient) {
-			((HttpRateLimitingClient) this.client).removeRateLimiting(hostName);
-			return this;
+	private static CompletableFuture<WebRawResponse> interceptAfterAsync(HttpInvocationInterceptorChain chain, WebRequest webRequest, WebRawResponse response, IOException exception, final AtomicReference<WebRawResponse> seen) {
+		seen.set(response);
+		CompletableFuture<WebRawResponse> future = exception == null ? CompletableFuture.completedFuture(response) : failedFuture(exception);
+		for(AsyncHttpInvocationInterceptor interceptor : chain.asyncAfter) {
+			future = future.handle((raw, throwable) -> {
+				Throwable cause = unwrapCompletionException(throwable);
+				if(cause == null || cause instanceof IOException) {
+					if(raw != null) {
+						seen.set(raw);
+					}
+					
+					return interceptor.afterInvocation(webRequest, raw, (IOException) cause);
+				}
+				
+				return HttpExecutor.<WebRawResponse> failedFuture(cause);
+			}).thenCompose(Function.identity());
 		}
 		
-		throw new IllegalStateException("Current client does not support rate-limiting");
+		return future.whenComplete((raw, throwable) -> {
+			Throwable cause = unwrapCompletionException(throwable);
+			if(cause != null && !(cause instanceof IOException)) {
+				discard(seen.get());
+			}
+		});
 	}
 	
 	/**
-	 * Remove all previously set rate limiting.
+	 * Discard the content of the given response, if any, releasing its
+	 * connection.
 	 * 
-	 * @return this very {@link HttpExecutor} instance
+	 * @param response
+	 *            the {@link WebRawResponse} to discard, may be
+	 *            <code>null</code>
 	 */
-	public HttpExecutor removeAllRateLimiting() {
-		if(this.client instanceof HttpRateLimitingClient) {
-			((HttpRateLimitingClient) this.client).removeAllRateLimiting();
-			return this;
+	private static void discard(WebRawResponse response) {
+		if(response != null) {
+			response.discardContent();
 		}
-		
-		throw new IllegalStateException("Current client does not support rate-limiting");
 	}
 	
-	// Methods related to authentication
-	
 	/**
-	 * Add provided authentication
+	 * Create a future that has already failed with the given cause.
 	 * 
-	 * @param authScope
-	 *            the {@link AuthScope} that needs to be set
+	 * @param cause
+	 *            the failure
 	 * 
-	 * @param credentials
-	 *            the {@link Credentials} that need to be set
+	 * @return the failed {@link CompletableFuture}
+	 */
+	private static <T> CompletableFuture<T> failedFuture(Throwable cause) {
+		CompletableFuture<T> future = new CompletableFuture<>();
+		future.completeExceptionally(cause);
+		return future;
+	}
+	
+	/**
+	 * Return the actual failure behind the one reported by a dependent
+	 * {@link CompletableFuture} stage.
 	 * 
-	 * @return this very {@link HttpExecutor}
+	 * @param throwable
+	 *            the failure reported, may be <code>null</code>
+	 * 
+	 * @return the wrapped cause of a {@link CompletionException}, or the
+	 *         failure itself
 	 */
-	public HttpExecutor addAuthentication(AuthScope authScope, Credentials credentials) {
-		if (this.credentialsProvider == null) {
-            this.credentialsProvider = new BasicCredentialsProvider();
-        }
-        this.credentialsProvider.setCredentials(authScope, credentials);
-        return this;
+	private static Throwable unwrapCompletionException(Throwable throwable) {
+		if(throwable instanceof CompletionException && throwable.getCause() != null) {
+			return throwable.getCause();
+		}
+		
+		return throwable;
 	}
 	
 	/**
-	 * Clear all authentication that may have been set.
+	 * Execute the given web request, joining an identical request already in
+	 * flight when coalescing is enabled. The first of the identical requests
+	 * is sent and buffered into a {@link WebResponse}; all others wait for it
+	 * and receive a copy of it.
 	 * 
-	 * @return this very {@link HttpExecutor}
+	 * @param webRequest
+	 *            the {@link WebRequest} to be executed
+	 * 
+	 * @return the {@link WebRawResponse} obtained after execution
+	 * 
+	 * @throws IOException
+	 *             if something fails, including the shared request
 	 */
-	public HttpExecutor clearAllAuthentication() {
-        if (this.credentialsProvider != null) {
-            this.credentialsProvider.clear();
-        }
-        
-        return this;
-    }
+	private WebRawResponse executeCoalesced(WebRequest webRequest) throws IOException {
+		String[] headers = this.coalescingHeaders;
+		if(headers == null) {
+			return this.executeRetrying(webRequest);
+		}
+		
+		WebRequestMethod method = webRequest.getWebRequestMethod();
+		if(method != WebRequestMethod.GET && method != WebRequestMethod.HEAD) {
+			return this.executeRetrying(webRequest);
+		}
+		
+		String key = getCoalescingKey(method, webRequest.getHttpRequest(), headers);
+		CompletableFuture<WebResponse> call = new CompletableFuture<>();
+		CompletableFuture<WebResponse> existing = this.inFlightRequests.putIfAbsent(key, call);
+		if(existing != null) {
+			this.coalescedRequestCount.increment();
+			return new HandledWebRawResponse(WebResponse.copyOf(await(existing, webRequest.getActiveDeadline(), "coalesced request")));
+		}
+		
+		try {
+			WebResponse response = this.executeRetrying(webRequest).webResponse();
+			call.complete(response);
+			return new HandledWebRawResponse(response);
+		} catch(Throwable t) {
+			call.completeExceptionally(t);
+			throw t;
+		} finally {
+			this.inFlightRequests.remove(key, call);
+		}
+	}
 	
 	/**
-	 * Add authentication for a given host
+	 * Build the key under which identical requests are coalesced.
 	 * 
-	 * @param host
-	 *            the host name for which authentication needs to be set
-	 *            
-	 * @param userName
-	 *            the username that needs to be set
+	 * @param method
+	 *            the {@link WebRequestMethod} of the request
 	 * 
-	 * @param password
-	 *            the password that needs to be set
+	 * @param httpRequest
+	 *            the {@link HttpRequestBase} being executed
 	 * 
-	 * @return this very {@link HttpExecutor}
+	 * @param headers
+	 *            the names of the headers that are part of the key
+	 * 
+	 * @return the coalescing key
 	 */
-	public HttpExecutor addAuthentication(String host, String userName, String password) {
-		AuthScope authScope = new AuthScope(host, 80);
-		Credentials credentials = new UsernamePasswordCredentials(userName, password);
-		return this.addAuthentication(authScope, credentials);
+	static String getCoalescingKey(WebRequestMethod method, HttpRequestBase httpRequest, String[] headers) {
+		StringBuilder builder = new StringBuilder();
+		builder.append(method.name()).append(' ').append(httpRequest.getURI());
+		for(String name : headers) {
+			for(Header header : httpRequest.getHeaders(name)) {
+				builder.append('\n').append(name).append(": ").append(header.getValue());
+			}
+		}
+		
+		return builder.toString();
 	}
 	
 	/**
-	 * Add authentication for given host and port.
+	 * Wait for a coalesced request, or an asynchronous interceptor, to
+	 * complete.
 	 * 
-	 * @param host
-	 *            the host name for which authentication needs to be set
+	 * @param call
+	 *            the {@link CompletableFuture} of the call in flight
 	 * 
-	 * @param port
-	 *            the port for which authentication needs to be set
+	 * @param deadline
+	 *            the deadline of the waiting request, may be <code>null</code>
 	 * 
-	 * @param userName
-	 *            the username that needs to be set
+	 * @param what
+	 *            what is being waited for, used in error messages
 	 * 
-	 * @param password
-	 *            the password that needs to be set
+	 * @return the value obtained by the call
 	 * 
-	 * @return this very {@link HttpExecutor}
+	 * @throws IOException
+	 *             if the call failed, or the wait was interrupted or
+	 *             outlasted the deadline
 	 */
-	public HttpExecutor addAuthentication(String host, int port, String userName, String password) {
-		AuthScope authScope = new AuthScope(host, port);
-		Credentials credentials = new UsernamePasswordCredentials(userName, password);
-		return this.addAuthentication(authScope, credentials);
+	private static <T> T await(CompletableFuture<T> call, RequestDeadline deadline, String what) throws IOException {
+		try {
+			if(deadline == null) {
+				return call.get();
+			}
+			
+			return call.get(deadline.getRemainingMillis(), TimeUnit.MILLISECONDS);
+		} catch(TimeoutException e) {
+			throw deadline.exceeded(e);
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for a " + what);
+		} catch(ExecutionException e) {
+			throw unwrapExecutionException(e, "Failure in " + what);
+		}
 	}
-
+	
 	/**
-	 * Remove authentication for given host.
+	 * Unwrap the cause of a failed call, rethrowing unchecked exceptions as-is.
 	 * 
-	 * @param host the hostname for which authentication needs to be removed
+	 * @param e
+	 *            the {@link ExecutionException} raised by the call
 	 * 
-	 * @return this very {@link HttpExecutor}
+	 * @param message
+	 *            the message to wrap a checked cause other than an
+	 *            {@link IOException} with
 	 * 
+	 * @return the {@link IOException} to be thrown
 	 */
-	public HttpExecutor removeAuthentication(String host) {
-		AuthScope authScope = new AuthScope(host, 80);
-		return this.addAuthentication(authScope, null);
+	private static IOException unwrapExecutionException(ExecutionException e, String message) {
+		Throwable cause = e.getCause();
+		if(cause instanceof IOException) {
+			return (IOException) cause;
+		}
+		
+		if(cause instanceof RuntimeException) {
+			throw (RuntimeException) cause;
+		}
+		
+		if(cause instanceof Error) {
+			throw (Error) cause;
+		}
+		
+		return new IOException(message, cause);
 	}
 	
 	/**
-	 * Remove authentication for given host and port.
+	 * Execute the given web request, retrying as per the {@link RetryPolicy}
+	 * of the request or else of this executor. The request is reset before
+	 * every attempt, so that repeatable bodies are sent afresh; the content
+	 * of a response that is retried is discarded. A request that has been
+	 * aborted is not retried.
 	 * 
-	 * @param host
-	 *            the hostname
+	 * @param webRequest
+	 *            the {@link WebRequest} to be executed
 	 * 
-	 * @param port
-	 *            the port number
+	 * @return the {@link WebRawResponse} of the final attempt
 	 * 
-	 * @return this very {@link HttpExecutor}
+	 * @throws IOException
+	 *             if the final attempt fails
 	 */
-	public HttpExecutor removeAuthentication(String host, int port) {
-		AuthScope authScope = new AuthScope(host, port);
-		return this.addAuthentication(authScope, null);
+	private WebRawResponse executeRetrying(WebRequest webRequest) throws IOException {
+		RetryPolicy policy = webRequest.getRetryPolicy();
+		if(policy == null) {
+			policy = this.retryPolicy;
+		}
+		
+		if(policy == null || !policy.isRetryable(webRequest)) {
+			return this.executeHedged(webRequest);
+		}
+		
+		// the request is reset before every attempt, which would undo an abort
+		final HttpRequestBase httpRequest = webRequest.getHttpRequest();
+		for(int attempt = 1; ; attempt++) {
+			WebRawResponse response;
+			try {
+				response = this.executeHedged(webRequest);
+			} catch(IOException | HttpRateLimitException e) {
+				if(httpRequest.isAborted()) {
+					throw e;
+				}
+				
+				long delay = policy.getRetryDelay(attempt, e, this.getThrottledMillis(webRequest));
+				if(delay < 0 || !isWithinDeadline(webRequest, delay)) {
+					throw e;
+				}
+				
+				LOGGER.debug("Attempt {} of {} failed, retrying in {} millis", attempt, webRequest.getURI(), delay, e);
+				sleepBeforeRetry(delay);
+				if(httpRequest.isAborted()) {
+					throw e;
+				}
+				
+				continue;
+			}
+			
+			long now = System.currentTimeMillis();
+			long retryAfter = HttpRateLimitingClient.parseRetryAfter(response.getFirstHeader("Retry-After"), now);
+			long delay = policy.getRetryDelay(attempt, response.getStatusCode(), retryAfter > now ? retryAfter - now : 0);
+			if(delay < 0 || !isWithinDeadline(webRequest, delay)) {
+				return response;
+			}
+			
+			LOGGER.debug("Attempt {} of {} returned {}, retrying in {} millis", attempt, webRequest.getURI(), response.getStatusCode(), delay);
+			response.discardContent();
+			
+			// a hedged request may have been aborted as the loser already
+			boolean aborted = httpRequest.isAborted();
+			sleepBeforeRetry(delay);
+			if(!aborted && httpRequest.isAborted()) {
+				throw new RequestAbortedException("Request aborted while waiting to retry");
+			}
+		}
 	}
-
-	// Methods related to cookie store
 	
 	/**
-	 * Replace or set the given cookie store as the cookie store instance to be
-	 * used.
+	 * Check if a retry after the given delay may still complete within the
+	 * deadline of the request.
 	 * 
-	 * @param cookieStore
-	 *            the cookie store that needs to be set
+	 * @param webRequest
+	 *            the {@link WebRequest} being executed
 	 * 
-	 * @return this very {@link HttpExecutor}
-	 */
-    public HttpExecutor setCookieStore(final CookieStore cookieStore) {
-        this.cookieStore = cookieStore;
-        return this;
-    }
-
-    /**
-	 * Clear all cookies in the cookie store if any present.
+	 * @param delay
+	 *            the millis to wait before the retry
 	 * 
-	 * @return this very {@link HttpExecutor}
+	 * @return <code>true</code> if there is no deadline, or time remains
+	 *         after the delay
 	 */
-    public HttpExecutor clearCookies() {
-        if (this.cookieStore != null) {
-            this.cookieStore.clear();
-        }
-        return this;
-    }
-
-    // Utility methods start here
-    
+	private static boolean isWithinDeadline(WebRequest webRequest, long delay) {
+		RequestDeadline deadline = webRequest.getActiveDeadline();
+		return deadline == null || delay < deadline.getRemainingMillis();
+	}
+	
 	/**
-	 * Set overall maximum connections that can be handled by the underlying
-	 * connection manager.
+	 * Return how long the host of the request is throttled for by
+	 * rate-limiting of this executor.
 	 * 
-	 * @param numConnections
-	 *            the number of connections
+	 * @param webRequest
+	 *            the {@link WebRequest}
 	 * 
-	 * @return this very {@link HttpExecutor} instance
+	 * @return the millis till the throttling ends, or <code>0</code>
 	 */
-	public HttpExecutor maxConnections(int numConnections) {
-		setMaxConnections(numConnections);
-		return this;
+	private long getThrottledMillis(WebRequest webRequest) {
+		if(!(this.client instanceof HttpRateLimitingClient)) {
+			return 0;
+		}
+		
+		long until = ((HttpRateLimitingClient) this.client).getThrottledUntil(webRequest.getURI().getHost());
+		return Math.max(0, until - System.currentTimeMillis());
 	}
 	
 	/**
-	 * Set overall maximum connections per route (over all hosts) that can be
-	 * handled by the underlying connection manager.
+	 * Sleep for the backoff before a retry.
 	 * 
-	 * @param numConnections
-	 *            the number of connections
+	 * @param millis
+	 *            the millis to sleep
 	 * 
-	 * @return this very {@link HttpExecutor} instance
+	 * @throws InterruptedIOException
+	 *             if interrupted while sleeping
 	 */
-	public HttpExecutor maxConnectionsPerRoute(int numConnections) {
-		setMaxConnectionsPerRoute(numConnections);
-		return this;
+	private static void sleepBeforeRetry(long millis) throws InterruptedIOException {
+		if(millis <= 0) {
+			return;
+		}
+		
+		try {
+			Thread.sleep(millis);
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting to retry");
+		}
 	}
 	
 	/**
-	 * Set maximum connections that will be operated over the given route, that
-	 * will be handled by the underlying connection manager.
+	 * Execute the given web request, sending duplicates as per the
+	 * {@link HedgingPolicy} of the request or else of this executor while no
+	 * response has arrived. The original copy runs on the calling thread and
+	 * the duplicates on the shared hedging threads, if any is free. The first
+	 * response wins and all other copies of the request are aborted.
 	 * 
-	 * @param route
-	 *            the {@link HttpRoute} to use
+	 * @param webRequest
+	 *            the {@link WebRequest} to be executed
 	 * 
-	 * @param numConnections
-	 *            the number of connections
+	 * @return the {@link WebRawResponse} of the copy that responded first
 	 * 
-	 * @return this very {@link HttpExecutor} instance
+	 * @throws IOException
+	 *             if all copies sent fail
 	 */
-	public HttpExecutor maxConnectionsOnHost(HttpRoute route, int numConnections) {
-		setMaxConnectionsOnHost(route, numConnections);
-		return this;
+	private WebRawResponse executeHedged(WebRequest webRequest) throws IOException {
+		HedgingPolicy policy = webRequest.getHedgingPolicy();
+		if(policy == null) {
+			policy = this.hedgingPolicy;
+		}
+		
+		if(policy == null || !policy.isHedgeable(webRequest)) {
+			return this.executeInternal(webRequest);
+		}
+		
+		HttpRequestBase httpRequest = webRequest.getHttpRequest();
+		httpRequest.reset();
+		
+		HedgedCall call = new HedgedCall(policy, httpRequest, this.resolveCircuitBreaker(webRequest), webRequest.getActiveDeadline());
+		try {
+			call.scheduleHedge();
+			call.run(httpRequest);
+			
+			return call.result.get();
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for a hedged request");
+		} catch(ExecutionException e) {
+			throw unwrapExecutionException(e, "Hedged request failed");
+		} finally {
+			call.stopHedging();
+			call.abortLosers();
+		}
 	}
 	
 	/**
-	 * Set maximum connections that will be operated over the given host on port
-	 * 80, that will be handled by the underlying connection manager.
+	 * Reset and execute the {@link HttpRequestBase} of the given web request.
 	 * 
-	 * @param hostName
-	 *            the host name to use
+	 * @param webRequest
+	 *            the {@link WebRequest} to be executed
 	 * 
-	 * @param numConnections
-	 *            the number of connections
+	 * @return the {@link WebRawResponse} obtained
 	 * 
-	 * @return this very {@link HttpExecutor} instance
+	 * @throws IOException
+	 *             if something fails
 	 */
-	public HttpExecutor maxConnectionsOnHost(String hostName, int numConnections) {
-		HttpRoute route = new HttpRoute(new HttpHost(hostName));
-		setMaxConnectionsOnHost(route, numConnections);
-		return this;
+	private WebRawResponse executeInternal(WebRequest webRequest) throws ClientProtocolException, IOException {
+		HttpRequestBase httpRequest = webRequest.getHttpRequest();
+		httpRequest.reset();
+		
+		return this.executeInternal(httpRequest, this.resolveCircuitBreaker(webRequest));
 	}
 	
 	/**
-	 * Set maximum connections that will be operated over the given host on
-	 * given port, that will be handled by the underlying connection manager.
-	 * 
-	 * @param hostName
-	 *            the host name to use
-	 * 
-	 * @param port
-	 *            the port to use
+	 * Return the {@link CircuitBreaker} of the request, or else of this
+	 * executor.
 	 * 
-	 * @param numConnections
-	 *            the number of connections
+	 * @param webRequest
+	 *            the {@link WebRequest} being executed
 	 * 
-	 * @return this very {@link HttpExecutor} instance
+	 * @return the {@link CircuitBreaker} to use, or <code>null</code>
 	 */
-	public HttpExecutor maxConnectionsOnHost(String hostName, int port, int numConnections) {
-		HttpRoute route = new HttpRoute(new HttpHost(hostName, port));
-		setMaxConnectionsOnHost(route, numConnections);
-		return this;
+	private CircuitBreaker resolveCircuitBreaker(WebRequest webRequest) {
+		CircuitBreaker breaker = webRequest.getCircuitBreaker();
+		if(breaker != null) {
+			return breaker;
+		}
+		
+		return this.circuitBreaker;
 	}
 	
 	/**
-	 * Add a new {@link HttpInvocationInterceptor} to the {@link HttpExecutor}
-	 * instance. Note that the interceptor is added to only the given instance
-	 * of {@link HttpExecutor} - there may be other instances of
-	 * {@link HttpExecutor} which may run a {@link WebRequest} without these
-	 * interceptors.
+	 * Execute the given request once the {@link CircuitBreaker}, if any,
+	 * permits it, and report the outcome back to the breaker.
 	 * 
-	 * @param interceptor
-	 *            the {@link HttpInvocationInterceptor} to add
+	 * @param httpRequest
+	 *            the {@link HttpRequestBase} to execute
 	 * 
-	 * @throws IllegalArgumentException
-	 *             if interceptor is <code>null</code>
+	 * @param breaker
+	 *            the {@link CircuitBreaker} to use, may be <code>null</code>
+	 * 
+	 * @return the {@link WebRawResponse} obtained
+	 * 
+	 * @throws IOException
+	 *             if something fails
+	 * 
+	 * @throws HttpCircuitOpenException
+	 *             if the circuit of the route is open
 	 */
-	public void addInvocationInterception(HttpInvocationInterceptor interceptor) {
-		if(interceptor == null) {
-			throw new IllegalArgumentException("HttpInvocationInterceptor cannot be null");
+	private WebRawResponse executeInternal(HttpRequestBase httpRequest, CircuitBreaker breaker) throws ClientProtocolException, IOException {
+		CircuitBreaker.Permit permit = breaker == null ? null : breaker.acquire(httpRequest.getURI());
+		if(permit == null) {
+			return this.send(httpRequest);
 		}
 		
-		this.interceptors.add(interceptor);
-		Collections.sort(this.interceptors, this.interceptorComparator);
+		long start = System.nanoTime();
+		try {
+			WebRawResponse response = this.send(httpRequest);
+			permit.onResponse(response.getStatusCode(), System.nanoTime() - start);
+			return response;
+		} catch(IOException e) {
+			if(httpRequest.isAborted()) {
+				permit.release();
+			} else {
+				permit.onFailure(System.nanoTime() - start);
+			}
+			
+			throw e;
+		} catch(RuntimeException e) {
+			// rejected by rate-limiting and the like, says nothing of the host
+			permit.release();
+			throw e;
+		}
+	}
+	
+	private WebRawResponse send(HttpRequestBase httpRequest) throws ClientProtocolException, IOException {
+		HttpContext localHttpContext = this.createLocalContext();
+        
+        AdaptiveRouteLimitController controller = this.routeLimitController;
+        HttpMetricsRegistry metrics = this.metricsRegistry;
+        if(controller == null && metrics == null) {
+        	return new WebRawResponse(httpRequest.getURI(), this.client.execute(httpRequest, localHttpContext), localHttpContext);
+        }
+        
+        // time includes the wait to lease a connection from the pool
+        AdaptiveRouteLimitController.RouteState state = controller == null ? null : controller.requestStarted(httpRequest.getURI());
+        long start = System.nanoTime();
+        try {
+        	HttpResponse response = metrics == null ? this.client.execute(httpRequest, localHttpContext) : this.sendMetered(httpRequest, localHttpContext, metrics, start);
+        	return new WebRawResponse(httpRequest.getURI(), response, localHttpContext);
+        } finally {
+        	if(controller != null) {
+        		controller.requestCompleted(state, System.nanoTime() - start);
+        	}
+        }
 	}
 	
 	/**
-	 * Remove the instance of {@link HttpInvocationInterceptor} if added.
+	 * Send the request, reporting its measurements to the given registry.
 	 * 
-	 * @param interceptor
-	 *            the {@link HttpInvocationInterceptor} to remove
+	 * @param httpRequest
+	 *            the {@link HttpRequestBase} to execute
 	 * 
-	 * @return <code>true</code> if interceptor was removed, <code>false</code>
-	 *         otherwise
+	 * @param localHttpContext
+	 *            the {@link HttpContext} to execute in
+	 * 
+	 * @param metrics
+	 *            the {@link HttpMetricsRegistry} to report to
+	 * 
+	 * @param start
+	 *            the {@link System#nanoTime()} at which the request started
+	 * 
+	 * @return the {@link HttpResponse} obtained, whose entity reports the
+	 *         bytes received once read
+	 * 
+	 * @throws IOException
+	 *             if something fails
 	 */
-	public boolean removeInvocationInterceptor(HttpInvocationInterceptor interceptor) {
-		if(interceptor == null) {
-			return false;
+	private HttpResponse sendMetered(HttpRequestBase httpRequest, HttpContext localHttpContext, HttpMetricsRegistry metrics, long start) throws ClientProtocolException, IOException {
+		final String host = getMetricsHost(httpRequest.getURI());
+		
+		// count the body bytes sent, putting back the entity afterwards
+		HttpEntityEnclosingRequest enclosingRequest = null;
+		if(httpRequest instanceof HttpEntityEnclosingRequest && ((HttpEntityEnclosingRequest) httpRequest).getEntity() != null) {
+			enclosingRequest = (HttpEntityEnclosingRequest) httpRequest;
+			enclosingRequest.setEntity(new MeteredHttpEntity(enclosingRequest.getEntity(), bytes -> metrics.recordBytesSent(host, bytes)));
 		}
 		
-		return this.interceptors.remove(interceptor);
+		MeteredConnectionManager.Timings timings = MeteredConnectionManager.startTimings();
+		try {
+			HttpResponse response = this.client.execute(httpRequest, localHttpContext);
+			metrics.recordLatency(host, response.getStatusLine().getStatusCode(), System.nanoTime() - start);
+			meterResponseEntity(response, host, metrics);
+			return response;
+		} catch(HttpRateLimitException e) {
+			metrics.recordRateLimitRejection(host);
+			throw e;
+		} catch(IOException | RuntimeException e) {
+			// requests aborted as hedging losers or past their deadline are not errors of the host
+			if(!httpRequest.isAborted()) {
+				metrics.recordError(host, e);
+			}
+			
+			throw e;
+		} finally {
+			MeteredConnectionManager.stopTimings();
+			if(timings.leased) {
+				metrics.recordPoolLeaseWait(host, timings.leaseNanos);
+			}
+			
+			if(timings.connected) {
+				metrics.recordConnect(host, timings.connectNanos);
+			}
+			
+			if(enclosingRequest != null) {
+				enclosingRequest.setEntity(((MeteredHttpEntity) enclosingRequest.getEntity()).getWrappedEntity());
+			}
+		}
 	}
 	
 	/**
-	 * Clear all interceptors that have been added to this executor till now.
+	 * Wrap the entity of the response, if any, so that the bytes received are
+	 * reported once the body is read.
+	 * 
+	 * @param response
+	 *            the {@link HttpResponse} received
+	 * 
+	 * @param host
+	 *            the host the response came from
+	 * 
+	 * @param metrics
+	 *            the {@link HttpMetricsRegistry} to report to
+	 */
+	private static void meterResponseEntity(HttpResponse response, final String host, final HttpMetricsRegistry metrics) {
+		HttpEntity entity = response.getEntity();
+		if(entity != null) {
+			response.setEntity(new MeteredHttpEntity(entity, bytes -> metrics.recordBytesReceived(host, bytes)));
+		}
+	}
+	
+	/**
+	 * Return the host that measurements of a request to the given
+	 * {@link URI} are reported against.
+	 * 
+	 * @param uri
+	 *            the {@link URI} requested
+	 * 
+	 * @return the host, never <code>null</code>
+	 */
+	private static String getMetricsHost(URI uri) {
+		String host = uri == null ? null : uri.getHost();
+		return host == null ? "" : host.toLowerCase();
+	}
+	
+	/**
+	 * Execute the given web request over the non-blocking client and return a
+	 * {@link CompletableFuture} that completes with the obtained
+	 * {@link WebResponse}. The calling thread is never blocked on the network:
+	 * all interceptors, rate-limiting and conversion via the default
+	 * {@link WebResponseHandler} are still applied, with the
+	 * {@link HttpInvocationInterceptor#afterInvocation(WebRequest, WebResponse, IOException)}
+	 * hooks running on the I/O dispatch thread once the response arrives.
+	 * 
+	 * Cancelling the returned future, or the expiry of a deadline set on the
+	 * request, aborts the underlying request.
+	 * 
+	 * @param webRequest
+	 *            the {@link WebRequest} to be executed
+	 * 
+	 * @return the {@link CompletableFuture} that completes with the
+	 *         {@link WebResponse}, or exceptionally with the {@link IOException}
+	 *         or {@link HttpRateLimitException} that was encountered
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the {@link WebRequest} is <code>null</code>
+	 * 
+	 * @throws IllegalStateException
+	 *             if the executor wraps a client supplied via
+	 *             {@link #newInstance(HttpClient)} or serves responses from a
+	 *             cache, which the non-blocking client would bypass
+	 */
+	public CompletableFuture<WebResponse> executeAsync(final WebRequest webRequest) {
+		if(webRequest == null) {
+			throw new IllegalArgumentException("WebRequest to be executed cannot be null");
+		}
+		
+		if(this.customClient || this.responseCache != null) {
+			throw new IllegalStateException("Asynchronous execution is not supported by executors over a custom or caching client");
+		}
+		
+		final CompletableFuture<WebResponse> future = new CompletableFuture<>();
+		
+		final RequestDeadline deadline = RequestDeadline.start(webRequest);
+		if(deadline != null) {
+			// fail the future before the abort reports a cancellation
+			deadline.onExpiry(() -> future.completeExceptionally(deadline.exceeded(null)));
+			deadline.track(webRequest.getHttpRequest());
+			future.whenComplete((response, throwable) -> deadline.cancel());
+		}
+		
+		// asynchronous executions never wait for a bulkhead
+		final Bulkhead bulkhead = webRequest.getBulkhead();
+		if(bulkhead != null) {
+			try {
+				if(!bulkhead.tryAcquire(0)) {
+					future.completeExceptionally(bulkhead.rejected());
+					return future;
+				}
+			} catch(IOException e) {
+				future.completeExceptionally(e);
+				return future;
+			}
+			
+			future.whenComplete((response, throwable) -> bulkhead.release());
+		}
+		
+		final HttpInvocationInterceptorChain chain = this.interceptors.get();
+		if(chain.asyncBefore.length == 0) {
+			this.proceedAsync(webRequest, chain, future);
+			return future;
+		}
+		
+		interceptBeforeAsync(chain, webRequest).whenComplete((response, throwable) -> {
+			if(throwable != null) {
+				future.completeExceptionally(unwrapCompletionException(throwable));
+				return;
+			}
+			
+			if(response != null) {
+				future.complete(response);
+				return;
+			}
+			
+			if(future.isDone()) {
+				return;
+			}
+			
+			try {
+				this.proceedAsync(webRequest, chain, future);
+			} catch(RuntimeException e) {
+				future.completeExceptionally(e);
+			}
+		});
+		
+		return future;
+	}
+	
+	/**
+	 * Continue an asynchronous execution once the asynchronous interceptors
+	 * have let it through: run the synchronous before-invocation hooks and
+	 * submit the request, waiting for a rate-limit permit without blocking.
+	 * 
+	 * @param webRequest
+	 *            the {@link WebRequest} being executed
+	 * 
+	 * @param chain
+	 *            the {@link HttpInvocationInterceptorChain} the execution
+	 *            started with
+	 * 
+	 * @param future
+	 *            the {@link CompletableFuture} to complete
+	 */
+	private void proceedAsync(final WebRequest webRequest, final HttpInvocationInterceptorChain chain, final CompletableFuture<WebResponse> future) {
+		for(HttpInvocationInterceptor interceptor : chain.before) {
+			WebResponse response = interceptor.beforeInvocation(webRequest);
+			if(response != null) {
+				future.complete(response);
+				return;
+			}
+		}
+		
+		final HttpContext localHttpContext = this.createLocalContext();
+		
+		final HttpRequestBase httpRequest = webRequest.getHttpRequest();
+		httpRequest.reset();
+		
+		if(!(this.client instanceof HttpRateLimitingClient)) {
+			this.submitAsync(webRequest, chain, httpRequest, localHttpContext, future);
+			return;
+		}
+		
+		// hosts that wait for a permit delay the submission, without blocking
+		((HttpRateLimitingClient) this.client).acquirePermitAsync(httpRequest).whenComplete((permit, throwable) -> {
+			if(throwable != null) {
+				HttpMetricsRegistry metrics = this.metricsRegistry;
+				if(metrics != null && unwrapCompletionException(throwable) instanceof HttpRateLimitException) {
+					metrics.recordRateLimitRejection(getMetricsHost(httpRequest.getURI()));
+				}
+				
+				future.completeExceptionally(throwable);
+				return;
+			}
+			
+			if(!future.isDone()) {
+				this.submitAsync(webRequest, chain, httpRequest, localHttpContext, future);
+			}
+		});
+	}
+	
+	/**
+	 * Submit the request to the non-blocking client and complete the future
+	 * with its outcome.
+	 * 
+	 * @param webRequest
+	 *            the {@link WebRequest} being executed
+	 * 
+	 * @param chain
+	 *            the {@link HttpInvocationInterceptorChain} the execution
+	 *            started with
+	 * 
+	 * @param httpRequest
+	 *            the {@link HttpRequestBase} to execute
+	 * 
+	 * @param localHttpContext
+	 *            the {@link HttpContext} to execute in
+	 * 
+	 * @param future
+	 *            the {@link CompletableFuture} to complete
+	 */
+	private void submitAsync(final WebRequest webRequest, final HttpInvocationInterceptorChain chain, final HttpRequestBase httpRequest, final HttpContext localHttpContext, final CompletableFuture<WebResponse> future) {
+		final URI originalURI = httpRequest.getURI();
+		final HttpMetricsRegistry metrics = this.metricsRegistry;
+		
+		final CircuitBreaker breaker = this.resolveCircuitBreaker(webRequest);
+		final CircuitBreaker.Permit permit;
+		try {
+			permit = breaker == null ? null : breaker.acquire(originalURI);
+		} catch(HttpCircuitOpenException e) {
+			future.completeExceptionally(e);
+			return;
+		}
+		
+		final long start = System.nanoTime();
+		final Future<HttpResponse> execution;
+		try {
+			execution = this.getAsyncClient().execute(httpRequest, localHttpContext, new FutureCallback<HttpResponse>() {
+				
+				@Override
+				public void completed(HttpResponse result) {
+					if(permit != null) {
+						permit.onResponse(result.getStatusLine().getStatusCode(), System.nanoTime() - start);
+					}
+					
+					if(client instanceof HttpRateLimitingClient) {
+						((HttpRateLimitingClient) client).observeResponse(originalURI.getHost(), result);
+					}
+					
+					if(metrics != null) {
+						String host = getMetricsHost(originalURI);
+						metrics.recordLatency(host, result.getStatusLine().getStatusCode(), System.nanoTime() - start);
+						meterResponseEntity(result, host, metrics);
+					}
+					
+					completeAsync(future, webRequest, chain, new WebRawResponse(originalURI, result, localHttpContext), null);
+				}
+				
+				@Override
+				public void failed(Exception ex) {
+					if(permit != null) {
+						// a future already done was aborted by its deadline or the caller
+						if(future.isDone() || httpRequest.isAborted()) {
+							permit.release();
+						} else {
+							permit.onFailure(System.nanoTime() - start);
+						}
+					}
+					
+					if(metrics != null && !future.isDone()) {
+						metrics.recordError(getMetricsHost(originalURI), ex);
+					}
+					
+					if(ex instanceof IOException) {
+						completeAsync(future, webRequest, chain, null, (IOException) ex);
+						return;
+					}
+					
+					future.completeExceptionally(ex);
+				}
+				
+				@Override
+				public void cancelled() {
+					if(permit != null) {
+						permit.release();
+					}
+					
+					future.cancel(false);
+				}
+				
+			});
+		} catch(RuntimeException e) {
+			if(permit != null) {
+				permit.release();
+			}
+			
+			throw e;
+		}
+		
+		future.whenComplete((response, throwable) -> {
+			if(future.isCancelled()) {
+				execution.cancel(true);
+			}
+		});
+	}
+	
+	/**
+	 * Run the after-invocation interceptors over the result of an asynchronous
+	 * execution and complete the future with the outcome. Just like
+	 * {@link #execute(WebRequest)} the {@link IOException} is handed over to
+	 * the interceptors when there are any, and is only surfaced otherwise; the
+	 * synchronous interceptors run first, over the buffered response, and the
+	 * asynchronous ones last.
+	 * 
+	 * @param future
+	 *            the {@link CompletableFuture} to complete
+	 * 
+	 * @param webRequest
+	 *            the {@link WebRequest} that was executed
+	 * 
+	 * @param chain
+	 *            the {@link HttpInvocationInterceptorChain} the execution
+	 *            started with
+	 * 
+	 * @param response
+	 *            the {@link WebRawResponse} obtained, if any
+	 * 
+	 * @param exception
+	 *            the {@link IOException} encountered, if any
+	 */
+	private void completeAsync(CompletableFuture<WebResponse> future, WebRequest webRequest, HttpInvocationInterceptorChain chain, WebRawResponse response, IOException exception) {
+		if(chain.after.length > 0) {
+			WebResponse actualResponse = null;
+			if(response != null) {
+				try {
+					actualResponse = response.webResponse();
+				} catch(IOException e) {
+					exception = e;
+				}
+			}
+			
+			try {
+				for(HttpInvocationInterceptor interceptor : chain.after) {
+					actualResponse = interceptor.afterInvocation(webRequest, actualResponse, exception);
+				}
+			} catch(RuntimeException e) {
+				future.completeExceptionally(e);
+				return;
+			}
+			
+			response = new HandledWebRawResponse(actualResponse);
+			exception = null;
+		}
+		
+		if(chain.asyncAfter.length == 0) {
+			complete(future, response, exception);
+			return;
+		}
+		
+		interceptAfterAsync(chain, webRequest, response, exception, new AtomicReference<WebRawResponse>()).whenComplete((raw, throwable) -> {
+			Throwable cause = unwrapCompletionException(throwable);
+			if(cause instanceof IOException || cause == null) {
+				complete(future, raw, (IOException) cause);
+				return;
+			}
+			
+			future.completeExceptionally(cause);
+		});
+	}
+	
+	/**
+	 * Complete the future of an asynchronous execution by reading the given
+	 * response in full, or with the given failure.
+	 * 
+	 * @param future
+	 *            the {@link CompletableFuture} to complete
+	 * 
+	 * @param response
+	 *            the {@link WebRawResponse} obtained, if any
+	 * 
+	 * @param exception
+	 *            the {@link IOException} encountered, if any
+	 */
+	private static void complete(CompletableFuture<WebResponse> future, WebRawResponse response, IOException exception) {
+		if(exception != null) {
+			future.completeExceptionally(exception);
+			return;
+		}
+		
+		try {
+			future.complete(response == null ? null : response.webResponse());
+		} catch(IOException e) {
+			future.completeExceptionally(e);
+		}
+	}
+	
+	/**
+	 * Create a new local {@link HttpContext} for one execution, wired with the
+	 * credentials, auth-cache and cookie-store of this executor.
+	 * 
+	 * @return the {@link HttpContext} to use
+	 */
+	private HttpContext createLocalContext() {
+		// sharing the context may lead to circular redirects in case
+		// of redirections from two request objects towards a single
+		// URI - like hitting http://google.com twice leads to circular
+		// redirects in the second request
+		HttpContext localHttpContext = new BasicHttpContext();
+		
+        localHttpContext.setAttribute(HttpClientContext.CREDS_PROVIDER, this.credentialsProvider);
+        localHttpContext.setAttribute(HttpClientContext.AUTH_CACHE, this.authCache);
+        localHttpContext.setAttribute(HttpClientContext.COOKIE_STORE, this.cookieStore);
+        
+        return localHttpContext;
+	}
+	
+	/**
+	 * Return the non-blocking client to be used for asynchronous executions.
+	 * 
+	 * @return the {@link CloseableHttpAsyncClient} instance
+	 */
+	private CloseableHttpAsyncClient getAsyncClient() {
+		if(this.connectionManager == null) {
+			return AsyncClientHolder.CLIENT;
+		}
+		
+		CloseableHttpAsyncClient client = this.asyncClient;
+		if(client != null) {
+			return client;
+		}
+		
+		synchronized(this) {
+			if(this.asyncClient == null) {
+				PoolingNHttpClientConnectionManager manager = createAsyncConnectionManager(this.asyncIoThreads);
+				manager.setDefaultMaxPerRoute(this.connectionManager.getDefaultMaxPerRoute());
+				manager.setMaxTotal(this.connectionManager.getMaxTotal());
+				
+				client = HttpAsyncClients.custom().setConnectionManager(manager).build();
+				client.start();
+				
+				this.asyncConnectionManager = manager;
+				this.asyncClient = client;
+			}
+			
+			return this.asyncClient;
+		}
+	}
+    
+	// Methods related to rate limiting
+	
+	/**
+	 * Add new rate limiting for the given host.
+	 * 
+	 * @param hostName
+	 *            the hostname to add rate limit to
+	 * 
+	 * @param limit
+	 *            the limit to be used
+	 * 
+	 * @param timeUnit
+	 *            the time unit against which we are setting rate limit
+	 * 
+	 * @return this very {@link HttpExecutor} instance
+	 */
+	public HttpExecutor addRateLimiting(String hostName, int limit, TimeUnit timeUnit) {
+		if(this.client instanceof HttpRateLimitingClient) {
+			((HttpRateLimitingClient) this.client).addRateLimiting(hostName, limit, timeUnit);
+			return this;
+		}
+		
+		throw new IllegalStateException("Current client does not support rate-limiting");
+	}
+	
+	/**
+	 * Add new rate limiting for the given host, allowing <code>limit</code>
+	 * requests in every window of the given duration.
+	 * 
+	 * @param hostName
+	 *            the hostname to add rate limit to
+	 * 
+	 * @param limit
+	 *            the limit to be used
+	 * 
+	 * @param duration
+	 *            the length of the window, at least a millisecond
+	 * 
+	 * @param timeUnit
+	 *            the time unit of the window length
+	 * 
+	 * @return this very {@link HttpExecutor} instance
+	 */
+	public HttpExecutor addRateLimiting(String hostName, int limit, long duration, TimeUnit timeUnit) {
+		if(this.client instanceof HttpRateLimitingClient) {
+			((HttpRateLimitingClient) this.client).addRateLimiting(hostName, limit, duration, timeUnit);
+			return this;
+		}
+		
+		throw new IllegalStateException("Current client does not support rate-limiting");
+	}
+	
+	/**
+	 * Add new token-bucket rate limiting for the given host, that either
+	 * fails fast or waits for a permit when the host is at its limit.
+	 * 
+	 * @param hostName
+	 *            the hostname to add rate limit to
+	 * 
+	 * @param limit
+	 *            the number of requests allowed per period
+	 * 
+	 * @param period
+	 *            the period
+	 * 
+	 * @param timeUnit
+	 *            the time unit of the period
+	 * 
+	 * @param burst
+	 *            the number of requests that may go at once
+	 * 
+	 * @param mode
+	 *            the {@link HttpRateLimitMode} to use
+	 * 
+	 * @param maxWaitMillis
+	 *            the maximum time to wait for a permit in
+	 *            {@link HttpRateLimitMode#WAIT} mode
+	 * 
+	 * @return this very {@link HttpExecutor} instance
+	 */
+	public HttpExecutor addTokenBucketRateLimiting(String hostName, int limit, long period, TimeUnit timeUnit, int burst, HttpRateLimitMode mode, long maxWaitMillis) {
+		if(this.client instanceof HttpRateLimitingClient) {
+			((HttpRateLimitingClient) this.client).addTokenBucketRateLimiting(hostName, limit, period, timeUnit, burst, mode, maxWaitMillis);
+			return this;
+		}
+		
+		throw new IllegalStateException("Current client does not support rate-limiting");
+	}
+	
+	/**
+	 * Enable or disable throttling of hosts based on the <code>429</code>,
+	 * <code>503</code>, <code>Retry-After</code> and
+	 * <code>RateLimit-*</code> signals in their responses.
+	 * 
+	 * @param adaptive
+	 *            <code>true</code> to enable, <code>false</code> to disable
+	 * 
+	 * @return this very {@link HttpExecutor} instance
+	 * 
+	 * @see HttpRateLimitingClient#setAdaptiveThrottling(boolean)
+	 */
+	public HttpExecutor adaptiveRateLimiting(boolean adaptive) {
+		if(this.client instanceof HttpRateLimitingClient) {
+			((HttpRateLimitingClient) this.client).setAdaptiveThrottling(adaptive);
+			return this;
+		}
+		
+		throw new IllegalStateException("Current client does not support rate-limiting");
+	}
+	
+	/**
+	 * Remove any previous rate limiting that has been set for the host.
+	 * 
+	 * @param hostName
+	 *            the host name for which we need to remove rate limiting
+	 * 
+	 * @return this very {@link HttpExecutor} instance
+	 */
+	public HttpExecutor removeRateLimiting(String hostName) {
+		if(this.client instanceof HttpRateLimitingClient) {
+			((HttpRateLimitingClient) this.client).removeRateLimiting(hostName);
+			return this;
+		}
+		
+		throw new IllegalStateException("Current client does not support rate-limiting");
+	}
+	
+	/**
+	 * Remove all previously set rate limiting.
+	 * 
+	 * @return this very {@link HttpExecutor} instance
+	 */
+	public HttpExecutor removeAllRateLimiting() {
+		if(this.client instanceof HttpRateLimitingClient) {
+			((HttpRateLimitingClient) this.client).removeAllRateLimiting();
+			return this;
+		}
+		
+		throw new IllegalStateException("Current client does not support rate-limiting");
+	}
+	
+	/**
+	 * Set the rate limit of the host, replacing any previous limit while it is
+	 * in use. A token-bucket limit keeps its burst, mode and maximum wait.
+	 * 
+	 * @param hostName
+	 *            the host name to limit
+	 * 
+	 * @param limit
+	 *            the number of requests allowed in each period
+	 * 
+	 * @param duration
+	 *            the length of the period
+	 * 
+	 * @param timeUnit
+	 *            the {@link TimeUnit} of the period
+	 * 
+	 * @return this very {@link HttpExecutor} instance
+	 * 
+	 * @since 2.0.1
+	 */
+	public HttpExecutor setRateLimiting(String hostName, int limit, long duration, TimeUnit timeUnit) {
+		if(this.client instanceof HttpRateLimitingClient) {
+			((HttpRateLimitingClient) this.client).setRateLimiting(hostName, limit, duration, timeUnit);
+			return this;
+		}
+		
+		throw new IllegalStateException("Current client does not support rate-limiting");
+	}
+	
+	/**
+	 * Return the current state of every rate limit of this executor.
+	 * 
+	 * @return the {@link RateLimitSnapshot}s, empty if the executor does not
+	 *         rate-limit
+	 * 
+	 * @since 2.0.1
+	 */
+	public List<RateLimitSnapshot> getRateLimitSnapshots() {
+		if(this.client instanceof HttpRateLimitingClient) {
+			return ((HttpRateLimitingClient) this.client).getRateLimitSnapshots();
+		}
+		
+		return Collections.emptyList();
+	}
+	
+	/**
+	 * Return the hosts that have asked to be throttled via a
+	 * <code>Retry-After</code> header and are still being throttled.
+	 * 
+	 * @return the host names mapped to the epoch millis until which they are
+	 *         throttled, empty if the executor does not rate-limit
+	 * 
+	 * @since 2.0.1
+	 */
+	public Map<String, Long> getThrottledHosts() {
+		if(this.client instanceof HttpRateLimitingClient) {
+			return ((HttpRateLimitingClient) this.client).getThrottledHosts();
+		}
+		
+		return Collections.emptyMap();
+	}
+	
+	// Methods related to authentication
+	
+	/**
+	 * Add provided authentication
+	 * 
+	 * @param authScope
+	 *            the {@link AuthScope} that needs to be set
+	 * 
+	 * @param credentials
+	 *            the {@link Credentials} that need to be set
+	 * 
+	 * @return this very {@link HttpExecutor}
+	 */
+	public HttpExecutor addAuthentication(AuthScope authScope, Credentials credentials) {
+		if (this.credentialsProvider == null) {
+            this.credentialsProvider = new BasicCredentialsProvider();
+        }
+        this.credentialsProvider.setCredentials(authScope, credentials);
+        return this;
+	}
+	
+	/**
+	 * Clear all authentication that may have been set.
+	 * 
+	 * @return this very {@link HttpExecutor}
+	 */
+	public HttpExecutor clearAllAuthentication() {
+        if (this.credentialsProvider != null) {
+            this.credentialsProvider.clear();
+        }
+        
+        return this;
+    }
+	
+	/**
+	 * Add authentication for a given host
+	 * 
+	 * @param host
+	 *            the host name for which authentication needs to be set
+	 *            
+	 * @param userName
+	 *            the username that needs to be set
+	 * 
+	 * @param password
+	 *            the password that needs to be set
+	 * 
+	 * @return this very {@link HttpExecutor}
+	 */
+	public HttpExecutor addAuthentication(String host, String userName, String password) {
+		AuthScope authScope = new AuthScope(host, 80);
+		Credentials credentials = new UsernamePasswordCredentials(userName, password);
+		return this.addAuthentication(authScope, credentials);
+	}
+	
+	/**
+	 * Add authentication for given host and port.
+	 * 
+	 * @param host
+	 *            the host name for which authentication needs to be set
+	 * 
+	 * @param port
+	 *            the port for which authentication needs to be set
+	 * 
+	 * @param userName
+	 *            the username that needs to be set
+	 * 
+	 * @param password
+	 *            the password that needs to be set
+	 * 
+	 * @return this very {@link HttpExecutor}
+	 */
+	public HttpExecutor addAuthentication(String host, int port, String userName, String password) {
+		AuthScope authScope = new AuthScope(host, port);
+		Credentials credentials = new UsernamePasswordCredentials(userName, password);
+		return this.addAuthentication(authScope, credentials);
+	}
+
+	/**
+	 * Remove authentication for given host.
+	 * 
+	 * @param host the hostname for which authentication needs to be removed
+	 * 
+	 * @return this very {@link HttpExecutor}
+	 * 
+	 */
+	public HttpExecutor removeAuthentication(String host) {
+		AuthScope authScope = new AuthScope(host, 80);
+		return this.addAuthentication(authScope, null);
+	}
+	
+	/**
+	 * Remove authentication for given host and port.
+	 * 
+	 * @param host
+	 *            the hostname
+	 * 
+	 * @param port
+	 *            the port number
+	 * 
+	 * @return this very {@link HttpExecutor}
+	 */
+	public HttpExecutor removeAuthentication(String host, int port) {
+		AuthScope authScope = new AuthScope(host, port);
+		return this.addAuthentication(authScope, null);
+	}
+
+	// Methods related to cookie store
+	
+	/**
+	 * Replace or set the given cookie store as the cookie store instance to be
+	 * used.
+	 * 
+	 * @param cookieStore
+	 *            the cookie store that needs to be set
+	 * 
+	 * @return this very {@link HttpExecutor}
+	 */
+    public HttpExecutor setCookieStore(final CookieStore cookieStore) {
+        this.cookieStore = cookieStore;
+        return this;
+    }
+
+    /**
+	 * Clear all cookies in the cookie store if any present.
+	 * 
+	 * @return this very {@link HttpExecutor}
+	 */
+    public HttpExecutor clearCookies() {
+        if (this.cookieStore != null) {
+            this.cookieStore.clear();
+        }
+        return this;
+    }
+
+    // Utility methods start here
+    
+	/**
+	 * Set overall maximum connections that can be handled by the underlying
+	 * connection manager. For executors created via {@link #builder()} this
+	 * only changes the pool of this executor.
+	 * 
+	 * @param numConnections
+	 *            the number of connections
+	 * 
+	 * @return this very {@link HttpExecutor} instance
+	 */
+	public HttpExecutor maxConnections(int numConnections) {
+		if(this.connectionManager == null) {
+			setMaxConnections(numConnections);
+			return this;
+		}
+		
+		if(numConnections < 1) {
+			throw new IllegalArgumentException("Number of connections cannot be less than 1");
+		}
+		
+		this.connectionManager.setMaxTotal(numConnections);
+		PoolingNHttpClientConnectionManager asyncManager = this.asyncConnectionManager;
+		if(asyncManager != null) {
+			asyncManager.setMaxTotal(numConnections);
+		}
+		
+		return this;
+	}
+	
+	/**
+	 * Set overall maximum connections per route (over all hosts) that can be
+	 * handled by the underlying connection manager. For executors created via
+	 * {@link #builder()} this only changes the pool of this executor.
+	 * 
+	 * @param numConnections
+	 *            the number of connections
+	 * 
+	 * @return this very {@link HttpExecutor} instance
+	 */
+	public HttpExecutor maxConnectionsPerRoute(int numConnections) {
+		if(this.connectionManager == null) {
+			setMaxConnectionsPerRoute(numConnections);
+			return this;
+		}
+		
+		if(numConnections < 1) {
+			throw new IllegalArgumentException("Number of connections cannot be less than 1");
+		}
+		
+		this.connectionManager.setDefaultMaxPerRoute(numConnections);
+		PoolingNHttpClientConnectionManager asyncManager = this.asyncConnectionManager;
+		if(asyncManager != null) {
+			asyncManager.setDefaultMaxPerRoute(numConnections);
+		}
+		
+		return this;
+	}
+	
+	/**
+	 * Set maximum connections that will be operated over the given route, that
+	 * will be handled by the underlying connection manager. For executors
+	 * created via {@link #builder()} this only changes the pool of this
+	 * executor.
+	 * 
+	 * @param route
+	 *            the {@link HttpRoute} to use
+	 * 
+	 * @param numConnections
+	 *            the number of connections
+	 * 
+	 * @return this very {@link HttpExecutor} instance
+	 */
+	public HttpExecutor maxConnectionsOnHost(HttpRoute route, int numConnections) {
+		if(this.connectionManager == null) {
+			setMaxConnectionsOnHost(route, numConnections);
+			return this;
+		}
+		
+		if(numConnections <= 0) {
+			throw new IllegalArgumentException("Number of connections cannot be less than 1");
+		}
+		
+		this.connectionManager.setMaxPerRoute(route, numConnections);
+		PoolingNHttpClientConnectionManager asyncManager = this.asyncConnectionManager;
+		if(asyncManager != null) {
+			asyncManager.setMaxPerRoute(route, numConnections);
+		}
+		
+		return this;
+	}
+	
+	/**
+	 * Set maximum connections that will be operated over the given host on port
+	 * 80, that will be handled by the underlying connection manager.
+	 * 
+	 * @param hostName
+	 *            the host name to use
+	 * 
+	 * @param numConnections
+	 *            the number of connections
+	 * 
+	 * @return this very {@link HttpExecutor} instance
+	 */
+	public HttpExecutor maxConnectionsOnHost(String hostName, int numConnections) {
+		HttpRoute route = new HttpRoute(new HttpHost(hostName));
+		return this.maxConnectionsOnHost(route, numConnections);
+	}
+	
+	/**
+	 * Set maximum connections that will be operated over the given host on
+	 * given port, that will be handled by the underlying connection manager.
+	 * 
+	 * @param hostName
+	 *            the host name to use
+	 * 
+	 * @param port
+	 *            the port to use
+	 * 
+	 * @param numConnections
+	 *            the number of connections
+	 * 
+	 * @return this very {@link HttpExecutor} instance
+	 */
+	public HttpExecutor maxConnectionsOnHost(String hostName, int port, int numConnections) {
+		HttpRoute route = new HttpRoute(new HttpHost(hostName, port));
+		return this.maxConnectionsOnHost(route, numConnections);
+	}
+	
+	/**
+	 * Set maximum connections that will be operated over the route of the
+	 * given {@link URI}, formed by its scheme, host and port, that will be
+	 * handled by the underlying connection manager.
+	 * 
+	 * @param uri
+	 *            the {@link URI} whose route to use, like
+	 *            <code>https://example.com:443</code>
+	 * 
+	 * @param numConnections
+	 *            the number of connections
+	 * 
+	 * @return this very {@link HttpExecutor} instance
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the {@link URI} has no host
+	 * 
+	 * @since 2.0.1
+	 */
+	public HttpExecutor maxConnectionsOnHost(URI uri, int numConnections) {
+		HttpRoute route = AdaptiveRouteLimitController.getRoute(uri);
+		if(route == null) {
+			throw new IllegalArgumentException("URI does not specify a host");
+		}
+		
+		return this.maxConnectionsOnHost(route, numConnections);
+	}
+	
+	/**
+	 * Close all connections of this executor's pool that have been idle for
+	 * longer than given value. For executors that work over the shared pool
+	 * this is the same as {@link #closeIdleConnections(long)}.
+	 * 
+	 * @param idleForMillis
+	 *            idle time for a connection to clean up
+	 * 
+	 * @return this very {@link HttpExecutor} instance
+	 */
+	public HttpExecutor evictIdleConnections(long idleForMillis) {
+		if(this.connectionManager == null) {
+			closeIdleConnections(idleForMillis);
+			return this;
+		}
+		
+		this.connectionManager.closeIdleConnections(idleForMillis, TimeUnit.MILLISECONDS);
+		PoolingNHttpClientConnectionManager asyncManager = this.asyncConnectionManager;
+		if(asyncManager != null) {
+			asyncManager.closeIdleConnections(idleForMillis, TimeUnit.MILLISECONDS);
+		}
+		
+		return this;
+	}
+	
+	/**
+	 * Close all expired connections of this executor's pool now. For executors
+	 * that work over the shared pool this is the same as
+	 * {@link #closeExpiredConnections()}.
+	 * 
+	 * @return this very {@link HttpExecutor} instance
+	 */
+	public HttpExecutor evictExpiredConnections() {
+		if(this.connectionManager == null) {
+			closeExpiredConnections();
+			return this;
+		}
+		
+		this.connectionManager.closeExpiredConnections();
+		PoolingNHttpClientConnectionManager asyncManager = this.asyncConnectionManager;
+		if(asyncManager != null) {
+			asyncManager.closeExpiredConnections();
+		}
+		
+		return this;
+	}
+	
+	/**
+	 * Check if this executor owns an isolated connection pool, that is, it was
+	 * created via {@link #builder()}.
+	 * 
+	 * @return <code>true</code> if the pool is owned by this executor,
+	 *         <code>false</code> if it is shared
+	 */
+	public boolean hasOwnConnectionPool() {
+		return this.connectionManager != null;
+	}
+	
+	/**
+	 * Return the current state of the connection pool used by this executor:
+	 * its own pool if it has one, the shared pool otherwise.
+	 * 
+	 * @return the {@link ConnectionPoolSnapshot}
+	 * 
+	 * @since 2.0.1
+	 */
+	public ConnectionPoolSnapshot getConnectionPoolSnapshot() {
+		return ConnectionPoolSnapshot.of(this.getExecutorConnectionManager());
+	}
+	
+	/**
+	 * Let the per-route connection limits of the pool used by this executor
+	 * adapt automatically between the given bounds, based on the latency,
+	 * in-flight count and pending leases observed for each route. Only
+	 * requests executed via {@link #execute(WebRequest)} are observed. When
+	 * called on an executor over the shared pool, the limits of the shared
+	 * pool are adapted.
+	 * 
+	 * @param minPerRoute
+	 *            the lower bound for a route limit
+	 * 
+	 * @param maxPerRoute
+	 *            the upper bound for a route limit
+	 * 
+	 * @return this very {@link HttpExecutor}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the bounds are invalid
+	 */
+	public synchronized HttpExecutor enableAdaptiveRouteLimits(int minPerRoute, int maxPerRoute) {
+		AdaptiveRouteLimitController controller = new AdaptiveRouteLimitController(this.getExecutorConnectionManager(), minPerRoute, maxPerRoute);
+		
+		this.disableAdaptiveRouteLimits();
+		this.routeLimitController = controller.start(AdaptiveRouteLimitController.DEFAULT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+		return this;
+	}
+	
+	/**
+	 * Stop adapting the per-route connection limits. The limits are left at
+	 * their last values.
+	 * 
+	 * @return this very {@link HttpExecutor}
+	 */
+	public synchronized HttpExecutor disableAdaptiveRouteLimits() {
+		AdaptiveRouteLimitController controller = this.routeLimitController;
+		if(controller != null) {
+			controller.stop();
+			this.routeLimitController = null;
+		}
+		
+		return this;
+	}
+	
+	/**
+	 * Return the controller adapting the per-route connection limits, if
+	 * enabled.
+	 * 
+	 * @return the {@link AdaptiveRouteLimitController}, or <code>null</code>
+	 */
+	public AdaptiveRouteLimitController getAdaptiveRouteLimitController() {
+		return this.routeLimitController;
+	}
+	
+	/**
+	 * Set the policy by which failed requests made via
+	 * {@link #execute(WebRequest)} are retried. A policy set on the
+	 * {@link WebRequest} itself takes precedence. Asynchronous executions are
+	 * not retried.
+	 * 
+	 * @param retryPolicy
+	 *            the {@link RetryPolicy} to use, <code>null</code> to not retry
+	 */
+	public void setRetryPolicy(RetryPolicy retryPolicy) {
+		this.retryPolicy = retryPolicy;
+	}
+	
+	/**
+	 * @return the {@link RetryPolicy} of this executor, or <code>null</code>
+	 */
+	public RetryPolicy getRetryPolicy() {
+		return this.retryPolicy;
+	}
+	
+	/**
+	 * Set the policy by which slow requests made via
+	 * {@link #execute(WebRequest)} are hedged. A policy set on the
+	 * {@link WebRequest} itself takes precedence. Every attempt made under a
+	 * {@link RetryPolicy} is hedged on its own. Asynchronous executions are
+	 * not hedged.
+	 * 
+	 * @param hedgingPolicy
+	 *            the {@link HedgingPolicy} to use, <code>null</code> to not
+	 *            hedge
+	 */
+	public void setHedgingPolicy(HedgingPolicy hedgingPolicy) {
+		this.hedgingPolicy = hedgingPolicy;
+	}
+	
+	/**
+	 * @return the {@link HedgingPolicy} of this executor, or <code>null</code>
+	 */
+	public HedgingPolicy getHedgingPolicy() {
+		return this.hedgingPolicy;
+	}
+	
+	/**
+	 * Set the circuit breaker that rejects requests made via
+	 * {@link #execute(WebRequest)} to failing routes with an
+	 * {@link HttpCircuitOpenException}. A breaker set on the
+	 * {@link WebRequest} itself takes precedence. Every retry attempt and
+	 * every hedged copy passes the breaker on its own, and so does every
+	 * asynchronous execution, which fails with the exception instead.
+	 * 
+	 * @param circuitBreaker
+	 *            the {@link CircuitBreaker} to use, <code>null</code> for none
+	 */
+	public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+		this.circuitBreaker = circuitBreaker;
+	}
+	
+	/**
+	 * @return the {@link CircuitBreaker} of this executor, or
+	 *         <code>null</code>
+	 */
+	public CircuitBreaker getCircuitBreaker() {
+		return this.circuitBreaker;
+	}
+	
+	/**
+	 * Set the registry that receives the measurements of every request sent
+	 * by this executor: latency per host and status code, the wait to lease a
+	 * pooled connection and the time to open one, the bytes sent and
+	 * received, rate-limit rejections and errors. Every retry attempt and
+	 * every hedged copy is measured on its own. Asynchronous executions
+	 * report their latency, bytes received, rate-limit rejections and errors.
+	 * 
+	 * @param metricsRegistry
+	 *            the {@link HttpMetricsRegistry} to use, <code>null</code> to
+	 *            measure nothing
+	 */
+	public void setMetricsRegistry(HttpMetricsRegistry metricsRegistry) {
+		this.metricsRegistry = metricsRegistry;
+	}
+	
+	/**
+	 * @return the {@link HttpMetricsRegistry} of this executor, or
+	 *         <code>null</code>
+	 */
+	public HttpMetricsRegistry getMetricsRegistry() {
+		return this.metricsRegistry;
+	}
+	
+	/**
+	 * Coalesce concurrent identical <code>GET</code> and <code>HEAD</code>
+	 * requests made via {@link #execute(WebRequest)}, telling them apart by
+	 * the {@link #DEFAULT_COALESCING_HEADERS}.
+	 * 
+	 * @see #enableRequestCoalescing(String...)
+	 */
+	public void enableRequestCoalescing() {
+		this.enableRequestCoalescing(DEFAULT_COALESCING_HEADERS);
+	}
+	
+	/**
+	 * Coalesce concurrent identical <code>GET</code> and <code>HEAD</code>
+	 * requests made via {@link #execute(WebRequest)}. Requests are identical
+	 * when they have the same verb, the same {@link URI} and the same values
+	 * for the given headers - all other headers are ignored, so any header
+	 * that changes the response must be listed. Only the first of identical
+	 * requests in flight is sent; the others wait for it and receive a copy of
+	 * its {@link WebResponse}, or its exception. Interceptors still run for
+	 * every request.
+	 * 
+	 * Coalesced responses are always buffered in memory, and asynchronous
+	 * executions are not coalesced.
+	 * 
+	 * @param headerNames
+	 *            the names of the headers that distinguish requests
+	 */
+	public void enableRequestCoalescing(String... headerNames) {
+		if(headerNames == null) {
+			headerNames = new String[0];
+		}
+		
+		this.coalescingHeaders = headerNames.clone();
+	}
+	
+	/**
+	 * Stop coalescing requests. Requests already waiting on a request in
+	 * flight still receive its response.
+	 * 
+	 */
+	public void disableRequestCoalescing() {
+		this.coalescingHeaders = null;
+	}
+	
+	/**
+	 * @return <code>true</code> if identical requests are coalesced
+	 */
+	public boolean isRequestCoalescing() {
+		return this.coalescingHeaders != null;
+	}
+	
+	/**
+	 * @return the number of requests that were served by an identical request
+	 *         in flight instead of being sent
+	 */
+	public long getCoalescedRequestCount() {
+		return this.coalescedRequestCount.sum();
+	}
+	
+	/**
+	 * Shut down the connection pools owned by this executor, closing all
+	 * connections. The executor cannot be used after this call. Executors
+	 * working over the shared pool are left untouched - the shared pool lives
+	 * as long as the application.
+	 * 
+	 */
+	public void shutdown() {
+		if(this.connectionManager == null) {
+			return;
+		}
+		
+		this.disableAdaptiveRouteLimits();
+		
+		CloseableHttpAsyncClient client = this.asyncClient;
+		if(client != null) {
+			try {
+				client.close();
+			} catch(IOException e) {
+				LOGGER.debug("Unable to close the non-blocking client", e);
+			}
+		}
+		
+		this.connectionManager.shutdown();
+	}
+	
+	/**
+	 * Return the cache that responses of this executor are served from.
+	 * 
+	 * @return the {@link HttpResponseCache}, or <code>null</code> if responses
+	 *         are not cached
+	 */
+	public HttpResponseCache getResponseCache() {
+		return this.responseCache;
+	}
+	
+	/**
+	 * Add a new {@link HttpInvocationInterceptor} to the {@link HttpExecutor}
+	 * instance. Note that the interceptor is added to only the given instance
+	 * of {@link HttpExecutor} - there may be other instances of
+	 * {@link HttpExecutor} which may run a {@link WebRequest} without these
+	 * interceptors.
+	 * 
+	 * Interceptors may be added while requests are running - a request that
+	 * has already started keeps running with the interceptors present when it
+	 * started.
+	 * 
+	 * @param interceptor
+	 *            the {@link HttpInvocationInterceptor} to add
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if interceptor is <code>null</code>
+	 */
+	public void addInvocationInterception(HttpInvocationInterceptor interceptor) {
+		if(interceptor == null) {
+			throw new IllegalArgumentException("HttpInvocationInterceptor cannot be null");
+		}
+		
+		this.interceptors.updateAndGet(chain -> chain.with(interceptor));
+	}
+	
+	/**
+	 * Remove the instance of {@link HttpInvocationInterceptor} if added.
+	 * 
+	 * @param interceptor
+	 *            the {@link HttpInvocationInterceptor} to remove
+	 * 
+	 * @return <code>true</code> if interceptor was removed, <code>false</code>
+	 *         otherwise
+	 */
+	public boolean removeInvocationInterceptor(HttpInvocationInterceptor interceptor) {
+		if(interceptor == null) {
+			return false;
+		}
+		
+		return this.removeFromChain(chain -> chain.without(interceptor));
+	}
+	
+	/**
+	 * Add a new {@link AsyncHttpInvocationInterceptor} to the
+	 * {@link HttpExecutor} instance. Asynchronous interceptors run before the
+	 * synchronous ones on the way in, and after them on the way out.
+	 * 
+	 * @param interceptor
+	 *            the {@link AsyncHttpInvocationInterceptor} to add
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if interceptor is <code>null</code>
+	 */
+	public void addAsyncInvocationInterceptor(AsyncHttpInvocationInterceptor interceptor) {
+		if(interceptor == null) {
+			throw new IllegalArgumentException("AsyncHttpInvocationInterceptor cannot be null");
+		}
+		
+		this.interceptors.updateAndGet(chain -> chain.with(interceptor));
+	}
+	
+	/**
+	 * Remove the instance of {@link AsyncHttpInvocationInterceptor} if added.
+	 * 
+	 * @param interceptor
+	 *            the {@link AsyncHttpInvocationInterceptor} to remove
+	 * 
+	 * @return <code>true</code> if interceptor was removed, <code>false</code>
+	 *         otherwise
+	 */
+	public boolean removeAsyncInvocationInterceptor(AsyncHttpInvocationInterceptor interceptor) {
+		if(interceptor == null) {
+			return false;
+		}
+		
+		return this.removeFromChain(chain -> chain.without(interceptor));
+	}
+	
+	/**
+	 * Publish the chain obtained by removing an interceptor from the current
+	 * one, retrying if another thread changed the chain meanwhile.
+	 * 
+	 * @param removal
+	 *            the function that removes the interceptor from a chain
+	 * 
+	 * @return <code>true</code> if the interceptor was removed,
+	 *         <code>false</code> if it was not part of the chain
+	 */
+	private boolean removeFromChain(UnaryOperator<HttpInvocationInterceptorChain> removal) {
+		while(true) {
+			HttpInvocationInterceptorChain chain = this.interceptors.get();
+			HttpInvocationInterceptorChain updated = removal.apply(chain);
+			if(updated == chain) {
+				return false;
+			}
+			
+			if(this.interceptors.compareAndSet(chain, updated)) {
+				return true;
+			}
+		}
+	}
+	
+	/**
+	 * Clear all interceptors, synchronous and asynchronous, that have been
+	 * added to this executor till now.
 	 * 
 	 */
 	public void removeAllInterceptors() {
-		this.interceptors.clear();
+		this.interceptors.set(HttpInvocationInterceptorChain.EMPTY);
 	}
 	
 	static PoolingHttpClientConnectionManager getConnectionManager() {
 		return HTTP_CONNECTION_MANAGER;
 	}
 	
+	/**
+	 * Return the connection manager that backs this executor: its own pool if
+	 * it has one, the shared pool otherwise.
+	 * 
+	 * @return the {@link PoolingHttpClientConnectionManager} in use
+	 */
+	PoolingHttpClientConnectionManager getExecutorConnectionManager() {
+		if(this.connectionManager != null) {
+			return this.connectionManager;
+		}
+		
+		return HTTP_CONNECTION_MANAGER;
+	}
+	
 	// Finalization methods
 	
 	/* (non-Javadoc)
@@ -746,16 +2773,496 @@ public class HttpExecutor {
 	protected void finalize() throws Throwable {
 		super.finalize();
 		
+		// only the pools owned by this executor may be closed - the shared
+		// pool is in use by every other executor over it
 		try {
-			HTTP_CONNECTION_MANAGER.close();
+			this.shutdown();
 		} catch(Throwable t) {
 			// eat up
 		}
-
-		try {
-			HTTP_CONNECTION_MANAGER.shutdown();
-		} catch(Throwable t) {
-			// eat up
+	}
+	
+	/**
+	 * The copies of one hedged request in flight, and the first response
+	 * received
+	 * 
+	 * @author sangupta
+	 *
+	 */
+	private final class HedgedCall {
+		
+		final HedgingPolicy policy;
+		
+		final HttpRequestBase primary;
+		
+		final URI uri;
+		
+		final CompletableFuture<WebRawResponse> result = new CompletableFuture<>();
+		
+		final AtomicReference<HttpRequestBase> winner = new AtomicReference<>();
+		
+		final AtomicInteger pending = new AtomicInteger(1);
+		
+		final List<HttpRequestBase> requests = new CopyOnWriteArrayList<>();
+		
+		final CircuitBreaker breaker;
+		
+		final RequestDeadline deadline;
+		
+		/**
+		 * The number of hedged copies sent, guarded by <code>this</code>
+		 */
+		int hedges;
+		
+		/**
+		 * The timer task that sends the next copy, guarded by
+		 * <code>this</code>
+		 */
+		ScheduledFuture<?> timer;
+		
+		/**
+		 * Whether no more copies are to be sent, guarded by <code>this</code>
+		 */
+		boolean stopped;
+		
+		HedgedCall(HedgingPolicy policy, HttpRequestBase primary, CircuitBreaker breaker, RequestDeadline deadline) {
+			this.policy = policy;
+			this.primary = primary;
+			this.uri = primary.getURI();
+			this.breaker = breaker;
+			this.deadline = deadline;
+			this.requests.add(primary);
+		}
+		
+		/**
+		 * Send the given copy of the request on the current thread. The first
+		 * copy to respond completes the call and aborts all others; the call
+		 * fails only when no copy remains in flight.
+		 * 
+		 * @param httpRequest
+		 *            the {@link HttpRequestBase} to send
+		 */
+		void run(HttpRequestBase httpRequest) {
+			long start = System.nanoTime();
+			try {
+				WebRawResponse response = executeInternal(httpRequest, this.breaker);
+				if(!this.winner.compareAndSet(null, httpRequest)) {
+					httpRequest.abort();
+					response.discardContent();
+					return;
+				}
+				
+				this.policy.recordLatency(this.uri, System.nanoTime() - start);
+				if(httpRequest != this.primary) {
+					this.policy.hedgeWon();
+				}
+				
+				this.result.complete(response);
+				this.stopHedging();
+				
+				// unblock the copies still waiting, the caller included
+				this.abortLosers();
+			} catch(Throwable t) {
+				if(this.pending.decrementAndGet() == 0) {
+					this.result.completeExceptionally(t);
+				}
+			}
+		}
+		
+		/**
+		 * Schedule the next hedged copy to be sent after the hedging delay,
+		 * unless all copies allowed have been sent.
+		 * 
+		 */
+		synchronized void scheduleHedge() {
+			if(this.stopped || this.hedges >= this.policy.getMaxHedges()) {
+				return;
+			}
+			
+			this.timer = HEDGING_TIMER.schedule(this::hedge, this.policy.getHedgeDelay(this.uri), TimeUnit.MILLISECONDS);
+		}
+		
+		/**
+		 * Send another copy of the request on a hedging thread, if no
+		 * response has arrived yet and a thread is free.
+		 * 
+		 */
+		private synchronized void hedge() {
+			if(this.stopped || this.result.isDone()) {
+				return;
+			}
+			
+			final HttpRequestBase copy = (HttpRequestBase) RequestBuilder.copy(this.primary).build();
+			if(this.deadline != null) {
+				this.deadline.track(copy);
+			}
+			
+			this.pending.incrementAndGet();
+			try {
+				HEDGING_EXECUTOR.execute(() -> this.run(copy));
+			} catch(RejectedExecutionException e) {
+				// all hedging threads are busy - do without
+				this.pending.decrementAndGet();
+				return;
+			}
+			
+			this.requests.add(copy);
+			this.hedges++;
+			this.policy.hedgeSent();
+			this.scheduleHedge();
+		}
+		
+		/**
+		 * Stop sending further copies of the request.
+		 * 
+		 */
+		synchronized void stopHedging() {
+			this.stopped = true;
+			if(this.timer != null) {
+				this.timer.cancel(false);
+			}
+		}
+		
+		/**
+		 * Abort all copies of the request except the one that won. When all
+		 * copies failed there is nothing left to abort, and the copies are
+		 * left alone so that an abort by the caller can still be told apart.
+		 * 
+		 */
+		void abortLosers() {
+			HttpRequestBase won = this.winner.get();
+			if(won == null && this.result.isDone()) {
+				return;
+			}
+			
+			for(HttpRequestBase httpRequest : this.requests) {
+				if(httpRequest != won) {
+					httpRequest.abort();
+				}
+			}
+		}
+		
+	}
+	
+	/**
+	 * Builder for {@link HttpExecutor} instances that own an isolated
+	 * connection pool. Use separate executors to bulkhead critical traffic
+	 * from best-effort traffic.
+	 * 
+	 * @author sangupta
+	 *
+	 */
+	public static class Builder {
+		
+		private int maxTotalConnections = MAX_TOTAL_CONNECTIONS;
+		
+		private int maxConnectionsPerRoute = MAX_CONNECTIONS_PER_ROUTE;
+		
+		private int validateAfterInactivityMillis = VALIDATE_CONNECTION_AFTER_INACTIVITY_MILLIS;
+		
+		private long connectionTimeToLive = -1;
+		
+		private TimeUnit connectionTimeToLiveUnit = TimeUnit.MILLISECONDS;
+		
+		private int asyncIoThreads = ASYNC_IO_THREADS;
+		
+		private boolean rateLimited = true;
+		
+		private int adaptiveMinPerRoute = -1;
+		
+		private int adaptiveMaxPerRoute = -1;
+		
+		private HttpResponseCache responseCache;
+		
+		private String[] coalescingHeaders;
+		
+		private RetryPolicy retryPolicy;
+		
+		private HedgingPolicy hedgingPolicy;
+		
+		private CircuitBreaker circuitBreaker;
+		
+		private HttpMetricsRegistry metricsRegistry;
+		
+		private final Map<HttpRoute, Integer> routeLimits = new HashMap<>();
+		
+		Builder() {
+			// use HttpExecutor.builder()
+		}
+		
+		/**
+		 * Set the maximum number of connections in the pool.
+		 * 
+		 * @param numConnections
+		 *            the number of connections
+		 * 
+		 * @return this very {@link Builder}
+		 */
+		public Builder maxTotalConnections(int numConnections) {
+			if(numConnections < 1) {
+				throw new IllegalArgumentException("Number of connections cannot be less than 1");
+			}
+			
+			this.maxTotalConnections = numConnections;
+			return this;
+		}
+		
+		/**
+		 * Set the default maximum number of connections per route.
+		 * 
+		 * @param numConnections
+		 *            the number of connections
+		 * 
+		 * @return this very {@link Builder}
+		 */
+		public Builder maxConnectionsPerRoute(int numConnections) {
+			if(numConnections < 1) {
+				throw new IllegalArgumentException("Number of connections cannot be less than 1");
+			}
+			
+			this.maxConnectionsPerRoute = numConnections;
+			return this;
+		}
+		
+		/**
+		 * Set the maximum number of connections for the given route.
+		 * 
+		 * @param route
+		 *            the {@link HttpRoute} to set the limit on
+		 * 
+		 * @param numConnections
+		 *            the number of connections
+		 * 
+		 * @return this very {@link Builder}
+		 */
+		public Builder maxConnectionsOnHost(HttpRoute route, int numConnections) {
+			if(route == null) {
+				throw new IllegalArgumentException("Route cannot be null");
+			}
+			
+			if(numConnections < 1) {
+				throw new IllegalArgumentException("Number of connections cannot be less than 1");
+			}
+			
+			this.routeLimits.put(route, numConnections);
+			return this;
+		}
+		
+		/**
+		 * Set the period of inactivity after which pooled connections are
+		 * re-validated before being leased.
+		 * 
+		 * @param millis
+		 *            the inactivity period in millis, non-positive to disable
+		 * 
+		 * @return this very {@link Builder}
+		 */
+		public Builder validateAfterInactivity(int millis) {
+			this.validateAfterInactivityMillis = millis;
+			return this;
+		}
+		
+		/**
+		 * Set the maximum time to live of pooled connections, after which they
+		 * are never re-used.
+		 * 
+		 * @param timeToLive
+		 *            the time to live, non-positive for no limit
+		 * 
+		 * @param timeUnit
+		 *            the {@link TimeUnit} of the value
+		 * 
+		 * @return this very {@link Builder}
+		 */
+		public Builder connectionTimeToLive(long timeToLive, TimeUnit timeUnit) {
+			if(timeUnit == null) {
+				throw new IllegalArgumentException("TimeUnit cannot be null");
+			}
+			
+			this.connectionTimeToLive = timeToLive;
+			this.connectionTimeToLiveUnit = timeUnit;
+			return this;
+		}
+		
+		/**
+		 * Set the number of I/O dispatch threads of the non-blocking client
+		 * used for asynchronous executions.
+		 * 
+		 * @param ioThreads
+		 *            the number of threads
+		 * 
+		 * @return this very {@link Builder}
+		 */
+		public Builder asyncIoThreads(int ioThreads) {
+			if(ioThreads < 1) {
+				throw new IllegalArgumentException("Number of I/O threads cannot be less than 1");
+			}
+			
+			this.asyncIoThreads = ioThreads;
+			return this;
+		}
+		
+		/**
+		 * Do not wrap the client of the executor in a
+		 * {@link HttpRateLimitingClient}.
+		 * 
+		 * @return this very {@link Builder}
+		 */
+		public Builder withoutRateLimiting() {
+			this.rateLimited = false;
+			return this;
+		}
+		
+		/**
+		 * Let the per-route connection limits adapt between the given bounds.
+		 * 
+		 * @param minPerRoute
+		 *            the lower bound for a route limit
+		 * 
+		 * @param maxPerRoute
+		 *            the upper bound for a route limit
+		 * 
+		 * @return this very {@link Builder}
+		 * 
+		 * @see HttpExecutor#enableAdaptiveRouteLimits(int, int)
+		 */
+		public Builder adaptiveRouteLimits(int minPerRoute, int maxPerRoute) {
+			if(minPerRoute < 1 || maxPerRoute < minPerRoute) {
+				throw new IllegalArgumentException("Invalid bounds for adaptive route limits");
+			}
+			
+			this.adaptiveMinPerRoute = minPerRoute;
+			this.adaptiveMaxPerRoute = maxPerRoute;
+			return this;
+		}
+		
+		/**
+		 * Serve responses from the given cache where possible. As the
+		 * non-blocking client does not consult the cache, the executor then
+		 * does not support {@link HttpExecutor#executeAsync(WebRequest)}.
+		 * 
+		 * @param cache
+		 *            the {@link HttpResponseCache} to use, <code>null</code>
+		 *            to not cache
+		 * 
+		 * @return this very {@link Builder}
+		 */
+		public Builder responseCache(HttpResponseCache cache) {
+			this.responseCache = cache;
+			return this;
+		}
+		
+		/**
+		 * Retry failed requests as per the given policy.
+		 * 
+		 * @param retryPolicy
+		 *            the {@link RetryPolicy} to use
+		 * 
+		 * @return this very {@link Builder}
+		 * 
+		 * @see HttpExecutor#setRetryPolicy(RetryPolicy)
+		 */
+		public Builder retryPolicy(RetryPolicy retryPolicy) {
+			this.retryPolicy = retryPolicy;
+			return this;
+		}
+		
+		/**
+		 * Hedge slow requests as per the given policy.
+		 * 
+		 * @param hedgingPolicy
+		 *            the {@link HedgingPolicy} to use
+		 * 
+		 * @return this very {@link Builder}
+		 * 
+		 * @see HttpExecutor#setHedgingPolicy(HedgingPolicy)
+		 */
+		public Builder hedgingPolicy(HedgingPolicy hedgingPolicy) {
+			this.hedgingPolicy = hedgingPolicy;
+			return this;
+		}
+		
+		/**
+		 * Reject requests to failing routes via the given breaker.
+		 * 
+		 * @param circuitBreaker
+		 *            the {@link CircuitBreaker} to use
+		 * 
+		 * @return this very {@link Builder}
+		 * 
+		 * @see HttpExecutor#setCircuitBreaker(CircuitBreaker)
+		 */
+		public Builder circuitBreaker(CircuitBreaker circuitBreaker) {
+			this.circuitBreaker = circuitBreaker;
+			return this;
+		}
+		
+		/**
+		 * Report the measurements of every request to the given registry.
+		 * 
+		 * @param metricsRegistry
+		 *            the {@link HttpMetricsRegistry} to use
+		 * 
+		 * @return this very {@link Builder}
+		 * 
+		 * @see HttpExecutor#setMetricsRegistry(HttpMetricsRegistry)
+		 */
+		public Builder metricsRegistry(HttpMetricsRegistry metricsRegistry) {
+			this.metricsRegistry = metricsRegistry;
+			return this;
+		}
+		
+		/**
+		 * Coalesce concurrent identical requests, telling them apart by the
+		 * given headers.
+		 * 
+		 * @param headerNames
+		 *            the names of the headers that distinguish requests
+		 * 
+		 * @return this very {@link Builder}
+		 * 
+		 * @see HttpExecutor#enableRequestCoalescing(String...)
+		 */
+		public Builder coalesceRequests(String... headerNames) {
+			this.coalescingHeaders = headerNames == null ? new String[0] : headerNames.clone();
+			return this;
+		}
+		
+		/**
+		 * Build the {@link HttpExecutor} with a new connection pool as
+		 * configured.
+		 * 
+		 * @return the {@link HttpExecutor} instance
+		 */
+		public HttpExecutor build() {
+			PoolingHttpClientConnectionManager manager = new MeteredConnectionManager(createSocketFactoryRegistry(), this.connectionTimeToLive, this.connectionTimeToLiveUnit);
+			manager.setMaxTotal(this.maxTotalConnections);
+			manager.setDefaultMaxPerRoute(this.maxConnectionsPerRoute);
+			manager.setValidateAfterInactivity(this.validateAfterInactivityMillis);
+			for(Map.Entry<HttpRoute, Integer> entry : this.routeLimits.entrySet()) {
+				manager.setMaxPerRoute(entry.getKey(), entry.getValue());
+			}
+			
+			HttpClientBuilder clientBuilder = this.responseCache != null ? this.responseCache.newClientBuilder() : HttpClientBuilder.create();
+			HttpClient client = clientBuilder.setConnectionManager(manager).build();
+			if(this.rateLimited) {
+				client = new HttpRateLimitingClient(client);
+			}
+			
+			HttpExecutor executor = new HttpExecutor(client, manager, this.asyncIoThreads);
+			executor.responseCache = this.responseCache;
+			executor.retryPolicy = this.retryPolicy;
+			executor.hedgingPolicy = this.hedgingPolicy;
+			executor.circuitBreaker = this.circuitBreaker;
+			executor.metricsRegistry = this.metricsRegistry;
+			if(this.coalescingHeaders != null) {
+				executor.enableRequestCoalescing(this.coalescingHeaders);
+			}
+			if(this.adaptiveMinPerRoute > 0) {
+				executor.enableAdaptiveRouteLimits(this.adaptiveMinPerRoute, this.adaptiveMaxPerRoute);
+			}
+			
+			return executor;
 		}
 	}
 
@@ -73,4 +73,63 @@ public interface HttpInvocationInterceptor {
 	 */
 	public WebResponse afterInvocation(WebResponse response, IOException exception);
 	
+	/**
+	 * Intercepting method that is invoked after each request is processed via
+	 * {@link HttpExecutor}, along with the request that was run. This is the
+	 * method actually invoked by the executor - the default implementation
+	 * delegates to {@link #afterInvocation(WebResponse, IOException)}.
+	 * Interceptors that need to correlate a response with its request should
+	 * override this method.
+	 * 
+	 * @param request
+	 *            the {@link WebRequest} that was run
+	 * 
+	 * @param response
+	 *            the response as received from the server
+	 * 
+	 * @param exception
+	 *            the {@link IOException} if thrown when hitting the webservice
+	 * 
+	 * @return response that needs to be sent back to the calling code
+	 * 
+	 * @since 2.0.1
+	 */
+	public default WebResponse afterInvocation(WebRequest request, WebResponse response, IOException exception) {
+		return this.afterInvocation(response, exception);
+	}
+	
+	/**
+	 * Indicate whether this interceptor implements
+	 * {@link #beforeInvocation(WebRequest)}. An interceptor that returns
+	 * <code>false</code> is never invoked before a request runs.
+	 * 
+	 * The value is read once when the interceptor is added to the
+	 * {@link HttpExecutor} and must not change afterwards.
+	 * 
+	 * @return <code>true</code> by default
+	 * 
+	 * @since 2.0.1
+	 */
+	public default boolean interceptsBefore() {
+		return true;
+	}
+	
+	/**
+	 * Indicate whether this interceptor implements
+	 * {@link #afterInvocation(WebRequest, WebResponse, IOException)}. An
+	 * interceptor that returns <code>false</code> is never invoked after a
+	 * request runs. When no interceptor of an executor intercepts after
+	 * invocation, the raw response is returned as is and is not buffered.
+	 * 
+	 * The value is read once when the interceptor is added to the
+	 * {@link HttpExecutor} and must not change afterwards.
+	 * 
+	 * @return <code>true</code> by default
+	 * 
+	 * @since 2.0.1
+	 */
+	public default boolean interceptsAfter() {
+		return true;
+	}
+	
 }
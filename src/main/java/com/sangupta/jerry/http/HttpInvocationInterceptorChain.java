@@ -0,0 +1,210 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * An immutable, priority-sorted snapshot of the {@link HttpInvocationInterceptor}s
+ * and {@link AsyncHttpInvocationInterceptor}s added to a {@link HttpExecutor}.
+ * Adding or removing an interceptor creates a new chain, so that a request
+ * that is running keeps iterating over the chain it started with.
+ * 
+ * The interceptors are also split by phase, using their
+ * <code>interceptsBefore()</code> and <code>interceptsAfter()</code> flags, so
+ * that the executor can skip a phase entirely when no interceptor implements
+ * it.
+ * 
+ * @author sangupta
+ * 
+ * @since 2.0.1
+ */
+final class HttpInvocationInterceptorChain {
+	
+	/**
+	 * The chain without any interceptor
+	 */
+	static final HttpInvocationInterceptorChain EMPTY = new HttpInvocationInterceptorChain(new HttpInvocationInterceptor[0], new AsyncHttpInvocationInterceptor[0]);
+	
+	/**
+	 * Comparator used to sort interceptors - the sort is stable so interceptors
+	 * of the same priority run in the order they were added
+	 */
+	private static final HttpInvocationInterceptorComparator COMPARATOR = new HttpInvocationInterceptorComparator();
+	
+	/**
+	 * Comparator used to sort asynchronous interceptors, highest priority first
+	 */
+	private static final Comparator<AsyncHttpInvocationInterceptor> ASYNC_COMPARATOR = (first, second) -> Integer.compare(second.getPriority(), first.getPriority());
+	
+	/**
+	 * All interceptors, highest priority first
+	 */
+	private final HttpInvocationInterceptor[] interceptors;
+	
+	/**
+	 * All asynchronous interceptors, highest priority first
+	 */
+	private final AsyncHttpInvocationInterceptor[] asyncInterceptors;
+	
+	/**
+	 * Interceptors that implement the before-invocation phase
+	 */
+	final HttpInvocationInterceptor[] before;
+	
+	/**
+	 * Interceptors that implement the after-invocation phase
+	 */
+	final HttpInvocationInterceptor[] after;
+	
+	/**
+	 * Asynchronous interceptors that implement the before-invocation phase
+	 */
+	final AsyncHttpInvocationInterceptor[] asyncBefore;
+	
+	/**
+	 * Asynchronous interceptors that implement the after-invocation phase
+	 */
+	final AsyncHttpInvocationInterceptor[] asyncAfter;
+	
+	private HttpInvocationInterceptorChain(HttpInvocationInterceptor[] interceptors, AsyncHttpInvocationInterceptor[] asyncInterceptors) {
+		this.interceptors = interceptors;
+		this.asyncInterceptors = asyncInterceptors;
+		
+		this.before = Arrays.stream(interceptors).filter(HttpInvocationInterceptor::interceptsBefore).toArray(HttpInvocationInterceptor[]::new);
+		this.after = Arrays.stream(interceptors).filter(HttpInvocationInterceptor::interceptsAfter).toArray(HttpInvocationInterceptor[]::new);
+		this.asyncBefore = Arrays.stream(asyncInterceptors).filter(AsyncHttpInvocationInterceptor::interceptsBefore).toArray(AsyncHttpInvocationInterceptor[]::new);
+		this.asyncAfter = Arrays.stream(asyncInterceptors).filter(AsyncHttpInvocationInterceptor::interceptsAfter).toArray(AsyncHttpInvocationInterceptor[]::new);
+	}
+	
+	/**
+	 * Return a new chain that has the given interceptor added to the
+	 * interceptors of this chain.
+	 * 
+	 * @param interceptor
+	 *            the {@link HttpInvocationInterceptor} to add
+	 * 
+	 * @return the new {@link HttpInvocationInterceptorChain}
+	 */
+	HttpInvocationInterceptorChain with(HttpInvocationInterceptor interceptor) {
+		return new HttpInvocationInterceptorChain(added(this.interceptors, interceptor, COMPARATOR), this.asyncInterceptors);
+	}
+	
+	/**
+	 * Return a new chain that has the given asynchronous interceptor added to
+	 * the interceptors of this chain.
+	 * 
+	 * @param interceptor
+	 *            the {@link AsyncHttpInvocationInterceptor} to add
+	 * 
+	 * @return the new {@link HttpInvocationInterceptorChain}
+	 */
+	HttpInvocationInterceptorChain with(AsyncHttpInvocationInterceptor interceptor) {
+		return new HttpInvocationInterceptorChain(this.interceptors, added(this.asyncInterceptors, interceptor, ASYNC_COMPARATOR));
+	}
+	
+	/**
+	 * Return a new chain that has the first occurrence of the given
+	 * interceptor removed.
+	 * 
+	 * @param interceptor
+	 *            the {@link HttpInvocationInterceptor} to remove
+	 * 
+	 * @return the new {@link HttpInvocationInterceptorChain}, or this very
+	 *         chain if the interceptor is not part of it
+	 */
+	HttpInvocationInterceptorChain without(HttpInvocationInterceptor interceptor) {
+		HttpInvocationInterceptor[] array = removed(this.interceptors, interceptor);
+		if(array == this.interceptors) {
+			return this;
+		}
+		
+		return this.create(array, this.asyncInterceptors);
+	}
+	
+	/**
+	 * Return a new chain that has the first occurrence of the given
+	 * asynchronous interceptor removed.
+	 * 
+	 * @param interceptor
+	 *            the {@link AsyncHttpInvocationInterceptor} to remove
+	 * 
+	 * @return the new {@link HttpInvocationInterceptorChain}, or this very
+	 *         chain if the interceptor is not part of it
+	 */
+	HttpInvocationInterceptorChain without(AsyncHttpInvocationInterceptor interceptor) {
+		AsyncHttpInvocationInterceptor[] array = removed(this.asyncInterceptors, interceptor);
+		if(array == this.asyncInterceptors) {
+			return this;
+		}
+		
+		return this.create(this.interceptors, array);
+	}
+	
+	/**
+	 * Check if this chain intercepts anything at all.
+	 * 
+	 * @return <code>true</code> if neither phase has an interceptor
+	 */
+	boolean isEmpty() {
+		return this.before.length == 0 && this.after.length == 0 && this.asyncBefore.length == 0 && this.asyncAfter.length == 0;
+	}
+	
+	/**
+	 * Return the number of interceptors in this chain.
+	 * 
+	 * @return the number of interceptors, asynchronous ones included
+	 */
+	int size() {
+		return this.interceptors.length + this.asyncInterceptors.length;
+	}
+	
+	private HttpInvocationInterceptorChain create(HttpInvocationInterceptor[] interceptors, AsyncHttpInvocationInterceptor[] asyncInterceptors) {
+		if(interceptors.length == 0 && asyncInterceptors.length == 0) {
+			return EMPTY;
+		}
+		
+		return new HttpInvocationInterceptorChain(interceptors, asyncInterceptors);
+	}
+	
+	private static <T> T[] added(T[] array, T element, Comparator<? super T> comparator) {
+		T[] copy = Arrays.copyOf(array, array.length + 1);
+		copy[array.length] = element;
+		Arrays.sort(copy, comparator);
+		
+		return copy;
+	}
+	
+	private static <T> T[] removed(T[] array, T element) {
+		for(int index = 0; index < array.length; index++) {
+			if(array[index].equals(element)) {
+				T[] copy = Arrays.copyOf(array, array.length - 1);
+				System.arraycopy(array, index + 1, copy, index, copy.length - index);
+				return copy;
+			}
+		}
+		
+		return array;
+	}
+	
+}
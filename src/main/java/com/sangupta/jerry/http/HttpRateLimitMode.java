@@ -0,0 +1,46 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http;
+
+/**
+ * Enumerates how a request is treated when the token-bucket rate limit of its
+ * host has no permit available.
+ * 
+ * @author sangupta
+ * 
+ * @since 2.0.1
+ */
+public enum HttpRateLimitMode {
+	
+	/**
+	 * Throw a {@link HttpRateLimitException} right away
+	 */
+	FAIL_FAST,
+	
+	/**
+	 * Wait for a permit up to the configured maximum wait: blocking calls
+	 * sleep, non-blocking calls get a future that completes once the permit is
+	 * available. A {@link HttpRateLimitException} is raised if the permit
+	 * cannot be had within the maximum wait.
+	 */
+	WAIT;
+}
@@ -22,11 +22,18 @@
 package com.sangupta.jerry.http;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.apache.http.Header;
 import org.apache.http.HttpHost;
 import org.apache.http.HttpRequest;
 import org.apache.http.HttpResponse;
@@ -34,6 +41,7 @@ import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.ResponseHandler;
 import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.utils.DateUtils;
 import org.apache.http.conn.ClientConnectionManager;
 import org.apache.http.params.HttpParams;
 import org.apache.http.protocol.HttpContext;
@@ -51,9 +59,16 @@ import org.apache.http.protocol.HttpContext;
 public class HttpRateLimitingClient implements HttpClient {
 	
 	/**
-	 * Rate-limit mappings are their associated meta-data is kept here
+	 * Rate-limit mappings for exact host names and their associated meta-data
+	 * is kept here
 	 */
-	private static final Map<String, RateLimitValues> RATE_LIMITED_HOSTS = new HashMap<String, RateLimitValues>();
+	private final ConcurrentMap<String, HostRateLimit> rateLimitedHosts = new ConcurrentHashMap<String, HostRateLimit>();
+	
+	/**
+	 * Rate-limit mappings for wildcard rules like <code>*.api.example.com</code>,
+	 * keyed by the domain suffix <code>api.example.com</code>
+	 */
+	private final ConcurrentMap<String, HostRateLimit> rateLimitedDomains = new ConcurrentHashMap<String, HostRateLimit>();
 	
 	/**
 	 * The actual client instance that does all the magic
@@ -65,6 +80,22 @@ public class HttpRateLimitingClient implements HttpClient {
 	 */
 	private volatile boolean hasHosts = false;
 	
+	/**
+	 * Boolean flag to skip the suffix walk if there are no wildcard rules
+	 */
+	private volatile boolean hasDomains = false;
+	
+	/**
+	 * Boolean flag that signifies if hosts are throttled based on the
+	 * rate-limit signals in their responses
+	 */
+	private volatile boolean adaptive = false;
+	
+	/**
+	 * Hosts throttled by the server and the epoch millis till which they are
+	 */
+	private final ConcurrentMap<String, Long> throttledHosts = new ConcurrentHashMap<String, Long>();
+	
 	/**
 	 * Constructor - takes an actual implementation of an {@link HttpClient}.
 	 * 
@@ -75,6 +106,18 @@ public class HttpRateLimitingClient implements HttpClient {
 		this.actualClient = actualClient;
 	}
 	
+	/**
+	 * Default period for which a host is throttled on a <code>429</code> or
+	 * <code>503</code> response that does not say for how long
+	 */
+	public static final long DEFAULT_THROTTLE_MILLIS = 1000;
+	
+	/**
+	 * Upper bound on the period for which a host is throttled, whatever the
+	 * server asks for
+	 */
+	public static final long MAX_THROTTLE_MILLIS = 10 * 60 * 1000;
+	
 	/**
 	 * Return the actual client being used by this wrapper.
 	 * 
@@ -97,76 +140,610 @@ public class HttpRateLimitingClient implements HttpClient {
 	 *            the time unit against which the limit is set
 	 */
 	public void addRateLimiting(String hostName, int limit, TimeUnit timeUnit) {
+		this.addRateLimiting(hostName, limit, 1, timeUnit);
+	}
+	
+	/**
+	 * Add rate limiting around a given host name, allowing <code>limit</code>
+	 * requests in every window of the given duration. Windows as small as a
+	 * millisecond are supported.
+	 * 
+	 * @param hostName
+	 *            the host name
+	 * 
+	 * @param limit
+	 *            the limit
+	 * 
+	 * @param duration
+	 *            the length of the window
+	 * 
+	 * @param timeUnit
+	 *            the time unit of the window length
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the limit is zero/negative or the window is shorter
+	 *             than a millisecond
+	 */
+	public void addRateLimiting(String hostName, int limit, long duration, TimeUnit timeUnit) {
 		if(limit <= 0) {
 			throw new IllegalArgumentException("Rate limit cannot be zero/negative");
 		}
 		
-		long divisor;
-		switch(timeUnit) {
-			case SECONDS:
-				divisor = 1000;
-				break;
-				
-			case MINUTES:
-				divisor = 60 * 1000;
-				break;
-				
-			case HOURS:
-				divisor = 60 * 60 * 1000;
-				break;
-				
-			case DAYS:
-				divisor = 24 * 60 * 60 * 1000;
-				break;
-				
-			default:
-				throw new IllegalArgumentException("Rate limiting not supported at this level.");
+		if(timeUnit == null) {
+			throw new IllegalArgumentException("TimeUnit cannot be null");
+		}
+		
+		long interval = timeUnit.toMillis(duration);
+		if(interval < 1) {
+			throw new IllegalArgumentException("Rate limiting not supported at this level.");
+		}
+		
+		this.register(hostName, new RateLimitValues(interval, limit), false);
+	}
+	
+	/**
+	 * Set the rate limit of a given host name, replacing any limit it already
+	 * has while requests keep flowing. A fixed-window limit is replaced by a
+	 * fixed-window limit; a token-bucket limit keeps its burst, mode and
+	 * maximum wait, and only has its rate changed. A host that is not rate
+	 * limited gets a fixed-window limit.
+	 * 
+	 * @param hostName
+	 *            the host name, or wildcard
+	 * 
+	 * @param limit
+	 *            the number of requests allowed per period
+	 * 
+	 * @param duration
+	 *            the length of the period
+	 * 
+	 * @param timeUnit
+	 *            the time unit of the period
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the limit is zero/negative or the period is shorter than
+	 *             a millisecond
+	 */
+	public synchronized void setRateLimiting(String hostName, int limit, long duration, TimeUnit timeUnit) {
+		if(limit <= 0) {
+			throw new IllegalArgumentException("Rate limit cannot be zero/negative");
+		}
+		
+		if(timeUnit == null) {
+			throw new IllegalArgumentException("TimeUnit cannot be null");
+		}
+		
+		long interval = timeUnit.toMillis(duration);
+		if(interval < 1) {
+			throw new IllegalArgumentException("Rate limiting not supported at this level.");
+		}
+		
+		HostRateLimit current = hostName == null ? null : this.getRateLimitByKey(hostName.trim().toLowerCase());
+		if(current instanceof TokenBucketValues) {
+			TokenBucketValues values = (TokenBucketValues) current;
+			TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(limit, interval, TimeUnit.MILLISECONDS, values.limiter.getBurst());
+			this.register(hostName, new TokenBucketValues(limiter, limit, interval, values.mode, values.maxWaitMillis), true);
+			return;
+		}
+		
+		this.register(hostName, new RateLimitValues(interval, limit), true);
+	}
+	
+	/**
+	 * Return a snapshot of all the rate limits currently set.
+	 * 
+	 * @return the list of {@link RateLimitSnapshot}s, wildcard limits
+	 *         included with their <code>*.</code> prefix
+	 */
+	public List<RateLimitSnapshot> getRateLimitSnapshots() {
+		List<RateLimitSnapshot> snapshots = new ArrayList<>();
+		for(Map.Entry<String, HostRateLimit> entry : this.rateLimitedHosts.entrySet()) {
+			snapshots.add(entry.getValue().snapshot(entry.getKey()));
+		}
+		
+		for(Map.Entry<String, HostRateLimit> entry : this.rateLimitedDomains.entrySet()) {
+			snapshots.add(entry.getValue().snapshot("*." + entry.getKey()));
+		}
+		
+		return snapshots;
+	}
+	
+	/**
+	 * Return the hosts currently throttled based on the responses of the
+	 * server.
+	 * 
+	 * @return the epoch millis till which each host is throttled
+	 */
+	public Map<String, Long> getThrottledHosts() {
+		long now = System.currentTimeMillis();
+		Map<String, Long> throttled = new HashMap<>();
+		for(Map.Entry<String, Long> entry : this.throttledHosts.entrySet()) {
+			if(entry.getValue().longValue() > now) {
+				throttled.put(entry.getKey(), entry.getValue());
+			}
+		}
+		
+		return throttled;
+	}
+	
+	/**
+	 * Add token-bucket rate limiting around a given host name. Permits are
+	 * handed out evenly over the period instead of in fixed wall-clock
+	 * windows, with up to <code>burst</code> permits available at once.
+	 * 
+	 * @param hostName
+	 *            the host name
+	 * 
+	 * @param limit
+	 *            the number of requests allowed per period
+	 * 
+	 * @param period
+	 *            the period
+	 * 
+	 * @param timeUnit
+	 *            the {@link TimeUnit} of the period
+	 * 
+	 * @param burst
+	 *            the number of requests that may go at once
+	 * 
+	 * @param mode
+	 *            the {@link HttpRateLimitMode} to apply when no permit is
+	 *            available
+	 * 
+	 * @param maxWaitMillis
+	 *            the maximum time to wait for a permit in
+	 *            {@link HttpRateLimitMode#WAIT} mode
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if any of the values is invalid
+	 * 
+	 * @throws IllegalStateException
+	 *             if the host is already rate limited
+	 */
+	public void addTokenBucketRateLimiting(String hostName, int limit, long period, TimeUnit timeUnit, int burst, HttpRateLimitMode mode, long maxWaitMillis) {
+		if(mode == null) {
+			throw new IllegalArgumentException("Rate limit mode cannot be null");
+		}
+		
+		if(maxWaitMillis < 0) {
+			throw new IllegalArgumentException("Maximum wait cannot be negative");
+		}
+		
+		TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(limit, period, timeUnit, burst);
+		
+		this.register(hostName, new TokenBucketValues(limiter, limit, timeUnit.toMillis(period), mode, maxWaitMillis), false);
+	}
+	
+	/**
+	 * Enable or disable adaptive throttling. When enabled, every response is
+	 * inspected for the rate-limit signals of the server:
+	 * 
+	 * <ul>
+	 * <li><code>429</code> and <code>503</code> status codes, throttling the
+	 * host for the <code>Retry-After</code> period, else till
+	 * <code>RateLimit-Reset</code>, else for {@link #DEFAULT_THROTTLE_MILLIS}</li>
+	 * <li><code>RateLimit-Remaining: 0</code>, throttling the host till
+	 * <code>RateLimit-Reset</code></li>
+	 * </ul>
+	 * 
+	 * Requests to a throttled host fail with {@link HttpRateLimitException}
+	 * without hitting the network, until the period is over. The
+	 * <code>X-RateLimit-</code> prefixed headers are honoured as well.
+	 * 
+	 * @param adaptive
+	 *            <code>true</code> to enable, <code>false</code> to disable and
+	 *            clear all current throttling
+	 */
+	public void setAdaptiveThrottling(boolean adaptive) {
+		this.adaptive = adaptive;
+		if(!adaptive) {
+			this.throttledHosts.clear();
+		}
+	}
+	
+	/**
+	 * Return whether adaptive throttling is enabled.
+	 * 
+	 * @return <code>true</code> if enabled, <code>false</code> otherwise
+	 */
+	public boolean isAdaptiveThrottling() {
+		return this.adaptive;
+	}
+	
+	/**
+	 * Return the epoch millis till which the host is throttled based on the
+	 * responses of the server.
+	 * 
+	 * @param hostName
+	 *            the host name
+	 * 
+	 * @return the epoch millis, or <code>0</code> if the host is not
+	 *         throttled
+	 */
+	public long getThrottledUntil(String hostName) {
+		if(hostName == null) {
+			return 0;
+		}
+		
+		Long until = this.throttledHosts.get(hostName.toLowerCase());
+		if(until == null || until.longValue() <= System.currentTimeMillis()) {
+			return 0;
+		}
+		
+		return until.longValue();
+	}
+	
+	/**
+	 * Learn from the rate-limit signals in a response obtained from the host.
+	 * Exposed to the package for the non-blocking executions of
+	 * {@link HttpExecutor}.
+	 * 
+	 * @param host
+	 *            the host that sent the response
+	 * 
+	 * @param response
+	 *            the {@link HttpResponse} obtained
+	 */
+	void observeResponse(String host, HttpResponse response) {
+		if(!this.adaptive || host == null || response == null || response.getStatusLine() == null) {
+			return;
+		}
+		
+		final long now = System.currentTimeMillis();
+		final int status = response.getStatusLine().getStatusCode();
+		
+		long until = -1;
+		if(status == 429 || status == 503) {
+			until = parseRetryAfter(response.getFirstHeader("Retry-After"), now);
+			if(until < 0) {
+				until = parseReset(response, now);
+			}
+			
+			if(until < 0) {
+				until = now + DEFAULT_THROTTLE_MILLIS;
+			}
+		} else {
+			Header remaining = getRateLimitHeader(response, "Remaining");
+			if(remaining != null && "0".equals(remaining.getValue().trim())) {
+				until = parseReset(response, now);
+			}
+		}
+		
+		if(until <= now) {
+			return;
+		}
+		
+		until = Math.min(until, now + MAX_THROTTLE_MILLIS);
+		
+		// only ever extend the throttling window
+		this.throttledHosts.merge(host.toLowerCase(), until, Math::max);
+	}
+	
+	/**
+	 * Parse the <code>Retry-After</code> header, given either as
+	 * delta-seconds or as an HTTP-date.
+	 * 
+	 * @param header
+	 *            the header, may be <code>null</code>
+	 * 
+	 * @param now
+	 *            the current epoch millis
+	 * 
+	 * @return the epoch millis till which to wait, or <code>-1</code>
+	 */
+	static long parseRetryAfter(Header header, long now) {
+		if(header == null || header.getValue() == null) {
+			return -1;
+		}
+		
+		String value = header.getValue().trim();
+		try {
+			return now + TimeUnit.SECONDS.toMillis(Long.parseLong(value));
+		} catch(NumberFormatException e) {
+			// not delta-seconds
+		}
+		
+		Date date = DateUtils.parseDate(value);
+		if(date == null) {
+			return -1;
+		}
+		
+		return date.getTime();
+	}
+	
+	/**
+	 * Parse the <code>RateLimit-Reset</code> header. The value is taken as
+	 * delta-seconds, unless it is large enough to only be epoch seconds as
+	 * used by some <code>X-RateLimit-Reset</code> implementations.
+	 * 
+	 * @param response
+	 *            the {@link HttpResponse}
+	 * 
+	 * @param now
+	 *            the current epoch millis
+	 * 
+	 * @return the epoch millis of the reset, or <code>-1</code>
+	 */
+	static long parseReset(HttpResponse response, long now) {
+		Header header = getRateLimitHeader(response, "Reset");
+		if(header == null || header.getValue() == null) {
+			return -1;
+		}
+		
+		long seconds;
+		try {
+			seconds = Long.parseLong(header.getValue().trim());
+		} catch(NumberFormatException e) {
+			return -1;
+		}
+		
+		if(seconds < 0) {
+			return -1;
+		}
+		
+		// a billion seconds is over thirty years - must be an epoch value
+		if(seconds >= 1000000000L) {
+			return TimeUnit.SECONDS.toMillis(seconds);
+		}
+		
+		return now + TimeUnit.SECONDS.toMillis(seconds);
+	}
+	
+	/**
+	 * Return the <code>RateLimit-</code> header of the given name, falling
+	 * back to the <code>X-RateLimit-</code> one.
+	 * 
+	 * @param response
+	 *            the {@link HttpResponse}
+	 * 
+	 * @param name
+	 *            the name suffix like <code>Reset</code>
+	 * 
+	 * @return the {@link Header}, or <code>null</code>
+	 */
+	private static Header getRateLimitHeader(HttpResponse response, String name) {
+		Header header = response.getFirstHeader("RateLimit-" + name);
+		if(header != null) {
+			return header;
+		}
+		
+		return response.getFirstHeader("X-RateLimit-" + name);
+	}
+	
+	/**
+	 * Fail if the server has asked to throttle calls to the given host.
+	 * 
+	 * @param host
+	 *            the host being hit
+	 * 
+	 * @throws HttpRateLimitException
+	 *             if the host is throttled
+	 */
+	private void assertNotThrottled(String host) {
+		if(this.throttledHosts.isEmpty() || host == null) {
+			return;
+		}
+		
+		final String key = host.toLowerCase();
+		Long until = this.throttledHosts.get(key);
+		if(until == null) {
+			return;
+		}
+		
+		if(until.longValue() > System.currentTimeMillis()) {
+			throw new HttpRateLimitException("Host is throttled by the server: " + host);
+		}
+		
+		this.throttledHosts.remove(key, until);
+	}
+	
+	/**
+	 * Wrap the given handler so that the response is observed before being
+	 * handled.
+	 * 
+	 * @param host
+	 *            the host being hit
+	 * 
+	 * @param responseHandler
+	 *            the {@link ResponseHandler} to wrap
+	 * 
+	 * @return the wrapping {@link ResponseHandler}, or the given one if not
+	 *         adaptive
+	 */
+	private <T> ResponseHandler<? extends T> observing(final String host, final ResponseHandler<? extends T> responseHandler) {
+		if(!this.adaptive) {
+			return responseHandler;
+		}
+		
+		return new ResponseHandler<T>() {
+			
+			@Override
+			public T handleResponse(HttpResponse response) throws ClientProtocolException, IOException {
+				observeResponse(host, response);
+				return responseHandler.handleResponse(response);
+			}
+			
+		};
+	}
+	
+	/**
+	 * Observe the response and return it.
+	 * 
+	 * @param host
+	 *            the host being hit
+	 * 
+	 * @param response
+	 *            the {@link HttpResponse}
+	 * 
+	 * @return the same {@link HttpResponse}
+	 */
+	private HttpResponse observed(String host, HttpResponse response) {
+		this.observeResponse(host, response);
+		return response;
+	}
+	
+	/**
+	 * Register the rate limit for the host name, or for all sub-domains when
+	 * the name is a wildcard like <code>*.api.example.com</code>. All hosts
+	 * matching a wildcard share the one limit.
+	 * 
+	 * @param hostName
+	 *            the host name or wildcard
+	 * 
+	 * @param limit
+	 *            the {@link HostRateLimit} to apply
+	 * 
+	 * @param replace
+	 *            whether a current limit of the host is replaced
+	 * 
+	 * @throws IllegalStateException
+	 *             if the host is already rate limited and the limit is not
+	 *             to be replaced
+	 */
+	private synchronized void register(String hostName, HostRateLimit limit, boolean replace) {
+		if(hostName == null || hostName.trim().isEmpty()) {
+			throw new IllegalArgumentException("Host name cannot be null/empty");
 		}
 		
-		if(RATE_LIMITED_HOSTS.containsKey(hostName)) {
+		String key = hostName.trim().toLowerCase();
+		ConcurrentMap<String, HostRateLimit> map = this.rateLimitedHosts;
+		if(key.startsWith("*.")) {
+			key = key.substring(2);
+			map = this.rateLimitedDomains;
+			
+			if(key.isEmpty()) {
+				throw new IllegalArgumentException("Wildcard must have a domain suffix");
+			}
+		}
+		
+		if(replace) {
+			map.put(key, limit);
+		} else if(map.putIfAbsent(key, limit) != null) {
 			throw new IllegalStateException("To change the rate limit, remove any current limit and then reset");
 		}
 		
-		RATE_LIMITED_HOSTS.put(hostName.toLowerCase(), new RateLimitValues(divisor, limit));
-		this.hasHosts = true;
+		this.updateFlags();
+	}
+	
+	/**
+	 * Update the flags that let lookups skip work. Called under the monitor of
+	 * this instance so that concurrent changes cannot leave a stale flag.
+	 * 
+	 */
+	private void updateFlags() {
+		this.hasDomains = !this.rateLimitedDomains.isEmpty();
+		this.hasHosts = this.hasDomains || !this.rateLimitedHosts.isEmpty();
 	}
 	
 	/**
 	 * Remove rate limiting around this hostname.
 	 * 
 	 * @param hostName
-	 *            the host name to remove rate limiting from
+	 *            the host name, or wildcard, to remove rate limiting from
 	 */
-	public void removeRateLimiting(String hostName) {
-		RATE_LIMITED_HOSTS.remove(hostName);
-		this.hasHosts = !RATE_LIMITED_HOSTS.isEmpty();
+	public synchronized void removeRateLimiting(String hostName) {
+		if(hostName == null) {
+			return;
+		}
+		
+		String key = hostName.trim().toLowerCase();
+		if(key.startsWith("*.")) {
+			this.rateLimitedDomains.remove(key.substring(2));
+		} else {
+			this.rateLimitedHosts.remove(key);
+		}
+		
+		this.updateFlags();
 	}
 	
 	/**
 	 * Clear all previously set rate limited hosting
 	 * 
 	 */
-	public void removeAllRateLimiting() {
-		RATE_LIMITED_HOSTS.clear();
-		this.hasHosts = false;
+	public synchronized void removeAllRateLimiting() {
+		this.rateLimitedHosts.clear();
+		this.rateLimitedDomains.clear();
+		this.updateFlags();
 	}
 	
 	/**
-	 * The method checks if the current rate execution rate is within the prescribed limits or not
+	 * Find the rate limit registered under the given host name or wildcard,
+	 * without matching wildcards against host names.
+	 * 
+	 * @param key
+	 *            the trimmed, lower-cased host name or wildcard
+	 * 
+	 * @return the {@link HostRateLimit}, or <code>null</code> if none is
+	 *         registered
 	 */
-	private void assertRateInLimit(HttpUriRequest request) {
-		if(!this.hasHosts) {
+	private HostRateLimit getRateLimitByKey(String key) {
+		if(key.startsWith("*.")) {
+			return this.rateLimitedDomains.get(key.substring(2));
+		}
+		
+		return this.rateLimitedHosts.get(key);
+	}
+	
+	/**
+	 * Find the rate limit that applies to the given host: an exact rule if
+	 * any, else the most specific wildcard rule found by walking up the
+	 * domain labels.
+	 * 
+	 * @param host
+	 *            the host being hit
+	 * 
+	 * @return the {@link HostRateLimit}, or <code>null</code> if the host is
+	 *         not rate limited
+	 */
+	private HostRateLimit getRateLimit(String host) {
+		if(host == null) {
+			return null;
+		}
+		
+		String key = host.toLowerCase();
+		HostRateLimit limit = this.rateLimitedHosts.get(key);
+		if(limit != null || !this.hasDomains) {
+			return limit;
+		}
+		
+		int dot = key.indexOf('.');
+		while(dot >= 0) {
+			limit = this.rateLimitedDomains.get(key.substring(dot + 1));
+			if(limit != null) {
+				return limit;
+			}
+			
+			dot = key.indexOf('.', dot + 1);
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * The method checks if the current rate execution rate is within the
+	 * prescribed limits or not. Exposed to the package so that requests that
+	 * bypass this client, like the non-blocking executions of
+	 * {@link HttpExecutor}, are still rate limited.
+	 * 
+	 * @param request
+	 *            the {@link HttpUriRequest} about to be executed
+	 * 
+	 * @throws HttpRateLimitException
+	 *             if the host is at its limit
+	 */
+	void assertRateInLimit(HttpUriRequest request) {
+		if(!this.hasHosts && !this.adaptive) {
 			return;
 		}
 		
-		assertRateInLimit(request.getURI().getHost().toLowerCase());
+		assertRateInLimit(request.getURI().getHost());
 	}
 	
 	/**
 	 * The method checks if the current rate execution rate is within the prescribed limits or not
 	 */
 	private void assertRateInLimit(HttpHost target) {
-		if(!this.hasHosts) {
+		if(!this.hasHosts && !this.adaptive) {
 			return;
 		}
 		
@@ -177,28 +754,51 @@ public class HttpRateLimitingClient implements HttpClient {
 	 * The method checks if the current rate execution rate is within the prescribed limits or not
 	 */
 	private void assertRateInLimit(String host) {
-		RateLimitValues values = RATE_LIMITED_HOSTS.get(host);
+		if(this.adaptive) {
+			this.assertNotThrottled(host);
+		}
+		
+		HostRateLimit values = this.getRateLimit(host);
 		if(values == null) {
 			return;
 		}
 		
-		long block = System.currentTimeMillis() / values.interval;
-		if(block == values.block) {
-			int currentValue = values.current.intValue();
-			if(currentValue == values.limit) {
-				throw new HttpRateLimitException("Host is at its limit: " + host);
-			}
-			
-			// we are in limits
-			boolean updated = values.current.compareAndSet(currentValue, 1);
-			if(!updated) {
-				values.current.incrementAndGet();
+		values.acquire(host);
+	}
+	
+	/**
+	 * Obtain a permit for the given request without blocking the calling
+	 * thread. Hosts in {@link HttpRateLimitMode#WAIT} mode return a future
+	 * that completes once the permit may be used.
+	 * 
+	 * @param request
+	 *            the {@link HttpUriRequest} about to be executed
+	 * 
+	 * @return a {@link CompletableFuture} that completes when the request may
+	 *         go, or exceptionally with a {@link HttpRateLimitException}
+	 */
+	CompletableFuture<Void> acquirePermitAsync(HttpUriRequest request) {
+		if(!this.hasHosts && !this.adaptive) {
+			return CompletableFuture.completedFuture(null);
+		}
+		
+		String host = request.getURI().getHost();
+		if(this.adaptive) {
+			try {
+				this.assertNotThrottled(host);
+			} catch(HttpRateLimitException e) {
+				CompletableFuture<Void> future = new CompletableFuture<>();
+				future.completeExceptionally(e);
+				return future;
 			}
-		} else {
-			// reset the block
-			values.block = block;
-			values.current.set(1);
 		}
+		
+		HostRateLimit values = this.getRateLimit(host);
+		if(values == null) {
+			return CompletableFuture.completedFuture(null);
+		}
+		
+		return values.acquireAsync(host);
 	}
 
 	/**
@@ -225,7 +825,7 @@ public class HttpRateLimitingClient implements HttpClient {
 	@Override
 	public HttpResponse execute(HttpUriRequest request) throws IOException, ClientProtocolException {
 		assertRateInLimit(request);
-		return this.actualClient.execute(request);
+		return this.observed(request.getURI().getHost(), this.actualClient.execute(request));
 	}
 
 	/**
@@ -234,7 +834,7 @@ public class HttpRateLimitingClient implements HttpClient {
 	@Override
 	public HttpResponse execute(HttpUriRequest request, HttpContext context) throws IOException, ClientProtocolException {
 		assertRateInLimit(request);
-		return this.actualClient.execute(request, context);
+		return this.observed(request.getURI().getHost(), this.actualClient.execute(request, context));
 	}
 
 	/**
@@ -243,7 +843,7 @@ public class HttpRateLimitingClient implements HttpClient {
 	@Override
 	public HttpResponse execute(HttpHost target, HttpRequest request) throws IOException, ClientProtocolException {
 		assertRateInLimit(target);
-		return this.actualClient.execute(target, request);
+		return this.observed(target.getHostName(), this.actualClient.execute(target, request));
 	}
 
 	/**
@@ -252,7 +852,7 @@ public class HttpRateLimitingClient implements HttpClient {
 	@Override
 	public HttpResponse execute(HttpHost target, HttpRequest request, HttpContext context) throws IOException, ClientProtocolException {
 		assertRateInLimit(target);
-		return this.actualClient.execute(target, request, context);
+		return this.observed(target.getHostName(), this.actualClient.execute(target, request, context));
 	}
 
 	/**
@@ -261,7 +861,7 @@ public class HttpRateLimitingClient implements HttpClient {
 	@Override
 	public <T> T execute(HttpUriRequest request, ResponseHandler<? extends T> responseHandler) throws IOException, ClientProtocolException {
 		assertRateInLimit(request);
-		return this.actualClient.execute(request, responseHandler);
+		return this.actualClient.execute(request, this.observing(request.getURI().getHost(), responseHandler));
 	}
 
 	/**
@@ -270,7 +870,7 @@ public class HttpRateLimitingClient implements HttpClient {
 	@Override
 	public <T> T execute(HttpUriRequest request, ResponseHandler<? extends T> responseHandler, HttpContext context) throws IOException, ClientProtocolException {
 		assertRateInLimit(request);
-		return this.actualClient.execute(request, responseHandler, context);
+		return this.actualClient.execute(request, this.observing(request.getURI().getHost(), responseHandler), context);
 	}
 
 	/**
@@ -279,7 +879,7 @@ public class HttpRateLimitingClient implements HttpClient {
 	@Override
 	public <T> T execute(HttpHost target, HttpRequest request, ResponseHandler<? extends T> responseHandler) throws IOException, ClientProtocolException {
 		assertRateInLimit(target);
-		return this.actualClient.execute(target, request, responseHandler);
+		return this.actualClient.execute(target, request, this.observing(target.getHostName(), responseHandler));
 	}
 
 	/**
@@ -288,28 +888,186 @@ public class HttpRateLimitingClient implements HttpClient {
 	@Override
 	public <T> T execute(HttpHost target, HttpRequest request, ResponseHandler<? extends T> responseHandler, HttpContext context) throws IOException, ClientProtocolException {
 		assertRateInLimit(target);
-		return this.actualClient.execute(target, request, responseHandler, context);
+		return this.actualClient.execute(target, request, this.observing(target.getHostName(), responseHandler), context);
 	}
 
 	/**
-	 * Stores rate-limiting values
+	 * Rate limit applied to a single host
+	 * 
+	 * @author sangupta
+	 *
+	 */
+	private static abstract class HostRateLimit {
+		
+		/**
+		 * Take a permit for the host, blocking if the limit asks for it.
+		 * 
+		 * @param host
+		 *            the host being hit
+		 * 
+		 * @throws HttpRateLimitException
+		 *             if no permit is available
+		 */
+		abstract void acquire(String host);
+		
+		/**
+		 * Take a snapshot of the current state of this limit.
+		 * 
+		 * @param host
+		 *            the host name or wildcard the limit is registered for
+		 * 
+		 * @return the {@link RateLimitSnapshot}
+		 */
+		abstract RateLimitSnapshot snapshot(String host);
+		
+		/**
+		 * Take a permit for the host without blocking.
+		 * 
+		 * @param host
+		 *            the host being hit
+		 * 
+		 * @return the future that completes when the permit may be used
+		 */
+		CompletableFuture<Void> acquireAsync(String host) {
+			CompletableFuture<Void> future = new CompletableFuture<>();
+			try {
+				this.acquire(host);
+				future.complete(null);
+			} catch(HttpRateLimitException e) {
+				future.completeExceptionally(e);
+			}
+			
+			return future;
+		}
+		
+	}
+	
+	/**
+	 * Stores rate-limiting values for fixed windows. The index of the current
+	 * window (truncated to 32 bits) in the high half and the number of
+	 * requests made in it in the low half are packed into a single word, so
+	 * that moving to a new window and counting are one compare-and-set and
+	 * the limit is never overshot. The window only ever moves forward, even
+	 * for a thread that read the clock before another moved it.
 	 * 
 	 * @author sangupta
 	 *
 	 */
-	private static class RateLimitValues {
+	private static class RateLimitValues extends HostRateLimit {
 		
 		final long interval;
 		
 		final int limit;
 		
-		AtomicInteger current = new AtomicInteger();
-		
-		long block;
+		final AtomicLong state = new AtomicLong();
 		
 		public RateLimitValues(long interval, int limit) {
 			this.interval = interval;
 			this.limit = limit;
+			
+			// start in a window that cannot be the current one
+			this.state.set(((long) (int) (System.currentTimeMillis() / interval - 1)) << 32);
+		}
+		
+		@Override
+		void acquire(String host) {
+			final int block = (int) (System.currentTimeMillis() / this.interval);
+			
+			while(true) {
+				final long current = this.state.get();
+				
+				final long next;
+				if(block - (int) (current >>> 32) > 0) {
+					// reset the block, only ever moving forward
+					next = (((long) block) << 32) | 1;
+				} else {
+					// the stored window is the current one, or a newer one
+					// moved to by a thread that read the clock after us
+					if((int) current >= this.limit) {
+						throw new HttpRateLimitException("Host is at its limit: " + host);
+					}
+					
+					// we are in limits
+					next = current + 1;
+				}
+				
+				if(this.state.compareAndSet(current, next)) {
+					return;
+				}
+			}
+		}
+		
+		@Override
+		RateLimitSnapshot snapshot(String host) {
+			final int block = (int) (System.currentTimeMillis() / this.interval);
+			final long current = this.state.get();
+			final int used = (int) (current >>> 32) == block ? (int) current : 0;
+			
+			return new RateLimitSnapshot(host, RateLimitSnapshot.Type.FIXED_WINDOW, this.limit, this.interval, this.limit, Math.max(0, this.limit - used), HttpRateLimitMode.FAIL_FAST, 0);
+		}
+	}
+	
+	/**
+	 * Token-bucket rate limit along with what to do when it is exhausted
+	 * 
+	 * @author sangupta
+	 *
+	 */
+	private static class TokenBucketValues extends HostRateLimit {
+		
+		final TokenBucketRateLimiter limiter;
+		
+		final int limit;
+		
+		final long periodMillis;
+		
+		final HttpRateLimitMode mode;
+		
+		final long maxWaitMillis;
+		
+		public TokenBucketValues(TokenBucketRateLimiter limiter, int limit, long periodMillis, HttpRateLimitMode mode, long maxWaitMillis) {
+			this.limiter = limiter;
+			this.limit = limit;
+			this.periodMillis = periodMillis;
+			this.mode = mode;
+			this.maxWaitMillis = maxWaitMillis;
+		}
+		
+		@Override
+		RateLimitSnapshot snapshot(String host) {
+			return new RateLimitSnapshot(host, RateLimitSnapshot.Type.TOKEN_BUCKET, this.limit, this.periodMillis, this.limiter.getBurst(), this.limiter.getAvailablePermits(), this.mode, this.maxWaitMillis);
+		}
+		
+		@Override
+		void acquire(String host) {
+			if(this.mode == HttpRateLimitMode.FAIL_FAST) {
+				if(!this.limiter.tryAcquire()) {
+					throw new HttpRateLimitException("Host is at its limit: " + host);
+				}
+				
+				return;
+			}
+			
+			boolean acquired;
+			try {
+				acquired = this.limiter.acquire(this.maxWaitMillis, TimeUnit.MILLISECONDS);
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new HttpRateLimitException("Interrupted while waiting for a permit on host: " + host);
+			}
+			
+			if(!acquired) {
+				throw new HttpRateLimitException("Host is at its limit: " + host);
+			}
+		}
+		
+		@Override
+		CompletableFuture<Void> acquireAsync(String host) {
+			if(this.mode == HttpRateLimitMode.FAIL_FAST) {
+				return super.acquireAsync(host);
+			}
+			
+			return this.limiter.acquireAsync(this.maxWaitMillis, TimeUnit.MILLISECONDS);
 		}
 	}
 	
@@ -0,0 +1,230 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http;
+
+import java.io.File;
+
+import org.apache.http.client.cache.ResourceFactory;
+import org.apache.http.impl.client.cache.CacheConfig;
+import org.apache.http.impl.client.cache.CachingHttpClientBuilder;
+import org.apache.http.impl.client.cache.FileResourceFactory;
+import org.apache.http.impl.client.cache.HeapResourceFactory;
+
+/**
+ * An HTTP response cache that can be attached to an {@link HttpExecutor}.
+ * Responses to requests made via the executor are cached and served as
+ * specified by RFC 7234 - honoring <code>Cache-Control</code>,
+ * <code>Expires</code> and <code>Vary</code>, and revalidating stale entries
+ * with <code>If-None-Match</code> or <code>If-Modified-Since</code> from their
+ * <code>ETag</code> or <code>Last-Modified</code>.
+ * 
+ * Entries are evicted least-recently-used first once their total size goes
+ * over the byte budget of the cache. Bodies are kept on the heap, or in files
+ * under a directory for {@link #onDisk(File, long)}; the index of entries is
+ * always kept in memory and does not survive a restart.
+ * 
+ * By default the cache is private to the client, so that responses to
+ * authenticated requests may be cached, and only responses with explicit
+ * freshness information are cached.
+ * 
+ * <pre>
+ * HttpExecutor executor = HttpExecutor.builder().responseCache(HttpResponseCache.inMemory(32 * 1024 * 1024)).build();
+ * </pre>
+ * 
+ * Note that the cache applies to blocking executions only.
+ * 
+ * @author sangupta
+ * 
+ * @since 2.0.1
+ */
+public class HttpResponseCache {
+	
+	/**
+	 * Default maximum size of a single cacheable body - 1 MB
+	 */
+	public static final long DEFAULT_MAX_OBJECT_SIZE = 1024 * 1024;
+	
+	/**
+	 * The storage of entries
+	 */
+	private final LruHttpCacheStorage storage;
+	
+	/**
+	 * The factory that stores bodies on heap or on disk
+	 */
+	private final ResourceFactory resourceFactory;
+	
+	/**
+	 * Maximum size of a single cacheable body
+	 */
+	private long maxObjectSize = DEFAULT_MAX_OBJECT_SIZE;
+	
+	/**
+	 * Whether the cache behaves as a shared cache
+	 */
+	private boolean sharedCache = false;
+	
+	/**
+	 * Whether responses without explicit freshness are cached heuristically
+	 */
+	private boolean heuristicCaching = false;
+	
+	private HttpResponseCache(long maxBytes, ResourceFactory resourceFactory) {
+		this.storage = new LruHttpCacheStorage(maxBytes);
+		this.resourceFactory = resourceFactory;
+	}
+	
+	/**
+	 * Create a cache that keeps bodies on the heap.
+	 * 
+	 * @param maxBytes
+	 *            the maximum total size of the cache in bytes
+	 * 
+	 * @return the {@link HttpResponseCache}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the size is less than <code>1</code>
+	 */
+	public static HttpResponseCache inMemory(long maxBytes) {
+		return new HttpResponseCache(maxBytes, new HeapResourceFactory());
+	}
+	
+	/**
+	 * Create a cache that keeps bodies in files under the given directory,
+	 * which should be dedicated to the cache. Files are deleted as their
+	 * entries are evicted or the cache is cleared.
+	 * 
+	 * @param directory
+	 *            the directory to store bodies in, created if missing
+	 * 
+	 * @param maxBytes
+	 *            the maximum total size of the cache in bytes
+	 * 
+	 * @return the {@link HttpResponseCache}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the directory is <code>null</code> or cannot be created,
+	 *             or the size is less than <code>1</code>
+	 */
+	public static HttpResponseCache onDisk(File directory, long maxBytes) {
+		if(directory == null) {
+			throw new IllegalArgumentException("Cache directory cannot be null");
+		}
+		
+		if(!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IllegalArgumentException("Unable to create cache directory: " + directory.getAbsolutePath());
+		}
+		
+		return new HttpResponseCache(maxBytes, new FileResourceFactory(directory));
+	}
+	
+	/**
+	 * Set the maximum size of a single body that is cached. Larger responses
+	 * are passed through without being stored.
+	 * 
+	 * @param bytes
+	 *            the size in bytes
+	 * 
+	 * @return this very {@link HttpResponseCache}
+	 */
+	public HttpResponseCache maxObjectSize(long bytes) {
+		if(bytes < 1) {
+			throw new IllegalArgumentException("Maximum object size cannot be less than 1 byte");
+		}
+		
+		this.maxObjectSize = bytes;
+		return this;
+	}
+	
+	/**
+	 * Set whether the cache behaves as a shared cache, which never stores
+	 * responses marked <code>private</code> or responses to authenticated
+	 * requests.
+	 * 
+	 * @param sharedCache
+	 *            <code>true</code> for a shared cache
+	 * 
+	 * @return this very {@link HttpResponseCache}
+	 */
+	public HttpResponseCache sharedCache(boolean sharedCache) {
+		this.sharedCache = sharedCache;
+		return this;
+	}
+	
+	/**
+	 * Set whether responses that carry no explicit freshness information but
+	 * a <code>Last-Modified</code> header are cached for a fraction of their
+	 * age.
+	 * 
+	 * @param heuristicCaching
+	 *            <code>true</code> to enable heuristic caching
+	 * 
+	 * @return this very {@link HttpResponseCache}
+	 */
+	public HttpResponseCache heuristicCaching(boolean heuristicCaching) {
+		this.heuristicCaching = heuristicCaching;
+		return this;
+	}
+	
+	/**
+	 * Remove all entries from the cache. Bodies stored on disk are deleted
+	 * once no response is being served from them.
+	 * 
+	 */
+	public void clear() {
+		this.storage.clear();
+	}
+	
+	/**
+	 * @return the total size of the cached entries in bytes
+	 */
+	public long getSize() {
+		return this.storage.getSize();
+	}
+	
+	/**
+	 * @return the number of cached entries
+	 */
+	public int getEntryCount() {
+		return this.storage.getEntryCount();
+	}
+	
+	/**
+	 * Create a client builder that caches responses in this cache.
+	 * 
+	 * @return the {@link CachingHttpClientBuilder}
+	 */
+	CachingHttpClientBuilder newClientBuilder() {
+		CacheConfig config = CacheConfig.custom()
+				.setMaxObjectSize(this.maxObjectSize)
+				.setSharedCache(this.sharedCache)
+				.setHeuristicCachingEnabled(this.heuristicCaching)
+				.build();
+		
+		CachingHttpClientBuilder builder = CachingHttpClientBuilder.create();
+		builder.setCacheConfig(config);
+		builder.setHttpCacheStorage(this.storage);
+		builder.setResourceFactory(this.resourceFactory);
+		return builder;
+	}
+	
+}
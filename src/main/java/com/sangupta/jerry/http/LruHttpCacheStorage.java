@@ -0,0 +1,278 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http;
+
+import java.io.IOException;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.http.Header;
+import org.apache.http.client.cache.HttpCacheEntry;
+import org.apache.http.client.cache.HttpCacheStorage;
+import org.apache.http.client.cache.HttpCacheUpdateCallback;
+import org.apache.http.client.cache.Resource;
+
+/**
+ * {@link HttpCacheStorage} that keeps entries in least-recently-used order
+ * and evicts the oldest ones once their total size goes over a byte budget.
+ * The size of an entry is the length of its body plus that of its headers, so
+ * that the budget holds whether bodies are kept on heap or on disk.
+ * 
+ * The resource of an evicted or replaced entry is disposed, which deletes the
+ * backing file of a disk-stored body, only once the entry is no longer
+ * referenced: another thread may have obtained it via
+ * {@link #getEntry(String)} and still be serving its body. Just like
+ * {@link org.apache.http.impl.client.cache.ManagedHttpCacheStorage} this is
+ * tracked via phantom references, and disposal happens on a later operation
+ * on the storage.
+ * 
+ * @author sangupta
+ * 
+ * @since 2.0.1
+ */
+class LruHttpCacheStorage implements HttpCacheStorage {
+	
+	/**
+	 * Approximate fixed cost of an entry besides its body and headers
+	 */
+	private static final long ENTRY_OVERHEAD = 256;
+	
+	/**
+	 * The maximum total size of all entries
+	 */
+	private final long maxBytes;
+	
+	/**
+	 * The entries in access order, guarded by <code>this</code>
+	 */
+	private final LinkedHashMap<String, HttpCacheEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+	
+	/**
+	 * The current total size of all entries, guarded by <code>this</code>
+	 */
+	private long size = 0;
+	
+	/**
+	 * The queue that unreferenced entries are enqueued to
+	 */
+	private final ReferenceQueue<HttpCacheEntry> morgue = new ReferenceQueue<>();
+	
+	/**
+	 * The references to entries whose resource is yet to be disposed, guarded
+	 * by <code>this</code>
+	 */
+	private final Set<ResourceReference> references = new HashSet<>();
+	
+	LruHttpCacheStorage(long maxBytes) {
+		if(maxBytes < 1) {
+			throw new IllegalArgumentException("Cache size cannot be less than 1 byte");
+		}
+		
+		this.maxBytes = maxBytes;
+	}
+	
+	@Override
+	public synchronized void putEntry(String key, HttpCacheEntry entry) throws IOException {
+		this.disposeUnreferenced();
+		this.put(key, entry);
+	}
+	
+	@Override
+	public synchronized HttpCacheEntry getEntry(String key) throws IOException {
+		this.disposeUnreferenced();
+		return this.entries.get(key);
+	}
+	
+	@Override
+	public synchronized void removeEntry(String key) throws IOException {
+		this.disposeUnreferenced();
+		this.discard(this.entries.remove(key));
+	}
+	
+	@Override
+	public synchronized void updateEntry(String key, HttpCacheUpdateCallback callback) throws IOException {
+		this.disposeUnreferenced();
+		
+		HttpCacheEntry updated = callback.update(this.entries.get(key));
+		if(updated == null) {
+			this.discard(this.entries.remove(key));
+			return;
+		}
+		
+		this.put(key, updated);
+	}
+	
+	/**
+	 * Remove all entries. Their resources are disposed once no longer
+	 * referenced.
+	 * 
+	 */
+	synchronized void clear() {
+		this.entries.clear();
+		this.size = 0;
+		
+		this.disposeUnreferenced();
+	}
+	
+	/**
+	 * @return the total size of all entries in bytes
+	 */
+	synchronized long getSize() {
+		this.disposeUnreferenced();
+		return this.size;
+	}
+	
+	/**
+	 * @return the number of entries
+	 */
+	synchronized int getEntryCount() {
+		this.disposeUnreferenced();
+		return this.entries.size();
+	}
+	
+	/**
+	 * Store the entry and evict the least recently used entries until the
+	 * budget is met again.
+	 * 
+	 * @param key
+	 *            the cache key
+	 * 
+	 * @param entry
+	 *            the entry to store
+	 */
+	private void put(String key, HttpCacheEntry entry) {
+		long entrySize = sizeOf(entry);
+		if(entrySize > this.maxBytes) {
+			// would evict everything, including itself - the caller may
+			// still serve the body from it
+			this.discard(this.entries.remove(key));
+			this.track(entry);
+			return;
+		}
+		
+		HttpCacheEntry previous = this.entries.put(key, entry);
+		if(previous != entry) {
+			this.discard(previous);
+			this.track(entry);
+		} else {
+			this.size -= entrySize;
+		}
+		
+		this.size += entrySize;
+		
+		Iterator<Map.Entry<String, HttpCacheEntry>> iterator = this.entries.entrySet().iterator();
+		while(this.size > this.maxBytes && iterator.hasNext()) {
+			HttpCacheEntry eldest = iterator.next().getValue();
+			iterator.remove();
+			this.discard(eldest);
+		}
+	}
+	
+	/**
+	 * Account for an entry that has left the map. Its resource is disposed
+	 * once the entry is no longer referenced.
+	 * 
+	 * @param entry
+	 *            the entry, may be <code>null</code>
+	 */
+	private void discard(HttpCacheEntry entry) {
+		if(entry == null) {
+			return;
+		}
+		
+		this.size -= sizeOf(entry);
+	}
+	
+	/**
+	 * Start tracking the given entry so that its resource is disposed once
+	 * the entry is no longer referenced.
+	 * 
+	 * @param entry
+	 *            the {@link HttpCacheEntry} to track
+	 */
+	private void track(HttpCacheEntry entry) {
+		Resource resource = entry.getResource();
+		if(resource != null) {
+			this.references.add(new ResourceReference(entry, this.morgue));
+		}
+	}
+	
+	/**
+	 * Dispose the resources of all tracked entries that are no longer
+	 * referenced.
+	 * 
+	 */
+	private void disposeUnreferenced() {
+		ResourceReference reference;
+		while((reference = (ResourceReference) this.morgue.poll()) != null) {
+			this.references.remove(reference);
+			reference.resource.dispose();
+		}
+	}
+	
+	/**
+	 * Compute the size of the given entry.
+	 * 
+	 * @param entry
+	 *            the {@link HttpCacheEntry}
+	 * 
+	 * @return the size in bytes
+	 */
+	static long sizeOf(HttpCacheEntry entry) {
+		long size = ENTRY_OVERHEAD;
+		
+		Resource resource = entry.getResource();
+		if(resource != null) {
+			size += resource.length();
+		}
+		
+		for(Header header : entry.getAllHeaders()) {
+			size += header.getName().length() + header.getValue().length();
+		}
+		
+		return size;
+	}
+	
+	/**
+	 * Phantom reference to an entry that keeps hold of its resource, to be
+	 * disposed once the entry is gone
+	 * 
+	 * @author sangupta
+	 *
+	 */
+	private static final class ResourceReference extends PhantomReference<HttpCacheEntry> {
+		
+		final Resource resource;
+		
+		ResourceReference(HttpCacheEntry entry, ReferenceQueue<HttpCacheEntry> queue) {
+			super(entry, queue);
+			this.resource = entry.getResource();
+		}
+		
+	}
+	
+}
@@ -0,0 +1,157 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.config.Registry;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * A {@link PoolingHttpClientConnectionManager} that measures how long the
+ * thread executing a request waits to lease a connection, and how long it
+ * takes to open one, TLS handshake included - failed attempts to connect are
+ * not timed. The client calls the connection manager on the thread executing
+ * the request, so the measurements are collected in a thread-local
+ * {@link Timings} started by the {@link HttpExecutor} around each execution;
+ * nothing is measured otherwise.
+ * 
+ * @author sangupta
+ * 
+ * @since 2.0.1
+ */
+class MeteredConnectionManager extends PoolingHttpClientConnectionManager {
+	
+	/**
+	 * The timings of the execution running on the current thread, if measured
+	 */
+	private static final ThreadLocal<Timings> TIMINGS = new ThreadLocal<>();
+	
+	MeteredConnectionManager(Registry<ConnectionSocketFactory> socketFactoryRegistry, long timeToLive, TimeUnit timeUnit) {
+		super(socketFactoryRegistry, null, null, null, timeToLive, timeUnit);
+	}
+	
+	/**
+	 * Start measuring the connection timings of the execution on the current
+	 * thread.
+	 * 
+	 * @return the {@link Timings} that will be filled in
+	 */
+	static Timings startTimings() {
+		Timings timings = new Timings();
+		TIMINGS.set(timings);
+		return timings;
+	}
+	
+	/**
+	 * Stop measuring the connection timings on the current thread.
+	 * 
+	 */
+	static void stopTimings() {
+		TIMINGS.remove();
+	}
+	
+	@Override
+	public ConnectionRequest requestConnection(HttpRoute route, Object state) {
+		final ConnectionRequest request = super.requestConnection(route, state);
+		final Timings timings = TIMINGS.get();
+		if(timings == null) {
+			return request;
+		}
+		
+		return new ConnectionRequest() {
+			
+			@Override
+			public HttpClientConnection get(long timeout, TimeUnit timeUnit) throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
+				long start = System.nanoTime();
+				try {
+					return request.get(timeout, timeUnit);
+				} finally {
+					timings.leaseNanos += System.nanoTime() - start;
+					timings.leased = true;
+				}
+			}
+			
+			@Override
+			public boolean cancel() {
+				return request.cancel();
+			}
+			
+		};
+	}
+	
+	@Override
+	public void connect(HttpClientConnection connection, HttpRoute route, int connectTimeout, HttpContext context) throws IOException {
+		Timings timings = TIMINGS.get();
+		if(timings == null) {
+			super.connect(connection, route, connectTimeout, context);
+			return;
+		}
+		
+		long start = System.nanoTime();
+		super.connect(connection, route, connectTimeout, context);
+		timings.connectNanos += System.nanoTime() - start;
+		timings.connected = true;
+	}
+	
+	@Override
+	public void upgrade(HttpClientConnection connection, HttpRoute route, HttpContext context) throws IOException {
+		Timings timings = TIMINGS.get();
+		if(timings == null) {
+			super.upgrade(connection, route, context);
+			return;
+		}
+		
+		// the TLS handshake of a tunnelled connection
+		long start = System.nanoTime();
+		super.upgrade(connection, route, context);
+		timings.connectNanos += System.nanoTime() - start;
+		timings.connected = true;
+	}
+	
+	/**
+	 * The connection timings of a single execution
+	 * 
+	 * @author sangupta
+	 *
+	 */
+	static class Timings {
+		
+		boolean leased;
+		
+		long leaseNanos;
+		
+		boolean connected;
+		
+		long connectNanos;
+		
+	}
+	
+}
@@ -0,0 +1,174 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+
+/**
+ * An {@link HttpEntity} wrapper that counts the bytes of content read from,
+ * or written out of, the wrapped entity. The count is reported once - when a
+ * content stream is closed or reaches its end, or when the entity has been
+ * written out.
+ * 
+ * @author sangupta
+ * 
+ * @since 2.0.1
+ */
+class MeteredHttpEntity extends HttpEntityWrapper {
+	
+	/**
+	 * The bytes counted so far
+	 */
+	private final AtomicLong bytes = new AtomicLong();
+	
+	/**
+	 * Whether the count has been reported
+	 */
+	private final AtomicBoolean reported = new AtomicBoolean();
+	
+	/**
+	 * Where the count is reported to
+	 */
+	private final LongConsumer listener;
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param entity
+	 *            the {@link HttpEntity} to wrap
+	 * 
+	 * @param listener
+	 *            receives the number of bytes once the content is consumed
+	 */
+	MeteredHttpEntity(HttpEntity entity, LongConsumer listener) {
+		super(entity);
+		this.listener = listener;
+	}
+	
+	/**
+	 * Return the entity that is wrapped.
+	 * 
+	 * @return the wrapped {@link HttpEntity}
+	 */
+	HttpEntity getWrappedEntity() {
+		return this.wrappedEntity;
+	}
+	
+	@Override
+	public InputStream getContent() throws IOException {
+		InputStream stream = super.getContent();
+		if(stream == null) {
+			return null;
+		}
+		
+		return new FilterInputStream(stream) {
+			
+			@Override
+			public int read() throws IOException {
+				int read = super.read();
+				if(read < 0) {
+					report();
+				} else {
+					bytes.incrementAndGet();
+				}
+				
+				return read;
+			}
+			
+			@Override
+			public int read(byte[] buffer, int offset, int length) throws IOException {
+				int read = super.read(buffer, offset, length);
+				if(read < 0) {
+					report();
+				} else {
+					bytes.addAndGet(read);
+				}
+				
+				return read;
+			}
+			
+			@Override
+			public long skip(long count) throws IOException {
+				long skipped = super.skip(count);
+				bytes.addAndGet(skipped);
+				return skipped;
+			}
+			
+			@Override
+			public void close() throws IOException {
+				try {
+					super.close();
+				} finally {
+					report();
+				}
+			}
+			
+		};
+	}
+	
+	@Override
+	public void writeTo(OutputStream stream) throws IOException {
+		super.writeTo(new FilterOutputStream(stream) {
+			
+			@Override
+			public void write(int value) throws IOException {
+				this.out.write(value);
+				bytes.incrementAndGet();
+			}
+			
+			@Override
+			public void write(byte[] buffer, int offset, int length) throws IOException {
+				this.out.write(buffer, offset, length);
+				bytes.addAndGet(length);
+			}
+			
+			@Override
+			public void close() {
+				// the caller owns the stream
+			}
+			
+		});
+		
+		this.report();
+	}
+	
+	/**
+	 * Report the bytes counted, if not reported yet.
+	 * 
+	 */
+	private void report() {
+		if(this.reported.compareAndSet(false, true)) {
+			this.listener.accept(this.bytes.get());
+		}
+	}
+	
+}
@@ -0,0 +1,232 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import org.apache.http.client.HttpResponseException;
+
+/**
+ * A {@link WebResponse} whose body lives in an array borrowed from a
+ * {@link ByteArrayPool}. The array is usually larger than the body: use
+ * {@link #getBuffer()} along with {@link #getLength()} to access the body
+ * without a copy. The methods inherited from {@link WebResponse} that return
+ * a <code>byte[]</code> return an exact-length copy.
+ * 
+ * The response must be released once done with, returning the array to the
+ * pool. It cannot be used afterwards.
+ * 
+ * @author sangupta
+ * 
+ * @since 2.0.1
+ */
+public class PooledWebResponse extends WebResponse implements Closeable {
+	
+	/**
+	 * Generated using Eclipse
+	 */
+	private static final long serialVersionUID = -1830946407426839131L;
+	
+	/**
+	 * The pool the buffer is borrowed from
+	 */
+	private final transient ByteArrayPool pool;
+	
+	/**
+	 * The borrowed buffer, <code>null</code> once released
+	 */
+	private volatile byte[] buffer;
+	
+	/**
+	 * Flag that signifies if the buffer has been returned to the pool
+	 */
+	private volatile boolean released;
+	
+	/**
+	 * The number of body bytes in the buffer
+	 */
+	private final int length;
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param originalURI
+	 *            the original {@link URI} that was hit
+	 * 
+	 * @param buffer
+	 *            the borrowed buffer holding the body, <code>null</code> for
+	 *            no body
+	 * 
+	 * @param length
+	 *            the number of body bytes in the buffer
+	 * 
+	 * @param pool
+	 *            the {@link ByteArrayPool} the buffer is borrowed from
+	 */
+	PooledWebResponse(URI originalURI, byte[] buffer, int length, ByteArrayPool pool) {
+		super(originalURI, (byte[]) null);
+		
+		this.buffer = buffer;
+		this.length = length;
+		this.pool = pool;
+		this.size = length;
+	}
+	
+	/**
+	 * Return the buffer holding the body. Only the first {@link #getLength()}
+	 * bytes are valid.
+	 * 
+	 * @return the buffer, or <code>null</code> if there is no body
+	 * 
+	 * @throws IllegalStateException
+	 *             if the response has been released
+	 */
+	public byte[] getBuffer() {
+		this.assertNotReleased();
+		return this.buffer;
+	}
+	
+	/**
+	 * @return the number of body bytes in the buffer
+	 */
+	public int getLength() {
+		return this.length;
+	}
+	
+	/**
+	 * Return the buffer to the pool. Calling the method again has no effect.
+	 * 
+	 */
+	public synchronized void release() {
+		if(this.released) {
+			return;
+		}
+		
+		this.released = true;
+		
+		byte[] borrowed = this.buffer;
+		this.buffer = null;
+		if(this.pool != null) {
+			this.pool.release(borrowed);
+		}
+	}
+	
+	/**
+	 * @return <code>true</code> if the response has been released
+	 */
+	public boolean isReleased() {
+		return this.released;
+	}
+	
+	/**
+	 * Same as {@link #release()}
+	 */
+	@Override
+	public void close() {
+		this.release();
+	}
+	
+	/**
+	 * Check that the buffer has not been handed back to the pool.
+	 * 
+	 */
+	private void assertNotReleased() {
+		if(this.released) {
+			throw new IllegalStateException("Response has already been released");
+		}
+	}
+	
+	@Override
+	public String asString(Charset charset) {
+		byte[] body = this.getBuffer();
+		if(body == null) {
+			return null;
+		}
+		
+		try {
+			if (this.charSet != null) {
+				return new String(body, 0, this.length, this.charSet.name());
+			}
+			
+			return new String(body, 0, this.length, charset);
+		} catch (UnsupportedEncodingException ex) {
+			// eat up
+		}
+		
+		return new String(body, 0, this.length);
+	}
+	
+	@Override
+	public InputStream asStream() {
+		byte[] body = this.getBuffer();
+		if(body == null) {
+			return null;
+		}
+		
+		return new ByteArrayInputStream(body, 0, this.length);
+	}
+	
+	@Override
+	public byte[] asBytes() {
+		return this.asClonedBytes();
+	}
+	
+	@Override
+	public byte[] asClonedBytes() {
+		byte[] body = this.getBuffer();
+		if(body == null) {
+			return null;
+		}
+		
+		return Arrays.copyOf(body, this.length);
+	}
+	
+	@Override
+	public byte[] getBytes() {
+		return this.asClonedBytes();
+	}
+	
+	@Override
+	public void writeToFile(File file) throws IOException {
+		if (this.getResponseCode() >= 300) {
+			throw new HttpResponseException(this.getResponseCode(), this.getMessage());
+		}
+		
+		byte[] body = this.getBuffer();
+		try(OutputStream stream = new FileOutputStream(file)) {
+			if(body != null) {
+				stream.write(body, 0, this.length);
+			}
+		}
+	}
+	
+}
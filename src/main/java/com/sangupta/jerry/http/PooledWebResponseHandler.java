@@ -0,0 +1,131 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+
+import org.apache.http.HttpEntity;
+
+/**
+ * {@link HttpResponseHandler} that reads response bodies into arrays borrowed
+ * from a {@link ByteArrayPool} instead of allocating a fresh array per
+ * response. The buffer is presized from the <code>Content-Length</code> when
+ * the server sends it, so a body is usually read without any copy.
+ * 
+ * The handler returns {@link PooledWebResponse} instances which must be
+ * released once done with.
+ * 
+ * @author sangupta
+ * 
+ * @since 2.0.1
+ */
+public class PooledWebResponseHandler extends WebResponseHandler {
+	
+	/**
+	 * Initial buffer size when the length of the body is not known
+	 */
+	private static final int DEFAULT_BUFFER_SIZE = 8 * 1024;
+	
+	/**
+	 * The pool to borrow buffers from
+	 */
+	private final ByteArrayPool pool;
+	
+	/**
+	 * Create a handler over the {@link ByteArrayPool#DEFAULT} pool.
+	 * 
+	 */
+	public PooledWebResponseHandler() {
+		this(ByteArrayPool.DEFAULT);
+	}
+	
+	/**
+	 * Create a handler over the given pool.
+	 * 
+	 * @param pool
+	 *            the {@link ByteArrayPool} to borrow buffers from
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the pool is <code>null</code>
+	 */
+	public PooledWebResponseHandler(ByteArrayPool pool) {
+		if(pool == null) {
+			throw new IllegalArgumentException("ByteArrayPool cannot be null");
+		}
+		
+		this.pool = pool;
+	}
+	
+	@Override
+	protected WebResponse createWebResponse(URI originalURI, HttpEntity entity) throws IOException {
+		if(entity == null) {
+			return new PooledWebResponse(originalURI, null, 0, this.pool);
+		}
+		
+		long contentLength = entity.getContentLength();
+		if(contentLength > Integer.MAX_VALUE - 8) {
+			throw new IOException("Response body too large to be buffered: " + contentLength);
+		}
+		
+		// one more than the declared length lets the final read see the end of stream
+		int initial = contentLength >= 0 ? (int) contentLength + 1 : DEFAULT_BUFFER_SIZE;
+		byte[] buffer = this.pool.acquire(initial);
+		int length = 0;
+		
+		InputStream stream = entity.getContent();
+		if(stream == null) {
+			return new PooledWebResponse(originalURI, buffer, 0, this.pool);
+		}
+		
+		try {
+			while(true) {
+				if(length == buffer.length) {
+					if(length >= Integer.MAX_VALUE - 8) {
+						throw new IOException("Response body too large to be buffered");
+					}
+					
+					byte[] bigger = this.pool.acquire((int) Math.min(Integer.MAX_VALUE - 8L, 2L * length));
+					System.arraycopy(buffer, 0, bigger, 0, length);
+					this.pool.release(buffer);
+					buffer = bigger;
+				}
+				
+				int read = stream.read(buffer, length, buffer.length - length);
+				if(read < 0) {
+					break;
+				}
+				
+				length += read;
+			}
+		} catch(IOException | RuntimeException e) {
+			this.pool.release(buffer);
+			throw e;
+		} finally {
+			stream.close();
+		}
+		
+		return new PooledWebResponse(originalURI, buffer, length, this.pool);
+	}
+	
+}
@@ -0,0 +1,145 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http;
+
+/**
+ * Point-in-time view of the rate limit applied to a host, or to a wildcard of
+ * hosts, by a {@link HttpRateLimitingClient}.
+ * 
+ * @author sangupta
+ * 
+ * @since 2.0.1
+ */
+public final class RateLimitSnapshot {
+	
+	/**
+	 * The kinds of rate limit
+	 * 
+	 * @author sangupta
+	 *
+	 */
+	public static enum Type {
+		
+		/**
+		 * Allows up to the limit in every wall-clock window of the period
+		 */
+		FIXED_WINDOW,
+		
+		/**
+		 * Hands out permits evenly over the period, allowing bursts
+		 */
+		TOKEN_BUCKET;
+		
+	}
+	
+	private final String host;
+	
+	private final Type type;
+	
+	private final int limit;
+	
+	private final long periodMillis;
+	
+	private final int burst;
+	
+	private final int availablePermits;
+	
+	private final HttpRateLimitMode mode;
+	
+	private final long maxWaitMillis;
+	
+	RateLimitSnapshot(String host, Type type, int limit, long periodMillis, int burst, int availablePermits, HttpRateLimitMode mode, long maxWaitMillis) {
+		this.host = host;
+		this.type = type;
+		this.limit = limit;
+		this.periodMillis = periodMillis;
+		this.burst = burst;
+		this.availablePermits = availablePermits;
+		this.mode = mode;
+		this.maxWaitMillis = maxWaitMillis;
+	}
+	
+	/**
+	 * @return the host name, or the wildcard like <code>*.example.com</code>
+	 */
+	public String getHost() {
+		return this.host;
+	}
+	
+	/**
+	 * @return the {@link Type} of the rate limit
+	 */
+	public Type getType() {
+		return this.type;
+	}
+	
+	/**
+	 * @return the number of requests allowed per period
+	 */
+	public int getLimit() {
+		return this.limit;
+	}
+	
+	/**
+	 * @return the period of the limit, in milliseconds
+	 */
+	public long getPeriodMillis() {
+		return this.periodMillis;
+	}
+	
+	/**
+	 * @return the number of requests that may go at once
+	 */
+	public int getBurst() {
+		return this.burst;
+	}
+	
+	/**
+	 * @return the number of requests that could go right now without waiting
+	 *         or being rejected - for a wildcard limit, across all matching
+	 *         hosts
+	 */
+	public int getAvailablePermits() {
+		return this.availablePermits;
+	}
+	
+	/**
+	 * @return the {@link HttpRateLimitMode} applied when no permit is
+	 *         available
+	 */
+	public HttpRateLimitMode getMode() {
+		return this.mode;
+	}
+	
+	/**
+	 * @return the maximum time waited for a permit, in milliseconds
+	 */
+	public long getMaxWaitMillis() {
+		return this.maxWaitMillis;
+	}
+	
+	@Override
+	public String toString() {
+		return "RateLimitSnapshot [host=" + this.host + ", type=" + this.type + ", limit=" + this.limit + ", periodMillis=" + this.periodMillis + ", burst=" + this.burst + ", availablePermits=" + this.availablePermits + ", mode=" + this.mode + "]";
+	}
+	
+}
@@ -0,0 +1,209 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.client.methods.HttpRequestBase;
+
+/**
+ * The running deadline of one execution of a {@link WebRequest}. A shared
+ * timer aborts every request tracked by the deadline once it expires, which
+ * interrupts whatever phase the request is in - waiting for a pooled
+ * connection, connecting, the TLS handshake, sending, or reading the body.
+ * 
+ * @author sangupta
+ *
+ * @since 2.0.1
+ */
+final class RequestDeadline implements Runnable {
+	
+	/**
+	 * Shared daemon timer that fires the deadlines of all requests
+	 */
+	private static final ScheduledExecutorService TIMER = newTimer();
+	
+	/**
+	 * The deadline as given, in millis
+	 */
+	private final long timeoutMillis;
+	
+	/**
+	 * The {@link System#nanoTime()} at which the deadline expires
+	 */
+	private final long expiresAtNanos;
+	
+	/**
+	 * The actions run when the deadline expires, like aborting requests
+	 */
+	private final List<Runnable> actions = new CopyOnWriteArrayList<>();
+	
+	/**
+	 * The scheduled expiry
+	 */
+	private final ScheduledFuture<?> task;
+	
+	/**
+	 * Whether the deadline has expired
+	 */
+	private volatile boolean expired;
+	
+	private RequestDeadline(long timeoutMillis) {
+		this.timeoutMillis = timeoutMillis;
+		this.expiresAtNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		this.task = TIMER.schedule(this, timeoutMillis, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Create the timer, dropping cancelled deadlines right away so that a
+	 * long deadline of a completed execution does not linger on the queue.
+	 * 
+	 * @return the {@link ScheduledExecutorService} to fire deadlines with
+	 */
+	private static ScheduledExecutorService newTimer() {
+		ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+			
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "jerry-http-deadlines");
+				thread.setDaemon(true);
+				return thread;
+			}
+			
+		});
+		
+		timer.setRemoveOnCancelPolicy(true);
+		return timer;
+	}
+	
+	/**
+	 * Start the deadline of the given request, if it has one. The caller
+	 * decides what is aborted on expiry.
+	 * 
+	 * @param webRequest
+	 *            the {@link WebRequest} about to be executed
+	 * 
+	 * @return the running {@link RequestDeadline}, or <code>null</code> if the
+	 *         request has no deadline
+	 */
+	static RequestDeadline start(WebRequest webRequest) {
+		long timeoutMillis = webRequest.getDeadline();
+		if(timeoutMillis <= 0) {
+			return null;
+		}
+		
+		return new RequestDeadline(timeoutMillis);
+	}
+	
+	/**
+	 * Abort the given request when the deadline expires, or right away if it
+	 * already has.
+	 * 
+	 * @param httpRequest
+	 *            the {@link HttpRequestBase} to track
+	 */
+	void track(HttpRequestBase httpRequest) {
+		this.onExpiry(httpRequest::abort);
+	}
+	
+	/**
+	 * Run the given action when the deadline expires, or right away if it
+	 * already has.
+	 * 
+	 * @param action
+	 *            the action to run
+	 */
+	void onExpiry(Runnable action) {
+		this.actions.add(action);
+		if(this.expired) {
+			action.run();
+		}
+	}
+	
+	@Override
+	public void run() {
+		this.expired = true;
+		for(Runnable action : this.actions) {
+			action.run();
+		}
+	}
+	
+	/**
+	 * Stop the timer, as the execution has completed.
+	 * 
+	 */
+	void cancel() {
+		this.task.cancel(false);
+	}
+	
+	/**
+	 * @return <code>true</code> if the deadline has expired
+	 */
+	boolean isExpired() {
+		return this.expired || this.getRemainingMillis() <= 0;
+	}
+	
+	/**
+	 * @return the millis till the deadline expires, never negative
+	 */
+	long getRemainingMillis() {
+		return Math.max(0, TimeUnit.NANOSECONDS.toMillis(this.expiresAtNanos - System.nanoTime()));
+	}
+	
+	/**
+	 * Return the exception to surface for a failure of the execution: an
+	 * {@link HttpDeadlineExceededException} if the deadline has expired, else
+	 * the failure as-is.
+	 * 
+	 * @param exception
+	 *            the failure encountered
+	 * 
+	 * @return the {@link IOException} to throw
+	 */
+	IOException translate(IOException exception) {
+		if(!this.isExpired() || exception instanceof HttpDeadlineExceededException) {
+			return exception;
+		}
+		
+		return this.exceeded(exception);
+	}
+	
+	/**
+	 * Create the exception that signals the expiry of the deadline.
+	 * 
+	 * @param cause
+	 *            the failure caused by the expiry, may be <code>null</code>
+	 * 
+	 * @return the {@link HttpDeadlineExceededException}
+	 */
+	HttpDeadlineExceededException exceeded(Throwable cause) {
+		return new HttpDeadlineExceededException("Request did not complete within deadline of " + this.timeoutMillis + " millis", cause);
+	}
+	
+}
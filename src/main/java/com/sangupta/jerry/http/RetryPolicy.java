@@ -0,0 +1,466 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.UnknownHostException;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.net.ssl.SSLException;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.client.ClientProtocolException;
+import org.apache.http.impl.execchain.RequestAbortedException;
+
+/**
+ * Policy that decides if and when a failed {@link WebRequest} is sent again by
+ * an {@link HttpExecutor}. A request is retried when it fails with a transient
+ * {@link IOException}, is rejected by client-side rate-limiting, or receives
+ * one of the configured status codes - as long as attempts remain and the
+ * retry budget allows.
+ * 
+ * Between attempts the executor waits for an exponentially growing backoff
+ * with full jitter, i.e. a random delay between zero and
+ * <code>min(maxBackoff, initialBackoff * 2 ^ (attempt - 1))</code>, or for
+ * longer if the server asked so via <code>Retry-After</code>.
+ * 
+ * Only idempotent requests are retried unless opted in, and never requests
+ * with a body that cannot be sent twice. The retry budget, when set, works
+ * as a token bucket shared by all requests using the policy: every failure
+ * takes a token, every success gives back a fraction of one, and retries stop
+ * while less than half the tokens remain - so that a struggling server is not
+ * buried under a storm of retries.
+ * 
+ * <pre>
+ * RetryPolicy policy = new RetryPolicy().maxAttempts(4).backoff(50, 2000, TimeUnit.MILLISECONDS).budget(10, 0.1);
+ * HttpExecutor.DEFAULT.setRetryPolicy(policy);
+ * </pre>
+ * 
+ * @author sangupta
+ * 
+ * @since 2.0.1
+ */
+public class RetryPolicy {
+	
+	/**
+	 * Default maximum number of attempts, including the first
+	 */
+	public static final int DEFAULT_MAX_ATTEMPTS = 3;
+	
+	/**
+	 * Default backoff before the first retry
+	 */
+	public static final long DEFAULT_INITIAL_BACKOFF_MILLIS = 100;
+	
+	/**
+	 * Default maximum backoff between two attempts
+	 */
+	public static final long DEFAULT_MAX_BACKOFF_MILLIS = 10000;
+	
+	/**
+	 * Scale of the fixed-point token count of the retry budget
+	 */
+	private static final long TOKEN_SCALE = 1000;
+	
+	/**
+	 * The idempotent methods, as per RFC 7231
+	 */
+	private static final Set<WebRequestMethod> IDEMPOTENT_METHODS = EnumSet.of(WebRequestMethod.GET, WebRequestMethod.HEAD, WebRequestMethod.OPTIONS, WebRequestMethod.TRACE, WebRequestMethod.PUT, WebRequestMethod.DELETE);
+	
+	/**
+	 * Maximum number of attempts, including the first
+	 */
+	private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+	
+	/**
+	 * Backoff before the first retry
+	 */
+	private long initialBackoffMillis = DEFAULT_INITIAL_BACKOFF_MILLIS;
+	
+	/**
+	 * Maximum backoff between two attempts
+	 */
+	private long maxBackoffMillis = DEFAULT_MAX_BACKOFF_MILLIS;
+	
+	/**
+	 * The status codes that are retried
+	 */
+	private final Set<Integer> retryStatusCodes = new HashSet<>();
+	
+	/**
+	 * Whether non-idempotent requests are retried as well
+	 */
+	private boolean retryNonIdempotent = false;
+	
+	/**
+	 * Whether requests rejected by client-side rate-limiting are retried
+	 */
+	private boolean retryOnRateLimit = true;
+	
+	/**
+	 * The maximum number of tokens of the retry budget, <code>0</code> when
+	 * there is no budget
+	 */
+	private long maxTokens = 0;
+	
+	/**
+	 * The tokens returned to the budget on every success
+	 */
+	private long tokenRatio = 0;
+	
+	/**
+	 * The current tokens of the retry budget
+	 */
+	private final AtomicLong tokens = new AtomicLong();
+	
+	/**
+	 * Number of retries made under this policy
+	 */
+	private final LongAdder retryCount = new LongAdder();
+	
+	/**
+	 * Create a policy with the default attempts and backoff that retries
+	 * <code>429</code>, <code>502</code>, <code>503</code> and
+	 * <code>504</code> responses, without a retry budget.
+	 * 
+	 */
+	public RetryPolicy() {
+		this.retryStatusCodes.add(429);
+		this.retryStatusCodes.add(502);
+		this.retryStatusCodes.add(503);
+		this.retryStatusCodes.add(504);
+	}
+	
+	/**
+	 * Set the maximum number of attempts, including the first one.
+	 * 
+	 * @param maxAttempts
+	 *            the maximum number of attempts
+	 * 
+	 * @return this very {@link RetryPolicy}
+	 */
+	public RetryPolicy maxAttempts(int maxAttempts) {
+		if(maxAttempts < 1) {
+			throw new IllegalArgumentException("Maximum attempts cannot be less than 1");
+		}
+		
+		this.maxAttempts = maxAttempts;
+		return this;
+	}
+	
+	/**
+	 * Set the exponential backoff between attempts.
+	 * 
+	 * @param initialBackoff
+	 *            the upper bound of the backoff before the first retry
+	 * 
+	 * @param maxBackoff
+	 *            the upper bound of any backoff
+	 * 
+	 * @param timeUnit
+	 *            the {@link TimeUnit} of the values
+	 * 
+	 * @return this very {@link RetryPolicy}
+	 */
+	public RetryPolicy backoff(long initialBackoff, long maxBackoff, TimeUnit timeUnit) {
+		if(timeUnit == null) {
+			throw new IllegalArgumentException("TimeUnit cannot be null");
+		}
+		
+		if(initialBackoff < 0 || maxBackoff < initialBackoff) {
+			throw new IllegalArgumentException("Invalid backoff bounds");
+		}
+		
+		this.initialBackoffMillis = timeUnit.toMillis(initialBackoff);
+		this.maxBackoffMillis = timeUnit.toMillis(maxBackoff);
+		return this;
+	}
+	
+	/**
+	 * Set the response status codes that are retried, replacing the defaults.
+	 * 
+	 * @param statusCodes
+	 *            the status codes to retry
+	 * 
+	 * @return this very {@link RetryPolicy}
+	 */
+	public RetryPolicy retryOnStatus(int... statusCodes) {
+		this.retryStatusCodes.clear();
+		if(statusCodes != null) {
+			for(int statusCode : statusCodes) {
+				this.retryStatusCodes.add(statusCode);
+			}
+		}
+		
+		return this;
+	}
+	
+	/**
+	 * Set whether non-idempotent requests, like <code>POST</code> and
+	 * <code>PATCH</code>, are retried as well. Only opt in when the server is
+	 * known to de-duplicate such requests.
+	 * 
+	 * @param retryNonIdempotent
+	 *            <code>true</code> to retry all requests
+	 * 
+	 * @return this very {@link RetryPolicy}
+	 */
+	public RetryPolicy retryNonIdempotent(boolean retryNonIdempotent) {
+		this.retryNonIdempotent = retryNonIdempotent;
+		return this;
+	}
+	
+	/**
+	 * Set whether requests rejected by client-side rate-limiting with an
+	 * {@link HttpRateLimitException} are retried.
+	 * 
+	 * @param retryOnRateLimit
+	 *            <code>true</code> to retry such requests
+	 * 
+	 * @return this very {@link RetryPolicy}
+	 */
+	public RetryPolicy retryOnRateLimit(boolean retryOnRateLimit) {
+		this.retryOnRateLimit = retryOnRateLimit;
+		return this;
+	}
+	
+	/**
+	 * Limit retries with a budget shared by all requests using this policy.
+	 * 
+	 * @param maxTokens
+	 *            the size of the budget; retries stop when less than half of
+	 *            it remains
+	 * 
+	 * @param tokenRatio
+	 *            the fraction of a token returned on every success
+	 * 
+	 * @return this very {@link RetryPolicy}
+	 */
+	public RetryPolicy budget(int maxTokens, double tokenRatio) {
+		if(maxTokens < 1) {
+			throw new IllegalArgumentException("Retry budget cannot be less than 1 token");
+		}
+		
+		if(tokenRatio <= 0 || tokenRatio > 1) {
+			throw new IllegalArgumentException("Token ratio must be between 0 and 1");
+		}
+		
+		this.maxTokens = maxTokens * TOKEN_SCALE;
+		this.tokenRatio = (long) (tokenRatio * TOKEN_SCALE);
+		this.tokens.set(this.maxTokens);
+		return this;
+	}
+	
+	/**
+	 * @return the number of retries made under this policy
+	 */
+	public long getRetryCount() {
+		return this.retryCount.sum();
+	}
+	
+	/**
+	 * Check if the given request may be retried at all.
+	 * 
+	 * @param request
+	 *            the {@link WebRequest} to check
+	 * 
+	 * @return <code>true</code> if the request may be sent more than once
+	 */
+	boolean isRetryable(WebRequest request) {
+		if(this.maxAttempts < 2) {
+			return false;
+		}
+		
+		if(!this.retryNonIdempotent && !IDEMPOTENT_METHODS.contains(request.getWebRequestMethod())) {
+			return false;
+		}
+		
+		if(request.getHttpRequest() instanceof HttpEntityEnclosingRequest) {
+			HttpEntity entity = ((HttpEntityEnclosingRequest) request.getHttpRequest()).getEntity();
+			if(entity != null && !entity.isRepeatable()) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Decide on a retry after the given attempt failed with an exception.
+	 * 
+	 * @param attempt
+	 *            the attempt that failed, starting at <code>1</code>
+	 * 
+	 * @param exception
+	 *            the exception raised
+	 * 
+	 * @param retryAfterMillis
+	 *            the minimum wait known for the host, or <code>0</code>
+	 * 
+	 * @return the millis to wait before the next attempt, or <code>-1</code>
+	 *         if the request must not be retried
+	 */
+	long getRetryDelay(int attempt, Exception exception, long retryAfterMillis) {
+		if(!this.isRetryable(exception)) {
+			return -1;
+		}
+		
+		return this.onRetryableFailure(attempt, retryAfterMillis);
+	}
+	
+	/**
+	 * Decide on a retry after the given attempt received a response.
+	 * 
+	 * @param attempt
+	 *            the attempt, starting at <code>1</code>
+	 * 
+	 * @param statusCode
+	 *            the status code of the response
+	 * 
+	 * @param retryAfterMillis
+	 *            the wait asked for by the server, or <code>0</code>
+	 * 
+	 * @return the millis to wait before the next attempt, or <code>-1</code>
+	 *         if the response is final
+	 */
+	long getRetryDelay(int attempt, int statusCode, long retryAfterMillis) {
+		if(!this.retryStatusCodes.contains(statusCode)) {
+			this.onSuccess();
+			return -1;
+		}
+		
+		return this.onRetryableFailure(attempt, retryAfterMillis);
+	}
+	
+	/**
+	 * Check if the given exception is worth a retry. Unknown hosts, TLS
+	 * failures, protocol errors, interrupts, aborts and exceeded deadlines
+	 * are not transient.
+	 * 
+	 * @param exception
+	 *            the exception raised
+	 * 
+	 * @return <code>true</code> if worth a retry
+	 */
+	boolean isRetryable(Exception exception) {
+		if(exception instanceof HttpRateLimitException) {
+			return this.retryOnRateLimit;
+		}
+		
+		if(!(exception instanceof IOException)) {
+			return false;
+		}
+		
+		if(exception instanceof UnknownHostException || exception instanceof SSLException || exception instanceof ClientProtocolException) {
+			return false;
+		}
+		
+		if(exception instanceof RequestAbortedException || exception instanceof HttpDeadlineExceededException) {
+			return false;
+		}
+		
+		// timeouts extend it, a plain one is an interrupt
+		return exception.getClass() != InterruptedIOException.class;
+	}
+	
+	/**
+	 * Account for a failure that is worth a retry and compute the backoff.
+	 * 
+	 * @param attempt
+	 *            the attempt that failed
+	 * 
+	 * @param retryAfterMillis
+	 *            the minimum wait, or <code>0</code>
+	 * 
+	 * @return the millis to wait, or <code>-1</code> to not retry
+	 */
+	private long onRetryableFailure(int attempt, long retryAfterMillis) {
+		boolean withinBudget = this.onFailure();
+		if(attempt >= this.maxAttempts || !withinBudget) {
+			return -1;
+		}
+		
+		// waiting longer than any backoff is better left to the caller
+		if(retryAfterMillis > this.maxBackoffMillis) {
+			return -1;
+		}
+		
+		this.retryCount.increment();
+		return Math.max(retryAfterMillis, this.getBackoff(attempt));
+	}
+	
+	/**
+	 * Compute the jittered exponential backoff after the given attempt.
+	 * 
+	 * @param attempt
+	 *            the attempt that failed, starting at <code>1</code>
+	 * 
+	 * @return the backoff in millis
+	 */
+	long getBackoff(int attempt) {
+		long ceiling = this.initialBackoffMillis << Math.min(attempt - 1, 30);
+		if(ceiling < 0 || ceiling > this.maxBackoffMillis) {
+			ceiling = this.maxBackoffMillis;
+		}
+		
+		if(ceiling <= 0) {
+			return 0;
+		}
+		
+		return ThreadLocalRandom.current().nextLong(ceiling + 1);
+	}
+	
+	/**
+	 * Return a fraction of a token to the budget.
+	 * 
+	 */
+	private void onSuccess() {
+		if(this.maxTokens == 0) {
+			return;
+		}
+		
+		this.tokens.accumulateAndGet(this.tokenRatio, (current, ratio) -> Math.min(this.maxTokens, current + ratio));
+	}
+	
+	/**
+	 * Take a token from the budget.
+	 * 
+	 * @return <code>true</code> if retries are still within budget
+	 */
+	private boolean onFailure() {
+		if(this.maxTokens == 0) {
+			return true;
+		}
+		
+		long remaining = this.tokens.accumulateAndGet(TOKEN_SCALE, (current, token) -> Math.max(0, current - token));
+		return remaining > this.maxTokens / 2;
+	}
+	
+}
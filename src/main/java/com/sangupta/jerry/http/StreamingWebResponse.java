@@ -0,0 +1,359 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.RedirectLocations;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
+
+import com.sangupta.jerry.util.AssertUtils;
+
+/**
+ * A response whose body is not buffered in memory but read straight off the
+ * connection. Status and headers are available right away; the body is
+ * exposed as a live {@link InputStream} or {@link ReadableByteChannel}.
+ * 
+ * The underlying connection stays leased from the pool till the response is
+ * closed, and thus instances must always be closed, preferably via
+ * try-with-resources. {@link #close()} reads off any remaining content so
+ * that the connection can be reused, while {@link #abort()} drops the
+ * connection without reading further - use it when bailing out of a large
+ * body.
+ * 
+ * @author sangupta
+ * 
+ * @since 2.0.1
+ */
+public class StreamingWebResponse implements Closeable {
+	
+	/**
+	 * The original {@link URI} that was hit
+	 */
+	private final URI originalURI;
+	
+	/**
+	 * The live {@link HttpResponse}
+	 */
+	private final HttpResponse response;
+	
+	/**
+	 * The redirects followed to obtain the response, if any
+	 */
+	private final List<URI> redirectChain;
+	
+	/**
+	 * The response headers
+	 */
+	private final Map<String, String> headers = new HashMap<String, String>();
+	
+	/**
+	 * The content stream, once obtained
+	 */
+	private InputStream stream;
+	
+	/**
+	 * The deadline of the execution that runs till the response is closed,
+	 * if any
+	 */
+	private final RequestDeadline deadline;
+	
+	/**
+	 * Flag that signifies if the response has been closed
+	 */
+	private volatile boolean closed;
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param originalURI
+	 *            the original {@link URI} that was hit to get this response
+	 * 
+	 * @param response
+	 *            the {@link HttpResponse} returned by the server
+	 * 
+	 * @param localHttpContext
+	 *            the local {@link HttpContext} of the request, may be
+	 *            <code>null</code>
+	 * 
+	 * @param deadline
+	 *            the {@link RequestDeadline} to stop once the response is
+	 *            closed, may be <code>null</code>
+	 */
+	StreamingWebResponse(URI originalURI, HttpResponse response, HttpContext localHttpContext, RequestDeadline deadline) {
+		this.originalURI = originalURI;
+		this.response = response;
+		this.deadline = deadline;
+		
+		final Header[] responseHeaders = response.getAllHeaders();
+		if(AssertUtils.isNotEmpty(responseHeaders)) {
+			for(Header header : responseHeaders) {
+				this.headers.put(header.getName(), header.getValue());
+			}
+		}
+		
+		List<URI> chain = null;
+		if(localHttpContext != null) {
+			RedirectLocations locations = (RedirectLocations) localHttpContext.getAttribute(HttpClientContext.REDIRECT_LOCATIONS);
+			if(AssertUtils.isNotEmpty(locations)) {
+				chain = locations.getAll();
+			}
+		}
+		
+		this.redirectChain = chain;
+	}
+	
+	/**
+	 * Return the live content stream of the response. The same stream is
+	 * returned on every call.
+	 * 
+	 * @return the {@link InputStream} over the body, empty if there is no
+	 *         body
+	 * 
+	 * @throws IOException
+	 *             if the stream cannot be obtained
+	 * 
+	 * @throws IllegalStateException
+	 *             if the response has been closed
+	 */
+	public synchronized InputStream getStream() throws IOException {
+		if(this.closed) {
+			throw new IllegalStateException("Response has already been closed");
+		}
+		
+		if(this.stream == null) {
+			HttpEntity entity = this.response.getEntity();
+			if(entity == null) {
+				this.stream = new ByteArrayInputStream(new byte[0]);
+			} else {
+				this.stream = entity.getContent();
+			}
+		}
+		
+		return this.stream;
+	}
+	
+	/**
+	 * Return the content of the response as a channel. Closing the channel
+	 * closes the content stream.
+	 * 
+	 * @return the {@link ReadableByteChannel} over the body
+	 * 
+	 * @throws IOException
+	 *             if the stream cannot be obtained
+	 */
+	public ReadableByteChannel getChannel() throws IOException {
+		return Channels.newChannel(this.getStream());
+	}
+	
+	/**
+	 * Read off any remaining content and release the connection back to the
+	 * pool.
+	 * 
+	 */
+	@Override
+	public void close() throws IOException {
+		if(this.closed) {
+			return;
+		}
+		
+		this.closed = true;
+		try {
+			EntityUtils.consume(this.response.getEntity());
+		} finally {
+			try {
+				if(this.response instanceof CloseableHttpResponse) {
+					((CloseableHttpResponse) this.response).close();
+				}
+			} finally {
+				this.cancelDeadline();
+			}
+		}
+	}
+	
+	/**
+	 * Close the response without reading the remaining content. The
+	 * connection is discarded instead of being returned to the pool.
+	 * 
+	 */
+	public void abort() {
+		if(this.closed) {
+			return;
+		}
+		
+		this.closed = true;
+		try {
+			if(this.response instanceof CloseableHttpResponse) {
+				((CloseableHttpResponse) this.response).close();
+			} else if(this.stream != null) {
+				this.stream.close();
+			}
+		} catch(IOException e) {
+			// eat up
+		} finally {
+			this.cancelDeadline();
+		}
+	}
+	
+	/**
+	 * Stop the deadline, if any, as the response is done with.
+	 * 
+	 */
+	private void cancelDeadline() {
+		if(this.deadline != null) {
+			this.deadline.cancel();
+		}
+	}
+	
+	/**
+	 * Check if the request returned a successful response. All response codes
+	 * between HTTP 200 and HTTP 299 are considered to be successful.
+	 * 
+	 * @return <code>true</code> for success, <code>false</code> otherwise
+	 */
+	public boolean isSuccess() {
+		int code = this.getResponseCode();
+		return code >= 200 && code <= 299;
+	}
+	
+	/**
+	 * @return the response code
+	 */
+	public int getResponseCode() {
+		return this.response.getStatusLine().getStatusCode();
+	}
+	
+	/**
+	 * @return the message
+	 */
+	public String getMessage() {
+		return this.response.getStatusLine().getReasonPhrase();
+	}
+	
+	/**
+	 * Return the length of the body as declared by the server.
+	 * 
+	 * @return the length in bytes, or <code>-1</code> if not known
+	 */
+	public long getSize() {
+		HttpEntity entity = this.response.getEntity();
+		if(entity == null) {
+			return 0;
+		}
+		
+		return entity.getContentLength();
+	}
+	
+	/**
+	 * @return the content type
+	 */
+	public String getContentType() {
+		HttpEntity entity = this.response.getEntity();
+		if(entity == null || entity.getContentType() == null) {
+			return null;
+		}
+		
+		return entity.getContentType().getValue();
+	}
+	
+	/**
+	 * @return the charset, or <code>null</code> if not known
+	 */
+	public Charset getCharSet() {
+		try {
+			ContentType type = ContentType.get(this.response.getEntity());
+			if(type != null) {
+				return type.getCharset();
+			}
+		} catch(UnsupportedCharsetException e) {
+			// consider it binary
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * @return the headers
+	 */
+	public Map<String, String> getHeaders() {
+		return Collections.unmodifiableMap(this.headers);
+	}
+	
+	/**
+	 * Return the value of the first header with the given name, matched
+	 * without regard to case.
+	 * 
+	 * @param name
+	 *            the header name
+	 * 
+	 * @return the header value, or <code>null</code>
+	 */
+	public String getHeader(String name) {
+		Header header = this.response.getFirstHeader(name);
+		if(header == null) {
+			return null;
+		}
+		
+		return header.getValue();
+	}
+	
+	/**
+	 * @return the redirect chain
+	 */
+	public List<URI> getRedirectChain() {
+		return this.redirectChain;
+	}
+	
+	/**
+	 * Returns the actual URI that generated the response. In case of redirects
+	 * this is the last redirected request, that eventually led to response.
+	 * 
+	 * @return the {@link URI} used for this response
+	 */
+	public URI getURI() {
+		if(AssertUtils.isNotEmpty(this.redirectChain)) {
+			return this.redirectChain.get(this.redirectChain.size() - 1);
+		}
+		
+		return this.originalURI;
+	}
+	
+}
@@ -0,0 +1,269 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A token-bucket rate limiter implemented as a generic cell rate algorithm
+ * (GCRA). Permits are handed out evenly at <code>limit</code> per period, and
+ * up to <code>burst</code> permits may be taken at once after a quiet spell.
+ * Unlike fixed windows there is no boundary at which twice the limit can go
+ * through.
+ * 
+ * The complete state is one theoretical arrival time, updated with a single
+ * compare-and-set, so the limiter is exact and lock-free under contention.
+ * 
+ * @author sangupta
+ * 
+ * @since 2.0.1
+ */
+public class TokenBucketRateLimiter {
+	
+	/**
+	 * Shared daemon scheduler that completes the futures of delayed permits
+	 */
+	private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+		
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "jerry-http-rate-limit-permits");
+			thread.setDaemon(true);
+			return thread;
+		}
+		
+	});
+	
+	/**
+	 * Nanoseconds between two evenly spaced permits
+	 */
+	private final long emissionIntervalNanos;
+	
+	/**
+	 * How far ahead of now the theoretical arrival time may run, in
+	 * nanoseconds - this allows bursts
+	 */
+	private final long burstToleranceNanos;
+	
+	/**
+	 * The theoretical arrival time of the next permit, in {@link System#nanoTime()}
+	 */
+	private final AtomicLong theoreticalArrival;
+	
+	/**
+	 * Create a limiter that allows a burst of <code>limit</code> permits.
+	 * 
+	 * @param limit
+	 *            the number of permits per period
+	 * 
+	 * @param period
+	 *            the period
+	 * 
+	 * @param timeUnit
+	 *            the {@link TimeUnit} of the period
+	 */
+	public TokenBucketRateLimiter(int limit, long period, TimeUnit timeUnit) {
+		this(limit, period, timeUnit, limit);
+	}
+	
+	/**
+	 * Create a limiter.
+	 * 
+	 * @param limit
+	 *            the number of permits per period
+	 * 
+	 * @param period
+	 *            the period
+	 * 
+	 * @param timeUnit
+	 *            the {@link TimeUnit} of the period
+	 * 
+	 * @param burst
+	 *            the number of permits that may be taken at once
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if any value is zero/negative
+	 */
+	public TokenBucketRateLimiter(int limit, long period, TimeUnit timeUnit, int burst) {
+		if(limit <= 0) {
+			throw new IllegalArgumentException("Rate limit cannot be zero/negative");
+		}
+		
+		if(period <= 0) {
+			throw new IllegalArgumentException("Rate limit period cannot be zero/negative");
+		}
+		
+		if(timeUnit == null) {
+			throw new IllegalArgumentException("TimeUnit cannot be null");
+		}
+		
+		if(burst <= 0) {
+			throw new IllegalArgumentException("Burst cannot be zero/negative");
+		}
+		
+		this.emissionIntervalNanos = Math.max(1, timeUnit.toNanos(period) / limit);
+		this.burstToleranceNanos = this.emissionIntervalNanos * (burst - 1);
+		this.theoreticalArrival = new AtomicLong(System.nanoTime());
+	}
+	
+	/**
+	 * Reserve a permit if it can be had within the given wait.
+	 * 
+	 * @param maxWaitNanos
+	 *            the maximum time the caller is ready to wait, in nanoseconds
+	 * 
+	 * @return the nanoseconds the caller must wait before using the permit,
+	 *         <code>0</code> if it may go right away, or <code>-1</code> if no
+	 *         permit was reserved
+	 */
+	public long reserve(long maxWaitNanos) {
+		while(true) {
+			final long now = System.nanoTime();
+			final long arrival = this.theoreticalArrival.get();
+			
+			// a quiet limiter does not bank more than the burst
+			final long base = arrival - now < 0 ? now : arrival;
+			final long wait = base - this.burstToleranceNanos - now;
+			if(wait > maxWaitNanos) {
+				return -1;
+			}
+			
+			if(this.theoreticalArrival.compareAndSet(arrival, base + this.emissionIntervalNanos)) {
+				return wait > 0 ? wait : 0;
+			}
+		}
+	}
+	
+	/**
+	 * Take a permit if one is available right now.
+	 * 
+	 * @return <code>true</code> if a permit was taken, <code>false</code>
+	 *         otherwise
+	 */
+	public boolean tryAcquire() {
+		return this.reserve(0) == 0;
+	}
+	
+	/**
+	 * Take a permit, waiting for it in the calling thread if needed.
+	 * 
+	 * @param maxWait
+	 *            the maximum time to wait
+	 * 
+	 * @param timeUnit
+	 *            the {@link TimeUnit} of the wait
+	 * 
+	 * @return <code>true</code> if a permit was taken, <code>false</code> if
+	 *         it could not be had within the wait
+	 * 
+	 * @throws InterruptedException
+	 *             if the thread is interrupted while waiting - the reserved
+	 *             permit is lost
+	 */
+	public boolean acquire(long maxWait, TimeUnit timeUnit) throws InterruptedException {
+		long wait = this.reserve(timeUnit.toNanos(maxWait));
+		if(wait < 0) {
+			return false;
+		}
+		
+		final long deadline = System.nanoTime() + wait;
+		while(wait > 0) {
+			LockSupport.parkNanos(this, wait);
+			if(Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+			
+			wait = deadline - System.nanoTime();
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Take a permit without blocking the calling thread.
+	 * 
+	 * @param maxWait
+	 *            the maximum time to wait
+	 * 
+	 * @param timeUnit
+	 *            the {@link TimeUnit} of the wait
+	 * 
+	 * @return a {@link CompletableFuture} that completes once the permit may
+	 *         be used, or exceptionally with a {@link HttpRateLimitException}
+	 *         if it could not be had within the wait
+	 */
+	public CompletableFuture<Void> acquireAsync(long maxWait, TimeUnit timeUnit) {
+		final long wait = this.reserve(timeUnit.toNanos(maxWait));
+		if(wait == 0) {
+			return CompletableFuture.completedFuture(null);
+		}
+		
+		final CompletableFuture<Void> future = new CompletableFuture<>();
+		if(wait < 0) {
+			future.completeExceptionally(new HttpRateLimitException("No permit available within the maximum wait"));
+			return future;
+		}
+		
+		SCHEDULER.schedule(new Runnable() {
+			
+			@Override
+			public void run() {
+				future.complete(null);
+			}
+			
+		}, wait, TimeUnit.NANOSECONDS);
+		
+		return future;
+	}
+	
+	/**
+	 * Return the number of permits that could be taken right now without
+	 * waiting.
+	 * 
+	 * @return the number of permits available, at most the burst
+	 */
+	public int getAvailablePermits() {
+		final long now = System.nanoTime();
+		final long ahead = Math.max(0, this.theoreticalArrival.get() - now);
+		if(ahead > this.burstToleranceNanos) {
+			return 0;
+		}
+		
+		return (int) ((this.burstToleranceNanos - ahead) / this.emissionIntervalNanos) + 1;
+	}
+	
+	/**
+	 * Return the number of permits that may be taken at once.
+	 * 
+	 * @return the burst of this limiter
+	 */
+	public int getBurst() {
+		return (int) (this.burstToleranceNanos / this.emissionIntervalNanos) + 1;
+	}
+	
+}
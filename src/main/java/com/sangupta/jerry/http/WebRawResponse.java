@@ -21,12 +21,19 @@
 
 package com.sangupta.jerry.http;
 
-import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpRequest;
 import org.apache.http.HttpResponse;
@@ -48,6 +55,12 @@ import org.apache.http.util.EntityUtils;
 public class WebRawResponse {
 	
 	private static final HttpResponseHandler DEFAULT_RESPONSE_HANDLER = new WebResponseHandler();
+	
+	/**
+	 * Size of the direct buffer through which the content is moved into a
+	 * file, and so the maximum number of bytes written in one go
+	 */
+	private static final int TRANSFER_CHUNK_SIZE = 1024 * 1024;
 
 	/**
 	 * Internal {@link HttpResponse} handle
@@ -69,6 +82,16 @@ public class WebRawResponse {
 	 * or not.
 	 */
     private volatile boolean consumed;
+    
+    /**
+     * The deadline that still runs over reading the body, if any
+     */
+    private volatile RequestDeadline deadline;
+    
+    /**
+     * The actions to run once the response has been consumed
+     */
+    private final List<Runnable> consumedActions = new CopyOnWriteArrayList<>();
 
     /**
 	 * Constructor that takes a {@link HttpResponse} object and stores it
@@ -115,8 +138,78 @@ public class WebRawResponse {
         } catch (Exception ignore) {
         } finally {
             this.consumed = true;
+            this.runConsumedActions();
+            this.cancelDeadline();
         }
     }
+    
+    /**
+	 * Run the given action once the response has been consumed, or right away
+	 * if it already has.
+	 * 
+	 * @param action
+	 *            the action to run
+	 */
+    void whenConsumed(Runnable action) {
+    	this.consumedActions.add(action);
+    	if(this.consumed) {
+    		this.runConsumedActions();
+    	}
+    }
+    
+    /**
+     * Run every pending consumed action exactly once.
+     * 
+     */
+    private void runConsumedActions() {
+    	for(Runnable action : this.consumedActions) {
+    		if(this.consumedActions.remove(action)) {
+    			action.run();
+    		}
+    	}
+    }
+    
+    /**
+	 * Keep the given deadline running till the body has been read.
+	 * 
+	 * @param deadline
+	 *            the {@link RequestDeadline} of the execution
+	 */
+    void attachDeadline(RequestDeadline deadline) {
+    	this.deadline = deadline;
+    	if(this.consumed) {
+    		this.cancelDeadline();
+    	}
+    }
+    
+    /**
+     * Stop the deadline, if any, as the body has been read.
+     * 
+     */
+    private void cancelDeadline() {
+    	RequestDeadline deadline = this.deadline;
+    	if(deadline != null) {
+    		deadline.cancel();
+    	}
+    }
+    
+    /**
+	 * Surface a failure while reading the body as an expired deadline if
+	 * that is what caused it.
+	 * 
+	 * @param exception
+	 *            the failure encountered
+	 * 
+	 * @return the {@link IOException} to throw
+	 */
+    private IOException translate(IOException exception) {
+    	RequestDeadline deadline = this.deadline;
+    	if(deadline == null) {
+    		return exception;
+    	}
+    	
+    	return deadline.translate(exception);
+    }
 
     /**
      * Discard any content off the response stream, if pending.
@@ -146,6 +239,8 @@ public class WebRawResponse {
         
         try {
         	return handler.handleResponse(this.originalURI, this.response, this.localHttpContext);
+        } catch(IOException e) {
+        	throw this.translate(e);
         } finally {
             dispose();
         }
@@ -170,11 +265,34 @@ public class WebRawResponse {
     public WebResponse webResponse(HttpResponseHandler handler) throws ClientProtocolException, IOException {
         return handleResponse(handler);
     }
+    
+    /**
+	 * Convert the response to a {@link StreamingWebResponse} that reads the
+	 * body straight off the connection instead of buffering it in memory. The
+	 * connection stays leased till the returned response is closed. A
+	 * deadline set on the request keeps running while the body is streamed,
+	 * and is stopped once the response is closed or aborted.
+	 * 
+	 * @return the {@link StreamingWebResponse} object
+	 * 
+	 * @throws IllegalStateException
+	 *             if the response has already been consumed
+	 */
+    public StreamingWebResponse streamingResponse() {
+    	assertNotConsumed();
+    	
+    	this.consumed = true;
+    	// the deadline keeps running over the stream, till it is closed
+    	StreamingWebResponse streaming = new StreamingWebResponse(this.originalURI, this.response, this.localHttpContext, this.deadline);
+    	this.runConsumedActions();
+    	return streaming;
+    }
 
     /**
 	 * Write the response stream to the given file. If the HTTP status code is
 	 * greater than or equal to HTTP 300, an {@link HttpResponseException} is
-	 * thrown.
+	 * thrown. The content is moved from the connection into the file in
+	 * chunks and is never held on heap as a whole.
 	 * 
 	 * @param file
 	 *            the file to write the response to.
@@ -196,17 +314,70 @@ public class WebRawResponse {
             throw new HttpResponseException(statusLine.getStatusCode(), statusLine.getReasonPhrase());
         }
         
-        BufferedOutputStream bout = new BufferedOutputStream(new FileOutputStream(file));
-        try {
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
             HttpEntity entity = this.response.getEntity();
             if (entity != null) {
-                entity.writeTo(bout);
+            	transferTo(entity, channel, 0);
             }
+        } catch(IOException e) {
+        	throw this.translate(e);
         } finally {
             this.consumed = true;
-            bout.close();
+            this.runConsumedActions();
+            this.cancelDeadline();
         }
     }
+    
+    /**
+	 * Transfer the content of the entity into the channel starting at the
+	 * given position, without holding the content on heap. The content is
+	 * read into one direct buffer that is filled before each positional write
+	 * and reused till the end of the stream.
+	 * 
+	 * @param entity
+	 *            the {@link HttpEntity} to read
+	 * 
+	 * @param channel
+	 *            the {@link FileChannel} to write to
+	 * 
+	 * @param position
+	 *            the position in the channel to start writing at
+	 * 
+	 * @return the number of bytes transferred
+	 * 
+	 * @throws IOException
+	 *             if reading or writing fails
+	 */
+    static long transferTo(HttpEntity entity, FileChannel channel, long position) throws IOException {
+    	InputStream stream = entity.getContent();
+    	if(stream == null) {
+    		return 0;
+    	}
+    	
+    	long written = 0;
+    	ByteBuffer buffer = ByteBuffer.allocateDirect(TRANSFER_CHUNK_SIZE);
+    	try(ReadableByteChannel source = Channels.newChannel(stream)) {
+    		boolean ended = false;
+    		while(!ended) {
+    			// fill the buffer so that the file sees few, large writes
+    			while(buffer.hasRemaining()) {
+    				if(source.read(buffer) < 0) {
+    					ended = true;
+    					break;
+    				}
+    			}
+    			
+    			buffer.flip();
+    			while(buffer.hasRemaining()) {
+    				written += channel.write(buffer, position + written);
+    			}
+    			
+    			buffer.clear();
+    		}
+    	}
+    	
+    	return written;
+    }
 
 	/**
 	 * @return the consumed
@@ -214,5 +385,27 @@ public class WebRawResponse {
 	public boolean isConsumed() {
 		return consumed;
 	}
+	
+	/**
+	 * Return the status code of the response without consuming it.
+	 * 
+	 * @return the status code
+	 */
+	public int getStatusCode() {
+		return this.response.getStatusLine().getStatusCode();
+	}
+	
+	/**
+	 * Return the first response header with the given name without consuming
+	 * the response.
+	 * 
+	 * @param name
+	 *            the name of the header
+	 * 
+	 * @return the {@link Header}, or <code>null</code> if not present
+	 */
+	public Header getFirstHeader(String name) {
+		return this.response.getFirstHeader(name);
+	}
     
 }
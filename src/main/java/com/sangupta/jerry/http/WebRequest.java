@@ -32,6 +32,8 @@ import java.util.Arrays;
 import java.util.Date;
 import java.util.Locale;
 import java.util.TimeZone;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
@@ -298,6 +300,42 @@ public class WebRequest {
      * The associated {@link DateFormat} formatter
      */
     private SimpleDateFormat dateFormatter;
+    
+    /**
+     * The {@link RetryPolicy} for this request, overriding that of the executor
+     */
+    private RetryPolicy retryPolicy;
+    
+    /**
+     * The {@link HedgingPolicy} for this request, overriding that of the executor
+     */
+    private HedgingPolicy hedgingPolicy;
+    
+    /**
+     * The {@link CircuitBreaker} for this request, overriding that of the executor
+     */
+    private CircuitBreaker circuitBreaker;
+    
+    /**
+     * The overall deadline for an execution of this request in millis,
+     * non-positive for none
+     */
+    private long deadlineMillis = -1;
+    
+    /**
+     * The {@link Bulkhead} that limits concurrent executions of this request
+     */
+    private Bulkhead bulkhead;
+    
+    /**
+     * A free-form tag that groups this request with others, like by dependency
+     */
+    private String tag;
+    
+    /**
+     * The deadline of the execution in progress, if any
+     */
+    private volatile RequestDeadline activeDeadline;
 
     /**
 	 * Create the {@link WebRequest} object using the given
@@ -327,6 +365,79 @@ public class WebRequest {
         return this.request;
     }
     
+    /**
+     * Get the {@link RetryPolicy} set on this request.
+     * 
+     * @return the {@link RetryPolicy}, or <code>null</code> to use that of the
+     *         executor
+     */
+    public RetryPolicy getRetryPolicy() {
+    	return this.retryPolicy;
+    }
+    
+    /**
+     * Get the {@link HedgingPolicy} set on this request.
+     * 
+     * @return the {@link HedgingPolicy}, or <code>null</code> to use that of
+     *         the executor
+     */
+    public HedgingPolicy getHedgingPolicy() {
+    	return this.hedgingPolicy;
+    }
+    
+    /**
+     * Get the {@link CircuitBreaker} set on this request.
+     * 
+     * @return the {@link CircuitBreaker}, or <code>null</code> to use that of
+     *         the executor
+     */
+    public CircuitBreaker getCircuitBreaker() {
+    	return this.circuitBreaker;
+    }
+    
+    /**
+     * Get the overall deadline set on this request.
+     * 
+     * @return the deadline in millis, or <code>-1</code> if none is set
+     */
+    public long getDeadline() {
+    	return this.deadlineMillis;
+    }
+    
+    /**
+     * Get the {@link Bulkhead} set on this request.
+     * 
+     * @return the {@link Bulkhead}, or <code>null</code> if none
+     */
+    public Bulkhead getBulkhead() {
+    	return this.bulkhead;
+    }
+    
+    /**
+     * Get the tag set on this request.
+     * 
+     * @return the tag, or <code>null</code> if none
+     */
+    public String getTag() {
+    	return this.tag;
+    }
+    
+    /**
+     * @return the deadline of the execution in progress, or <code>null</code>
+     */
+    RequestDeadline getActiveDeadline() {
+    	return this.activeDeadline;
+    }
+    
+    /**
+     * @param deadline
+     *            the deadline of the execution in progress, or
+     *            <code>null</code> once it has completed
+     */
+    void setActiveDeadline(RequestDeadline deadline) {
+    	this.activeDeadline = deadline;
+    }
+    
     /**
 	 * Display the debug information for this request
 	 * 
@@ -455,6 +566,18 @@ public class WebRequest {
         return HttpExecutor.DEFAULT.execute(this);
     }
 
+    /**
+	 * Execute this web request now over the non-blocking client of the default
+	 * {@link HttpExecutor}.
+	 * 
+	 * @return the {@link CompletableFuture} that completes with the obtained
+	 *         {@link WebResponse}
+	 */
+    public CompletableFuture<WebResponse> executeAsync() {
+    	this.prepareForExecute();
+    	return HttpExecutor.DEFAULT.executeAsync(this);
+    }
+
     /**
      * Abort this request now.
      * 
@@ -686,6 +809,106 @@ public class WebRequest {
     	this.requestConfigBuilder.setConnectTimeout(timeout);
         return this;
     }
+    
+    /**
+	 * Specify an overall deadline for executing this request via
+	 * {@link HttpExecutor}, covering the wait for a pooled connection,
+	 * connecting, the TLS handshake, sending the request, any retries and
+	 * reading the full body. Unlike the per-phase timeouts, a slowly dripping
+	 * response cannot outlast it. When the deadline expires the request is
+	 * aborted and an {@link HttpDeadlineExceededException} is thrown.
+	 * 
+	 * @param timeout
+	 *            the deadline, non-positive to remove it
+	 * 
+	 * @param timeUnit
+	 *            the {@link TimeUnit} of the deadline
+	 * 
+	 * @return this very {@link WebRequest}
+	 */
+    public WebRequest deadline(long timeout, TimeUnit timeUnit) {
+    	if(timeUnit == null) {
+    		throw new IllegalArgumentException("TimeUnit cannot be null");
+    	}
+    	
+    	this.deadlineMillis = timeout > 0 ? Math.max(1, timeUnit.toMillis(timeout)) : -1;
+    	return this;
+    }
+
+    /**
+	 * Set the {@link RetryPolicy} for this request, overriding the one of the
+	 * {@link HttpExecutor} that runs it.
+	 * 
+	 * @param retryPolicy
+	 *            the {@link RetryPolicy} to use, <code>null</code> to use that
+	 *            of the executor
+	 * 
+	 * @return this very {@link WebRequest}
+	 */
+    public WebRequest retryPolicy(RetryPolicy retryPolicy) {
+    	this.retryPolicy = retryPolicy;
+    	return this;
+    }
+
+    /**
+	 * Set the {@link HedgingPolicy} for this request, overriding the one of
+	 * the {@link HttpExecutor} that runs it.
+	 * 
+	 * @param hedgingPolicy
+	 *            the {@link HedgingPolicy} to use, <code>null</code> to use
+	 *            that of the executor
+	 * 
+	 * @return this very {@link WebRequest}
+	 */
+    public WebRequest hedgingPolicy(HedgingPolicy hedgingPolicy) {
+    	this.hedgingPolicy = hedgingPolicy;
+    	return this;
+    }
+
+    /**
+	 * Set the {@link CircuitBreaker} for this request, overriding the one of
+	 * the {@link HttpExecutor} that runs it.
+	 * 
+	 * @param circuitBreaker
+	 *            the {@link CircuitBreaker} to use, <code>null</code> to use
+	 *            that of the executor
+	 * 
+	 * @return this very {@link WebRequest}
+	 */
+    public WebRequest circuitBreaker(CircuitBreaker circuitBreaker) {
+    	this.circuitBreaker = circuitBreaker;
+    	return this;
+    }
+
+    /**
+	 * Execute this request within the given {@link Bulkhead}, so that it is
+	 * rejected with an {@link HttpBulkheadFullException} when too many calls
+	 * of the same group are already in flight.
+	 * 
+	 * @param bulkhead
+	 *            the {@link Bulkhead} to use, <code>null</code> for none
+	 * 
+	 * @return this very {@link WebRequest}
+	 */
+    public WebRequest bulkhead(Bulkhead bulkhead) {
+    	this.bulkhead = bulkhead;
+    	return this;
+    }
+
+    /**
+	 * Tag this request, like with the name of the dependency it calls. An
+	 * {@link com.sangupta.jerry.http.service.HttpService} binds tagged
+	 * requests to the {@link Bulkhead} of the same name.
+	 * 
+	 * @param tag
+	 *            the tag, <code>null</code> for none
+	 * 
+	 * @return this very {@link WebRequest}
+	 */
+    public WebRequest tag(String tag) {
+    	this.tag = tag;
+    	return this;
+    }
 
     //// HTTP connection route operations
 
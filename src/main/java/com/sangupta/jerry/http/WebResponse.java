@@ -29,6 +29,7 @@ import java.io.Serializable;
 import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
@@ -303,16 +304,37 @@ public class WebResponse implements Serializable {
     }
     
     /**
-	 * Return the value of the header if present, or <code>null</code>
+	 * Return the value of the given response header. Header names are
+	 * matched case-insensitively.
 	 * 
 	 * @param headerName
 	 *            the name of the header
 	 * 
-	 * @return the value of the header, or <code>null</code> if header is not
-	 *         present
+	 * @return the value of the header, or <code>null</code> if not present
 	 */
-    private String getHeader(String headerName) {
-    	return headers.get(headerName);
+    public String getHeader(String headerName) {
+    	String value = this.headers.get(headerName);
+    	if(value != null || headerName == null) {
+    		return value;
+    	}
+    	
+    	for(Map.Entry<String, String> entry : this.headers.entrySet()) {
+    		if(headerName.equalsIgnoreCase(entry.getKey())) {
+    			return entry.getValue();
+    		}
+    	}
+    	
+    	return null;
+    }
+    
+    /**
+	 * Return the entity tag of the response.
+	 * 
+	 * @return the value of the <code>ETag</code> header, or <code>null</code>
+	 *         if not present
+	 */
+    public String getETag() {
+    	return this.getHeader(HttpHeaders.ETAG);
     }
     
     /**
@@ -445,6 +467,29 @@ public class WebResponse implements Serializable {
 		return !this.redirectChain.isEmpty();
 	}
 	
+	/**
+	 * Create a detached copy of the given response, including its body.
+	 * 
+	 * @param response
+	 *            the {@link WebResponse} to copy
+	 * 
+	 * @return the copy
+	 */
+	static WebResponse copyOf(WebResponse response) {
+		WebResponse copy = new WebResponse(response.originalURI, response.asClonedBytes());
+		copy.responseCode = response.responseCode;
+		copy.message = response.message;
+		copy.charSet = response.charSet;
+		copy.contentType = response.contentType;
+		copy.size = response.size;
+		copy.headers.putAll(response.headers);
+		if(response.redirectChain != null) {
+			copy.redirectChain = new ArrayList<>(response.redirectChain);
+		}
+		
+		return copy;
+	}
+	
 	/**
 	 * Returns the actual URI that generated the response. In case of redirects
 	 * this is the last redirected request, that eventually led to response.
@@ -58,11 +58,7 @@ public class WebResponseHandler implements HttpResponseHandler {
 		StatusLine statusLine = response.getStatusLine();
         HttpEntity entity = response.getEntity();
         
-        byte[] bytes = null;
-        if(entity != null) {
-        	bytes = EntityUtils.toByteArray(entity);
-        }
-		final WebResponse webResponse = new WebResponse(originalURI, bytes);
+		final WebResponse webResponse = this.createWebResponse(originalURI, entity);
 		
 		// decipher from status line
 		webResponse.responseCode = statusLine.getStatusCode();
@@ -121,5 +117,32 @@ public class WebResponseHandler implements HttpResponseHandler {
 		// return the object finally
         return webResponse;
 	}
+	
+	/**
+	 * Read the body of the response and create the {@link WebResponse} around
+	 * it. The remaining fields are filled in by
+	 * {@link #handleResponse(URI, HttpResponse, HttpContext)}. Override to
+	 * change how the body is held.
+	 * 
+	 * @param originalURI
+	 *            the original {@link URI} that was hit
+	 * 
+	 * @param entity
+	 *            the {@link HttpEntity} of the response, may be
+	 *            <code>null</code>
+	 * 
+	 * @return the {@link WebResponse} instance
+	 * 
+	 * @throws IOException
+	 *             if the body cannot be read
+	 */
+	protected WebResponse createWebResponse(URI originalURI, HttpEntity entity) throws IOException {
+        byte[] bytes = null;
+        if(entity != null) {
+        	bytes = EntityUtils.toByteArray(entity);
+        }
+        
+		return new WebResponse(originalURI, bytes);
+	}
 
 }
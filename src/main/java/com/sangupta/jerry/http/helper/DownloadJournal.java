@@ -0,0 +1,375 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http.helper;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Sidecar journal of a resumable download. It records the URL, the length
+ * and the validators of the resource followed by one line per byte range
+ * that has been written and flushed to disk:
+ * 
+ * <pre>
+ * url=http://example.com/data.bin
+ * length=104857600
+ * etag="abc"
+ * last-modified=Sun, 06 Nov 1994 08:49:37 GMT
+ * range=0-4194303
+ * range=8388608-12582911
+ * </pre>
+ * 
+ * Ranges are only appended after their data has been forced to disk, so a
+ * crash at any point leaves a journal that under-reports, never
+ * over-reports, what is on disk.
+ * 
+ * @author sangupta
+ * 
+ * @since 2.0.1
+ */
+class DownloadJournal implements Closeable {
+	
+	private static final String URL = "url=";
+	
+	private static final String LENGTH = "length=";
+	
+	private static final String ETAG = "etag=";
+	
+	private static final String LAST_MODIFIED = "last-modified=";
+	
+	private static final String RANGE = "range=";
+	
+	/**
+	 * The journal file
+	 */
+	final File file;
+	
+	final String url;
+	
+	final long length;
+	
+	final String etag;
+	
+	final String lastModified;
+	
+	/**
+	 * The ranges recorded as complete
+	 */
+	final List<long[]> completed = new ArrayList<>();
+	
+	/**
+	 * The channel appended to, once opened
+	 */
+	private FileChannel channel;
+	
+	private DownloadJournal(File file, String url, long length, String etag, String lastModified) {
+		this.file = file;
+		this.url = url;
+		this.length = length;
+		this.etag = etag;
+		this.lastModified = lastModified;
+	}
+	
+	/**
+	 * Return the journal file for the given download target.
+	 * 
+	 * @param target
+	 *            the file being downloaded to
+	 * 
+	 * @return the sidecar journal {@link File}
+	 */
+	static File journalFor(File target) {
+		return new File(target.getAbsolutePath() + ".journal");
+	}
+	
+	/**
+	 * Read the journal from disk.
+	 * 
+	 * @param file
+	 *            the journal file
+	 * 
+	 * @return the {@link DownloadJournal}, or <code>null</code> if there is
+	 *         none or it cannot be read
+	 */
+	static DownloadJournal read(File file) {
+		if(!file.exists()) {
+			return null;
+		}
+		
+		List<String> lines;
+		try {
+			lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+		} catch(IOException e) {
+			return null;
+		}
+		
+		String url = null;
+		String etag = null;
+		String lastModified = null;
+		long length = -1;
+		List<long[]> ranges = new ArrayList<>();
+		
+		try {
+			for(String line : lines) {
+				if(line.startsWith(URL)) {
+					url = line.substring(URL.length());
+				} else if(line.startsWith(LENGTH)) {
+					length = Long.parseLong(line.substring(LENGTH.length()));
+				} else if(line.startsWith(ETAG)) {
+					etag = emptyToNull(line.substring(ETAG.length()));
+				} else if(line.startsWith(LAST_MODIFIED)) {
+					lastModified = emptyToNull(line.substring(LAST_MODIFIED.length()));
+				} else if(line.startsWith(RANGE)) {
+					String[] parts = line.substring(RANGE.length()).split("-");
+					ranges.add(new long[] { Long.parseLong(parts[0]), Long.parseLong(parts[1]) });
+				}
+			}
+		} catch(RuntimeException e) {
+			// a torn last line or garbage - do not trust the journal at all
+			return null;
+		}
+		
+		if(url == null || length < 0) {
+			return null;
+		}
+		
+		DownloadJournal journal = new DownloadJournal(file, url, length, etag, lastModified);
+		journal.completed.addAll(ranges);
+		return journal;
+	}
+	
+	/**
+	 * Create a fresh journal on disk, replacing any existing one.
+	 * 
+	 * @param file
+	 *            the journal file
+	 * 
+	 * @param url
+	 *            the URL being downloaded
+	 * 
+	 * @param length
+	 *            the length of the resource
+	 * 
+	 * @param etag
+	 *            the entity tag of the resource, may be <code>null</code>
+	 * 
+	 * @param lastModified
+	 *            the last modified date of the resource, may be
+	 *            <code>null</code>
+	 * 
+	 * @return the {@link DownloadJournal} open for appending
+	 * 
+	 * @throws IOException
+	 *             if the journal cannot be written
+	 */
+	static DownloadJournal create(File file, String url, long length, String etag, String lastModified) throws IOException {
+		DownloadJournal journal = new DownloadJournal(file, url, length, etag, lastModified);
+		
+		StringBuilder builder = new StringBuilder();
+		builder.append(URL).append(url).append('\n');
+		builder.append(LENGTH).append(length).append('\n');
+		builder.append(ETAG).append(nullToEmpty(etag)).append('\n');
+		builder.append(LAST_MODIFIED).append(nullToEmpty(lastModified)).append('\n');
+		
+		journal.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		journal.write(builder.toString());
+		return journal;
+	}
+	
+	/**
+	 * Check if this journal describes a download of the same, unchanged
+	 * resource. Without any validator the resource cannot be known to be
+	 * unchanged, and the journal never matches.
+	 * 
+	 * @param url
+	 *            the URL being downloaded
+	 * 
+	 * @param length
+	 *            the current length of the resource
+	 * 
+	 * @param etag
+	 *            the current entity tag, may be <code>null</code>
+	 * 
+	 * @param lastModified
+	 *            the current last modified date, may be <code>null</code>
+	 * 
+	 * @return <code>true</code> if the download may be resumed
+	 */
+	boolean matches(String url, long length, String etag, String lastModified) {
+		if(etag == null && lastModified == null) {
+			return false;
+		}
+		
+		return this.url.equals(url) && this.length == length && Objects.equals(this.etag, etag) && Objects.equals(this.lastModified, lastModified);
+	}
+	
+	/**
+	 * Open an existing journal for appending.
+	 * 
+	 * @throws IOException
+	 *             if the journal cannot be opened
+	 */
+	void open() throws IOException {
+		this.channel = FileChannel.open(this.file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+	}
+	
+	/**
+	 * Record a range as complete. The data of the range must already have
+	 * been forced to disk.
+	 * 
+	 * @param start
+	 *            the first byte of the range
+	 * 
+	 * @param end
+	 *            the last byte of the range
+	 * 
+	 * @throws IOException
+	 *             if the journal cannot be written
+	 */
+	synchronized void append(long start, long end) throws IOException {
+		if(this.channel == null) {
+			throw new IOException("Journal has been closed");
+		}
+		
+		this.write(RANGE + start + "-" + end + "\n");
+		this.completed.add(new long[] { start, end });
+	}
+	
+	/**
+	 * Write and force the given text to the journal.
+	 * 
+	 * @param text
+	 *            the text to write
+	 * 
+	 * @throws IOException
+	 *             if the journal cannot be written
+	 */
+	private void write(String text) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+		while(buffer.hasRemaining()) {
+			this.channel.write(buffer);
+		}
+		
+		this.channel.force(false);
+	}
+	
+	/**
+	 * Close the journal and delete it from disk - the download is complete.
+	 * 
+	 */
+	void delete() {
+		try {
+			this.close();
+		} catch(IOException e) {
+			// eat up
+		}
+		
+		FileUtils.deleteQuietly(this.file);
+	}
+	
+	@Override
+	public synchronized void close() throws IOException {
+		if(this.channel != null) {
+			this.channel.close();
+			this.channel = null;
+		}
+	}
+	
+	/**
+	 * Compute the ranges still to be fetched, split into chunks of at most the
+	 * given size.
+	 * 
+	 * @param length
+	 *            the length of the resource
+	 * 
+	 * @param chunkSize
+	 *            the maximum size of a range
+	 * 
+	 * @param completed
+	 *            the ranges already complete
+	 * 
+	 * @return the pending ranges as <code>{start, end}</code> pairs
+	 */
+	static List<long[]> pendingRanges(long length, long chunkSize, List<long[]> completed) {
+		List<long[]> done = new ArrayList<>(completed);
+		Collections.sort(done, new Comparator<long[]>() {
+			
+			@Override
+			public int compare(long[] first, long[] second) {
+				return Long.compare(first[0], second[0]);
+			}
+			
+		});
+		
+		List<long[]> pending = new ArrayList<>();
+		long next = 0;
+		for(long[] range : done) {
+			if(range[0] > next) {
+				addChunks(pending, next, Math.min(range[0], length) - 1, chunkSize);
+			}
+			
+			next = Math.max(next, range[1] + 1);
+		}
+		
+		if(next < length) {
+			addChunks(pending, next, length - 1, chunkSize);
+		}
+		
+		return pending;
+	}
+	
+	private static void addChunks(List<long[]> ranges, long start, long end, long chunkSize) {
+		for(long chunk = start; chunk <= end; chunk += chunkSize) {
+			ranges.add(new long[] { chunk, Math.min(end, chunk + chunkSize - 1) });
+		}
+	}
+	
+	private static String emptyToNull(String value) {
+		if(value == null || value.isEmpty()) {
+			return null;
+		}
+		
+		return value;
+	}
+	
+	private static String nullToEmpty(String value) {
+		if(value == null) {
+			return "";
+		}
+		
+		return value;
+	}
+	
+}
@@ -29,6 +29,8 @@ import org.apache.http.client.HttpResponseException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.sangupta.jerry.http.HttpExecutor;
+import com.sangupta.jerry.http.WebRawResponse;
 import com.sangupta.jerry.http.WebRequest;
 import com.sangupta.jerry.http.WebRequestMethod;
 import com.sangupta.jerry.http.WebResponse;
@@ -57,6 +59,138 @@ public abstract class HttpHelper {
         FileUtils.writeByteArrayToFile(file, response.getBytes());
 	}
 	
+	/**
+	 * Execute the request and stream the response body straight into the
+	 * given file, without holding it on heap. A partially written file is
+	 * deleted if the download fails.
+	 * 
+	 * @param request
+	 *            the {@link WebRequest} to execute
+	 * 
+	 * @param file
+	 *            the file to write to
+	 * 
+	 * @return <code>true</code> if the file was downloaded, <code>false</code>
+	 *         otherwise
+	 */
+	public static boolean streamToFile(WebRequest request, File file) {
+		if(request == null) {
+			throw new IllegalArgumentException("WebRequest cannot be null");
+		}
+		
+		if(file == null) {
+			throw new IllegalArgumentException("File cannot be null");
+		}
+		
+		LOGGER.debug("Streaming {} to {}", request.getURI(), file.getAbsolutePath());
+		
+		try {
+			WebRawResponse response = request.execute();
+			if(response == null) {
+				return false;
+			}
+			
+			response.writeToFile(file);
+			return true;
+		} catch(HttpResponseException e) {
+			LOGGER.error("HTTP response did not yield an OK status", e);
+		} catch(IOException e) {
+			LOGGER.error("Unable to stream url to file", e);
+		}
+		
+		FileUtils.deleteQuietly(file);
+		return false;
+	}
+	
+	/**
+	 * Execute the request and stream the response body into a new temporary
+	 * file, without holding it on heap.
+	 * 
+	 * @param request
+	 *            the {@link WebRequest} to execute
+	 * 
+	 * @return the temporary file, or <code>null</code> if the download failed
+	 * 
+	 * @throws IOException
+	 *             if the temporary file cannot be created
+	 */
+	public static File streamToTempFile(WebRequest request) throws IOException {
+		if(request == null) {
+			throw new IllegalArgumentException("WebRequest cannot be null");
+		}
+		
+		String extension = UriUtils.extractExtension(request.getURI().toString());
+		File tempFile = File.createTempFile("download", extension);
+		tempFile.deleteOnExit();
+		
+		if(streamToFile(request, tempFile)) {
+			return tempFile;
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Download the resource at the given URL into the file using up to the
+	 * given number of concurrent ranged requests over
+	 * {@link HttpExecutor#DEFAULT}. Falls back to a single request when the
+	 * server does not accept ranges.
+	 * 
+	 * @param url
+	 *            the absolute URL of the resource
+	 * 
+	 * @param file
+	 *            the file to write to
+	 * 
+	 * @param segments
+	 *            the maximum number of concurrent requests
+	 * 
+	 * @return <code>true</code> if the file was downloaded, <code>false</code>
+	 *         otherwise
+	 * 
+	 * @see SegmentedDownloader
+	 */
+	public static boolean downloadToFile(String url, File file, int segments) {
+		return downloadToFile(url, file, segments, false);
+	}
+	
+	/**
+	 * Download the resource at the given URL into the file using up to the
+	 * given number of concurrent ranged requests over
+	 * {@link HttpExecutor#DEFAULT}. When resumable, a failed download leaves
+	 * the partial file and a sidecar journal behind, and calling this method
+	 * again only fetches what is missing.
+	 * 
+	 * @param url
+	 *            the absolute URL of the resource
+	 * 
+	 * @param file
+	 *            the file to write to
+	 * 
+	 * @param segments
+	 *            the maximum number of concurrent requests
+	 * 
+	 * @param resumable
+	 *            whether the download can be resumed after a failure
+	 * 
+	 * @return <code>true</code> if the file was downloaded, <code>false</code>
+	 *         otherwise
+	 * 
+	 * @see SegmentedDownloader#resumable(boolean)
+	 */
+	public static boolean downloadToFile(String url, File file, int segments, boolean resumable) {
+		try {
+			new SegmentedDownloader().segments(segments).resumable(resumable).download(url, file);
+			return true;
+		} catch(HttpResponseException e) {
+			LOGGER.error("HTTP response did not yield an OK status", e);
+		} catch(IOException e) {
+			LOGGER.error("Unable to download url in segments", e);
+		}
+		
+		return false;
+	}
+	
 	public static File downloadToTempFile(String url, HttpService service) throws IOException {
 		String extension = UriUtils.extractExtension(url);
 		File tempFile = File.createTempFile("download", extension);
@@ -0,0 +1,723 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http.helper;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.http.HttpHeaders;
+import org.apache.http.client.HttpResponseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sangupta.jerry.http.HttpExecutor;
+import com.sangupta.jerry.http.StreamingWebResponse;
+import com.sangupta.jerry.http.WebRawResponse;
+import com.sangupta.jerry.http.WebRequest;
+import com.sangupta.jerry.util.AssertUtils;
+
+/**
+ * Downloads a resource over multiple connections at once. A <code>HEAD</code>
+ * request first learns the length of the resource and whether the server
+ * accepts byte ranges; the file is then pre-allocated and the ranges are
+ * fetched concurrently, each written at its own offset. Servers that do not
+ * support ranges, or resources too small to be worth splitting, are fetched
+ * with a single <code>GET</code>. So are resources whose server advertises
+ * ranges but answers a segment with the full body, as when it ignores the
+ * <code>Range</code> header or the resource changed since the
+ * <code>HEAD</code>.
+ * 
+ * The <code>ETag</code> (or <code>Last-Modified</code>) seen in the
+ * <code>HEAD</code> response is sent as <code>If-Range</code> with every
+ * segment, so that a resource changing mid-download is detected instead of
+ * producing a corrupt file.
+ * 
+ * Every request is made with a socket timeout, so that a stalled segment
+ * fails instead of holding up the download.
+ * 
+ * When made {@link #resumable(boolean)}, the download is fetched in
+ * checkpoint-sized chunks and every completed chunk is recorded in a sidecar
+ * {@link DownloadJournal} next to the file. A failed download then leaves the
+ * partial file and journal in place, and the next attempt for the same URL
+ * only fetches the chunks that are missing - provided the resource still has
+ * the same length and validators.
+ * 
+ * Note that the segments are subject to the per-route connection limit of
+ * the {@link HttpExecutor} used.
+ * 
+ * @author sangupta
+ * 
+ * @since 2.0.1
+ */
+public class SegmentedDownloader {
+	
+	/**
+	 * My logger instance
+	 */
+	private static final Logger LOGGER = LoggerFactory.getLogger(SegmentedDownloader.class);
+	
+	/**
+	 * Default number of concurrent segments
+	 */
+	public static final int DEFAULT_SEGMENTS = 4;
+	
+	/**
+	 * Default minimum size of a segment - 1 MB
+	 */
+	public static final long DEFAULT_MIN_SEGMENT_SIZE = 1024 * 1024;
+	
+	/**
+	 * Default size of a checkpointed chunk of a resumable download - 4 MB
+	 */
+	public static final long DEFAULT_CHECKPOINT_SIZE = 4 * 1024 * 1024;
+	
+	/**
+	 * Default socket timeout of the requests made, in millis - 30 seconds
+	 */
+	public static final int DEFAULT_SOCKET_TIMEOUT = 30 * 1000;
+	
+	/**
+	 * Size of the buffer each segment reads through
+	 */
+	private static final int BUFFER_SIZE = 256 * 1024;
+	
+	/**
+	 * Counter used to name the download threads
+	 */
+	private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+	
+	/**
+	 * The executor over which requests are made
+	 */
+	private final HttpExecutor executor;
+	
+	/**
+	 * Number of concurrent segments
+	 */
+	private int segments = DEFAULT_SEGMENTS;
+	
+	/**
+	 * Minimum size of a segment
+	 */
+	private long minSegmentSize = DEFAULT_MIN_SEGMENT_SIZE;
+	
+	/**
+	 * Whether progress is journaled so that a failed download can be resumed
+	 */
+	private boolean resumable = false;
+	
+	/**
+	 * Size of a checkpointed chunk of a resumable download
+	 */
+	private long checkpointSize = DEFAULT_CHECKPOINT_SIZE;
+	
+	/**
+	 * Socket timeout of the requests made, in millis
+	 */
+	private int socketTimeout = DEFAULT_SOCKET_TIMEOUT;
+	
+	/**
+	 * Create a downloader over {@link HttpExecutor#DEFAULT}.
+	 * 
+	 */
+	public SegmentedDownloader() {
+		this(HttpExecutor.DEFAULT);
+	}
+	
+	/**
+	 * Create a downloader over the given executor.
+	 * 
+	 * @param executor
+	 *            the {@link HttpExecutor} to use
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the executor is <code>null</code>
+	 */
+	public SegmentedDownloader(HttpExecutor executor) {
+		if(executor == null) {
+			throw new IllegalArgumentException("HttpExecutor cannot be null");
+		}
+		
+		this.executor = executor;
+	}
+	
+	/**
+	 * Set the number of segments fetched concurrently.
+	 * 
+	 * @param segments
+	 *            the number of segments
+	 * 
+	 * @return this very {@link SegmentedDownloader}
+	 */
+	public SegmentedDownloader segments(int segments) {
+		if(segments < 1) {
+			throw new IllegalArgumentException("Number of segments cannot be less than 1");
+		}
+		
+		this.segments = segments;
+		return this;
+	}
+	
+	/**
+	 * Set the minimum size of a segment. Resources smaller than twice this
+	 * size are fetched with a single request.
+	 * 
+	 * @param bytes
+	 *            the minimum size in bytes
+	 * 
+	 * @return this very {@link SegmentedDownloader}
+	 */
+	public SegmentedDownloader minSegmentSize(long bytes) {
+		if(bytes < 1) {
+			throw new IllegalArgumentException("Minimum segment size cannot be less than 1");
+		}
+		
+		this.minSegmentSize = bytes;
+		return this;
+	}
+	
+	/**
+	 * Set whether the download is resumable. A resumable download keeps its
+	 * partial file and journal on failure, and resumes from them when run
+	 * again.
+	 * 
+	 * @param resumable
+	 *            <code>true</code> to make downloads resumable
+	 * 
+	 * @return this very {@link SegmentedDownloader}
+	 */
+	public SegmentedDownloader resumable(boolean resumable) {
+		this.resumable = resumable;
+		return this;
+	}
+	
+	/**
+	 * Set the size of a checkpointed chunk of a resumable download. At most
+	 * this many bytes per segment are re-fetched after a failure.
+	 * 
+	 * @param bytes
+	 *            the chunk size in bytes
+	 * 
+	 * @return this very {@link SegmentedDownloader}
+	 */
+	public SegmentedDownloader checkpointSize(long bytes) {
+		if(bytes < 1) {
+			throw new IllegalArgumentException("Checkpoint size cannot be less than 1");
+		}
+		
+		this.checkpointSize = bytes;
+		return this;
+	}
+	
+	/**
+	 * Set the socket timeout of the requests made, that is the longest a
+	 * segment may go without receiving data before it fails.
+	 * 
+	 * @param millis
+	 *            the timeout in millis
+	 * 
+	 * @return this very {@link SegmentedDownloader}
+	 */
+	public SegmentedDownloader socketTimeout(int millis) {
+		if(millis < 1) {
+			throw new IllegalArgumentException("Socket timeout cannot be less than 1");
+		}
+		
+		this.socketTimeout = millis;
+		return this;
+	}
+	
+	/**
+	 * Download the resource at the given URL into the given file. The file is
+	 * over-written if it exists, and deleted if the download fails - unless
+	 * the download is resumable and the server supports byte ranges, in which
+	 * case the partial file is kept to be resumed.
+	 * 
+	 * @param url
+	 *            the absolute URL of the resource
+	 * 
+	 * @param file
+	 *            the file to write to
+	 * 
+	 * @throws IOException
+	 *             if the download fails
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the URL is empty or the file is <code>null</code>
+	 */
+	public void download(String url, File file) throws IOException {
+		if(AssertUtils.isEmpty(url)) {
+			throw new IllegalArgumentException("URL cannot be null/empty");
+		}
+		
+		if(file == null) {
+			throw new IllegalArgumentException("File cannot be null");
+		}
+		
+		RemoteResource resource;
+		try {
+			resource = this.probe(url);
+		} catch(IOException | RuntimeException e) {
+			if(!this.resumable) {
+				FileUtils.deleteQuietly(file);
+			}
+			
+			throw e;
+		}
+		
+		if(this.resumable && resource.isSegmentable(1)) {
+			try {
+				this.downloadResumable(url, file, resource);
+				return;
+			} catch(RangeIgnoredException e) {
+				LOGGER.debug("Server ignored the range requested for {}, downloading with a single request", url);
+				FileUtils.deleteQuietly(DownloadJournal.journalFor(file));
+			}
+			
+			try {
+				this.downloadWhole(url, file);
+			} catch(IOException | RuntimeException e) {
+				FileUtils.deleteQuietly(file);
+				throw e;
+			}
+			
+			return;
+		}
+		
+		try {
+			if(!resource.isSegmentable(this.minSegmentSize * 2)) {
+				LOGGER.debug("Downloading {} with a single request", url);
+				this.downloadWhole(url, file);
+				return;
+			}
+			
+			List<long[]> ranges = split(resource.length, this.segments, this.minSegmentSize);
+			LOGGER.debug("Downloading {} of {} bytes in {} segments", url, resource.length, ranges.size());
+			try {
+				this.downloadRanges(url, file, resource, ranges, null);
+			} catch(RangeIgnoredException e) {
+				LOGGER.debug("Server ignored the range requested for {}, downloading with a single request", url);
+				this.downloadWhole(url, file);
+			}
+		} catch(IOException | RuntimeException e) {
+			FileUtils.deleteQuietly(file);
+			throw e;
+		}
+		
+		// a stale journal must not be resumed over a fresh download
+		FileUtils.deleteQuietly(DownloadJournal.journalFor(file));
+	}
+	
+	/**
+	 * Download the resource in checkpointed chunks, resuming from the journal
+	 * of an earlier attempt if it matches the resource.
+	 * 
+	 * @param url
+	 *            the URL of the resource
+	 * 
+	 * @param file
+	 *            the file to write to
+	 * 
+	 * @param resource
+	 *            the details of the resource
+	 * 
+	 * @throws IOException
+	 *             if the download fails, leaving the file and journal in place
+	 */
+	private void downloadResumable(String url, File file, RemoteResource resource) throws IOException {
+		File journalFile = DownloadJournal.journalFor(file);
+		DownloadJournal journal = DownloadJournal.read(journalFile);
+		
+		if(journal != null && file.length() == resource.length && journal.matches(url, resource.length, resource.etag, resource.lastModified)) {
+			journal.open();
+			LOGGER.debug("Resuming download of {} with {} ranges already complete", url, journal.completed.size());
+		} else {
+			journal = DownloadJournal.create(journalFile, url, resource.length, resource.etag, resource.lastModified);
+		}
+		
+		try {
+			List<long[]> ranges = DownloadJournal.pendingRanges(resource.length, this.checkpointSize, journal.completed);
+			LOGGER.debug("Downloading {} of {} bytes in {} chunks", url, resource.length, ranges.size());
+			this.downloadRanges(url, file, resource, ranges, journal);
+		} finally {
+			journal.close();
+		}
+		
+		journal.delete();
+	}
+	
+	/**
+	 * Issue a <code>HEAD</code> request to learn about the resource.
+	 * 
+	 * @param url
+	 *            the URL of the resource
+	 * 
+	 * @return the {@link RemoteResource} details
+	 * 
+	 * @throws IOException
+	 *             if the request fails
+	 */
+	RemoteResource probe(String url) throws IOException {
+		try(StreamingWebResponse response = this.execute(WebRequest.head(url)).streamingResponse()) {
+			RemoteResource resource = new RemoteResource();
+			if(!response.isSuccess()) {
+				return resource;
+			}
+			
+			resource.acceptsRanges = "bytes".equalsIgnoreCase(trim(response.getHeader(HttpHeaders.ACCEPT_RANGES)));
+			resource.etag = response.getHeader(HttpHeaders.ETAG);
+			resource.lastModified = response.getHeader(HttpHeaders.LAST_MODIFIED);
+			
+			String length = trim(response.getHeader(HttpHeaders.CONTENT_LENGTH));
+			if(length != null) {
+				try {
+					resource.length = Long.parseLong(length);
+				} catch(NumberFormatException e) {
+					// leave unknown
+				}
+			}
+			
+			return resource;
+		}
+	}
+	
+	/**
+	 * Execute the given request over the configured {@link HttpExecutor} with
+	 * the socket timeout of this downloader applied.
+	 * 
+	 * @param request
+	 *            the {@link WebRequest} to execute
+	 * 
+	 * @return the obtained {@link WebRawResponse}
+	 * 
+	 * @throws IOException
+	 *             if the request fails
+	 */
+	private WebRawResponse execute(WebRequest request) throws IOException {
+		request.socketTimeout(this.socketTimeout).prepareForExecute();
+		return this.executor.execute(request);
+	}
+	
+	/**
+	 * Download the resource with a single <code>GET</code> request.
+	 * 
+	 * @param url
+	 *            the URL of the resource
+	 * 
+	 * @param file
+	 *            the file to write to
+	 * 
+	 * @throws IOException
+	 *             if the download fails
+	 */
+	private void downloadWhole(String url, File file) throws IOException {
+		this.execute(WebRequest.get(url)).writeToFile(file);
+	}
+	
+	/**
+	 * Download the given ranges concurrently into the pre-allocated file.
+	 * 
+	 * @param url
+	 *            the URL of the resource
+	 * 
+	 * @param file
+	 *            the file to write to
+	 * 
+	 * @param resource
+	 *            the details of the resource
+	 * 
+	 * @param ranges
+	 *            the inclusive byte ranges to fetch
+	 * 
+	 * @param journal
+	 *            the {@link DownloadJournal} to record completed ranges in, may
+	 *            be <code>null</code>
+	 * 
+	 * @throws IOException
+	 *             if any range fails, failing with a
+	 *             {@link RangeIgnoredException} if the server answered a
+	 *             range with the full body
+	 */
+	private void downloadRanges(final String url, File file, final RemoteResource resource, List<long[]> ranges, final DownloadJournal journal) throws IOException {
+		if(ranges.isEmpty()) {
+			return;
+		}
+		
+		ExecutorService threads = Executors.newFixedThreadPool(Math.min(this.segments, ranges.size()), new ThreadFactory() {
+			
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "jerry-http-segment-" + THREAD_COUNTER.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+			
+		});
+		
+		try(RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+			randomAccessFile.setLength(resource.length);
+			final FileChannel channel = randomAccessFile.getChannel();
+			
+			// results are taken as they complete, so the first failure ends the wait
+			CompletionService<Void> completion = new ExecutorCompletionService<>(threads);
+			for(final long[] range : ranges) {
+				completion.submit(() -> {
+					fetchRange(url, resource, range[0], range[1], channel);
+					if(journal != null) {
+						// the data must be on disk before the journal claims it is
+						channel.force(false);
+						journal.append(range[0], range[1]);
+					}
+					
+					return null;
+				});
+			}
+			
+			for(int index = 0; index < ranges.size(); index++) {
+				try {
+					completion.take().get();
+				} catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IOException("Interrupted while downloading " + url, e);
+				} catch(ExecutionException e) {
+					Throwable cause = e.getCause();
+					if(cause instanceof IOException) {
+						throw (IOException) cause;
+					}
+					
+					throw new IOException("Unable to download segment of " + url, cause);
+				}
+			}
+		} finally {
+			threads.shutdownNow();
+			this.awaitTermination(threads, url);
+		}
+	}
+	
+	/**
+	 * Wait for segments still in flight after a failure to finish, so that no
+	 * request or write outlives the download. Running segments fail fast once
+	 * the file has been closed under them, and a stalled one within the
+	 * socket timeout; the wait is bounded accordingly.
+	 * 
+	 * @param threads
+	 *            the {@link ExecutorService} that was shut down
+	 * 
+	 * @param url
+	 *            the URL of the resource, for logging
+	 */
+	private void awaitTermination(ExecutorService threads, String url) {
+		try {
+			if(!threads.awaitTermination(this.socketTimeout + 1000L, TimeUnit.MILLISECONDS)) {
+				LOGGER.warn("Segments of {} still in flight after the socket timeout, giving up on them", url);
+			}
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * Fetch a single inclusive byte range and write it at its offset.
+	 * 
+	 * @param url
+	 *            the URL of the resource
+	 * 
+	 * @param resource
+	 *            the details of the resource
+	 * 
+	 * @param start
+	 *            the first byte of the range
+	 * 
+	 * @param end
+	 *            the last byte of the range
+	 * 
+	 * @param channel
+	 *            the {@link FileChannel} to write to
+	 * 
+	 * @return the number of bytes written
+	 * 
+	 * @throws IOException
+	 *             if the range cannot be fetched in full
+	 * 
+	 * @throws RangeIgnoredException
+	 *             if the server answered with the full body
+	 */
+	long fetchRange(String url, RemoteResource resource, long start, long end, FileChannel channel) throws IOException {
+		WebRequest request = WebRequest.get(url).addHeader(HttpHeaders.RANGE, "bytes=" + start + "-" + end);
+		String validator = resource.getValidator();
+		if(validator != null) {
+			request.addHeader(HttpHeaders.IF_RANGE, validator);
+		}
+		
+		StreamingWebResponse response = this.execute(request).streamingResponse();
+		try {
+			if(response.isSuccess() && response.getResponseCode() != 206) {
+				// a full response means ranges are not honoured, or the resource changed
+				throw new RangeIgnoredException("Server did not return the requested range of " + url + ": " + response.getResponseCode());
+			}
+			
+			if(response.getResponseCode() != 206) {
+				throw new HttpResponseException(response.getResponseCode(), "Server did not return the requested range: " + response.getMessage());
+			}
+			
+			ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+			ReadableByteChannel source = response.getChannel();
+			long position = start;
+			while(source.read(buffer) >= 0) {
+				buffer.flip();
+				while(buffer.hasRemaining()) {
+					position += channel.write(buffer, position);
+				}
+				
+				buffer.clear();
+			}
+			
+			long written = position - start;
+			if(written != end - start + 1) {
+				throw new IOException("Segment " + start + "-" + end + " of " + url + " ended after " + written + " bytes");
+			}
+			
+			response.close();
+			return written;
+		} finally {
+			// drop the connection instead of draining a response we do not want
+			response.abort();
+		}
+	}
+	
+	/**
+	 * Split the length into at most the given number of inclusive ranges, none
+	 * smaller than the minimum size except possibly the last.
+	 * 
+	 * @param length
+	 *            the total length
+	 * 
+	 * @param segments
+	 *            the maximum number of ranges
+	 * 
+	 * @param minSegmentSize
+	 *            the minimum size of a range
+	 * 
+	 * @return the ranges as <code>{start, end}</code> pairs
+	 */
+	static List<long[]> split(long length, int segments, long minSegmentSize) {
+		int count = (int) Math.max(1, Math.min(segments, length / minSegmentSize));
+		long size = (length + count - 1) / count;
+		
+		List<long[]> ranges = new ArrayList<>(count);
+		for(long start = 0; start < length; start += size) {
+			ranges.add(new long[] { start, Math.min(length, start + size) - 1 });
+		}
+		
+		return ranges;
+	}
+	
+	/**
+	 * Trim the value if not <code>null</code>.
+	 * 
+	 * @param value
+	 *            the value
+	 * 
+	 * @return the trimmed value, or <code>null</code>
+	 */
+	private static String trim(String value) {
+		if(value == null) {
+			return null;
+		}
+		
+		return value.trim();
+	}
+	
+	/**
+	 * Raised when a server answers a range request with the full body
+	 * 
+	 * @author sangupta
+	 *
+	 */
+	static class RangeIgnoredException extends IOException {
+		
+		private static final long serialVersionUID = 1L;
+		
+		RangeIgnoredException(String message) {
+			super(message);
+		}
+		
+	}
+	
+	/**
+	 * What the <code>HEAD</code> request revealed about a resource
+	 * 
+	 * @author sangupta
+	 *
+	 */
+	static class RemoteResource {
+		
+		long length = -1;
+		
+		boolean acceptsRanges;
+		
+		String etag;
+		
+		String lastModified;
+		
+		/**
+		 * @param minLength
+		 *            the minimum length worth splitting
+		 * 
+		 * @return <code>true</code> if the resource may be fetched in ranges
+		 */
+		boolean isSegmentable(long minLength) {
+			return this.acceptsRanges && this.length >= minLength;
+		}
+		
+		/**
+		 * Return the validator to send as <code>If-Range</code>. Weak
+		 * entity tags cannot be used for ranges.
+		 * 
+		 * @return the validator, or <code>null</code>
+		 */
+		String getValidator() {
+			if(this.etag != null && !this.etag.startsWith("W/")) {
+				return this.etag;
+			}
+			
+			return this.lastModified;
+		}
+		
+	}
+	
+}
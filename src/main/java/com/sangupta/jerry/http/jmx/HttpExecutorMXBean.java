@@ -0,0 +1,140 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http.jmx;
+
+import java.util.List;
+import java.util.Map;
+
+import com.sangupta.jerry.http.ConnectionPoolSnapshot.RouteStats;
+import com.sangupta.jerry.http.HttpExecutor;
+import com.sangupta.jerry.http.RateLimitSnapshot;
+
+/**
+ * Management interface of a {@link HttpExecutor}, that shows the state of its
+ * connection pool and rate limits and allows to resize both while the
+ * executor is in use. Register an executor via
+ * {@link HttpExecutorManagement#register(HttpExecutor, String)}.
+ * 
+ * @author sangupta
+ * 
+ * @since 2.0.1
+ */
+public interface HttpExecutorMXBean {
+	
+	/**
+	 * @return the number of connections in use, across all routes
+	 */
+	public int getLeased();
+	
+	/**
+	 * @return the number of idle connections kept, across all routes
+	 */
+	public int getAvailable();
+	
+	/**
+	 * @return the number of requests waiting for a connection, across all
+	 *         routes
+	 */
+	public int getPending();
+	
+	/**
+	 * @return the maximum number of connections in the pool
+	 */
+	public int getMaxTotal();
+	
+	/**
+	 * @param maxTotal
+	 *            the maximum number of connections in the pool
+	 */
+	public void setMaxTotal(int maxTotal);
+	
+	/**
+	 * @return the maximum number of connections per route, unless set for
+	 *         the route
+	 */
+	public int getDefaultMaxPerRoute();
+	
+	/**
+	 * @param maxPerRoute
+	 *            the maximum number of connections per route, unless set for
+	 *            the route
+	 */
+	public void setDefaultMaxPerRoute(int maxPerRoute);
+	
+	/**
+	 * @return the statistics of every route known to the pool
+	 */
+	public List<RouteStats> getRoutes();
+	
+	/**
+	 * @return <code>true</code> if the executor owns its connection pool,
+	 *         <code>false</code> if it uses the shared pool
+	 */
+	public boolean isOwnConnectionPool();
+	
+	/**
+	 * @return the current state of every rate limit
+	 */
+	public List<RateLimitSnapshot> getRateLimits();
+	
+	/**
+	 * @return the hosts being throttled on their request, mapped to the epoch
+	 *         millis until which they are throttled
+	 */
+	public Map<String, Long> getThrottledHosts();
+	
+	/**
+	 * Change the maximum number of connections to a route.
+	 * 
+	 * @param route
+	 *            the route, like <code>https://example.com:443</code>
+	 * 
+	 * @param maxPerRoute
+	 *            the maximum number of connections to the route
+	 */
+	public void setMaxPerRoute(String route, int maxPerRoute);
+	
+	/**
+	 * Set the rate limit of a host, replacing any previous limit.
+	 * 
+	 * @param host
+	 *            the host name, or <code>*.domain</code> for all its
+	 *            sub-domains
+	 * 
+	 * @param limit
+	 *            the number of requests allowed in each period
+	 * 
+	 * @param periodMillis
+	 *            the length of the period in milliseconds
+	 */
+	public void setRateLimit(String host, int limit, long periodMillis);
+	
+	/**
+	 * Remove the rate limit of a host.
+	 * 
+	 * @param host
+	 *            the host name, or <code>*.domain</code> for all its
+	 *            sub-domains
+	 */
+	public void removeRateLimit(String host);
+	
+}
@@ -0,0 +1,222 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http.jmx;
+
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.sangupta.jerry.http.ConnectionPoolSnapshot.RouteStats;
+import com.sangupta.jerry.http.HttpExecutor;
+import com.sangupta.jerry.http.RateLimitSnapshot;
+
+/**
+ * {@link HttpExecutorMXBean} over a {@link HttpExecutor}. Every read takes a
+ * fresh snapshot of the pool or rate limits, so that the values reflect the
+ * executor at the time of the read.
+ * 
+ * @author sangupta
+ * 
+ * @since 2.0.1
+ */
+public class HttpExecutorManagement implements HttpExecutorMXBean {
+	
+	/**
+	 * The domain under which executors are registered
+	 */
+	public static final String DOMAIN = "com.sangupta.jerry.http";
+	
+	/**
+	 * The executor being managed
+	 */
+	private final HttpExecutor executor;
+	
+	/**
+	 * Create the management bean of the given executor.
+	 * 
+	 * @param executor
+	 *            the {@link HttpExecutor} to manage
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the executor is <code>null</code>
+	 */
+	public HttpExecutorManagement(HttpExecutor executor) {
+		if(executor == null) {
+			throw new IllegalArgumentException("Executor cannot be null");
+		}
+		
+		this.executor = executor;
+	}
+	
+	/**
+	 * Register the given executor with the platform {@link MBeanServer} under
+	 * <code>com.sangupta.jerry.http:type=HttpExecutor,name=&lt;name&gt;</code>.
+	 * 
+	 * @param executor
+	 *            the {@link HttpExecutor} to register
+	 * 
+	 * @param name
+	 *            the name to register the executor with
+	 * 
+	 * @return the {@link ObjectName} the executor was registered with
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the executor or name is <code>null</code>
+	 * 
+	 * @throws IllegalStateException
+	 *             if the bean cannot be registered, like when the name is
+	 *             already in use
+	 */
+	public static ObjectName register(HttpExecutor executor, String name) {
+		ObjectName objectName = getObjectName(name);
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(new HttpExecutorManagement(executor), objectName);
+			return objectName;
+		} catch(JMException e) {
+			throw new IllegalStateException("Unable to register executor as " + objectName, e);
+		}
+	}
+	
+	/**
+	 * Unregister the executor registered with the given name, if any.
+	 * 
+	 * @param name
+	 *            the name the executor was registered with
+	 * 
+	 * @return <code>true</code> if an executor was unregistered
+	 */
+	public static boolean unregister(String name) {
+		ObjectName objectName = getObjectName(name);
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			if(!server.isRegistered(objectName)) {
+				return false;
+			}
+			
+			server.unregisterMBean(objectName);
+			return true;
+		} catch(JMException e) {
+			// unregistered concurrently
+			return false;
+		}
+	}
+	
+	/**
+	 * Return the {@link ObjectName} for the executor of the given name.
+	 * 
+	 * @param name
+	 *            the name of the executor
+	 * 
+	 * @return the {@link ObjectName}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the name is <code>null</code> or empty
+	 */
+	public static ObjectName getObjectName(String name) {
+		if(name == null || name.trim().isEmpty()) {
+			throw new IllegalArgumentException("Name cannot be null or empty");
+		}
+		
+		try {
+			return new ObjectName(DOMAIN + ":type=HttpExecutor,name=" + ObjectName.quote(name));
+		} catch(JMException e) {
+			throw new IllegalArgumentException("Invalid executor name: " + name, e);
+		}
+	}
+	
+	@Override
+	public int getLeased() {
+		return this.executor.getConnectionPoolSnapshot().getLeased();
+	}
+	
+	@Override
+	public int getAvailable() {
+		return this.executor.getConnectionPoolSnapshot().getAvailable();
+	}
+	
+	@Override
+	public int getPending() {
+		return this.executor.getConnectionPoolSnapshot().getPending();
+	}
+	
+	@Override
+	public int getMaxTotal() {
+		return this.executor.getConnectionPoolSnapshot().getMax();
+	}
+	
+	@Override
+	public void setMaxTotal(int maxTotal) {
+		this.executor.maxConnections(maxTotal);
+	}
+	
+	@Override
+	public int getDefaultMaxPerRoute() {
+		return this.executor.getConnectionPoolSnapshot().getDefaultMaxPerRoute();
+	}
+	
+	@Override
+	public void setDefaultMaxPerRoute(int maxPerRoute) {
+		this.executor.maxConnectionsPerRoute(maxPerRoute);
+	}
+	
+	@Override
+	public List<RouteStats> getRoutes() {
+		return this.executor.getConnectionPoolSnapshot().getRoutes();
+	}
+	
+	@Override
+	public boolean isOwnConnectionPool() {
+		return this.executor.hasOwnConnectionPool();
+	}
+	
+	@Override
+	public List<RateLimitSnapshot> getRateLimits() {
+		return this.executor.getRateLimitSnapshots();
+	}
+	
+	@Override
+	public Map<String, Long> getThrottledHosts() {
+		return this.executor.getThrottledHosts();
+	}
+	
+	@Override
+	public void setMaxPerRoute(String route, int maxPerRoute) {
+		this.executor.maxConnectionsOnHost(URI.create(route), maxPerRoute);
+	}
+	
+	@Override
+	public void setRateLimit(String host, int limit, long periodMillis) {
+		this.executor.setRateLimiting(host, limit, periodMillis, TimeUnit.MILLISECONDS);
+	}
+	
+	@Override
+	public void removeRateLimit(String host) {
+		this.executor.removeRateLimiting(host);
+	}
+	
+}
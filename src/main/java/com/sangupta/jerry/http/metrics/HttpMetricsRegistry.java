@@ -0,0 +1,136 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http.metrics;
+
+/**
+ * Contract for a registry that receives the measurements taken by the
+ * {@link com.sangupta.jerry.http.HttpExecutor} for every request it sends.
+ * Implementations may keep the values in memory, like
+ * {@link InMemoryHttpMetricsRegistry}, or export them to any monitoring
+ * system.
+ * 
+ * All methods are called on the thread executing the request, and must thus
+ * be thread-safe and cheap. Every method does nothing by default, so that an
+ * implementation only needs to override what it is interested in.
+ * 
+ * @author sangupta
+ * 
+ * @since 2.0.1
+ */
+public interface HttpMetricsRegistry {
+	
+	/**
+	 * Record the time taken by a request to receive the response headers,
+	 * including the wait for a pooled connection and the connection set-up.
+	 * Reading the body is not included, as it is up to the caller.
+	 * 
+	 * @param host
+	 *            the host the request was sent to
+	 * 
+	 * @param statusCode
+	 *            the status code of the response
+	 * 
+	 * @param nanos
+	 *            the time taken, in nanoseconds
+	 */
+	public default void recordLatency(String host, int statusCode, long nanos) {
+		// do nothing
+	}
+	
+	/**
+	 * Record the time a request waited to lease a connection from the pool.
+	 * 
+	 * @param host
+	 *            the host the request was sent to
+	 * 
+	 * @param nanos
+	 *            the time waited, in nanoseconds
+	 */
+	public default void recordPoolLeaseWait(String host, long nanos) {
+		// do nothing
+	}
+	
+	/**
+	 * Record the time taken to open a new connection, including the TLS
+	 * handshake for secure connections.
+	 * 
+	 * @param host
+	 *            the host connected to
+	 * 
+	 * @param nanos
+	 *            the time taken, in nanoseconds
+	 */
+	public default void recordConnect(String host, long nanos) {
+		// do nothing
+	}
+	
+	/**
+	 * Record the number of body bytes sent with a request.
+	 * 
+	 * @param host
+	 *            the host the request was sent to
+	 * 
+	 * @param bytes
+	 *            the number of bytes sent
+	 */
+	public default void recordBytesSent(String host, long bytes) {
+		// do nothing
+	}
+	
+	/**
+	 * Record the number of body bytes received with a response, once the body
+	 * has been read or closed.
+	 * 
+	 * @param host
+	 *            the host the response came from
+	 * 
+	 * @param bytes
+	 *            the number of bytes received
+	 */
+	public default void recordBytesReceived(String host, long bytes) {
+		// do nothing
+	}
+	
+	/**
+	 * Record that a request was rejected by client-side rate-limiting.
+	 * 
+	 * @param host
+	 *            the host the request was for
+	 */
+	public default void recordRateLimitRejection(String host) {
+		// do nothing
+	}
+	
+	/**
+	 * Record that a request failed without a response.
+	 * 
+	 * @param host
+	 *            the host the request was sent to
+	 * 
+	 * @param error
+	 *            the failure
+	 */
+	public default void recordError(String host, Throwable error) {
+		// do nothing
+	}
+	
+}
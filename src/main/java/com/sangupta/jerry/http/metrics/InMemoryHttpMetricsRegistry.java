@@ -0,0 +1,310 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http.metrics;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link HttpMetricsRegistry} that keeps all measurements in memory, per host:
+ * a {@link LatencyHistogram} per status code and one across all status codes,
+ * histograms of the pool lease wait and of the connect time, and counters of
+ * the bytes transferred, of rate-limit rejections and of errors by type.
+ * 
+ * The values are meant to be read periodically, for display or to be exported
+ * to a monitoring system.
+ * 
+ * @author sangupta
+ * 
+ * @since 2.0.1
+ */
+public class InMemoryHttpMetricsRegistry implements HttpMetricsRegistry {
+	
+	/**
+	 * The metrics per host
+	 */
+	private final ConcurrentMap<String, HostMetrics> hosts = new ConcurrentHashMap<>();
+	
+	@Override
+	public void recordLatency(String host, int statusCode, long nanos) {
+		HostMetrics metrics = this.metrics(host);
+		metrics.latency.record(nanos);
+		LatencyHistogram histogram = metrics.latencyByStatus.get(statusCode);
+		if(histogram == null) {
+			histogram = metrics.latencyByStatus.computeIfAbsent(statusCode, code -> new LatencyHistogram());
+		}
+		
+		histogram.record(nanos);
+	}
+	
+	@Override
+	public void recordPoolLeaseWait(String host, long nanos) {
+		this.metrics(host).poolLeaseWait.record(nanos);
+	}
+	
+	@Override
+	public void recordConnect(String host, long nanos) {
+		this.metrics(host).connect.record(nanos);
+	}
+	
+	@Override
+	public void recordBytesSent(String host, long bytes) {
+		this.metrics(host).bytesSent.add(bytes);
+	}
+	
+	@Override
+	public void recordBytesReceived(String host, long bytes) {
+		this.metrics(host).bytesReceived.add(bytes);
+	}
+	
+	@Override
+	public void recordRateLimitRejection(String host) {
+		this.metrics(host).rateLimitRejections.increment();
+	}
+	
+	@Override
+	public void recordError(String host, Throwable error) {
+		String type = error == null ? "unknown" : error.getClass().getName();
+		this.metrics(host).errors.computeIfAbsent(type, key -> new LongAdder()).increment();
+	}
+	
+	/**
+	 * Return the hosts that something has been recorded for.
+	 * 
+	 * @return the unmodifiable set of hosts
+	 */
+	public Set<String> getHosts() {
+		return Collections.unmodifiableSet(this.hosts.keySet());
+	}
+	
+	/**
+	 * Return the latencies of all responses received from a host.
+	 * 
+	 * @param host
+	 *            the host
+	 * 
+	 * @return the {@link LatencyHistogram}, or <code>null</code> if nothing
+	 *         has been recorded for the host
+	 */
+	public LatencyHistogram getLatency(String host) {
+		HostMetrics metrics = this.hosts.get(key(host));
+		return metrics == null ? null : metrics.latency;
+	}
+	
+	/**
+	 * Return the latencies of the responses with the given status code
+	 * received from a host.
+	 * 
+	 * @param host
+	 *            the host
+	 * 
+	 * @param statusCode
+	 *            the status code
+	 * 
+	 * @return the {@link LatencyHistogram}, or <code>null</code> if no such
+	 *         response has been recorded
+	 */
+	public LatencyHistogram getLatency(String host, int statusCode) {
+		HostMetrics metrics = this.hosts.get(key(host));
+		return metrics == null ? null : metrics.latencyByStatus.get(statusCode);
+	}
+	
+	/**
+	 * Return the status codes received from a host.
+	 * 
+	 * @param host
+	 *            the host
+	 * 
+	 * @return the unmodifiable set of status codes, empty if nothing has been
+	 *         recorded for the host
+	 */
+	public Set<Integer> getStatusCodes(String host) {
+		HostMetrics metrics = this.hosts.get(key(host));
+		if(metrics == null) {
+			return Collections.emptySet();
+		}
+		
+		return Collections.unmodifiableSet(metrics.latencyByStatus.keySet());
+	}
+	
+	/**
+	 * Return the time requests to a host waited to lease a pooled connection.
+	 * 
+	 * @param host
+	 *            the host
+	 * 
+	 * @return the {@link LatencyHistogram}, or <code>null</code> if nothing
+	 *         has been recorded for the host
+	 */
+	public LatencyHistogram getPoolLeaseWait(String host) {
+		HostMetrics metrics = this.hosts.get(key(host));
+		return metrics == null ? null : metrics.poolLeaseWait;
+	}
+	
+	/**
+	 * Return the time taken to open connections to a host.
+	 * 
+	 * @param host
+	 *            the host
+	 * 
+	 * @return the {@link LatencyHistogram}, or <code>null</code> if nothing
+	 *         has been recorded for the host
+	 */
+	public LatencyHistogram getConnect(String host) {
+		HostMetrics metrics = this.hosts.get(key(host));
+		return metrics == null ? null : metrics.connect;
+	}
+	
+	/**
+	 * Return the number of body bytes sent to a host.
+	 * 
+	 * @param host
+	 *            the host
+	 * 
+	 * @return the number of bytes sent
+	 */
+	public long getBytesSent(String host) {
+		HostMetrics metrics = this.hosts.get(key(host));
+		return metrics == null ? 0 : metrics.bytesSent.sum();
+	}
+	
+	/**
+	 * Return the number of body bytes received from a host.
+	 * 
+	 * @param host
+	 *            the host
+	 * 
+	 * @return the number of bytes received
+	 */
+	public long getBytesReceived(String host) {
+		HostMetrics metrics = this.hosts.get(key(host));
+		return metrics == null ? 0 : metrics.bytesReceived.sum();
+	}
+	
+	/**
+	 * Return the number of requests to a host rejected by client-side
+	 * rate-limiting.
+	 * 
+	 * @param host
+	 *            the host
+	 * 
+	 * @return the number of rejections
+	 */
+	public long getRateLimitRejections(String host) {
+		HostMetrics metrics = this.hosts.get(key(host));
+		return metrics == null ? 0 : metrics.rateLimitRejections.sum();
+	}
+	
+	/**
+	 * Return the number of requests to a host that failed without a response.
+	 * 
+	 * @param host
+	 *            the host
+	 * 
+	 * @return the number of errors
+	 */
+	public long getErrorCount(String host) {
+		long total = 0;
+		for(long count : this.getErrorCounts(host).values()) {
+			total += count;
+		}
+		
+		return total;
+	}
+	
+	/**
+	 * Return the number of requests to a host that failed without a response,
+	 * by the class name of the failure.
+	 * 
+	 * @param host
+	 *            the host
+	 * 
+	 * @return the error counts by type
+	 */
+	public Map<String, Long> getErrorCounts(String host) {
+		HostMetrics metrics = this.hosts.get(key(host));
+		Map<String, Long> counts = new HashMap<>();
+		if(metrics != null) {
+			for(Map.Entry<String, LongAdder> entry : metrics.errors.entrySet()) {
+				counts.put(entry.getKey(), entry.getValue().sum());
+			}
+		}
+		
+		return counts;
+	}
+	
+	/**
+	 * Clear everything recorded so far.
+	 * 
+	 */
+	public void reset() {
+		this.hosts.clear();
+	}
+	
+	private HostMetrics metrics(String host) {
+		String key = key(host);
+		
+		// look up first, as computeIfAbsent locks even when the key is present
+		HostMetrics metrics = this.hosts.get(key);
+		if(metrics != null) {
+			return metrics;
+		}
+		
+		return this.hosts.computeIfAbsent(key, created -> new HostMetrics());
+	}
+	
+	private static String key(String host) {
+		return host == null ? "" : host.toLowerCase();
+	}
+	
+	/**
+	 * The metrics of a single host
+	 * 
+	 * @author sangupta
+	 *
+	 */
+	private static class HostMetrics {
+		
+		final LatencyHistogram latency = new LatencyHistogram();
+		
+		final ConcurrentMap<Integer, LatencyHistogram> latencyByStatus = new ConcurrentHashMap<>();
+		
+		final LatencyHistogram poolLeaseWait = new LatencyHistogram();
+		
+		final LatencyHistogram connect = new LatencyHistogram();
+		
+		final LongAdder bytesSent = new LongAdder();
+		
+		final LongAdder bytesReceived = new LongAdder();
+		
+		final LongAdder rateLimitRejections = new LongAdder();
+		
+		final ConcurrentMap<String, LongAdder> errors = new ConcurrentHashMap<>();
+		
+	}
+	
+}
@@ -0,0 +1,235 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of latencies, in the spirit of an HDR histogram: values
+ * are counted in buckets whose width grows with the magnitude of the value, so
+ * that every value is tracked with a relative error of about 3% while the
+ * memory used stays fixed. Recording a value is a handful of atomic
+ * increments and never blocks.
+ * 
+ * Values are expected in nanoseconds; values larger than about 73 minutes
+ * are counted in the last bucket.
+ * 
+ * @author sangupta
+ * 
+ * @since 2.0.1
+ */
+public final class LatencyHistogram {
+	
+	/**
+	 * Number of bits of precision kept for each value
+	 */
+	private static final int SUB_BUCKET_BITS = 5;
+	
+	/**
+	 * Number of buckets per power of two
+	 */
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+	
+	/**
+	 * Highest power of two that is tracked exactly, as nanoseconds
+	 */
+	private static final int MAX_MAGNITUDE = 41;
+	
+	/**
+	 * Total number of buckets
+	 */
+	private static final int BUCKET_COUNT = (MAX_MAGNITUDE - SUB_BUCKET_BITS + 2) * SUB_BUCKET_COUNT;
+	
+	/**
+	 * The count of values per bucket
+	 */
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+	
+	/**
+	 * Total number of values recorded
+	 */
+	private final LongAdder count = new LongAdder();
+	
+	/**
+	 * Sum of all values recorded
+	 */
+	private final LongAdder sum = new LongAdder();
+	
+	/**
+	 * Largest value recorded
+	 */
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+	
+	/**
+	 * Record a value.
+	 * 
+	 * @param value
+	 *            the value, in nanoseconds - negative values are counted as
+	 *            <code>0</code>
+	 */
+	public void record(long value) {
+		if(value < 0) {
+			value = 0;
+		}
+		
+		this.buckets.incrementAndGet(bucketIndex(value));
+		this.count.increment();
+		this.sum.add(value);
+		this.max.accumulate(value);
+	}
+	
+	/**
+	 * Return the number of values recorded.
+	 * 
+	 * @return the number of values recorded
+	 */
+	public long getCount() {
+		return this.count.sum();
+	}
+	
+	/**
+	 * Return the largest value recorded.
+	 * 
+	 * @return the largest value, or <code>0</code> if none has been recorded
+	 */
+	public long getMax() {
+		return this.max.get();
+	}
+	
+	/**
+	 * Return the mean of the values recorded.
+	 * 
+	 * @return the mean, or <code>0</code> if no value has been recorded
+	 */
+	public double getMean() {
+		long total = this.count.sum();
+		if(total == 0) {
+			return 0;
+		}
+		
+		return (double) this.sum.sum() / total;
+	}
+	
+	/**
+	 * Return the value below which the given percentage of the recorded values
+	 * fall, within the precision of the histogram.
+	 * 
+	 * @param percentile
+	 *            the percentile, between <code>0</code> and <code>100</code>
+	 * 
+	 * @return the value at the percentile, or <code>0</code> if no value has
+	 *         been recorded
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the percentile is out of range
+	 */
+	public long getValueAtPercentile(double percentile) {
+		if(percentile < 0 || percentile > 100) {
+			throw new IllegalArgumentException("Percentile must be between 0 and 100");
+		}
+		
+		long total = 0;
+		long[] counts = new long[BUCKET_COUNT];
+		for(int index = 0; index < BUCKET_COUNT; index++) {
+			counts[index] = this.buckets.get(index);
+			total += counts[index];
+		}
+		
+		if(total == 0) {
+			return 0;
+		}
+		
+		long target = Math.max(1, (long) Math.ceil(percentile / 100d * total));
+		long seen = 0;
+		for(int index = 0; index < BUCKET_COUNT; index++) {
+			seen += counts[index];
+			if(seen >= target) {
+				return Math.min(highestValueInBucket(index), this.getMax());
+			}
+		}
+		
+		return this.getMax();
+	}
+	
+	/**
+	 * Clear all values recorded so far. Values recorded while resetting may be
+	 * partially lost.
+	 * 
+	 */
+	public void reset() {
+		for(int index = 0; index < BUCKET_COUNT; index++) {
+			this.buckets.set(index, 0);
+		}
+		
+		this.count.reset();
+		this.sum.reset();
+		this.max.reset();
+	}
+	
+	/**
+	 * Return the bucket in which the given value is counted.
+	 * 
+	 * @param value
+	 *            the non-negative value
+	 * 
+	 * @return the index of the bucket
+	 */
+	static int bucketIndex(long value) {
+		if(value < SUB_BUCKET_COUNT) {
+			return (int) value;
+		}
+		
+		int magnitude = 63 - Long.numberOfLeadingZeros(value);
+		if(magnitude > MAX_MAGNITUDE) {
+			return BUCKET_COUNT - 1;
+		}
+		
+		int shift = magnitude - SUB_BUCKET_BITS;
+		return (shift + 1) * SUB_BUCKET_COUNT + (int) ((value >>> shift) - SUB_BUCKET_COUNT);
+	}
+	
+	/**
+	 * Return the highest value that is counted in the given bucket.
+	 * 
+	 * @param index
+	 *            the index of the bucket
+	 * 
+	 * @return the highest value of the bucket
+	 */
+	static long highestValueInBucket(int index) {
+		if(index < SUB_BUCKET_COUNT) {
+			return index;
+		}
+		
+		int shift = index / SUB_BUCKET_COUNT - 1;
+		long lowest = (long) (index % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT) << shift;
+		return lowest + (1L << shift) - 1;
+	}
+	
+	@Override
+	public String toString() {
+		return "LatencyHistogram [count=" + this.getCount() + ", mean=" + this.getMean() + ", p50=" + this.getValueAtPercentile(50) + ", p99=" + this.getValueAtPercentile(99) + ", max=" + this.getMax() + "]";
+	}
+	
+}
@@ -24,8 +24,12 @@ package com.sangupta.jerry.http.mock;
 import java.io.File;
 import java.io.IOException;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicReference;
 
+import com.sangupta.jerry.http.Bulkhead;
+import com.sangupta.jerry.http.CircuitBreaker;
+import com.sangupta.jerry.http.RetryPolicy;
 import com.sangupta.jerry.http.WebRequest;
 import com.sangupta.jerry.http.WebRequestMethod;
 import com.sangupta.jerry.http.WebResponse;
@@ -185,6 +189,84 @@ public class MockHttpServiceImpl implements HttpService {
 		return this.getResponse();
 	}
 
+	// Asynchronous variants - the mocked response is picked in the calling
+	// thread, so thread-local responses work the same as for blocking calls
+	
+	@Override
+	public CompletableFuture<String> getTextResponseAsync(String url) {
+		return CompletableFuture.completedFuture(this.getTextResponse(url));
+	}
+
+	@Override
+	public CompletableFuture<WebResponse> getResponseAsync(String url) {
+		return CompletableFuture.completedFuture(this.getResponse());
+	}
+
+	@Override
+	public CompletableFuture<Map<String, String>> getResponseHeadersAsync(String url) {
+		return CompletableFuture.completedFuture(this.getResponseHeaders(url));
+	}
+
+	@Override
+	public CompletableFuture<WebResponse> doHEADAsync(String url) {
+		return CompletableFuture.completedFuture(this.getResponse());
+	}
+
+	@Override
+	public CompletableFuture<WebResponse> doGETAsync(String url) {
+		return CompletableFuture.completedFuture(this.getResponse());
+	}
+
+	@Override
+	public CompletableFuture<WebResponse> doPOSTAsync(String url, String requestBody, String mimeType) {
+		return CompletableFuture.completedFuture(this.getResponse());
+	}
+
+	@Override
+	public CompletableFuture<WebResponse> doPUTAsync(String url, String requestBody, String mimeType) {
+		return CompletableFuture.completedFuture(this.getResponse());
+	}
+
+	@Override
+	public CompletableFuture<WebResponse> doPATCHAsync(String url, String requestBody, String mimeType) {
+		return CompletableFuture.completedFuture(this.getResponse());
+	}
+
+	@Override
+	public CompletableFuture<WebResponse> doDELETEAsync(String url) {
+		return CompletableFuture.completedFuture(this.getResponse());
+	}
+
+	@Override
+	public CompletableFuture<WebResponse> doOPTIONSAsync(String url) {
+		return CompletableFuture.completedFuture(this.getResponse());
+	}
+
+	@Override
+	public CompletableFuture<WebResponse> doTRACEAsync(String url) {
+		return CompletableFuture.completedFuture(this.getResponse());
+	}
+
+	@Override
+	public CompletableFuture<WebResponse> postXMLAsync(String uri, Object object) {
+		return CompletableFuture.completedFuture(this.getResponse());
+	}
+
+	@Override
+	public CompletableFuture<WebResponse> postJSONAsync(String uri, Object object) {
+		return CompletableFuture.completedFuture(this.getResponse());
+	}
+
+	@Override
+	public CompletableFuture<WebResponse> executeAsync(WebRequest request) {
+		return CompletableFuture.completedFuture(this.getResponse());
+	}
+
+	@Override
+	public CompletableFuture<WebResponse> plainExecuteAsync(WebRequest request) {
+		return CompletableFuture.completedFuture(this.getResponse());
+	}
+
 	@Override
 	public void setConnectionTimeout(int millis) {
 		// ignore - nothing to do
@@ -194,6 +276,26 @@ public class MockHttpServiceImpl implements HttpService {
 	public void setSocketTimeout(int millis) {
 		// ignore - nothing to do
 	}
+	
+	@Override
+	public void setRetryPolicy(RetryPolicy retryPolicy) {
+		// ignore - nothing to do
+	}
+	
+	@Override
+	public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+		// ignore - nothing to do
+	}
+	
+	@Override
+	public void addBulkhead(Bulkhead bulkhead, String... hosts) {
+		// ignore - nothing to do
+	}
+	
+	@Override
+	public boolean removeBulkhead(String name) {
+		return false;
+	}
 
 	@Override
 	public File downloadToTempFile(String url) throws IOException {
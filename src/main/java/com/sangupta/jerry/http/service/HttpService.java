@@ -24,9 +24,13 @@ package com.sangupta.jerry.http.service;
 import java.io.File;
 import java.io.IOException;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import com.google.gson.Gson;
 import com.sangupta.jerry.constants.HttpMimeType;
+import com.sangupta.jerry.http.Bulkhead;
+import com.sangupta.jerry.http.CircuitBreaker;
+import com.sangupta.jerry.http.RetryPolicy;
 import com.sangupta.jerry.http.WebRequest;
 import com.sangupta.jerry.http.WebRequestMethod;
 import com.sangupta.jerry.http.WebResponse;
@@ -247,6 +251,293 @@ public interface HttpService {
 	 */
 	public WebResponse plainExecuteSilently(WebRequest request);
 	
+	// Asynchronous variants
+	
+	/**
+	 * Asynchronous variant of {@link #getTextResponse(String)}. Implementations
+	 * that execute without blocking, like
+	 * {@link com.sangupta.jerry.http.service.impl.DefaultHttpServiceImpl}, do
+	 * not eat up failures: the returned future completes exceptionally with
+	 * the {@link IOException} encountered.
+	 * 
+	 * The default implementation runs {@link #getTextResponse(String)} in the
+	 * {@link java.util.concurrent.ForkJoinPool#commonPool()}, and thus completes
+	 * with <code>null</code> where the blocking variant does.
+	 * 
+	 * @param url
+	 *            the url to hit
+	 * 
+	 * @return the {@link CompletableFuture} for the string response body
+	 */
+	public default CompletableFuture<String> getTextResponseAsync(String url) {
+		return CompletableFuture.supplyAsync(() -> this.getTextResponse(url));
+	}
+	
+	/**
+	 * Asynchronous variant of {@link #getResponse(String)}.
+	 * 
+	 * The default implementation runs {@link #getResponse(String)} in the
+	 * {@link java.util.concurrent.ForkJoinPool#commonPool()}, and thus completes
+	 * with <code>null</code> where the blocking variant does.
+	 * 
+	 * @param url
+	 *            the url to hit
+	 * 
+	 * @return the {@link CompletableFuture} for the {@link WebResponse}
+	 */
+	public default CompletableFuture<WebResponse> getResponseAsync(String url) {
+		return CompletableFuture.supplyAsync(() -> this.getResponse(url));
+	}
+	
+	/**
+	 * Asynchronous variant of {@link #getResponseHeaders(String)}.
+	 * 
+	 * The default implementation runs {@link #getResponseHeaders(String)} in the
+	 * {@link java.util.concurrent.ForkJoinPool#commonPool()}, and thus completes
+	 * with <code>null</code> where the blocking variant does.
+	 * 
+	 * @param url
+	 *            the url to hit
+	 * 
+	 * @return the {@link CompletableFuture} for the {@link Map} of all header
+	 *         values
+	 */
+	public default CompletableFuture<Map<String, String>> getResponseHeadersAsync(String url) {
+		return CompletableFuture.supplyAsync(() -> this.getResponseHeaders(url));
+	}
+	
+	/**
+	 * Asynchronous variant of {@link #doHEAD(String)}.
+	 * 
+	 * The default implementation runs {@link #doHEAD(String)} in the
+	 * {@link java.util.concurrent.ForkJoinPool#commonPool()}, and thus completes
+	 * with <code>null</code> where the blocking variant does.
+	 * 
+	 * @param url
+	 *            the url to hit
+	 * 
+	 * @return the {@link CompletableFuture} for the {@link WebResponse}
+	 */
+	public default CompletableFuture<WebResponse> doHEADAsync(String url) {
+		return CompletableFuture.supplyAsync(() -> this.doHEAD(url));
+	}
+	
+	/**
+	 * Asynchronous variant of {@link #doGET(String)}.
+	 * 
+	 * The default implementation runs {@link #doGET(String)} in the
+	 * {@link java.util.concurrent.ForkJoinPool#commonPool()}, and thus completes
+	 * with <code>null</code> where the blocking variant does.
+	 * 
+	 * @param url
+	 *            the url to hit
+	 * 
+	 * @return the {@link CompletableFuture} for the {@link WebResponse}
+	 */
+	public default CompletableFuture<WebResponse> doGETAsync(String url) {
+		return CompletableFuture.supplyAsync(() -> this.doGET(url));
+	}
+	
+	/**
+	 * Asynchronous variant of {@link #doPOST(String, String, String)}.
+	 * 
+	 * The default implementation runs {@link #doPOST(String, String, String)} in the
+	 * {@link java.util.concurrent.ForkJoinPool#commonPool()}, and thus completes
+	 * with <code>null</code> where the blocking variant does.
+	 * 
+	 * @param url
+	 *            the url to hit
+	 * 
+	 * @param requestBody
+	 *            the request body to set
+	 * 
+	 * @param mimeType
+	 *            the {@link HttpMimeType} for the request
+	 * 
+	 * @return the {@link CompletableFuture} for the {@link WebResponse}
+	 */
+	public default CompletableFuture<WebResponse> doPOSTAsync(String url, String requestBody, String mimeType) {
+		return CompletableFuture.supplyAsync(() -> this.doPOST(url, requestBody, mimeType));
+	}
+	
+	/**
+	 * Asynchronous variant of {@link #doPUT(String, String, String)}.
+	 * 
+	 * The default implementation runs {@link #doPUT(String, String, String)} in the
+	 * {@link java.util.concurrent.ForkJoinPool#commonPool()}, and thus completes
+	 * with <code>null</code> where the blocking variant does.
+	 * 
+	 * @param url
+	 *            the url to hit
+	 * 
+	 * @param requestBody
+	 *            the request body to set
+	 * 
+	 * @param mimeType
+	 *            the {@link HttpMimeType} for the request
+	 * 
+	 * @return the {@link CompletableFuture} for the {@link WebResponse}
+	 */
+	public default CompletableFuture<WebResponse> doPUTAsync(String url, String requestBody, String mimeType) {
+		return CompletableFuture.supplyAsync(() -> this.doPUT(url, requestBody, mimeType));
+	}
+	
+	/**
+	 * Asynchronous variant of {@link #doPATCH(String, String, String)}.
+	 * 
+	 * The default implementation runs {@link #doPATCH(String, String, String)} in the
+	 * {@link java.util.concurrent.ForkJoinPool#commonPool()}, and thus completes
+	 * with <code>null</code> where the blocking variant does.
+	 * 
+	 * @param url
+	 *            the url to hit
+	 * 
+	 * @param requestBody
+	 *            the request body to set
+	 * 
+	 * @param mimeType
+	 *            the {@link HttpMimeType} for the request
+	 * 
+	 * @return the {@link CompletableFuture} for the {@link WebResponse}
+	 */
+	public default CompletableFuture<WebResponse> doPATCHAsync(String url, String requestBody, String mimeType) {
+		return CompletableFuture.supplyAsync(() -> this.doPATCH(url, requestBody, mimeType));
+	}
+	
+	/**
+	 * Asynchronous variant of {@link #doDELETE(String)}.
+	 * 
+	 * The default implementation runs {@link #doDELETE(String)} in the
+	 * {@link java.util.concurrent.ForkJoinPool#commonPool()}, and thus completes
+	 * with <code>null</code> where the blocking variant does.
+	 * 
+	 * @param url
+	 *            the url to hit
+	 * 
+	 * @return the {@link CompletableFuture} for the {@link WebResponse}
+	 */
+	public default CompletableFuture<WebResponse> doDELETEAsync(String url) {
+		return CompletableFuture.supplyAsync(() -> this.doDELETE(url));
+	}
+	
+	/**
+	 * Asynchronous variant of {@link #doOPTIONS(String)}.
+	 * 
+	 * The default implementation runs {@link #doOPTIONS(String)} in the
+	 * {@link java.util.concurrent.ForkJoinPool#commonPool()}, and thus completes
+	 * with <code>null</code> where the blocking variant does.
+	 * 
+	 * @param url
+	 *            the url to hit
+	 * 
+	 * @return the {@link CompletableFuture} for the {@link WebResponse}
+	 */
+	public default CompletableFuture<WebResponse> doOPTIONSAsync(String url) {
+		return CompletableFuture.supplyAsync(() -> this.doOPTIONS(url));
+	}
+	
+	/**
+	 * Asynchronous variant of {@link #doTRACE(String)}.
+	 * 
+	 * The default implementation runs {@link #doTRACE(String)} in the
+	 * {@link java.util.concurrent.ForkJoinPool#commonPool()}, and thus completes
+	 * with <code>null</code> where the blocking variant does.
+	 * 
+	 * @param url
+	 *            the url to hit
+	 * 
+	 * @return the {@link CompletableFuture} for the {@link WebResponse}
+	 */
+	public default CompletableFuture<WebResponse> doTRACEAsync(String url) {
+		return CompletableFuture.supplyAsync(() -> this.doTRACE(url));
+	}
+	
+	/**
+	 * Asynchronous variant of {@link #postXML(String, Object)}.
+	 * 
+	 * The default implementation runs {@link #postXML(String, Object)} in the
+	 * {@link java.util.concurrent.ForkJoinPool#commonPool()}, and thus completes
+	 * with <code>null</code> where the blocking variant does.
+	 * 
+	 * @param uri
+	 *            the url to hit
+	 * 
+	 * @param object
+	 *            the object to be sent in request body
+	 * 
+	 * @return the {@link CompletableFuture} for the {@link WebResponse}
+	 */
+	public default CompletableFuture<WebResponse> postXMLAsync(final String uri, final Object object) {
+		return CompletableFuture.supplyAsync(() -> this.postXML(uri, object));
+	}
+	
+	/**
+	 * Asynchronous variant of {@link #postJSON(String, Object)}.
+	 * 
+	 * The default implementation runs {@link #postJSON(String, Object)} in the
+	 * {@link java.util.concurrent.ForkJoinPool#commonPool()}, and thus completes
+	 * with <code>null</code> where the blocking variant does.
+	 * 
+	 * @param uri
+	 *            the url to hit
+	 * 
+	 * @param object
+	 *            the object to be sent in request body
+	 * 
+	 * @return the {@link CompletableFuture} for the {@link WebResponse}
+	 */
+	public default CompletableFuture<WebResponse> postJSONAsync(final String uri, final Object object) {
+		return CompletableFuture.supplyAsync(() -> this.postJSON(uri, object));
+	}
+	
+	/**
+	 * Asynchronous variant of {@link #executeSilently(WebRequest)}: the
+	 * request is massaged for connection/socket timeouts, cookie policy and
+	 * redirects before being executed.
+	 * 
+	 * The default implementation runs {@link #executeSilently(WebRequest)} in the
+	 * {@link java.util.concurrent.ForkJoinPool#commonPool()}, and thus completes
+	 * with <code>null</code> where the blocking variant does.
+	 * 
+	 * @param request
+	 *            the {@link WebRequest} to be executed
+	 * 
+	 * @return the {@link CompletableFuture} for the {@link WebResponse}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the {@link WebRequest} is <code>null</code>
+	 */
+	public default CompletableFuture<WebResponse> executeAsync(WebRequest request) {
+		if(request == null) {
+			throw new IllegalArgumentException("Webrequest to be executed cannot be null");
+		}
+		
+		return CompletableFuture.supplyAsync(() -> this.executeSilently(request));
+	}
+	
+	/**
+	 * Asynchronous variant of {@link #plainExecuteSilently(WebRequest)}.
+	 * 
+	 * The default implementation runs {@link #plainExecuteSilently(WebRequest)} in the
+	 * {@link java.util.concurrent.ForkJoinPool#commonPool()}, and thus completes
+	 * with <code>null</code> where the blocking variant does.
+	 * 
+	 * @param request
+	 *            the {@link WebRequest} to be executed
+	 * 
+	 * @return the {@link CompletableFuture} for the {@link WebResponse}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the {@link WebRequest} is <code>null</code>
+	 */
+	public default CompletableFuture<WebResponse> plainExecuteAsync(WebRequest request) {
+		if(request == null) {
+			throw new IllegalArgumentException("Webrequest to be executed cannot be null");
+		}
+		
+		return CompletableFuture.supplyAsync(() -> this.plainExecuteSilently(request));
+	}
+	
 	/**
 	 * Change the default value of the connection timeout.
 	 * 
@@ -263,6 +554,86 @@ public interface HttpService {
 	 */
 	public void setSocketTimeout(int millis);
 	
+	/**
+	 * Set the policy by which failed requests made via this service are
+	 * retried.
+	 * 
+	 * @param retryPolicy
+	 *            the {@link RetryPolicy} to use, <code>null</code> to not retry
+	 * 
+	 * @throws UnsupportedOperationException
+	 *             if the implementation does not support retries, as is the
+	 *             default
+	 * 
+	 * @since 2.0.1
+	 */
+	public default void setRetryPolicy(RetryPolicy retryPolicy) {
+		throw new UnsupportedOperationException("Retries are not supported by " + this.getClass().getName());
+	}
+	
+	/**
+	 * Set the circuit breaker that rejects requests made via this service to
+	 * failing hosts with an
+	 * {@link com.sangupta.jerry.http.HttpCircuitOpenException}.
+	 * 
+	 * @param circuitBreaker
+	 *            the {@link CircuitBreaker} to use, <code>null</code> for none
+	 * 
+	 * @throws UnsupportedOperationException
+	 *             if the implementation does not support circuit breaking, as
+	 *             is the default
+	 * 
+	 * @since 2.0.1
+	 */
+	public default void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+		throw new UnsupportedOperationException("Circuit breaking is not supported by " + this.getClass().getName());
+	}
+	
+	/**
+	 * Add a bulkhead that limits the concurrent calls made via this service
+	 * to the given hosts, as well as to requests tagged with the name of the
+	 * bulkhead. Calls beyond the limit are rejected with an
+	 * {@link com.sangupta.jerry.http.HttpBulkheadFullException}. A request
+	 * obtained via {@link #getWebRequest(WebRequestMethod, String)} enters
+	 * the bulkhead of its tag, else of its host, when executed via
+	 * {@link #executeSilently(WebRequest)} or
+	 * {@link #executeAsync(WebRequest)}.
+	 * 
+	 * @param bulkhead
+	 *            the {@link Bulkhead} to add, replacing one of the same name
+	 * 
+	 * @param hosts
+	 *            the hosts whose requests enter the bulkhead
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the bulkhead is <code>null</code>, or any host is
+	 *             <code>null</code> or empty, in which case nothing changes
+	 * 
+	 * @throws UnsupportedOperationException
+	 *             if the implementation does not support bulkheads, as is the
+	 *             default
+	 * 
+	 * @since 2.0.1
+	 */
+	public default void addBulkhead(Bulkhead bulkhead, String... hosts) {
+		throw new UnsupportedOperationException("Bulkheads are not supported by " + this.getClass().getName());
+	}
+	
+	/**
+	 * Remove the bulkhead of the given name along with its hosts.
+	 * 
+	 * @param name
+	 *            the name of the {@link Bulkhead}
+	 * 
+	 * @return <code>true</code> if a bulkhead was removed, never so by
+	 *         default
+	 * 
+	 * @since 2.0.1
+	 */
+	public default boolean removeBulkhead(String name) {
+		return false;
+	}
+	
 	/**
 	 * Download the file at the given location URL and store it as a temporary
 	 * file on disk. The temporary file is set to be deleted at the exit of the
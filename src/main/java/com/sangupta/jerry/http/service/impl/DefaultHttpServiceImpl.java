@@ -23,7 +23,11 @@ package com.sangupta.jerry.http.service.impl;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.config.CookieSpecs;
@@ -32,11 +36,15 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.sangupta.jerry.constants.HttpMimeType;
+import com.sangupta.jerry.http.Bulkhead;
+import com.sangupta.jerry.http.CircuitBreaker;
+import com.sangupta.jerry.http.RetryPolicy;
 import com.sangupta.jerry.http.WebRequest;
 import com.sangupta.jerry.http.WebRequestMethod;
 import com.sangupta.jerry.http.WebResponse;
 import com.sangupta.jerry.http.helper.HttpHelper;
 import com.sangupta.jerry.http.service.HttpService;
+import com.sangupta.jerry.util.AssertUtils;
 import com.sangupta.jerry.util.DateUtils;
 import com.sangupta.jerry.util.GsonUtils;
 import com.sangupta.jerry.util.XStreamUtils;
@@ -77,10 +85,30 @@ public class DefaultHttpServiceImpl implements HttpService {
 	 */
 	private volatile boolean followRedirects = true;
 	
+	/**
+	 * The retry policy to apply to requests, if any
+	 */
+	private volatile RetryPolicy retryPolicy;
+	
+	/**
+	 * The circuit breaker to guard requests with, if any
+	 */
+	private volatile CircuitBreaker circuitBreaker;
+	
+	/**
+	 * The bulkheads by their name
+	 */
+	private final Map<String, Bulkhead> bulkheads = new ConcurrentHashMap<>();
+	
+	/**
+	 * The bulkheads by the hosts bound to them
+	 */
+	private final Map<String, Bulkhead> hostBulkheads = new ConcurrentHashMap<>();
+	
 	@Override
 	public String getTextResponse(String url) {
 		try {
-			return this.getWebRequest(WebRequestMethod.GET, url).execute().webResponse().getContent();
+			return this.newWebRequest(WebRequestMethod.GET, url).execute().webResponse().getContent();
 		} catch(IOException e) {
 			LOGGER.debug("Unable to fetch repsonse from url: {}", url, e);
 		}
@@ -91,7 +119,7 @@ public class DefaultHttpServiceImpl implements HttpService {
 	@Override
 	public WebResponse getResponse(String url) {
 		try {
-			return this.getWebRequest(WebRequestMethod.GET, url).execute().webResponse();
+			return this.newWebRequest(WebRequestMethod.GET, url).execute().webResponse();
 		} catch(Exception e) {
 			LOGGER.debug("Unable to fetch repsonse from url: {}", url, e);
 		}
@@ -102,7 +130,7 @@ public class DefaultHttpServiceImpl implements HttpService {
 	@Override
 	public Map<String, String> getResponseHeaders(String url) {
 		try {
-			return this.getWebRequest(WebRequestMethod.HEAD, url).execute().webResponse().getHeaders();
+			return this.newWebRequest(WebRequestMethod.HEAD, url).execute().webResponse().getHeaders();
 		} catch(IOException e) {
 			LOGGER.debug("Unable to fetch response headers from url: {}", url, e);
 		}
@@ -113,7 +141,7 @@ public class DefaultHttpServiceImpl implements HttpService {
 	@Override
 	public WebResponse doHEAD(String url) {
 		try {
-			return this.getWebRequest(WebRequestMethod.HEAD, url).execute().webResponse();
+			return this.newWebRequest(WebRequestMethod.HEAD, url).execute().webResponse();
 		} catch(IOException e) {
 			LOGGER.debug("Unable to fetch response headers from url: {}", url, e);
 		}
@@ -124,7 +152,7 @@ public class DefaultHttpServiceImpl implements HttpService {
 	@Override
 	public WebResponse doGET(String url) {
 		try {
-			return this.getWebRequest(WebRequestMethod.GET, url).execute().webResponse();
+			return this.newWebRequest(WebRequestMethod.GET, url).execute().webResponse();
 		} catch(IOException e) {
 			LOGGER.debug("Unable to fetch response headers from url: {}", url, e);
 		}
@@ -135,7 +163,7 @@ public class DefaultHttpServiceImpl implements HttpService {
 	@Override
 	public WebResponse doPOST(String url, String requestBody, String mimeType) {
 		try {
-			WebRequest request = this.getWebRequest(WebRequestMethod.POST, url);
+			WebRequest request = this.newWebRequest(WebRequestMethod.POST, url);
 			request.bodyString(requestBody, ContentType.create(mimeType));
 			
 			return request.execute().webResponse();
@@ -149,7 +177,7 @@ public class DefaultHttpServiceImpl implements HttpService {
 	@Override
 	public WebResponse doPUT(String url, String requestBody, String mimeType) {
 		try {
-			WebRequest request = this.getWebRequest(WebRequestMethod.PUT, url);
+			WebRequest request = this.newWebRequest(WebRequestMethod.PUT, url);
 			request.bodyString(requestBody, ContentType.create(mimeType));
 			
 			return request.execute().webResponse();
@@ -163,7 +191,7 @@ public class DefaultHttpServiceImpl implements HttpService {
 	@Override
 	public WebResponse doPATCH(String url, String requestBody, String mimeType) {
 		try {
-			WebRequest request = this.getWebRequest(WebRequestMethod.PATCH, url);
+			WebRequest request = this.newWebRequest(WebRequestMethod.PATCH, url);
 			request.bodyString(requestBody, ContentType.create(mimeType));
 			
 			return request.execute().webResponse();
@@ -177,7 +205,7 @@ public class DefaultHttpServiceImpl implements HttpService {
 	@Override
 	public WebResponse doDELETE(String url) {
 		try {
-			return this.getWebRequest(WebRequestMethod.DELETE, url).execute().webResponse();
+			return this.newWebRequest(WebRequestMethod.DELETE, url).execute().webResponse();
 		} catch(IOException e) {
 			LOGGER.debug("Unable to fetch response headers from url: {}", url, e);
 		}
@@ -188,7 +216,7 @@ public class DefaultHttpServiceImpl implements HttpService {
 	@Override
 	public WebResponse doOPTIONS(String url) {
 		try {
-			return this.getWebRequest(WebRequestMethod.OPTIONS, url).execute().webResponse();
+			return this.newWebRequest(WebRequestMethod.OPTIONS, url).execute().webResponse();
 		} catch(IOException e) {
 			LOGGER.debug("Unable to fetch response headers from url: {}", url, e);
 		}
@@ -199,7 +227,7 @@ public class DefaultHttpServiceImpl implements HttpService {
 	@Override
 	public WebResponse doTRACE(String url) {
 		try {
-			return this.getWebRequest(WebRequestMethod.TRACE, url).execute().webResponse();
+			return this.newWebRequest(WebRequestMethod.TRACE, url).execute().webResponse();
 		} catch(IOException e) {
 			LOGGER.debug("Unable to fetch response headers from url: {}", url, e);
 		}
@@ -210,7 +238,7 @@ public class DefaultHttpServiceImpl implements HttpService {
 	@Override
 	public WebResponse postXML(String url, Object object) {
 		try {
-			WebRequest request = this.getWebRequest(WebRequestMethod.POST, url);
+			WebRequest request = this.newWebRequest(WebRequestMethod.POST, url);
 			
 			String requestBody = XStreamUtils.getXStream(object.getClass()).toXML(object);
 			request.bodyString(requestBody, ContentType.create(HttpMimeType.XML));
@@ -226,7 +254,7 @@ public class DefaultHttpServiceImpl implements HttpService {
 	@Override
 	public WebResponse postJSON(String url, Object object) {
 		try {
-			WebRequest request = this.getWebRequest(WebRequestMethod.POST, url);
+			WebRequest request = this.newWebRequest(WebRequestMethod.POST, url);
 			
 			String requestBody = GsonUtils.getGson().toJson(object);
 			request.bodyString(requestBody, ContentType.create(HttpMimeType.JSON));
@@ -250,6 +278,18 @@ public class DefaultHttpServiceImpl implements HttpService {
 			request.followRedirects();
 		}
 		
+		if(request.getRetryPolicy() == null) {
+			request.retryPolicy(this.retryPolicy);
+		}
+		
+		if(request.getCircuitBreaker() == null) {
+			request.circuitBreaker(this.circuitBreaker);
+		}
+		
+		if(request.getBulkhead() == null) {
+			this.applyBulkhead(request);
+		}
+		
 		return this.plainExecuteSilently(request);
 	}
 	
@@ -268,16 +308,178 @@ public class DefaultHttpServiceImpl implements HttpService {
 		return null;
 	}
 	
+	// Asynchronous variants
+	
+	@Override
+	public CompletableFuture<String> getTextResponseAsync(String url) {
+		return this.getResponseAsync(url).thenApply(response -> response != null ? response.getContent() : null);
+	}
+	
+	@Override
+	public CompletableFuture<WebResponse> getResponseAsync(String url) {
+		return this.newWebRequest(WebRequestMethod.GET, url).executeAsync();
+	}
+	
+	@Override
+	public CompletableFuture<Map<String, String>> getResponseHeadersAsync(String url) {
+		return this.doHEADAsync(url).thenApply(response -> response != null ? response.getHeaders() : null);
+	}
+	
+	@Override
+	public CompletableFuture<WebResponse> doHEADAsync(String url) {
+		return this.newWebRequest(WebRequestMethod.HEAD, url).executeAsync();
+	}
+	
+	@Override
+	public CompletableFuture<WebResponse> doGETAsync(String url) {
+		return this.newWebRequest(WebRequestMethod.GET, url).executeAsync();
+	}
+	
+	@Override
+	public CompletableFuture<WebResponse> doPOSTAsync(String url, String requestBody, String mimeType) {
+		WebRequest request = this.newWebRequest(WebRequestMethod.POST, url);
+		request.bodyString(requestBody, ContentType.create(mimeType));
+		
+		return request.executeAsync();
+	}
+	
+	@Override
+	public CompletableFuture<WebResponse> doPUTAsync(String url, String requestBody, String mimeType) {
+		WebRequest request = this.newWebRequest(WebRequestMethod.PUT, url);
+		request.bodyString(requestBody, ContentType.create(mimeType));
+		
+		return request.executeAsync();
+	}
+	
+	@Override
+	public CompletableFuture<WebResponse> doPATCHAsync(String url, String requestBody, String mimeType) {
+		WebRequest request = this.newWebRequest(WebRequestMethod.PATCH, url);
+		request.bodyString(requestBody, ContentType.create(mimeType));
+		
+		return request.executeAsync();
+	}
+	
+	@Override
+	public CompletableFuture<WebResponse> doDELETEAsync(String url) {
+		return this.newWebRequest(WebRequestMethod.DELETE, url).executeAsync();
+	}
+	
+	@Override
+	public CompletableFuture<WebResponse> doOPTIONSAsync(String url) {
+		return this.newWebRequest(WebRequestMethod.OPTIONS, url).executeAsync();
+	}
+	
+	@Override
+	public CompletableFuture<WebResponse> doTRACEAsync(String url) {
+		return this.newWebRequest(WebRequestMethod.TRACE, url).executeAsync();
+	}
+	
+	@Override
+	public CompletableFuture<WebResponse> postXMLAsync(String url, Object object) {
+		WebRequest request = this.newWebRequest(WebRequestMethod.POST, url);
+		
+		String requestBody = XStreamUtils.getXStream(object.getClass()).toXML(object);
+		request.bodyString(requestBody, ContentType.create(HttpMimeType.XML));
+		
+		return request.executeAsync();
+	}
+	
+	@Override
+	public CompletableFuture<WebResponse> postJSONAsync(String url, Object object) {
+		WebRequest request = this.newWebRequest(WebRequestMethod.POST, url);
+		
+		String requestBody = GsonUtils.getGson().toJson(object);
+		request.bodyString(requestBody, ContentType.create(HttpMimeType.JSON));
+		
+		return request.executeAsync();
+	}
+	
+	@Override
+	public CompletableFuture<WebResponse> executeAsync(WebRequest request) {
+		if(request == null) {
+			throw new IllegalArgumentException("Webrequest to be executed cannot be null");
+		}
+		
+		request.connectTimeout(connectionTimeout).socketTimeout(socketTimeout).cookiePolicy(cookiePolicy);
+		if(this.followRedirects) {
+			request.followRedirects();
+		}
+		
+		if(request.getCircuitBreaker() == null) {
+			request.circuitBreaker(this.circuitBreaker);
+		}
+		
+		if(request.getBulkhead() == null) {
+			this.applyBulkhead(request);
+		}
+		
+		return this.plainExecuteAsync(request);
+	}
+	
+	@Override
+	public CompletableFuture<WebResponse> plainExecuteAsync(WebRequest request) {
+		if(request == null) {
+			throw new IllegalArgumentException("Webrequest to be executed cannot be null");
+		}
+		
+		return request.executeAsync();
+	}
+	
 	@Override
 	public WebRequest getWebRequest(WebRequestMethod method, String uri) {
 		WebRequest request = HttpHelper.getWebRequest(method, uri);
-		request.connectTimeout(connectionTimeout).socketTimeout(socketTimeout).cookiePolicy(cookiePolicy);
+		request.connectTimeout(connectionTimeout).socketTimeout(socketTimeout).cookiePolicy(cookiePolicy).retryPolicy(this.retryPolicy).circuitBreaker(this.circuitBreaker);
 		if(this.followRedirects) {
 			request.followRedirects();
 		}
 		
 		return request;
 	}
+	
+	/**
+	 * Create the request of one of the convenience methods. As it is never
+	 * tagged, it is bound to the bulkhead of its host right away.
+	 * 
+	 * @param method
+	 *            the HTTP VERB to be used
+	 * 
+	 * @param url
+	 *            the url to hit
+	 * 
+	 * @return the {@link WebRequest} instance for the request
+	 */
+	private WebRequest newWebRequest(WebRequestMethod method, String url) {
+		WebRequest request = this.getWebRequest(method, url);
+		this.applyBulkhead(request);
+		return request;
+	}
+	
+	/**
+	 * Bind the request to the bulkhead named by its tag, or else to the one of
+	 * its host, if any.
+	 * 
+	 * @param request
+	 *            the {@link WebRequest} to bind
+	 */
+	private void applyBulkhead(WebRequest request) {
+		if(this.bulkheads.isEmpty()) {
+			return;
+		}
+		
+		Bulkhead bulkhead = null;
+		if(request.getTag() != null) {
+			bulkhead = this.bulkheads.get(request.getTag());
+		}
+		
+		String host = request.getURI().getHost();
+		if(bulkhead == null && host != null) {
+			bulkhead = this.hostBulkheads.get(host.toLowerCase());
+		}
+		
+		if(bulkhead != null) {
+			request.bulkhead(bulkhead);
+		}
+	}
 
 	@Override
 	public void setConnectionTimeout(int millis) {
@@ -289,14 +491,70 @@ public class DefaultHttpServiceImpl implements HttpService {
 		this.socketTimeout = millis;
 	}
 	
+	@Override
+	public void setRetryPolicy(RetryPolicy retryPolicy) {
+		this.retryPolicy = retryPolicy;
+	}
+	
+	@Override
+	public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+		this.circuitBreaker = circuitBreaker;
+	}
+	
+	@Override
+	public void addBulkhead(Bulkhead bulkhead, String... hosts) {
+		if(bulkhead == null) {
+			throw new IllegalArgumentException("Bulkhead cannot be null");
+		}
+		
+		Set<String> names = new HashSet<>();
+		if(hosts != null) {
+			for(String host : hosts) {
+				if(AssertUtils.isEmpty(host)) {
+					throw new IllegalArgumentException("Host cannot be null/empty");
+				}
+				
+				names.add(host.toLowerCase());
+			}
+		}
+		
+		// swap each mapping in place so that a request always sees the old or the new bulkhead
+		Bulkhead previous = this.bulkheads.put(bulkhead.getName(), bulkhead);
+		for(String host : names) {
+			this.hostBulkheads.put(host, bulkhead);
+		}
+		
+		if(previous != null) {
+			for(String host : this.hostBulkheads.keySet()) {
+				if(!names.contains(host)) {
+					this.hostBulkheads.remove(host, previous);
+				}
+			}
+		}
+	}
+	
+	@Override
+	public boolean removeBulkhead(String name) {
+		Bulkhead bulkhead = this.bulkheads.remove(name);
+		if(bulkhead == null) {
+			return false;
+		}
+		
+		for(String host : this.hostBulkheads.keySet()) {
+			this.hostBulkheads.remove(host, bulkhead);
+		}
+		
+		return true;
+	}
+	
 	@Override
 	public File downloadToTempFile(String url) throws IOException {
-		return HttpHelper.downloadToTempFile(url, this);
+		return HttpHelper.streamToTempFile(this.newWebRequest(WebRequestMethod.GET, url));
 	}
 
 	@Override
 	public boolean downloadToFile(String url, File fileToDownloadIn) throws IOException {
-		return HttpHelper.downloadToFile(url, fileToDownloadIn, this);
+		return HttpHelper.streamToFile(this.newWebRequest(WebRequestMethod.GET, url), fileToDownloadIn);
 	}
 
 }
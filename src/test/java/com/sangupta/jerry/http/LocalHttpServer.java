@@ -0,0 +1,135 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local HTTP server for tests that need a real server to talk to. The server
+ * binds to a free port chosen by the system, so that tests do not fail when
+ * a fixed port is taken.
+ * 
+ * @author sangupta
+ *
+ */
+@SuppressWarnings("restriction")
+public final class LocalHttpServer {
+	
+	private final HttpServer server;
+	
+	private final ExecutorService executor;
+	
+	private LocalHttpServer(HttpServer server, ExecutorService executor) {
+		this.server = server;
+		this.executor = executor;
+	}
+	
+	/**
+	 * Start a server on a free port, without any handlers.
+	 * 
+	 * @return the started {@link LocalHttpServer}
+	 * 
+	 * @throws IOException
+	 *             if the server cannot be started
+	 */
+	public static LocalHttpServer start() throws IOException {
+		HttpServer server = HttpServer.create(new InetSocketAddress(0), 0);
+		ExecutorService executor = Executors.newCachedThreadPool();
+		server.setExecutor(executor);
+		server.start();
+		
+		return new LocalHttpServer(server, executor);
+	}
+	
+	/**
+	 * Serve all requests under the given path with the given handler.
+	 * 
+	 * @param path
+	 *            the path prefix, like <code>/</code>
+	 * 
+	 * @param handler
+	 *            the {@link HttpHandler} to use
+	 * 
+	 * @return this very {@link LocalHttpServer}
+	 */
+	public LocalHttpServer handle(String path, HttpHandler handler) {
+		this.server.createContext(path, handler);
+		return this;
+	}
+	
+	/**
+	 * @return the port the server is bound to
+	 */
+	public int getPort() {
+		return this.server.getAddress().getPort();
+	}
+	
+	/**
+	 * Return the URL of the given path on this server.
+	 * 
+	 * @param path
+	 *            the path, starting with <code>/</code>, or an empty string
+	 *            for the server itself
+	 * 
+	 * @return the URL, like <code>http://localhost:12345/path</code>
+	 */
+	public String url(String path) {
+		return "http://localhost:" + this.getPort() + path;
+	}
+	
+	/**
+	 * Return the URL of the given path on a local port that nothing listens
+	 * on, so that connecting to it is refused. The port is one the system
+	 * just handed out and released, rather than a fixed one that may be in
+	 * use.
+	 * 
+	 * @param path
+	 *            the path, starting with <code>/</code>
+	 * 
+	 * @return the URL, like <code>http://localhost:12345/path</code>
+	 * 
+	 * @throws IOException
+	 *             if no free port can be found
+	 */
+	public static String refusedUrl(String path) throws IOException {
+		try(ServerSocket socket = new ServerSocket(0)) {
+			return "http://localhost:" + socket.getLocalPort() + path;
+		}
+	}
+	
+	/**
+	 * Stop the server right away.
+	 * 
+	 */
+	public void stop() {
+		this.server.stop(0);
+		this.executor.shutdownNow();
+	}
+	
+}
@@ -0,0 +1,114 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http;
+
+import java.net.URI;
+
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link AdaptiveRouteLimitController}.
+ * 
+ * @author sangupta
+ *
+ */
+public class TestAdaptiveRouteLimitController {
+	
+	private static final URI URL = URI.create("http://localhost:8080/hit");
+	
+	@Test
+	public void testInvalidBounds() {
+		PoolingHttpClientConnectionManager manager = new PoolingHttpClientConnectionManager();
+		try {
+			new AdaptiveRouteLimitController(manager, 0, 5);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		
+		try {
+			new AdaptiveRouteLimitController(manager, 5, 4);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		
+		manager.shutdown();
+	}
+	
+	@Test
+	public void testAdditiveIncreaseAndMultiplicativeDecrease() {
+		PoolingHttpClientConnectionManager manager = new PoolingHttpClientConnectionManager();
+		manager.setDefaultMaxPerRoute(2);
+		
+		AdaptiveRouteLimitController controller = new AdaptiveRouteLimitController(manager, 1, 4);
+		Assert.assertEquals(-1, controller.getCurrentLimit(URL));
+		
+		// saturate the route at constant latency: limit grows by one each interval
+		for(int interval = 0; interval < 5; interval++) {
+			int limit = Math.max(2, controller.getCurrentLimit(URL));
+			AdaptiveRouteLimitController.RouteState[] states = new AdaptiveRouteLimitController.RouteState[limit];
+			for(int index = 0; index < limit; index++) {
+				states[index] = controller.requestStarted(URL);
+			}
+			
+			for(int index = 0; index < limit; index++) {
+				controller.requestCompleted(states[index], 1000000);
+			}
+			
+			controller.adjust();
+		}
+		
+		Assert.assertEquals(4, controller.getCurrentLimit(URL));
+		Assert.assertEquals(4, manager.getMaxPerRoute(AdaptiveRouteLimitController.getRoute(URL)));
+		
+		// latency jumps well over the baseline: limit backs off
+		controller.requestCompleted(controller.requestStarted(URL), 10000000);
+		controller.adjust();
+		Assert.assertEquals(3, controller.getCurrentLimit(URL));
+		
+		controller.requestCompleted(controller.requestStarted(URL), 10000000);
+		controller.adjust();
+		Assert.assertEquals(2, controller.getCurrentLimit(URL));
+		Assert.assertEquals(2, manager.getMaxPerRoute(AdaptiveRouteLimitController.getRoute(URL)));
+		
+		// no traffic: limit left as is
+		controller.adjust();
+		Assert.assertEquals(2, controller.getCurrentLimit(URL));
+		
+		manager.shutdown();
+	}
+	
+	@Test
+	public void testExecutorIntegration() {
+		HttpExecutor executor = HttpExecutor.builder().maxConnectionsPerRoute(2).adaptiveRouteLimits(1, 10).build();
+		Assert.assertNotNull(executor.getAdaptiveRouteLimitController());
+		
+		executor.disableAdaptiveRouteLimits();
+		Assert.assertNull(executor.getAdaptiveRouteLimitController());
+		
+		executor.shutdown();
+	}
+
+}
@@ -0,0 +1,345 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.sangupta.jerry.http.mock.MockWebResponse;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+/**
+ * Unit tests for {@link AsyncHttpInvocationInterceptor}.
+ * 
+ * @author sangupta
+ *
+ */
+@SuppressWarnings("restriction")
+public class TestAsyncHttpInvocationInterceptor {
+	
+	private static String url;
+	
+	private static String downUrl;
+	
+	private static LocalHttpServer server;
+	
+	@BeforeClass
+	public static void setup() throws IOException {
+		server = LocalHttpServer.start();
+		server.handle("/async", new HttpHandler() {
+			
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				byte[] bytes = "served".getBytes(StandardCharsets.UTF_8);
+				exchange.getResponseHeaders().add("Content-Type", "text/plain");
+				exchange.getResponseHeaders().add("X-Served-By", "test");
+				exchange.sendResponseHeaders(200, bytes.length);
+				try(OutputStream stream = exchange.getResponseBody()) {
+					stream.write(bytes);
+				}
+			}
+			
+		});
+		url = server.url("/async");
+		downUrl = LocalHttpServer.refusedUrl("/down");
+	}
+	
+	@AfterClass
+	public static void shutdown() {
+		server.stop();
+	}
+	
+	@Test
+	public void testExceptions() {
+		HttpExecutor executor = HttpExecutor.newInstance();
+		Assert.assertFalse(executor.removeAsyncInvocationInterceptor(null));
+		
+		try {
+			executor.addAsyncInvocationInterceptor(null);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+	}
+	
+	@Test
+	public void testBeforeSuppliesResponse() throws Exception {
+		HttpExecutor executor = HttpExecutor.newInstance();
+		executor.addAsyncInvocationInterceptor(new RecordingInterceptor("cache", null) {
+			
+			@Override
+			public CompletableFuture<WebResponse> beforeInvocation(WebRequest request) {
+				return CompletableFuture.supplyAsync(() -> new MockWebResponse("cached"));
+			}
+			
+		});
+		
+		Assert.assertEquals("cached", executor.execute(WebRequest.get(url)).webResponse().getContent());
+		Assert.assertEquals("cached", executor.executeAsync(WebRequest.get(url)).get().getContent());
+	}
+	
+	@Test
+	public void testAfterSeesUnreadResponse() throws Exception {
+		final List<String> seen = new CopyOnWriteArrayList<>();
+		HttpExecutor executor = HttpExecutor.newInstance();
+		executor.addAsyncInvocationInterceptor(new RecordingInterceptor("metrics", null) {
+			
+			@Override
+			public CompletableFuture<WebRawResponse> afterInvocation(WebRequest request, WebRawResponse response, IOException exception) {
+				seen.add(response.isConsumed() + ":" + response.getStatusCode() + ":" + response.getFirstHeader("X-Served-By").getValue());
+				return CompletableFuture.completedFuture(response);
+			}
+			
+		});
+		
+		// the caller still gets to stream the body
+		WebRawResponse response = executor.execute(WebRequest.get(url));
+		Assert.assertFalse(response instanceof HandledWebRawResponse);
+		Assert.assertFalse(response.isConsumed());
+		Assert.assertEquals("served", response.webResponse().getContent());
+		
+		Assert.assertEquals("served", executor.executeAsync(WebRequest.get(url)).get().getContent());
+		Assert.assertEquals(2, seen.size());
+		Assert.assertEquals("false:200:test", seen.get(0));
+		Assert.assertEquals("false:200:test", seen.get(1));
+	}
+	
+	@Test
+	public void testOrdering() throws Exception {
+		final List<String> calls = new CopyOnWriteArrayList<>();
+		HttpExecutor executor = HttpExecutor.newInstance();
+		executor.addAsyncInvocationInterceptor(new RecordingInterceptor("async-low", calls));
+		executor.addAsyncInvocationInterceptor(new RecordingInterceptor("async-high", calls) {
+			
+			@Override
+			public int getPriority() {
+				return 10;
+			}
+			
+		});
+		executor.addInvocationInterception(new HttpInvocationInterceptor() {
+			
+			@Override
+			public int getPriority() {
+				return 100;
+			}
+			
+			@Override
+			public WebResponse beforeInvocation(WebRequest request) {
+				calls.add("before:sync");
+				return null;
+			}
+			
+			@Override
+			public WebResponse afterInvocation(WebResponse response, IOException exception) {
+				calls.add("after:sync");
+				return response;
+			}
+			
+		});
+		
+		Assert.assertEquals("served", executor.execute(WebRequest.get(url)).webResponse().getContent());
+		Assert.assertEquals("[before:async-high, before:async-low, before:sync, after:sync, after:async-high, after:async-low]", calls.toString());
+		
+		calls.clear();
+		Assert.assertEquals("served", executor.executeAsync(WebRequest.get(url)).get().getContent());
+		Assert.assertEquals("[before:async-high, before:async-low, before:sync, after:sync, after:async-high, after:async-low]", calls.toString());
+		
+		executor.removeAllInterceptors();
+		calls.clear();
+		executor.execute(WebRequest.get(url)).discardContent();
+		Assert.assertTrue(calls.isEmpty());
+	}
+	
+	@Test
+	public void testAfterRecoversFailure() throws Exception {
+		AsyncHttpInvocationInterceptor fallback = new RecordingInterceptor("fallback", null) {
+			
+			@Override
+			public CompletableFuture<WebRawResponse> afterInvocation(WebRequest request, WebRawResponse response, IOException exception) {
+				if(exception == null) {
+					return CompletableFuture.completedFuture(response);
+				}
+				
+				return CompletableFuture.supplyAsync(() -> new HandledWebRawResponse(new MockWebResponse("fallback")));
+			}
+			
+		};
+		
+		HttpExecutor executor = HttpExecutor.newInstance();
+		executor.addAsyncInvocationInterceptor(fallback);
+		Assert.assertEquals("fallback", executor.execute(WebRequest.get(downUrl)).webResponse().getContent());
+		Assert.assertEquals("fallback", executor.executeAsync(WebRequest.get(downUrl)).get().getContent());
+		
+		Assert.assertTrue(executor.removeAsyncInvocationInterceptor(fallback));
+		Assert.assertFalse(executor.removeAsyncInvocationInterceptor(fallback));
+		
+		// without the interceptor the failure surfaces again
+		try {
+			executor.execute(WebRequest.get(downUrl));
+			Assert.assertTrue(false);
+		} catch(IOException e) {
+			Assert.assertTrue(true);
+		}
+	}
+	
+	@Test
+	public void testFailedHook() throws Exception {
+		HttpExecutor executor = HttpExecutor.newInstance();
+		executor.addAsyncInvocationInterceptor(new RecordingInterceptor("auth", null) {
+			
+			@Override
+			public CompletableFuture<WebResponse> beforeInvocation(WebRequest request) {
+				CompletableFuture<WebResponse> future = new CompletableFuture<>();
+				future.completeExceptionally(new IOException("token refresh failed"));
+				return future;
+			}
+			
+		});
+		
+		try {
+			executor.execute(WebRequest.get(url));
+			Assert.assertTrue(false);
+		} catch(IOException e) {
+			Assert.assertEquals("token refresh failed", e.getMessage());
+		}
+		
+		try {
+			executor.executeAsync(WebRequest.get(url)).get();
+			Assert.assertTrue(false);
+		} catch(ExecutionException e) {
+			Assert.assertTrue(e.getCause() instanceof IOException);
+		}
+	}
+	
+	@Test
+	public void testFailedAfterHookReleasesConnection() throws Exception {
+		final AtomicBoolean fail = new AtomicBoolean(true);
+		HttpExecutor executor = HttpExecutor.builder().maxConnectionsPerRoute(1).build();
+		executor.addAsyncInvocationInterceptor(new RecordingInterceptor("audit", null) {
+			
+			@Override
+			public CompletableFuture<WebRawResponse> afterInvocation(WebRequest request, WebRawResponse response, IOException exception) {
+				if(exception == null && !fail.get()) {
+					return CompletableFuture.completedFuture(response);
+				}
+				
+				CompletableFuture<WebRawResponse> future = new CompletableFuture<>();
+				future.completeExceptionally(exception != null ? exception : new IllegalStateException("audit log is down"));
+				return future;
+			}
+			
+		});
+		
+		try {
+			executor.execute(WebRequest.get(url));
+			Assert.assertTrue(false);
+		} catch(IllegalStateException e) {
+			Assert.assertTrue(true);
+		}
+		
+		try {
+			executor.executeAsync(WebRequest.get(url)).get(5, TimeUnit.SECONDS);
+			Assert.assertTrue(false);
+		} catch(ExecutionException e) {
+			Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+		
+		// the only connection was released by the failed executions
+		fail.set(false);
+		Assert.assertEquals("served", executor.execute(WebRequest.get(url).deadline(2, TimeUnit.SECONDS)).webResponse().getContent());
+		Assert.assertEquals("served", executor.executeAsync(WebRequest.get(url).deadline(2, TimeUnit.SECONDS)).get(5, TimeUnit.SECONDS).getContent());
+		executor.shutdown();
+	}
+	
+	@Test
+	public void testSlowHookHonoursDeadline() {
+		HttpExecutor executor = HttpExecutor.newInstance();
+		executor.addAsyncInvocationInterceptor(new RecordingInterceptor("slow", null) {
+			
+			@Override
+			public CompletableFuture<WebResponse> beforeInvocation(WebRequest request) {
+				return new CompletableFuture<>();
+			}
+			
+		});
+		
+		try {
+			executor.execute(WebRequest.get(url).deadline(200, TimeUnit.MILLISECONDS));
+			Assert.assertTrue(false);
+		} catch(HttpDeadlineExceededException e) {
+			Assert.assertTrue(true);
+		} catch(IOException e) {
+			Assert.assertTrue(false);
+		}
+	}
+	
+	private static class RecordingInterceptor implements AsyncHttpInvocationInterceptor {
+		
+		private final String name;
+		
+		private final List<String> calls;
+		
+		RecordingInterceptor(String name, List<String> calls) {
+			this.name = name;
+			this.calls = calls;
+		}
+		
+		@Override
+		public int getPriority() {
+			return 0;
+		}
+		
+		@Override
+		public CompletableFuture<WebResponse> beforeInvocation(WebRequest request) {
+			if(this.calls != null) {
+				this.calls.add("before:" + this.name);
+			}
+			
+			return CompletableFuture.completedFuture(null);
+		}
+		
+		@Override
+		public CompletableFuture<WebRawResponse> afterInvocation(WebRequest request, WebRawResponse response, IOException exception) {
+			if(this.calls != null) {
+				this.calls.add("after:" + this.name);
+			}
+			
+			return CompletableFuture.completedFuture(response);
+		}
+		
+	}
+	
+}
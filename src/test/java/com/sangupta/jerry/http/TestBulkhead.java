@@ -0,0 +1,323 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.sangupta.jerry.http.service.impl.DefaultHttpServiceImpl;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+/**
+ * Unit tests for {@link Bulkhead}.
+ * 
+ * @author sangupta
+ *
+ */
+@SuppressWarnings("restriction")
+public class TestBulkhead {
+	
+	private static String fastUrl;
+	
+	private static String slowUrl;
+	
+	private static LocalHttpServer server;
+	
+	@BeforeClass
+	public static void setup() throws IOException {
+		server = LocalHttpServer.start();
+		server.handle("/fast", new DelayHandler(0));
+		server.handle("/slow", new DelayHandler(500));
+		fastUrl = server.url("/fast");
+		slowUrl = server.url("/slow");
+	}
+	
+	@AfterClass
+	public static void shutdown() {
+		server.stop();
+	}
+	
+	private static CompletableFuture<WebResponse> inBackground(final WebRequest request) {
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return HttpExecutor.DEFAULT.execute(request).webResponse();
+			} catch(IOException e) {
+				return null;
+			}
+		});
+	}
+	
+	private static void awaitActive(Bulkhead bulkhead, int active) throws InterruptedException {
+		for(int index = 0; index < 100 && bulkhead.getActiveCount() < active; index++) {
+			Thread.sleep(10);
+		}
+		
+		Assert.assertEquals(active, bulkhead.getActiveCount());
+	}
+	
+	@Test
+	public void testRejectsWhenSaturated() throws Exception {
+		Bulkhead bulkhead = new Bulkhead("slow", 2);
+		CompletableFuture<WebResponse> first = inBackground(WebRequest.get(slowUrl).bulkhead(bulkhead));
+		CompletableFuture<WebResponse> second = inBackground(WebRequest.get(slowUrl).bulkhead(bulkhead));
+		awaitActive(bulkhead, 2);
+		
+		long start = System.currentTimeMillis();
+		try {
+			HttpExecutor.DEFAULT.execute(WebRequest.get(slowUrl).bulkhead(bulkhead));
+			Assert.assertTrue(false);
+		} catch(HttpBulkheadFullException e) {
+			Assert.assertTrue(true);
+		}
+		
+		Assert.assertTrue(System.currentTimeMillis() - start < 200);
+		Assert.assertEquals(1, bulkhead.getRejectedCount());
+		
+		Assert.assertEquals(200, first.get().getResponseCode());
+		Assert.assertEquals(200, second.get().getResponseCode());
+		Assert.assertEquals(0, bulkhead.getActiveCount());
+	}
+	
+	@Test
+	public void testWaitsForPermit() throws Exception {
+		Bulkhead bulkhead = new Bulkhead("slow", 1).maxWait(2, TimeUnit.SECONDS);
+		CompletableFuture<WebResponse> first = inBackground(WebRequest.get(slowUrl).bulkhead(bulkhead));
+		awaitActive(bulkhead, 1);
+		
+		Assert.assertEquals(200, HttpExecutor.DEFAULT.execute(WebRequest.get(fastUrl).bulkhead(bulkhead)).webResponse().getResponseCode());
+		Assert.assertTrue(first.isDone());
+		Assert.assertEquals(0, bulkhead.getRejectedCount());
+	}
+	
+	@Test
+	public void testPermitHeldTillBodyRead() throws IOException {
+		Bulkhead bulkhead = new Bulkhead("fast", 1);
+		
+		WebRawResponse raw = HttpExecutor.DEFAULT.execute(WebRequest.get(fastUrl).bulkhead(bulkhead));
+		Assert.assertEquals(1, bulkhead.getActiveCount());
+		Assert.assertEquals("done", raw.webResponse().getContent());
+		Assert.assertEquals(0, bulkhead.getActiveCount());
+		
+		raw = HttpExecutor.DEFAULT.execute(WebRequest.get(fastUrl).bulkhead(bulkhead));
+		try(StreamingWebResponse streaming = raw.streamingResponse()) {
+			Assert.assertEquals(0, bulkhead.getActiveCount());
+		}
+		
+		// failures release the permit as well
+		try {
+			HttpExecutor.DEFAULT.execute(WebRequest.get(LocalHttpServer.refusedUrl("/nothing")).bulkhead(bulkhead));
+			Assert.assertTrue(false);
+		} catch(IOException e) {
+			Assert.assertTrue(true);
+		}
+		
+		Assert.assertEquals(0, bulkhead.getActiveCount());
+	}
+	
+	@Test
+	public void testAsyncRejection() throws Exception {
+		Bulkhead bulkhead = new Bulkhead("slow", 1).maxWait(2, TimeUnit.SECONDS);
+		CompletableFuture<WebResponse> first = HttpExecutor.DEFAULT.executeAsync(WebRequest.get(slowUrl).bulkhead(bulkhead));
+		
+		// asynchronous calls never wait
+		try {
+			HttpExecutor.DEFAULT.executeAsync(WebRequest.get(fastUrl).bulkhead(bulkhead)).get();
+			Assert.assertTrue(false);
+		} catch(ExecutionException e) {
+			Assert.assertTrue(e.getCause() instanceof HttpBulkheadFullException);
+		}
+		
+		Assert.assertEquals(200, first.get().getResponseCode());
+		Assert.assertEquals(0, bulkhead.getActiveCount());
+	}
+	
+	@Test
+	public void testServiceBindings() throws Exception {
+		DefaultHttpServiceImpl service = new DefaultHttpServiceImpl();
+		Bulkhead partner = new Bulkhead("partner", 1);
+		Bulkhead batch = new Bulkhead("batch", 1);
+		service.addBulkhead(partner, "LOCALHOST");
+		service.addBulkhead(batch);
+		
+		// bound by host
+		CompletableFuture<WebResponse> first = CompletableFuture.supplyAsync(() -> service.doGET(slowUrl));
+		awaitActive(partner, 1);
+		try {
+			service.doGET(fastUrl);
+			Assert.assertTrue(false);
+		} catch(HttpBulkheadFullException e) {
+			Assert.assertTrue(true);
+		}
+		
+		Assert.assertEquals(200, first.get().getResponseCode());
+		
+		// bound by tag, taking precedence over the host
+		first = CompletableFuture.supplyAsync(() -> service.executeSilently(WebRequest.get(slowUrl).tag("batch")));
+		awaitActive(batch, 1);
+		Assert.assertNull(service.executeSilently(WebRequest.get(fastUrl).tag("batch")));
+		Assert.assertEquals(1, batch.getRejectedCount());
+		Assert.assertEquals(200, service.executeSilently(WebRequest.get(fastUrl)).getResponseCode());
+		Assert.assertEquals(200, first.get().getResponseCode());
+		
+		Assert.assertTrue(service.removeBulkhead("partner"));
+		Assert.assertFalse(service.removeBulkhead("partner"));
+		
+		first = CompletableFuture.supplyAsync(() -> service.doGET(slowUrl));
+		Thread.sleep(100);
+		Assert.assertEquals(200, service.doGET(fastUrl).getResponseCode());
+		Assert.assertEquals(200, first.get().getResponseCode());
+		Assert.assertEquals(0, partner.getActiveCount());
+	}
+	
+	@Test
+	public void testServiceTagOverHost() throws Exception {
+		DefaultHttpServiceImpl service = new DefaultHttpServiceImpl();
+		Bulkhead partner = new Bulkhead("partner", 1);
+		Bulkhead batch = new Bulkhead("batch", 1);
+		service.addBulkhead(partner, "localhost");
+		service.addBulkhead(batch);
+		
+		// tagged after creation, the request enters the bulkhead of its tag
+		WebRequest request = service.getWebRequest(WebRequestMethod.GET, slowUrl).tag("batch");
+		CompletableFuture<WebResponse> first = CompletableFuture.supplyAsync(() -> service.executeSilently(request));
+		awaitActive(batch, 1);
+		Assert.assertEquals(0, partner.getActiveCount());
+		
+		Assert.assertNull(service.executeSilently(service.getWebRequest(WebRequestMethod.GET, fastUrl).tag("batch")));
+		try {
+			service.executeAsync(service.getWebRequest(WebRequestMethod.GET, fastUrl).tag("batch")).get();
+			Assert.assertTrue(false);
+		} catch(ExecutionException e) {
+			Assert.assertTrue(e.getCause() instanceof HttpBulkheadFullException);
+		}
+		
+		Assert.assertEquals(2, batch.getRejectedCount());
+		
+		// the bulkhead of the host is free, as the tagged request never entered it
+		Assert.assertEquals(200, service.executeSilently(service.getWebRequest(WebRequestMethod.GET, fastUrl)).getResponseCode());
+		Assert.assertEquals(200, first.get().getResponseCode());
+	}
+	
+	@Test
+	public void testServiceReplacement() throws Exception {
+		DefaultHttpServiceImpl service = new DefaultHttpServiceImpl();
+		Bulkhead partner = new Bulkhead("partner", 1);
+		service.addBulkhead(partner, "localhost");
+		
+		// invalid hosts leave the existing bindings untouched
+		try {
+			service.addBulkhead(new Bulkhead("partner", 5), "example.com", null);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		
+		try {
+			service.addBulkhead(null, "localhost");
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		
+		CompletableFuture<WebResponse> first = CompletableFuture.supplyAsync(() -> service.doGET(slowUrl));
+		awaitActive(partner, 1);
+		try {
+			service.doGET(fastUrl);
+			Assert.assertTrue(false);
+		} catch(HttpBulkheadFullException e) {
+			Assert.assertTrue(true);
+		}
+		
+		Assert.assertEquals(200, first.get().getResponseCode());
+		
+		// the replacement takes over the host of the same name
+		Bulkhead wider = new Bulkhead("partner", 2);
+		service.addBulkhead(wider, "localhost");
+		first = CompletableFuture.supplyAsync(() -> service.doGET(slowUrl));
+		awaitActive(wider, 1);
+		Assert.assertEquals(200, service.doGET(fastUrl).getResponseCode());
+		Assert.assertEquals(200, first.get().getResponseCode());
+		Assert.assertEquals(0, partner.getActiveCount());
+		
+		// hosts not named again are dropped along with the old bulkhead
+		service.addBulkhead(new Bulkhead("partner", 1));
+		first = CompletableFuture.supplyAsync(() -> service.doGET(slowUrl));
+		Thread.sleep(100);
+		Assert.assertEquals(200, service.doGET(fastUrl).getResponseCode());
+		Assert.assertEquals(200, first.get().getResponseCode());
+		Assert.assertEquals(0, wider.getActiveCount());
+	}
+	
+	@Test
+	public void testInvalidValues() {
+		try {
+			new Bulkhead("none", 0);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		
+		try {
+			new Bulkhead(null, 1);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+	}
+	
+	static class DelayHandler implements HttpHandler {
+		
+		private final long delayMillis;
+		
+		DelayHandler(long delayMillis) {
+			this.delayMillis = delayMillis;
+		}
+		
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			try {
+				Thread.sleep(this.delayMillis);
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			
+			byte[] bytes = "done".getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().add("Content-Type", "text/plain");
+			exchange.sendResponseHeaders(200, bytes.length);
+			try(OutputStream stream = exchange.getResponseBody()) {
+				stream.write(bytes);
+			}
+		}
+		
+	}
+
+}
@@ -0,0 +1,88 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link ByteArrayPool}.
+ * 
+ * @author sangupta
+ *
+ */
+public class TestByteArrayPool {
+	
+	@Test
+	public void testSizeClasses() {
+		ByteArrayPool pool = new ByteArrayPool(64 * 1024, 2);
+		
+		Assert.assertEquals(1024, pool.acquire(0).length);
+		Assert.assertEquals(1024, pool.acquire(1024).length);
+		Assert.assertEquals(2048, pool.acquire(1025).length);
+		Assert.assertEquals(64 * 1024, pool.acquire(64 * 1024).length);
+		
+		// beyond the largest class arrays are exact
+		Assert.assertEquals(64 * 1024 + 1, pool.acquire(64 * 1024 + 1).length);
+	}
+	
+	@Test
+	public void testReuse() {
+		ByteArrayPool pool = new ByteArrayPool(64 * 1024, 2);
+		
+		byte[] first = pool.acquire(3000);
+		pool.release(first);
+		Assert.assertEquals(1, pool.getRetainedCount());
+		Assert.assertSame(first, pool.acquire(4096));
+		Assert.assertEquals(0, pool.getRetainedCount());
+		
+		// bounded per class
+		pool.release(new byte[4096]);
+		pool.release(new byte[4096]);
+		pool.release(new byte[4096]);
+		Assert.assertEquals(2, pool.getRetainedCount());
+		
+		// foreign arrays are dropped
+		pool.release(new byte[3000]);
+		pool.release(new byte[128 * 1024]);
+		pool.release(null);
+		Assert.assertEquals(2, pool.getRetainedCount());
+	}
+	
+	@Test
+	public void testInvalidValues() {
+		try {
+			new ByteArrayPool(0, 1);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		
+		try {
+			new ByteArrayPool(1024, 0);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+	}
+
+}
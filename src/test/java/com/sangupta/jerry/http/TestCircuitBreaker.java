@@ -0,0 +1,290 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.sangupta.jerry.http.service.impl.DefaultHttpServiceImpl;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+/**
+ * Unit tests for {@link CircuitBreaker}.
+ * 
+ * @author sangupta
+ *
+ */
+@SuppressWarnings("restriction")
+public class TestCircuitBreaker {
+	
+	private static String url;
+	
+	private static LocalHttpServer server;
+	
+	private static StatusHandler handler;
+	
+	private HttpExecutor executor;
+	
+	private CircuitBreaker breaker;
+	
+	@BeforeClass
+	public static void setup() throws IOException {
+		server = LocalHttpServer.start();
+		handler = new StatusHandler();
+		server.handle("/", handler);
+		url = server.url("/partner");
+	}
+	
+	@AfterClass
+	public static void shutdown() {
+		server.stop();
+	}
+	
+	@Before
+	public void reset() {
+		handler.requests.set(0);
+		handler.status = 200;
+		handler.delayMillis = 0;
+		
+		this.breaker = new CircuitBreaker().windowSize(10).minimumCalls(4).openDuration(200, TimeUnit.MILLISECONDS).halfOpenCalls(2);
+		this.executor = HttpExecutor.newInstance();
+		this.executor.setCircuitBreaker(this.breaker);
+	}
+	
+	private int status() throws IOException {
+		return this.executor.execute(WebRequest.get(url)).webResponse().getResponseCode();
+	}
+	
+	private void assertRejected() throws IOException {
+		try {
+			this.executor.execute(WebRequest.get(url));
+			Assert.assertTrue(false);
+		} catch(HttpCircuitOpenException e) {
+			Assert.assertTrue(true);
+		}
+	}
+	
+	@Test
+	public void testOpensOnFailureRate() throws IOException {
+		handler.status = 500;
+		for(int index = 0; index < 3; index++) {
+			Assert.assertEquals(500, this.status());
+			Assert.assertEquals(CircuitBreaker.State.CLOSED, this.breaker.getState(URI.create(url)));
+		}
+		
+		Assert.assertEquals(500, this.status());
+		Assert.assertEquals(CircuitBreaker.State.OPEN, this.breaker.getState(URI.create(url)));
+		
+		// rejected without reaching the server
+		this.assertRejected();
+		Assert.assertEquals(4, handler.requests.get());
+		Assert.assertEquals(1, this.breaker.getRejectedCount());
+		
+		// other routes are not affected
+		Assert.assertEquals(CircuitBreaker.State.CLOSED, this.breaker.getState(URI.create("http://localhost:8080/hit")));
+	}
+	
+	@Test
+	public void testStaysClosedBelowThreshold() throws IOException {
+		for(int index = 0; index < 20; index++) {
+			handler.status = index % 4 == 0 ? 503 : 200;
+			this.status();
+		}
+		
+		Assert.assertEquals(CircuitBreaker.State.CLOSED, this.breaker.getState(URI.create(url)));
+	}
+	
+	@Test
+	public void testHalfOpenCloses() throws Exception {
+		handler.status = 500;
+		for(int index = 0; index < 4; index++) {
+			this.status();
+		}
+		
+		Thread.sleep(250);
+		Assert.assertEquals(CircuitBreaker.State.HALF_OPEN, this.breaker.getState(URI.create(url)));
+		
+		handler.status = 200;
+		Assert.assertEquals(200, this.status());
+		Assert.assertEquals(CircuitBreaker.State.HALF_OPEN, this.breaker.getState(URI.create(url)));
+		Assert.assertEquals(200, this.status());
+		Assert.assertEquals(CircuitBreaker.State.CLOSED, this.breaker.getState(URI.create(url)));
+	}
+	
+	@Test
+	public void testHalfOpenReopens() throws Exception {
+		handler.status = 500;
+		for(int index = 0; index < 4; index++) {
+			this.status();
+		}
+		
+		Thread.sleep(250);
+		Assert.assertEquals(500, this.status());
+		Assert.assertEquals(CircuitBreaker.State.OPEN, this.breaker.getState(URI.create(url)));
+		this.assertRejected();
+	}
+	
+	@Test
+	public void testOpensOnSlowCalls() throws IOException {
+		this.breaker.reset();
+		this.executor.setCircuitBreaker(new CircuitBreaker().minimumCalls(2).slowCallThreshold(1, 100, TimeUnit.MILLISECONDS));
+		handler.delayMillis = 200;
+		
+		Assert.assertEquals(200, this.status());
+		Assert.assertEquals(200, this.status());
+		this.assertRejected();
+	}
+	
+	@Test
+	public void testOpensOnConnectionFailures() throws IOException {
+		CircuitBreaker breaker = new CircuitBreaker().minimumCalls(2);
+		WebRequest request = WebRequest.get(LocalHttpServer.refusedUrl("/nothing")).circuitBreaker(breaker);
+		for(int index = 0; index < 2; index++) {
+			try {
+				this.executor.execute(request);
+				Assert.assertTrue(false);
+			} catch(IOException e) {
+				Assert.assertTrue(true);
+			}
+		}
+		
+		try {
+			this.executor.execute(request);
+			Assert.assertTrue(false);
+		} catch(HttpCircuitOpenException e) {
+			Assert.assertTrue(true);
+		} catch(IOException e) {
+			Assert.assertTrue(false);
+		}
+	}
+	
+	@Test
+	public void testOpenCircuitNotRetried() throws IOException {
+		this.executor.setRetryPolicy(new RetryPolicy().backoff(1, 10, TimeUnit.MILLISECONDS).maxAttempts(10));
+		handler.status = 500;
+		for(int index = 0; index < 4; index++) {
+			this.status();
+		}
+		
+		this.assertRejected();
+		Assert.assertEquals(4, handler.requests.get());
+	}
+	
+	@Test
+	public void testAsyncExecution() throws Exception {
+		handler.status = 500;
+		for(int index = 0; index < 4; index++) {
+			Assert.assertEquals(500, this.executor.executeAsync(WebRequest.get(url)).get(5, TimeUnit.SECONDS).getResponseCode());
+		}
+		
+		Assert.assertEquals(CircuitBreaker.State.OPEN, this.breaker.getState(URI.create(url)));
+		
+		try {
+			this.executor.executeAsync(WebRequest.get(url)).get(5, TimeUnit.SECONDS);
+			Assert.assertTrue(false);
+		} catch(ExecutionException e) {
+			Assert.assertTrue(e.getCause() instanceof HttpCircuitOpenException);
+		}
+		
+		Assert.assertEquals(4, handler.requests.get());
+		Assert.assertEquals(1, this.breaker.getRejectedCount());
+	}
+	
+	@Test
+	public void testHttpService() throws Exception {
+		DefaultHttpServiceImpl service = new DefaultHttpServiceImpl();
+		service.setCircuitBreaker(this.breaker);
+		handler.status = 500;
+		for(int index = 0; index < 4; index++) {
+			Assert.assertEquals(500, service.getResponse(url).getResponseCode());
+		}
+		
+		// the service swallows the rejection like any other failure
+		Assert.assertNull(service.getResponse(url));
+		Assert.assertEquals(4, handler.requests.get());
+		
+		try {
+			service.getResponseAsync(url).get(5, TimeUnit.SECONDS);
+			Assert.assertTrue(false);
+		} catch(ExecutionException e) {
+			Assert.assertTrue(e.getCause() instanceof HttpCircuitOpenException);
+		}
+	}
+	
+	@Test
+	public void testInvalidValues() {
+		try {
+			new CircuitBreaker().failureRateThreshold(0);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		
+		try {
+			new CircuitBreaker().windowSize(0);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+	}
+	
+	static class StatusHandler implements HttpHandler {
+		
+		final AtomicInteger requests = new AtomicInteger();
+		
+		volatile int status;
+		
+		volatile long delayMillis;
+		
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			this.requests.incrementAndGet();
+			if(this.delayMillis > 0) {
+				try {
+					Thread.sleep(this.delayMillis);
+				} catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			
+			byte[] bytes = "done".getBytes(StandardCharsets.UTF_8);
+			exchange.sendResponseHeaders(this.status, bytes.length);
+			try(OutputStream stream = exchange.getResponseBody()) {
+				stream.write(bytes);
+			}
+		}
+		
+	}
+
+}
@@ -0,0 +1,179 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+/**
+ * Unit tests for {@link ConditionalRequestInterceptor}.
+ * 
+ * @author sangupta
+ *
+ */
+@SuppressWarnings("restriction")
+public class TestConditionalRequestInterceptor {
+	
+	private static String url;
+	
+	private static LocalHttpServer server;
+	
+	private static VersionedHandler handler;
+	
+	private HttpExecutor executor;
+	
+	private ConditionalRequestInterceptor interceptor;
+	
+	@BeforeClass
+	public static void setup() throws IOException {
+		server = LocalHttpServer.start();
+		handler = new VersionedHandler();
+		server.handle("/", handler);
+		url = server.url("/item");
+	}
+	
+	@AfterClass
+	public static void shutdown() {
+		server.stop();
+	}
+	
+	@Before
+	public void reset() {
+		handler.version = 1;
+		handler.notModified.set(0);
+		
+		this.interceptor = new ConditionalRequestInterceptor();
+		this.executor = HttpExecutor.newInstance();
+		this.executor.addInvocationInterception(this.interceptor);
+	}
+	
+	@Test
+	public void testNotModifiedServedFromMemory() throws IOException {
+		Assert.assertEquals("version-1", this.executor.execute(WebRequest.get(url)).webResponse().getContent());
+		Assert.assertEquals(1, this.interceptor.getEntryCount());
+		
+		WebResponse response = this.executor.execute(WebRequest.get(url)).webResponse();
+		Assert.assertEquals(200, response.getResponseCode());
+		Assert.assertEquals("version-1", response.getContent());
+		Assert.assertEquals("\"v1\"", response.getETag());
+		Assert.assertEquals(1, handler.notModified.get());
+		Assert.assertEquals(1, this.interceptor.getNotModifiedCount());
+		
+		// a new version replaces the remembered one
+		handler.version = 2;
+		Assert.assertEquals("version-2", this.executor.execute(WebRequest.get(url)).webResponse().getContent());
+		Assert.assertEquals("version-2", this.executor.execute(WebRequest.get(url)).webResponse().getContent());
+		Assert.assertEquals(2, handler.notModified.get());
+	}
+	
+	@Test
+	public void testAsyncExecution() throws InterruptedException, ExecutionException {
+		Assert.assertEquals("version-1", this.executor.executeAsync(WebRequest.get(url)).get().getContent());
+		
+		WebResponse response = this.executor.executeAsync(WebRequest.get(url)).get();
+		Assert.assertEquals(200, response.getResponseCode());
+		Assert.assertEquals("version-1", response.getContent());
+		Assert.assertEquals(1, this.interceptor.getNotModifiedCount());
+	}
+	
+	@Test
+	public void testCallerValidatorsUntouched() throws IOException {
+		this.executor.execute(WebRequest.get(url)).webResponse();
+		
+		WebResponse response = this.executor.execute(WebRequest.get(url).addHeader("If-None-Match", "\"v0\"")).webResponse();
+		Assert.assertEquals(200, response.getResponseCode());
+		Assert.assertEquals(0, handler.notModified.get());
+	}
+	
+	@Test
+	public void testUnsafeRequestForgets() throws IOException {
+		this.executor.execute(WebRequest.get(url)).webResponse();
+		Assert.assertEquals(1, this.interceptor.getEntryCount());
+		
+		this.executor.execute(WebRequest.post(url)).webResponse();
+		Assert.assertEquals(0, this.interceptor.getEntryCount());
+		
+		// no-store responses are never remembered
+		this.executor.execute(WebRequest.get(url + "?no-store")).webResponse();
+		Assert.assertEquals(0, this.interceptor.getEntryCount());
+	}
+	
+	@Test
+	public void testBoundedEntries() throws IOException {
+		this.interceptor = new ConditionalRequestInterceptor(2, 0);
+		this.executor.removeAllInterceptors();
+		this.executor.addInvocationInterception(this.interceptor);
+		
+		for(int index = 0; index < 5; index++) {
+			this.executor.execute(WebRequest.get(url + "?" + index)).webResponse();
+		}
+		
+		Assert.assertEquals(2, this.interceptor.getEntryCount());
+		
+		this.interceptor.clear();
+		Assert.assertEquals(0, this.interceptor.getEntryCount());
+	}
+	
+	static class VersionedHandler implements HttpHandler {
+		
+		volatile int version;
+		
+		final AtomicInteger notModified = new AtomicInteger();
+		
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			String etag = "\"v" + this.version + "\"";
+			exchange.getResponseHeaders().add("ETag", etag);
+			if("no-store".equals(exchange.getRequestURI().getQuery())) {
+				exchange.getResponseHeaders().add("Cache-Control", "no-store");
+			}
+			
+			if(etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+				this.notModified.incrementAndGet();
+				exchange.sendResponseHeaders(304, -1);
+				exchange.close();
+				return;
+			}
+			
+			byte[] bytes = ("version-" + this.version).getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().add("Content-Type", "text/plain");
+			exchange.sendResponseHeaders(200, bytes.length);
+			try(OutputStream stream = exchange.getResponseBody()) {
+				stream.write(bytes);
+			}
+		}
+		
+	}
+
+}
@@ -0,0 +1,206 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.sangupta.jerry.http.ConnectionPoolSnapshot.RouteStats;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+/**
+ * Unit tests for {@link ConnectionPoolSnapshot}, {@link RateLimitSnapshot}
+ * and resizing pools and rate limits of a {@link HttpExecutor} in use.
+ * 
+ * @author sangupta
+ *
+ */
+@SuppressWarnings("restriction")
+public class TestConnectionPoolSnapshot {
+	
+	private static String url;
+	
+	private static LocalHttpServer server;
+	
+	@BeforeClass
+	public static void setup() throws IOException {
+		server = LocalHttpServer.start();
+		server.handle("/", new HttpHandler() {
+			
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				byte[] bytes = "hello".getBytes();
+				exchange.sendResponseHeaders(200, bytes.length);
+				try(OutputStream stream = exchange.getResponseBody()) {
+					stream.write(bytes);
+				}
+			}
+			
+		});
+		url = server.url("");
+	}
+	
+	@AfterClass
+	public static void shutdown() {
+		server.stop();
+	}
+	
+	@Test
+	public void testPoolSnapshot() throws Exception {
+		HttpExecutor executor = HttpExecutor.builder().maxTotalConnections(10).maxConnectionsPerRoute(4).build();
+		
+		ConnectionPoolSnapshot snapshot = executor.getConnectionPoolSnapshot();
+		Assert.assertEquals(0, snapshot.getLeased());
+		Assert.assertEquals(0, snapshot.getPending());
+		Assert.assertEquals(10, snapshot.getMax());
+		Assert.assertEquals(4, snapshot.getDefaultMaxPerRoute());
+		Assert.assertTrue(snapshot.getRoutes().isEmpty());
+		
+		// a streamed response keeps its connection leased till closed
+		WebRawResponse response = executor.execute(WebRequest.get(url + "/hello"));
+		snapshot = executor.getConnectionPoolSnapshot();
+		Assert.assertEquals(1, snapshot.getLeased());
+		
+		RouteStats route = snapshot.getRoute(url);
+		Assert.assertNotNull(route);
+		Assert.assertEquals(1, route.getLeased());
+		Assert.assertEquals(4, route.getMax());
+		
+		Assert.assertEquals("hello", response.webResponse().getContent());
+		snapshot = executor.getConnectionPoolSnapshot();
+		Assert.assertEquals(0, snapshot.getLeased());
+		Assert.assertEquals(1, snapshot.getAvailable());
+		Assert.assertNull(snapshot.getRoute("http://localhost:9999"));
+	}
+	
+	@Test
+	public void testResizePool() throws Exception {
+		HttpExecutor executor = HttpExecutor.builder().build();
+		
+		executor.maxConnections(50).maxConnectionsPerRoute(7).maxConnectionsOnHost(URI.create(url + "/any/path"), 3);
+		
+		// routes are only known to the pool once used
+		Assert.assertTrue(executor.getConnectionPoolSnapshot().getRoutes().isEmpty());
+		executor.execute(WebRequest.get(url + "/hello")).webResponse();
+		
+		ConnectionPoolSnapshot snapshot = executor.getConnectionPoolSnapshot();
+		Assert.assertEquals(50, snapshot.getMax());
+		Assert.assertEquals(7, snapshot.getDefaultMaxPerRoute());
+		Assert.assertEquals(3, snapshot.getRoute(url).getMax());
+		
+		try {
+			executor.maxConnections(0);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		
+		try {
+			executor.maxConnectionsPerRoute(0);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		
+		try {
+			executor.maxConnectionsOnHost(URI.create("/relative"), 5);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+	}
+	
+	@Test
+	public void testRateLimitSnapshots() {
+		HttpExecutor executor = HttpExecutor.builder().build();
+		Assert.assertTrue(executor.getRateLimitSnapshots().isEmpty());
+		Assert.assertTrue(executor.getThrottledHosts().isEmpty());
+		
+		executor.addRateLimiting("fixed.example.com", 10, TimeUnit.SECONDS);
+		executor.addTokenBucketRateLimiting("*.bucket.example.com", 5, 1, TimeUnit.SECONDS, 8, HttpRateLimitMode.FAIL_FAST, 0);
+		
+		List<RateLimitSnapshot> snapshots = executor.getRateLimitSnapshots();
+		Assert.assertEquals(2, snapshots.size());
+		
+		RateLimitSnapshot fixed = find(snapshots, "fixed.example.com");
+		Assert.assertEquals(RateLimitSnapshot.Type.FIXED_WINDOW, fixed.getType());
+		Assert.assertEquals(10, fixed.getLimit());
+		Assert.assertEquals(1000, fixed.getPeriodMillis());
+		
+		RateLimitSnapshot bucket = find(snapshots, "*.bucket.example.com");
+		Assert.assertEquals(RateLimitSnapshot.Type.TOKEN_BUCKET, bucket.getType());
+		Assert.assertEquals(5, bucket.getLimit());
+		Assert.assertEquals(8, bucket.getBurst());
+		Assert.assertEquals(HttpRateLimitMode.FAIL_FAST, bucket.getMode());
+		
+		// resizing keeps the kind of limit and its settings
+		executor.setRateLimiting("*.bucket.example.com", 20, 2, TimeUnit.SECONDS);
+		executor.setRateLimiting("fixed.example.com", 30, 1, TimeUnit.MINUTES);
+		executor.setRateLimiting("new.example.com", 1, 1, TimeUnit.SECONDS);
+		
+		snapshots = executor.getRateLimitSnapshots();
+		Assert.assertEquals(3, snapshots.size());
+		
+		fixed = find(snapshots, "fixed.example.com");
+		Assert.assertEquals(30, fixed.getLimit());
+		Assert.assertEquals(60000, fixed.getPeriodMillis());
+		
+		bucket = find(snapshots, "*.bucket.example.com");
+		Assert.assertEquals(RateLimitSnapshot.Type.TOKEN_BUCKET, bucket.getType());
+		Assert.assertEquals(20, bucket.getLimit());
+		Assert.assertEquals(2000, bucket.getPeriodMillis());
+		Assert.assertEquals(8, bucket.getBurst());
+		Assert.assertEquals(HttpRateLimitMode.FAIL_FAST, bucket.getMode());
+		
+		Assert.assertEquals(RateLimitSnapshot.Type.FIXED_WINDOW, find(snapshots, "new.example.com").getType());
+		
+		try {
+			HttpExecutor.builder().withoutRateLimiting().build().setRateLimiting("localhost", 1, 1, TimeUnit.SECONDS);
+			Assert.assertTrue(false);
+		} catch(IllegalStateException e) {
+			Assert.assertTrue(true);
+		}
+		
+		Assert.assertTrue(HttpExecutor.builder().withoutRateLimiting().build().getRateLimitSnapshots().isEmpty());
+	}
+	
+	private static RateLimitSnapshot find(List<RateLimitSnapshot> snapshots, String host) {
+		for(RateLimitSnapshot snapshot : snapshots) {
+			if(snapshot.getHost().equals(host)) {
+				return snapshot;
+			}
+		}
+		
+		Assert.fail("No snapshot for " + host);
+		return null;
+	}
+	
+}
@@ -30,6 +30,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ExecutionException;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
@@ -320,6 +321,39 @@ public class TestDefaultHttpServiceImpl {
 		FileUtils.deleteQuietly(file);
 	}
 	
+	@Test
+	public void testAsyncResponses() throws InterruptedException, ExecutionException {
+		handler.setResponse(RESPONSE_CODE, RANDOM_STRING);
+		Assert.assertEquals(RANDOM_STRING, service.getTextResponseAsync(LOCAL_URL).get());
+		
+		WebResponse result = service.doGETAsync(LOCAL_URL).get();
+		Assert.assertNotNull(result);
+		Assert.assertEquals(RESPONSE_CODE, result.getResponseCode());
+		Assert.assertEquals(RANDOM_STRING, result.getContent());
+		
+		handler.checkMethod(WebRequestMethod.POST);
+		handler.checkBody(RANDOM_STRING);
+		result = service.doPOSTAsync(LOCAL_URL, RANDOM_STRING, HttpMimeType.TEXT_PLAIN).get();
+		Assert.assertEquals(RANDOM_STRING, result.getContent());
+	}
+	
+	@Test
+	public void testAsyncFailure() throws InterruptedException, IOException {
+		try {
+			service.doGETAsync(LocalHttpServer.refusedUrl("/nothing-listens-here")).get();
+			Assert.assertTrue(false);
+		} catch(ExecutionException e) {
+			Assert.assertTrue(e.getCause() instanceof IOException);
+		}
+		
+		try {
+			service.executeAsync(null);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+	}
+	
 	static class MyHandler implements HttpHandler {
 		
 		private int responseCode = -1;
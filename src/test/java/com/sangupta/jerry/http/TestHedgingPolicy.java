@@ -0,0 +1,233 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.sangupta.jerry.http.metrics.HttpMetricsRegistry;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+/**
+ * Unit tests for {@link HedgingPolicy}.
+ * 
+ * @author sangupta
+ *
+ */
+@SuppressWarnings("restriction")
+public class TestHedgingPolicy {
+	
+	private static String url;
+	
+	private static LocalHttpServer server;
+	
+	private static SlowFirstHandler handler;
+	
+	private HttpExecutor executor;
+	
+	@BeforeClass
+	public static void setup() throws IOException {
+		server = LocalHttpServer.start();
+		handler = new SlowFirstHandler();
+		server.handle("/", handler);
+		url = server.url("/replica");
+	}
+	
+	@AfterClass
+	public static void shutdown() {
+		server.stop();
+	}
+	
+	@Before
+	public void reset() {
+		handler.requests.set(0);
+		handler.slowRequests = 1;
+		
+		this.executor = HttpExecutor.newInstance();
+	}
+	
+	@Test
+	public void testSlowRequestHedged() throws IOException {
+		HedgingPolicy policy = new HedgingPolicy().delay(50, TimeUnit.MILLISECONDS);
+		this.executor.setHedgingPolicy(policy);
+		
+		long start = System.currentTimeMillis();
+		WebResponse response = this.executor.execute(WebRequest.get(url)).webResponse();
+		long elapsed = System.currentTimeMillis() - start;
+		
+		Assert.assertEquals(200, response.getResponseCode());
+		Assert.assertEquals("fast", response.getContent());
+		Assert.assertTrue("Took " + elapsed + " millis", elapsed < 1000);
+		Assert.assertEquals(2, handler.requests.get());
+		Assert.assertEquals(1, policy.getHedgeCount());
+		Assert.assertEquals(1, policy.getHedgeWinCount());
+	}
+	
+	@Test
+	public void testFastRequestNotHedged() throws IOException {
+		HedgingPolicy policy = new HedgingPolicy().delay(500, TimeUnit.MILLISECONDS);
+		this.executor.setHedgingPolicy(policy);
+		handler.slowRequests = 0;
+		
+		Assert.assertEquals("fast", this.executor.execute(WebRequest.get(url)).webResponse().getContent());
+		Assert.assertEquals(1, handler.requests.get());
+		Assert.assertEquals(0, policy.getHedgeCount());
+	}
+	
+	@Test
+	public void testPrimaryRunsOnCallingThread() throws IOException {
+		final List<Thread> threads = new CopyOnWriteArrayList<>();
+		this.executor.setMetricsRegistry(new HttpMetricsRegistry() {
+			
+			@Override
+			public void recordLatency(String host, int statusCode, long nanos) {
+				threads.add(Thread.currentThread());
+			}
+			
+		});
+		
+		this.executor.setHedgingPolicy(new HedgingPolicy().delay(500, TimeUnit.MILLISECONDS));
+		handler.slowRequests = 0;
+		
+		Assert.assertEquals("fast", this.executor.execute(WebRequest.get(url)).webResponse().getContent());
+		Assert.assertEquals(1, threads.size());
+		Assert.assertSame(Thread.currentThread(), threads.get(0));
+	}
+	
+	@Test
+	public void testUnsafeRequestNotHedged() throws IOException {
+		HedgingPolicy policy = new HedgingPolicy().delay(50, TimeUnit.MILLISECONDS);
+		this.executor.setHedgingPolicy(policy);
+		
+		Assert.assertEquals("slow", this.executor.execute(WebRequest.post(url).bodyString("hello", "text/plain")).webResponse().getContent());
+		Assert.assertEquals(1, handler.requests.get());
+		Assert.assertEquals(0, policy.getHedgeCount());
+	}
+	
+	@Test
+	public void testRequestPolicyOverrides() throws IOException {
+		HedgingPolicy policy = new HedgingPolicy().delay(50, TimeUnit.MILLISECONDS);
+		
+		Assert.assertEquals("fast", this.executor.execute(WebRequest.get(url).hedgingPolicy(policy)).webResponse().getContent());
+		Assert.assertEquals(2, handler.requests.get());
+		Assert.assertEquals(1, policy.getHedgeCount());
+	}
+	
+	@Test
+	public void testAllCopiesFail() {
+		this.executor.setHedgingPolicy(new HedgingPolicy().delay(10, TimeUnit.MILLISECONDS).maxHedges(2));
+		
+		try {
+			this.executor.execute(WebRequest.get(LocalHttpServer.refusedUrl("/nothing")));
+			Assert.assertTrue(false);
+		} catch(IOException e) {
+			Assert.assertTrue(true);
+		}
+	}
+	
+	@Test
+	public void testPercentileDelay() {
+		URI uri = URI.create(url);
+		HedgingPolicy policy = new HedgingPolicy().delay(10, TimeUnit.MILLISECONDS).percentile(0.95);
+		
+		// too few observations - fixed delay
+		Assert.assertEquals(10, policy.getHedgeDelay(uri));
+		for(int index = 1; index <= 100; index++) {
+			policy.recordLatency(uri, TimeUnit.MILLISECONDS.toNanos(index));
+		}
+		
+		Assert.assertEquals(95, policy.getHedgeDelay(uri));
+		
+		// other routes are not affected
+		Assert.assertEquals(10, policy.getHedgeDelay(URI.create("http://localhost:8088/other")));
+		
+		// never below the fixed delay
+		policy.delay(200, TimeUnit.MILLISECONDS);
+		Assert.assertEquals(200, policy.getHedgeDelay(uri));
+	}
+	
+	@Test
+	public void testInvalidValues() {
+		try {
+			new HedgingPolicy().percentile(1);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		
+		try {
+			new HedgingPolicy().maxHedges(0);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+	}
+	
+	/**
+	 * Handler where the first requests are slow, like a struggling replica
+	 */
+	static class SlowFirstHandler implements HttpHandler {
+		
+		final AtomicInteger requests = new AtomicInteger();
+		
+		volatile int slowRequests;
+		
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			String content = "fast";
+			if(this.requests.incrementAndGet() <= this.slowRequests) {
+				content = "slow";
+				try {
+					Thread.sleep(2000);
+				} catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			
+			byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().add("Content-Type", "text/plain");
+			try {
+				exchange.sendResponseHeaders(200, bytes.length);
+				try(OutputStream stream = exchange.getResponseBody()) {
+					stream.write(bytes);
+				}
+			} catch(IOException e) {
+				// client has gone away
+			}
+		}
+		
+	}
+
+}
@@ -1,16 +1,29 @@
 package com.sangupta.jerry.http;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
 import org.apache.http.HttpHost;
 import org.apache.http.conn.routing.HttpRoute;
 import org.junit.Assert;
 import org.junit.Test;
 
+import com.sangupta.jerry.http.mock.MockWebResponse;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
 /**
  * Unit tests for {@link HttpExecutor}.
  * 
  * @author sangupta
  *
  */
+@SuppressWarnings("restriction")
 public class TestHttpExecutor {
 
 	@Test
@@ -82,4 +95,170 @@ public class TestHttpExecutor {
 			Assert.assertTrue(true);
 		}
 	}
+	
+	@Test
+	public void testExecuteAsyncInterception() throws InterruptedException, ExecutionException {
+		try {
+			HttpExecutor.DEFAULT.executeAsync(null);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		
+		// the non-blocking client would bypass a custom or caching client
+		try {
+			HttpExecutor.newInstance(HttpExecutor.getHttpClient()).executeAsync(WebRequest.get("http://localhost/hit"));
+			Assert.assertTrue(false);
+		} catch(IllegalStateException e) {
+			Assert.assertTrue(true);
+		}
+		
+		try {
+			HttpExecutor.newCachingInstance(HttpResponseCache.inMemory(1024)).executeAsync(WebRequest.get("http://localhost/hit"));
+			Assert.assertTrue(false);
+		} catch(IllegalStateException e) {
+			Assert.assertTrue(true);
+		}
+		
+		HttpExecutor executor = HttpExecutor.newInstance();
+		final MockWebResponse mock = new MockWebResponse("hello world");
+		executor.addInvocationInterception(new HttpInvocationInterceptor() {
+			
+			@Override
+			public int getPriority() {
+				return 0;
+			}
+			
+			@Override
+			public WebResponse beforeInvocation(WebRequest request) {
+				return mock;
+			}
+			
+			@Override
+			public WebResponse afterInvocation(WebResponse response, IOException exception) {
+				return response;
+			}
+		});
+		
+		CompletableFuture<WebResponse> future = executor.executeAsync(WebRequest.get("http://localhost/hit"));
+		Assert.assertTrue(future.isDone());
+		Assert.assertEquals("hello world", future.get().getContent());
+	}
+	
+	@Test
+	public void testExecuteAsyncOverNetwork() throws Exception {
+		final CountDownLatch hanging = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		
+		LocalHttpServer server = LocalHttpServer.start().handle("/hello", new HttpHandler() {
+			
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				byte[] bytes = "hello async".getBytes(StandardCharsets.UTF_8);
+				int status = exchange.getRequestURI().getQuery() == null ? 200 : 404;
+				exchange.getResponseHeaders().add("Content-Type", "text/plain");
+				exchange.sendResponseHeaders(status, bytes.length);
+				try(OutputStream stream = exchange.getResponseBody()) {
+					stream.write(bytes);
+				}
+			}
+			
+		}).handle("/hang", new HttpHandler() {
+			
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				hanging.countDown();
+				try {
+					release.await(5, TimeUnit.SECONDS);
+				} catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				
+				exchange.sendResponseHeaders(204, -1);
+				exchange.close();
+			}
+			
+		});
+		
+		try {
+			HttpExecutor executor = HttpExecutor.builder().maxConnectionsPerRoute(1).build();
+			
+			// real responses are converted, whatever their status
+			WebResponse response = executor.executeAsync(WebRequest.get(server.url("/hello"))).get(5, TimeUnit.SECONDS);
+			Assert.assertEquals(200, response.getResponseCode());
+			Assert.assertEquals("hello async", response.getContent());
+			Assert.assertEquals("text/plain", response.getContentType());
+			
+			response = executor.executeAsync(WebRequest.get(server.url("/hello?missing"))).get(5, TimeUnit.SECONDS);
+			Assert.assertEquals(404, response.getResponseCode());
+			
+			// cancelling aborts the exchange and frees its only connection
+			CompletableFuture<WebResponse> future = executor.executeAsync(WebRequest.get(server.url("/hang")));
+			Assert.assertTrue(hanging.await(5, TimeUnit.SECONDS));
+			Assert.assertTrue(future.cancel(true));
+			Assert.assertTrue(future.isCancelled());
+			
+			Assert.assertEquals("hello async", executor.executeAsync(WebRequest.get(server.url("/hello"))).get(5, TimeUnit.SECONDS).getContent());
+			
+			// rate limits apply to asynchronous executions
+			executor.addRateLimiting("localhost", 1, TimeUnit.MINUTES);
+			executor.executeAsync(WebRequest.get(server.url("/hello"))).get(5, TimeUnit.SECONDS);
+			try {
+				executor.executeAsync(WebRequest.get(server.url("/hello"))).get(5, TimeUnit.SECONDS);
+				Assert.assertTrue(false);
+			} catch(ExecutionException e) {
+				Assert.assertTrue(e.getCause() instanceof HttpRateLimitException);
+			}
+		} finally {
+			release.countDown();
+			server.stop();
+		}
+	}
+	
+	@Test
+	public void testBuilderIsolatedPool() {
+		HttpExecutor executor = HttpExecutor.builder().maxTotalConnections(17).maxConnectionsPerRoute(3).maxConnectionsOnHost(new HttpRoute(new HttpHost("local", 8080)), 7).connectionTimeToLive(1, TimeUnit.MINUTES).build();
+		
+		Assert.assertTrue(executor.hasOwnConnectionPool());
+		Assert.assertFalse(HttpExecutor.DEFAULT.hasOwnConnectionPool());
+		Assert.assertFalse(HttpExecutor.newInstance().hasOwnConnectionPool());
+		
+		Assert.assertNotSame(HttpExecutor.getConnectionManager(), executor.getExecutorConnectionManager());
+		Assert.assertSame(HttpExecutor.getConnectionManager(), HttpExecutor.DEFAULT.getExecutorConnectionManager());
+		
+		Assert.assertEquals(17, executor.getExecutorConnectionManager().getMaxTotal());
+		Assert.assertEquals(3, executor.getExecutorConnectionManager().getDefaultMaxPerRoute());
+		Assert.assertEquals(7, executor.getExecutorConnectionManager().getMaxPerRoute(new HttpRoute(new HttpHost("local", 8080))));
+		
+		// changing the isolated pool does not touch the shared one
+		int sharedMax = HttpExecutor.getConnectionManager().getMaxTotal();
+		executor.maxConnections(23).maxConnectionsPerRoute(4);
+		Assert.assertEquals(23, executor.getExecutorConnectionManager().getMaxTotal());
+		Assert.assertEquals(4, executor.getExecutorConnectionManager().getDefaultMaxPerRoute());
+		Assert.assertEquals(sharedMax, HttpExecutor.getConnectionManager().getMaxTotal());
+		
+		// rate limiting is per executor client
+		executor.addRateLimiting("localhost", 10, TimeUnit.SECONDS);
+		executor.removeAllRateLimiting();
+		
+		try {
+			HttpExecutor.builder().withoutRateLimiting().build().addRateLimiting("localhost", 10, TimeUnit.SECONDS);
+			Assert.assertTrue(false);
+		} catch(IllegalStateException e) {
+			Assert.assertTrue(true);
+		}
+		
+		try {
+			HttpExecutor.builder().maxTotalConnections(0);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		
+		executor.shutdown();
+		
+		// shutting down a shared executor is a no-op
+		HttpExecutor.newInstance().shutdown();
+		Assert.assertEquals(sharedMax, HttpExecutor.getConnectionManager().getMaxTotal());
+	}
 }
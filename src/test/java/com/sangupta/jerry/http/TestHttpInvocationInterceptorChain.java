@@ -0,0 +1,238 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.sangupta.jerry.http.mock.MockWebResponse;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+/**
+ * Unit tests for {@link HttpInvocationInterceptorChain} and the way
+ * {@link HttpExecutor} runs it.
+ * 
+ * @author sangupta
+ *
+ */
+@SuppressWarnings("restriction")
+public class TestHttpInvocationInterceptorChain {
+	
+	private static String url;
+	
+	private static LocalHttpServer server;
+	
+	@BeforeClass
+	public static void setup() throws IOException {
+		server = LocalHttpServer.start();
+		server.handle("/chain", new HttpHandler() {
+			
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				byte[] bytes = "served".getBytes(StandardCharsets.UTF_8);
+				exchange.getResponseHeaders().add("Content-Type", "text/plain");
+				exchange.sendResponseHeaders(200, bytes.length);
+				try(OutputStream stream = exchange.getResponseBody()) {
+					stream.write(bytes);
+				}
+			}
+			
+		});
+		url = server.url("/chain");
+	}
+	
+	@AfterClass
+	public static void shutdown() {
+		server.stop();
+	}
+	
+	@Test
+	public void testOrdering() {
+		CountingInterceptor low = new CountingInterceptor(1, true, true, null);
+		CountingInterceptor high = new CountingInterceptor(10, true, true, null);
+		CountingInterceptor lowToo = new CountingInterceptor(1, true, true, null);
+		
+		HttpInvocationInterceptorChain chain = HttpInvocationInterceptorChain.EMPTY.with(low).with(high).with(lowToo);
+		Assert.assertEquals(3, chain.size());
+		Assert.assertArrayEquals(new HttpInvocationInterceptor[] { high, low, lowToo }, chain.before);
+		Assert.assertArrayEquals(new HttpInvocationInterceptor[] { high, low, lowToo }, chain.after);
+		
+		// removal returns a new chain and keeps the order
+		HttpInvocationInterceptorChain removed = chain.without(low);
+		Assert.assertNotSame(chain, removed);
+		Assert.assertEquals(3, chain.size());
+		Assert.assertArrayEquals(new HttpInvocationInterceptor[] { high, lowToo }, removed.before);
+		
+		// removing something absent returns the same chain
+		Assert.assertSame(removed, removed.without(low));
+		Assert.assertSame(HttpInvocationInterceptorChain.EMPTY, removed.without(high).without(lowToo));
+		Assert.assertTrue(HttpInvocationInterceptorChain.EMPTY.isEmpty());
+	}
+	
+	@Test
+	public void testPhases() {
+		CountingInterceptor beforeOnly = new CountingInterceptor(5, true, false, null);
+		CountingInterceptor afterOnly = new CountingInterceptor(3, false, true, null);
+		CountingInterceptor neither = new CountingInterceptor(1, false, false, null);
+		
+		HttpInvocationInterceptorChain chain = HttpInvocationInterceptorChain.EMPTY.with(afterOnly).with(neither).with(beforeOnly);
+		Assert.assertEquals(3, chain.size());
+		Assert.assertArrayEquals(new HttpInvocationInterceptor[] { beforeOnly }, chain.before);
+		Assert.assertArrayEquals(new HttpInvocationInterceptor[] { afterOnly }, chain.after);
+		
+		Assert.assertTrue(HttpInvocationInterceptorChain.EMPTY.with(neither).isEmpty());
+	}
+	
+	@Test
+	public void testBeforeOnlyKeepsRawResponse() throws IOException {
+		HttpExecutor executor = HttpExecutor.newInstance();
+		CountingInterceptor interceptor = new CountingInterceptor(0, true, false, null);
+		executor.addInvocationInterception(interceptor);
+		
+		WebRawResponse response = executor.execute(WebRequest.get(url));
+		Assert.assertFalse(response instanceof HandledWebRawResponse);
+		Assert.assertEquals("served", response.webResponse().getContent());
+		Assert.assertEquals(1, interceptor.before.get());
+		Assert.assertEquals(0, interceptor.after.get());
+	}
+	
+	@Test
+	public void testAfterOnly() throws IOException {
+		HttpExecutor executor = HttpExecutor.newInstance();
+		CountingInterceptor interceptor = new CountingInterceptor(0, false, true, null);
+		executor.addInvocationInterception(interceptor);
+		
+		WebRawResponse response = executor.execute(WebRequest.get(url));
+		Assert.assertTrue(response instanceof HandledWebRawResponse);
+		Assert.assertEquals("served", response.webResponse().getContent());
+		Assert.assertEquals(0, interceptor.before.get());
+		Assert.assertEquals(1, interceptor.after.get());
+		
+		// nothing is intercepted once removed
+		Assert.assertTrue(executor.removeInvocationInterceptor(interceptor));
+		Assert.assertFalse(executor.removeInvocationInterceptor(interceptor));
+		response = executor.execute(WebRequest.get(url));
+		Assert.assertFalse(response instanceof HandledWebRawResponse);
+		Assert.assertEquals("served", response.webResponse().getContent());
+		Assert.assertEquals(1, interceptor.after.get());
+	}
+	
+	@Test
+	public void testConcurrentModification() throws Exception {
+		final HttpExecutor executor = HttpExecutor.newInstance();
+		executor.addInvocationInterception(new CountingInterceptor(100, true, true, new MockWebResponse("mocked")));
+		
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		List<Future<Integer>> futures = new ArrayList<>();
+		for(int thread = 0; thread < 4; thread++) {
+			futures.add(pool.submit(() -> {
+				int mocked = 0;
+				for(int index = 0; index < 2000; index++) {
+					if("mocked".equals(executor.execute(WebRequest.get(url)).webResponse().getContent())) {
+						mocked++;
+					}
+				}
+				
+				return mocked;
+			}));
+		}
+		
+		// keep changing the chain while requests run over it
+		for(int index = 0; index < 2000; index++) {
+			CountingInterceptor interceptor = new CountingInterceptor(index % 7, index % 2 == 0, index % 3 == 0, null);
+			executor.addInvocationInterception(interceptor);
+			Assert.assertTrue(executor.removeInvocationInterceptor(interceptor));
+		}
+		
+		for(Future<Integer> future : futures) {
+			Assert.assertEquals(2000, future.get().intValue());
+		}
+		
+		pool.shutdown();
+		executor.removeAllInterceptors();
+		Assert.assertFalse(executor.execute(WebRequest.get(url)).webResponse().getContent().equals("mocked"));
+	}
+	
+	private static class CountingInterceptor implements HttpInvocationInterceptor {
+		
+		private final int priority;
+		
+		private final boolean interceptsBefore;
+		
+		private final boolean interceptsAfter;
+		
+		private final WebResponse mock;
+		
+		final AtomicInteger before = new AtomicInteger();
+		
+		final AtomicInteger after = new AtomicInteger();
+		
+		CountingInterceptor(int priority, boolean interceptsBefore, boolean interceptsAfter, WebResponse mock) {
+			this.priority = priority;
+			this.interceptsBefore = interceptsBefore;
+			this.interceptsAfter = interceptsAfter;
+			this.mock = mock;
+		}
+		
+		@Override
+		public int getPriority() {
+			return this.priority;
+		}
+		
+		@Override
+		public WebResponse beforeInvocation(WebRequest request) {
+			this.before.incrementAndGet();
+			return this.mock;
+		}
+		
+		@Override
+		public WebResponse afterInvocation(WebResponse response, IOException exception) {
+			this.after.incrementAndGet();
+			return response;
+		}
+		
+		@Override
+		public boolean interceptsBefore() {
+			return this.interceptsBefore;
+		}
+		
+		@Override
+		public boolean interceptsAfter() {
+			return this.interceptsAfter;
+		}
+		
+	}
+	
+}
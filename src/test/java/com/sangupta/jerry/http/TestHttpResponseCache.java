@@ -0,0 +1,309 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.Header;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.cache.HttpCacheEntry;
+import org.apache.http.client.cache.Resource;
+import org.apache.http.impl.client.cache.FileResourceFactory;
+import org.apache.http.impl.client.cache.HeapResource;
+import org.apache.http.message.BasicStatusLine;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+/**
+ * Unit tests for {@link HttpResponseCache}.
+ * 
+ * @author sangupta
+ *
+ */
+@SuppressWarnings("restriction")
+public class TestHttpResponseCache {
+	
+	private static String url;
+	
+	private static LocalHttpServer server;
+	
+	private static CachingHandler handler;
+	
+	@BeforeClass
+	public static void setup() throws IOException {
+		server = LocalHttpServer.start();
+		handler = new CachingHandler();
+		server.handle("/", handler);
+		url = server.url("/");
+	}
+	
+	@AfterClass
+	public static void shutdown() {
+		server.stop();
+	}
+	
+	@Before
+	public void reset() {
+		handler.requests.set(0);
+		handler.notModified.set(0);
+	}
+	
+	@Test
+	public void testFreshResponseServedFromCache() throws IOException {
+		HttpResponseCache cache = HttpResponseCache.inMemory(1024 * 1024);
+		HttpExecutor executor = HttpExecutor.builder().responseCache(cache).build();
+		
+		try {
+			Assert.assertEquals("fresh", executor.execute(WebRequest.get(url + "fresh")).webResponse().getContent());
+			Assert.assertEquals("fresh", executor.execute(WebRequest.get(url + "fresh")).webResponse().getContent());
+			
+			Assert.assertEquals(1, handler.requests.get());
+			Assert.assertEquals(1, cache.getEntryCount());
+			Assert.assertSame(cache, executor.getResponseCache());
+			
+			// executors without the cache are unaffected
+			HttpExecutor.DEFAULT.execute(WebRequest.get(url + "fresh")).webResponse();
+			Assert.assertEquals(2, handler.requests.get());
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	@Test
+	public void testRevalidation() throws IOException {
+		HttpResponseCache cache = HttpResponseCache.inMemory(1024 * 1024);
+		HttpExecutor executor = HttpExecutor.builder().responseCache(cache).build();
+		
+		try {
+			Assert.assertEquals("etag", executor.execute(WebRequest.get(url + "etag")).webResponse().getContent());
+			
+			// always stale: revalidated every time, body served from cache on 304
+			WebResponse response = executor.execute(WebRequest.get(url + "etag")).webResponse();
+			Assert.assertEquals(200, response.getResponseCode());
+			Assert.assertEquals("etag", response.getContent());
+			
+			Assert.assertEquals(2, handler.requests.get());
+			Assert.assertEquals(1, handler.notModified.get());
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	@Test
+	public void testDiskStore() throws IOException, InterruptedException {
+		File directory = Files.createTempDirectory("test-jerry-http-cache").toFile();
+		try {
+			HttpResponseCache cache = HttpResponseCache.onDisk(directory, 1024 * 1024);
+			HttpExecutor executor = HttpExecutor.newCachingInstance(cache);
+			
+			Assert.assertEquals("fresh", executor.execute(WebRequest.get(url + "fresh?disk")).webResponse().getContent());
+			Assert.assertEquals("fresh", executor.execute(WebRequest.get(url + "fresh?disk")).webResponse().getContent());
+			Assert.assertEquals(1, handler.requests.get());
+			Assert.assertEquals(1, directory.list().length);
+			
+			cache.clear();
+			Assert.assertEquals(0, cache.getEntryCount());
+			Assert.assertEquals(0, cache.getSize());
+			
+			// the file goes once the entry is no longer referenced
+			awaitFiles(directory, 0, cache::getEntryCount);
+			Assert.assertEquals(0, directory.list().length);
+		} finally {
+			FileUtils.deleteQuietly(directory);
+		}
+	}
+	
+	@Test
+	public void testLeastRecentlyUsedEviction() throws IOException {
+		long entrySize = LruHttpCacheStorage.sizeOf(entry(1000));
+		LruHttpCacheStorage storage = new LruHttpCacheStorage(entrySize * 3);
+		
+		storage.putEntry("a", entry(1000));
+		storage.putEntry("b", entry(1000));
+		storage.putEntry("c", entry(1000));
+		Assert.assertEquals(entrySize * 3, storage.getSize());
+		
+		// touch a so that b is the eldest
+		Assert.assertNotNull(storage.getEntry("a"));
+		storage.putEntry("d", entry(1000));
+		
+		Assert.assertEquals(3, storage.getEntryCount());
+		Assert.assertNull(storage.getEntry("b"));
+		Assert.assertNotNull(storage.getEntry("a"));
+		
+		// replacing an entry does not count it twice
+		storage.putEntry("a", entry(1000));
+		Assert.assertEquals(entrySize * 3, storage.getSize());
+		
+		// an entry bigger than the whole budget is not stored
+		storage.putEntry("e", entry(10000));
+		Assert.assertNull(storage.getEntry("e"));
+		Assert.assertEquals(3, storage.getEntryCount());
+		
+		storage.removeEntry("a");
+		Assert.assertEquals(entrySize * 2, storage.getSize());
+	}
+	
+	@Test
+	public void testDiskEvictionWhileReading() throws Exception {
+		final File directory = Files.createTempDirectory("test-jerry-http-cache").toFile();
+		try {
+			final FileResourceFactory factory = new FileResourceFactory(directory);
+			final LruHttpCacheStorage storage = new LruHttpCacheStorage(LruHttpCacheStorage.sizeOf(entry(10)) + 10);
+			storage.putEntry("key", entry(factory, 0));
+			
+			final AtomicBoolean done = new AtomicBoolean();
+			final AtomicReference<Throwable> failure = new AtomicReference<>();
+			
+			// keep replacing the only entry, evicting the one being read
+			Thread writer = new Thread(() -> {
+				try {
+					for(int index = 1; index <= 500; index++) {
+						storage.putEntry("key", entry(factory, index));
+					}
+				} catch(Throwable t) {
+					failure.compareAndSet(null, t);
+				} finally {
+					done.set(true);
+				}
+			});
+			
+			List<Thread> readers = new ArrayList<>();
+			for(int index = 0; index < 4; index++) {
+				readers.add(new Thread(() -> {
+					try {
+						while(!done.get()) {
+							HttpCacheEntry entry = storage.getEntry("key");
+							Thread.yield();
+							try(InputStream stream = entry.getResource().getInputStream()) {
+								Assert.assertEquals(10, IOUtils.toByteArray(stream).length);
+							}
+						}
+					} catch(Throwable t) {
+						failure.compareAndSet(null, t);
+					}
+				}));
+			}
+			
+			for(Thread reader : readers) {
+				reader.start();
+			}
+			
+			writer.start();
+			writer.join();
+			for(Thread reader : readers) {
+				reader.join();
+			}
+			
+			Assert.assertNull(failure.get());
+			Assert.assertEquals(1, storage.getEntryCount());
+			
+			// evicted files go once no longer referenced
+			awaitFiles(directory, 1, storage::getEntryCount);
+			Assert.assertEquals(1, directory.list().length);
+		} finally {
+			FileUtils.deleteQuietly(directory);
+		}
+	}
+	
+	/**
+	 * Collect garbage until the directory holds the given number of files,
+	 * running the given storage operation to dispose unreferenced entries.
+	 * 
+	 */
+	private static void awaitFiles(File directory, int files, Runnable operation) throws InterruptedException {
+		for(int attempt = 0; attempt < 100 && directory.list().length > files; attempt++) {
+			System.gc();
+			Thread.sleep(10);
+			operation.run();
+		}
+	}
+	
+	private static HttpCacheEntry entry(FileResourceFactory factory, int index) throws IOException {
+		Date now = new Date();
+		Resource resource = factory.generate("entry-" + index, new ByteArrayInputStream(new byte[10]), null);
+		return new HttpCacheEntry(now, now, new BasicStatusLine(HttpVersion.HTTP_1_1, 200, "OK"), new Header[0], resource);
+	}
+	
+	private static HttpCacheEntry entry(int length) {
+		Date now = new Date();
+		return new HttpCacheEntry(now, now, new BasicStatusLine(HttpVersion.HTTP_1_1, 200, "OK"), new Header[0], new HeapResource(new byte[length]));
+	}
+	
+	static class CachingHandler implements HttpHandler {
+		
+		final AtomicInteger requests = new AtomicInteger();
+		
+		final AtomicInteger notModified = new AtomicInteger();
+		
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			this.requests.incrementAndGet();
+			
+			String body;
+			if(exchange.getRequestURI().getPath().startsWith("/etag")) {
+				body = "etag";
+				exchange.getResponseHeaders().add("Cache-Control", "max-age=0, must-revalidate");
+				exchange.getResponseHeaders().add("ETag", "\"v1\"");
+				
+				if("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+					this.notModified.incrementAndGet();
+					exchange.sendResponseHeaders(304, -1);
+					exchange.close();
+					return;
+				}
+			} else {
+				body = "fresh";
+				exchange.getResponseHeaders().add("Cache-Control", "max-age=60");
+			}
+			
+			byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().add("Content-Type", "text/plain");
+			exchange.sendResponseHeaders(200, bytes.length);
+			try(OutputStream stream = exchange.getResponseBody()) {
+				stream.write(bytes);
+			}
+		}
+		
+	}
+
+}
@@ -0,0 +1,120 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.http.HttpVersion;
+import org.apache.http.entity.BasicHttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.protocol.BasicHttpContext;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link PooledWebResponseHandler}.
+ * 
+ * @author sangupta
+ *
+ */
+public class TestPooledWebResponseHandler {
+	
+	private static final URI URL = URI.create("http://localhost/hit");
+	
+	@Test
+	public void testKnownLength() throws IOException {
+		ByteArrayPool pool = new ByteArrayPool(64 * 1024, 4);
+		
+		BasicHttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+		response.setEntity(new StringEntity("hello pooled world", ContentType.TEXT_PLAIN));
+		
+		WebResponse webResponse = new WebRawResponse(URL, response, new BasicHttpContext()).webResponse(new PooledWebResponseHandler(pool));
+		Assert.assertTrue(webResponse instanceof PooledWebResponse);
+		
+		PooledWebResponse pooled = (PooledWebResponse) webResponse;
+		Assert.assertEquals(200, pooled.getResponseCode());
+		Assert.assertEquals(18, pooled.getLength());
+		Assert.assertEquals(18, pooled.getSize());
+		Assert.assertEquals(1024, pooled.getBuffer().length);
+		Assert.assertEquals("hello pooled world", pooled.getContent());
+		Assert.assertEquals(18, pooled.asBytes().length);
+		Assert.assertEquals("hello pooled world", IOUtils.toString(pooled.asStream(), StandardCharsets.UTF_8));
+		
+		pooled.release();
+		Assert.assertTrue(pooled.isReleased());
+		Assert.assertEquals(1, pool.getRetainedCount());
+		
+		try {
+			pooled.getContent();
+			Assert.assertTrue(false);
+		} catch(IllegalStateException e) {
+			Assert.assertTrue(true);
+		}
+		
+		// releasing again is a no-op
+		pooled.release();
+		Assert.assertEquals(1, pool.getRetainedCount());
+	}
+	
+	@Test
+	public void testUnknownLength() throws IOException {
+		ByteArrayPool pool = new ByteArrayPool(64 * 1024, 4);
+		
+		byte[] body = new byte[20000];
+		for(int index = 0; index < body.length; index++) {
+			body[index] = (byte) index;
+		}
+		
+		BasicHttpEntity entity = new BasicHttpEntity();
+		entity.setContent(new ByteArrayInputStream(body));
+		entity.setContentLength(-1);
+		
+		BasicHttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+		response.setEntity(entity);
+		
+		PooledWebResponse pooled = (PooledWebResponse) new WebRawResponse(URL, response, new BasicHttpContext()).webResponse(new PooledWebResponseHandler(pool));
+		Assert.assertEquals(body.length, pooled.getLength());
+		Assert.assertEquals(32 * 1024, pooled.getBuffer().length);
+		Assert.assertArrayEquals(body, pooled.asClonedBytes());
+		
+		// intermediate buffers went back to the pool
+		Assert.assertTrue(pool.getRetainedCount() > 0);
+		pooled.close();
+	}
+	
+	@Test
+	public void testNoEntity() throws IOException {
+		BasicHttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 204, "No Content");
+		
+		PooledWebResponse pooled = (PooledWebResponse) new WebRawResponse(URL, response, new BasicHttpContext()).webResponse(new PooledWebResponseHandler());
+		Assert.assertEquals(0, pooled.getLength());
+		Assert.assertNull(pooled.getContent());
+		pooled.release();
+	}
+
+}
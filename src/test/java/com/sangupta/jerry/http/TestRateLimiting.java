@@ -21,9 +21,17 @@
 
 package com.sangupta.jerry.http;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.message.BasicHttpResponse;
 import org.junit.AfterClass;
 import org.junit.Assert;
 import org.junit.Before;
@@ -154,6 +162,263 @@ public class TestRateLimiting {
 		HttpExecutor.DEFAULT.removeAllRateLimiting();
 	}
 	
+	@Test
+	public void testTokenBucketRateLimiting() {
+		HttpService service = new DefaultHttpServiceImpl();
+		service.setConnectionTimeout(10);
+		service.setSocketTimeout(10);
+		
+		// fail fast
+		HttpExecutor.DEFAULT.addTokenBucketRateLimiting("localhost", 1, 1, TimeUnit.MINUTES, 1, HttpRateLimitMode.FAIL_FAST, 0);
+		service.getTextResponse("http://localhost:8080/hit");
+		
+		try {
+			service.getTextResponse("http://localhost:8080/hit");
+			Assert.assertTrue(false);
+		} catch(HttpRateLimitException e) {
+			Assert.assertTrue(true);
+		}
+		
+		// wait within the max wait
+		HttpExecutor.DEFAULT.removeRateLimiting("localhost");
+		HttpExecutor.DEFAULT.addTokenBucketRateLimiting("localhost", 10, 1, TimeUnit.SECONDS, 1, HttpRateLimitMode.WAIT, 1000);
+		long start = System.currentTimeMillis();
+		service.getTextResponse("http://localhost:8080/hit");
+		service.getTextResponse("http://localhost:8080/hit");
+		Assert.assertTrue(System.currentTimeMillis() - start >= 50);
+		
+		// wait beyond the max wait
+		HttpExecutor.DEFAULT.removeRateLimiting("localhost");
+		HttpExecutor.DEFAULT.addTokenBucketRateLimiting("localhost", 1, 1, TimeUnit.MINUTES, 1, HttpRateLimitMode.WAIT, 10);
+		service.getTextResponse("http://localhost:8080/hit");
+		
+		try {
+			service.getTextResponse("http://localhost:8080/hit");
+			Assert.assertTrue(false);
+		} catch(HttpRateLimitException e) {
+			Assert.assertTrue(true);
+		}
+		
+		HttpExecutor.DEFAULT.removeAllRateLimiting();
+	}
+	
+	@Test
+	public void testMillisecondWindows() throws InterruptedException {
+		HttpRateLimitingClient client = new HttpRateLimitingClient(HttpExecutor.getHttpClient());
+		client.addRateLimiting("millis.example.com", 1, 50, TimeUnit.MILLISECONDS);
+		
+		HttpGet request = new HttpGet("http://millis.example.com/");
+		client.assertRateInLimit(request);
+		try {
+			client.assertRateInLimit(request);
+			Assert.assertTrue(false);
+		} catch(HttpRateLimitException e) {
+			Assert.assertTrue(true);
+		}
+		
+		Thread.sleep(60);
+		client.assertRateInLimit(request);
+		
+		try {
+			client.addRateLimiting("micros.example.com", 1, 10, TimeUnit.MICROSECONDS);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		
+		client.removeRateLimiting("millis.example.com");
+	}
+	
+	@Test
+	public void testLimitExactUnderContention() throws InterruptedException {
+		final HttpRateLimitingClient client = new HttpRateLimitingClient(HttpExecutor.getHttpClient());
+		client.addRateLimiting("contended.example.com", 1000, 1, TimeUnit.DAYS);
+		
+		final HttpGet request = new HttpGet("http://contended.example.com/");
+		final AtomicInteger allowed = new AtomicInteger();
+		Thread[] threads = new Thread[16];
+		for(int index = 0; index < threads.length; index++) {
+			threads[index] = new Thread(new Runnable() {
+				
+				@Override
+				public void run() {
+					for(int attempt = 0; attempt < 500; attempt++) {
+						try {
+							client.assertRateInLimit(request);
+							allowed.incrementAndGet();
+						} catch(HttpRateLimitException e) {
+							// at limit
+						}
+					}
+				}
+				
+			});
+			threads[index].start();
+		}
+		
+		for(Thread thread : threads) {
+			thread.join();
+		}
+		
+		Assert.assertEquals(1000, allowed.get());
+		client.removeRateLimiting("contended.example.com");
+	}
+	
+	@Test
+	public void testLimitExactAcrossWindows() throws InterruptedException {
+		final HttpRateLimitingClient client = new HttpRateLimitingClient(HttpExecutor.getHttpClient());
+		client.addRateLimiting("rolling.example.com", 5, 2, TimeUnit.MILLISECONDS);
+		
+		final HttpGet request = new HttpGet("http://rolling.example.com/");
+		final ConcurrentMap<Long, AtomicInteger> allowed = new ConcurrentHashMap<>();
+		final long end = System.currentTimeMillis() + 500;
+		Thread[] threads = new Thread[16];
+		for(int index = 0; index < threads.length; index++) {
+			threads[index] = new Thread(new Runnable() {
+				
+				@Override
+				public void run() {
+					while(System.currentTimeMillis() < end) {
+						long before = System.currentTimeMillis() / 2;
+						try {
+							client.assertRateInLimit(request);
+						} catch(HttpRateLimitException e) {
+							continue;
+						}
+						
+						// only permits known to be granted within a single window
+						if(System.currentTimeMillis() / 2 == before) {
+							allowed.computeIfAbsent(before, key -> new AtomicInteger()).incrementAndGet();
+						}
+					}
+				}
+				
+			});
+			threads[index].start();
+		}
+		
+		for(Thread thread : threads) {
+			thread.join();
+		}
+		
+		Assert.assertFalse(allowed.isEmpty());
+		for(AtomicInteger count : allowed.values()) {
+			Assert.assertTrue(count.get() <= 5);
+		}
+		
+		client.removeRateLimiting("rolling.example.com");
+	}
+	
+	@Test
+	public void testWildcardRules() {
+		HttpRateLimitingClient client = new HttpRateLimitingClient(HttpExecutor.getHttpClient());
+		client.addRateLimiting("*.api.example.com", 2, TimeUnit.DAYS);
+		
+		// sub-domains share the one limit
+		client.assertRateInLimit(new HttpGet("http://one.api.example.com/"));
+		client.assertRateInLimit(new HttpGet("http://two.deep.API.example.com/"));
+		try {
+			client.assertRateInLimit(new HttpGet("http://three.api.example.com/"));
+			Assert.assertTrue(false);
+		} catch(HttpRateLimitException e) {
+			Assert.assertTrue(true);
+		}
+		
+		// the domain itself and others are not matched
+		client.assertRateInLimit(new HttpGet("http://api.example.com/"));
+		client.assertRateInLimit(new HttpGet("http://www.example.com/"));
+		
+		// exact rules win over wildcards
+		client.addRateLimiting("exact.api.example.com", 1, TimeUnit.DAYS);
+		client.assertRateInLimit(new HttpGet("http://exact.api.example.com/"));
+		
+		try {
+			client.addRateLimiting("*.API.example.com", 2, TimeUnit.DAYS);
+			Assert.assertTrue(false);
+		} catch(IllegalStateException e) {
+			Assert.assertTrue(true);
+		}
+		
+		client.removeRateLimiting("*.api.example.com");
+		client.assertRateInLimit(new HttpGet("http://three.api.example.com/"));
+	}
+	
+	@Test
+	public void testRulesScopedToExecutor() {
+		HttpExecutor executor = HttpExecutor.newInstance();
+		executor.addRateLimiting("localhost", 1, TimeUnit.MINUTES);
+		
+		HttpService service = new DefaultHttpServiceImpl();
+		service.setConnectionTimeout(10);
+		service.setSocketTimeout(10);
+		
+		// the default executor is not limited
+		service.getTextResponse("http://localhost:8080/hit");
+		service.getTextResponse("http://localhost:8080/hit");
+	}
+	
+	@Test
+	public void testAdaptiveThrottling() {
+		HttpRateLimitingClient client = new HttpRateLimitingClient(HttpExecutor.getHttpClient());
+		HttpGet request = new HttpGet("http://partner.example.com/");
+		
+		// not adaptive: signals are ignored
+		client.observeResponse("partner.example.com", response(429, "Retry-After", "60"));
+		client.assertRateInLimit(request);
+		
+		client.setAdaptiveThrottling(true);
+		Assert.assertTrue(client.isAdaptiveThrottling());
+		
+		// plain successful response
+		client.observeResponse("partner.example.com", response(200, "RateLimit-Remaining", "5"));
+		client.assertRateInLimit(request);
+		
+		// 429 with delta seconds
+		long now = System.currentTimeMillis();
+		client.observeResponse("partner.example.com", response(429, "Retry-After", "60"));
+		long until = client.getThrottledUntil("PARTNER.example.com");
+		Assert.assertTrue(until >= now + 59000 && until <= now + 61000);
+		try {
+			client.assertRateInLimit(request);
+			Assert.assertTrue(false);
+		} catch(HttpRateLimitException e) {
+			Assert.assertTrue(true);
+		}
+		
+		// other hosts are not affected
+		client.assertRateInLimit(new HttpGet("http://other.example.com/"));
+		
+		// remaining zero with reset
+		client.observeResponse("quota.example.com", response(200, "RateLimit-Remaining", "0", "RateLimit-Reset", "30"));
+		Assert.assertTrue(client.getThrottledUntil("quota.example.com") > now + 29000);
+		
+		// 503 without any hint uses the default
+		client.observeResponse("busy.example.com", response(503));
+		Assert.assertTrue(client.getThrottledUntil("busy.example.com") <= System.currentTimeMillis() + HttpRateLimitingClient.DEFAULT_THROTTLE_MILLIS);
+		
+		// servers cannot ask for more than the cap
+		client.observeResponse("greedy.example.com", response(429, "Retry-After", "86400"));
+		Assert.assertTrue(client.getThrottledUntil("greedy.example.com") <= System.currentTimeMillis() + HttpRateLimitingClient.MAX_THROTTLE_MILLIS);
+		
+		// HTTP dates
+		Assert.assertEquals(784111777000L, HttpRateLimitingClient.parseRetryAfter(new BasicHeader("Retry-After", "Sun, 06 Nov 1994 08:49:37 GMT"), now));
+		Assert.assertEquals(-1, HttpRateLimitingClient.parseRetryAfter(new BasicHeader("Retry-After", "soon"), now));
+		
+		// disabling clears throttling
+		client.setAdaptiveThrottling(false);
+		Assert.assertEquals(0, client.getThrottledUntil("partner.example.com"));
+		client.assertRateInLimit(request);
+	}
+	
+	private static HttpResponse response(int status, String... headers) {
+		HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, status, "");
+		for(int index = 0; index < headers.length; index += 2) {
+			response.addHeader(headers[index], headers[index + 1]);
+		}
+		
+		return response;
+	}
+	
 	@Test
 	public void testRateLimitingOtherHost() {
 		HttpService service = new DefaultHttpServiceImpl();
@@ -0,0 +1,212 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+/**
+ * Unit tests for request coalescing in {@link HttpExecutor}.
+ * 
+ * @author sangupta
+ *
+ */
+@SuppressWarnings("restriction")
+public class TestRequestCoalescing {
+	
+	private static String url;
+	
+	private static final int THREADS = 8;
+	
+	private static LocalHttpServer server;
+	
+	private static SlowHandler handler;
+	
+	private HttpExecutor executor;
+	
+	@BeforeClass
+	public static void setup() throws IOException {
+		server = LocalHttpServer.start();
+		handler = new SlowHandler();
+		server.handle("/", handler);
+		url = server.url("/slow");
+	}
+	
+	@AfterClass
+	public static void shutdown() {
+		server.stop();
+	}
+	
+	@Before
+	public void reset() {
+		handler.requests.set(0);
+		this.executor = HttpExecutor.newInstance();
+		this.executor.enableRequestCoalescing();
+	}
+	
+	@Test
+	public void testIdenticalRequestsCoalesced() throws Exception {
+		List<WebResponse> responses = this.runConcurrently(index -> WebRequest.get(url));
+		
+		Assert.assertEquals(1, handler.requests.get());
+		Assert.assertEquals(THREADS - 1, this.executor.getCoalescedRequestCount());
+		for(WebResponse response : responses) {
+			Assert.assertEquals(200, response.getResponseCode());
+			Assert.assertEquals("slow", response.getContent());
+		}
+		
+		// every caller gets its own copy of the body
+		Assert.assertNotSame(responses.get(0).asBytes(), responses.get(1).asBytes());
+	}
+	
+	@Test
+	public void testSelectedHeadersDistinguishRequests() throws Exception {
+		this.runConcurrently(index -> WebRequest.get(url).addHeader("Accept", index % 2 == 0 ? "text/plain" : "application/json"));
+		Assert.assertEquals(2, handler.requests.get());
+	}
+	
+	@Test
+	public void testUnsafeRequestsNotCoalesced() throws Exception {
+		this.runConcurrently(index -> WebRequest.post(url));
+		Assert.assertEquals(THREADS, handler.requests.get());
+	}
+	
+	@Test
+	public void testDisabled() throws Exception {
+		Assert.assertTrue(this.executor.isRequestCoalescing());
+		this.executor.disableRequestCoalescing();
+		Assert.assertFalse(this.executor.isRequestCoalescing());
+		
+		this.runConcurrently(index -> WebRequest.get(url));
+		Assert.assertEquals(THREADS, handler.requests.get());
+	}
+	
+	@Test
+	public void testFailureShared() throws Exception {
+		CountDownLatch latch = new CountDownLatch(1);
+		ExecutorService threads = Executors.newFixedThreadPool(THREADS);
+		AtomicInteger failures = new AtomicInteger();
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for(int index = 0; index < THREADS; index++) {
+				futures.add(threads.submit(() -> {
+					latch.await();
+					try {
+						this.executor.execute(WebRequest.get(LocalHttpServer.refusedUrl("/nothing")));
+					} catch(IOException e) {
+						failures.incrementAndGet();
+					}
+					
+					return null;
+				}));
+			}
+			
+			latch.countDown();
+			for(Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			threads.shutdownNow();
+		}
+		
+		Assert.assertEquals(THREADS, failures.get());
+	}
+	
+	private List<WebResponse> runConcurrently(RequestFactory factory) throws Exception {
+		CountDownLatch latch = new CountDownLatch(1);
+		ExecutorService threads = Executors.newFixedThreadPool(THREADS);
+		try {
+			List<Future<WebResponse>> futures = new ArrayList<>();
+			for(int index = 0; index < THREADS; index++) {
+				final int current = index;
+				futures.add(threads.submit(new Callable<WebResponse>() {
+					
+					@Override
+					public WebResponse call() throws Exception {
+						latch.await();
+						return executor.execute(factory.create(current)).webResponse();
+					}
+					
+				}));
+			}
+			
+			latch.countDown();
+			
+			List<WebResponse> responses = new ArrayList<>();
+			for(Future<WebResponse> future : futures) {
+				responses.add(future.get());
+			}
+			
+			return responses;
+		} finally {
+			threads.shutdownNow();
+		}
+	}
+	
+	private interface RequestFactory {
+		
+		WebRequest create(int index);
+		
+	}
+	
+	static class SlowHandler implements HttpHandler {
+		
+		final AtomicInteger requests = new AtomicInteger();
+		
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			this.requests.incrementAndGet();
+			try {
+				Thread.sleep(500);
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			
+			byte[] bytes = "slow".getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().add("Content-Type", "text/plain");
+			exchange.sendResponseHeaders(200, bytes.length);
+			try(OutputStream stream = exchange.getResponseBody()) {
+				stream.write(bytes);
+			}
+		}
+		
+	}
+
+}
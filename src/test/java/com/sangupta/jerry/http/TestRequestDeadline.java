@@ -0,0 +1,232 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+/**
+ * Unit tests for deadlines set via
+ * {@link WebRequest#deadline(long, TimeUnit)}.
+ * 
+ * @author sangupta
+ *
+ */
+@SuppressWarnings("restriction")
+public class TestRequestDeadline {
+	
+	private static String baseUrl;
+	
+	private static LocalHttpServer server;
+	
+	@BeforeClass
+	public static void setup() throws IOException {
+		server = LocalHttpServer.start();
+		server.handle("/fast", new DripHandler(0, 0, 1));
+		server.handle("/slow", new DripHandler(2000, 0, 1));
+		server.handle("/drip", new DripHandler(0, 100, 30));
+		baseUrl = server.url("");
+	}
+	
+	@AfterClass
+	public static void shutdown() {
+		server.stop();
+	}
+	
+	@Test
+	public void testFastRequest() throws IOException, InterruptedException {
+		WebRawResponse raw = HttpExecutor.newInstance().execute(WebRequest.get(baseUrl + "/fast").deadline(200, TimeUnit.MILLISECONDS));
+		
+		// reading after the deadline is fine once the execution has completed
+		WebResponse response = raw.webResponse();
+		Thread.sleep(300);
+		Assert.assertEquals(200, response.getResponseCode());
+		Assert.assertEquals("x", response.getContent());
+	}
+	
+	@Test
+	public void testStreamingClosed() throws IOException, InterruptedException {
+		WebRequest request = WebRequest.get(baseUrl + "/fast").deadline(200, TimeUnit.MILLISECONDS);
+		try(StreamingWebResponse response = HttpExecutor.newInstance().execute(request).streamingResponse()) {
+			Assert.assertEquals('x', response.getStream().read());
+		}
+		
+		// closing the stream stops the deadline
+		Thread.sleep(300);
+		Assert.assertFalse(request.getHttpRequest().isAborted());
+	}
+	
+	@Test
+	public void testSlowHeaders() {
+		long start = System.currentTimeMillis();
+		try {
+			HttpExecutor.newInstance().execute(WebRequest.get(baseUrl + "/slow").deadline(300, TimeUnit.MILLISECONDS));
+			Assert.assertTrue(false);
+		} catch(HttpDeadlineExceededException e) {
+			Assert.assertTrue(true);
+		} catch(IOException e) {
+			Assert.assertTrue(false);
+		}
+		
+		Assert.assertTrue(System.currentTimeMillis() - start < 1500);
+	}
+	
+	@Test
+	public void testDripBody() throws IOException {
+		// each byte arrives well within the socket timeout
+		WebRequest request = WebRequest.get(baseUrl + "/drip").socketTimeout(1000).deadline(500, TimeUnit.MILLISECONDS);
+		
+		long start = System.currentTimeMillis();
+		WebRawResponse raw = HttpExecutor.newInstance().execute(request);
+		try {
+			raw.webResponse();
+			Assert.assertTrue(false);
+		} catch(HttpDeadlineExceededException e) {
+			Assert.assertTrue(true);
+		}
+		
+		Assert.assertTrue(System.currentTimeMillis() - start < 2000);
+	}
+	
+	@Test
+	public void testPoolLease() throws Exception {
+		final HttpExecutor executor = HttpExecutor.builder().maxConnectionsPerRoute(1).build();
+		
+		// hold the only connection of the route
+		CompletableFuture<WebResponse> holder = CompletableFuture.supplyAsync(() -> {
+			try {
+				return executor.execute(WebRequest.get(baseUrl + "/slow")).webResponse();
+			} catch(IOException e) {
+				return null;
+			}
+		});
+		
+		Thread.sleep(200);
+		long start = System.currentTimeMillis();
+		try {
+			executor.execute(WebRequest.get(baseUrl + "/fast").deadline(300, TimeUnit.MILLISECONDS));
+			Assert.assertTrue(false);
+		} catch(HttpDeadlineExceededException e) {
+			Assert.assertTrue(true);
+		}
+		
+		Assert.assertTrue(System.currentTimeMillis() - start < 1500);
+		Assert.assertNotNull(holder.get());
+		executor.shutdown();
+	}
+	
+	@Test
+	public void testRetriesBoundedByDeadline() {
+		HttpExecutor executor = HttpExecutor.newInstance();
+		executor.setRetryPolicy(new RetryPolicy().maxAttempts(100).backoff(50, 50, TimeUnit.MILLISECONDS));
+		
+		long start = System.currentTimeMillis();
+		try {
+			executor.execute(WebRequest.get(LocalHttpServer.refusedUrl("/nothing")).deadline(300, TimeUnit.MILLISECONDS));
+			Assert.assertTrue(false);
+		} catch(IOException e) {
+			Assert.assertTrue(true);
+		}
+		
+		Assert.assertTrue(System.currentTimeMillis() - start < 1000);
+	}
+	
+	@Test
+	public void testAsync() throws InterruptedException {
+		CompletableFuture<WebResponse> future = HttpExecutor.newInstance().executeAsync(WebRequest.get(baseUrl + "/slow").deadline(300, TimeUnit.MILLISECONDS));
+		try {
+			future.get(1500, TimeUnit.MILLISECONDS);
+			Assert.assertTrue(false);
+		} catch(ExecutionException e) {
+			Assert.assertTrue(e.getCause() instanceof HttpDeadlineExceededException);
+		} catch(Exception e) {
+			Assert.assertTrue(false);
+		}
+	}
+	
+	@Test
+	public void testDeadlineValues() {
+		WebRequest request = WebRequest.get(baseUrl);
+		Assert.assertEquals(-1, request.getDeadline());
+		Assert.assertEquals(2000, request.deadline(2, TimeUnit.SECONDS).getDeadline());
+		Assert.assertEquals(-1, request.deadline(0, TimeUnit.SECONDS).getDeadline());
+		
+		try {
+			request.deadline(1, null);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+	}
+	
+	/**
+	 * Handler that waits before sending headers, and then sends the body one
+	 * byte at a time
+	 */
+	static class DripHandler implements HttpHandler {
+		
+		private final long headerDelay;
+		
+		private final long byteDelay;
+		
+		private final int bytes;
+		
+		DripHandler(long headerDelay, long byteDelay, int bytes) {
+			this.headerDelay = headerDelay;
+			this.byteDelay = byteDelay;
+			this.bytes = bytes;
+		}
+		
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			try {
+				Thread.sleep(this.headerDelay);
+				exchange.getResponseHeaders().add("Content-Type", "text/plain");
+				exchange.sendResponseHeaders(200, this.bytes);
+				try(OutputStream stream = exchange.getResponseBody()) {
+					for(int index = 0; index < this.bytes; index++) {
+						stream.write('x');
+						stream.flush();
+						Thread.sleep(this.byteDelay);
+					}
+				}
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch(IOException e) {
+				// client has gone away
+			}
+		}
+		
+	}
+
+}
@@ -0,0 +1,298 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.impl.execchain.RequestAbortedException;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.sangupta.jerry.http.service.impl.DefaultHttpServiceImpl;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+/**
+ * Unit tests for {@link RetryPolicy}.
+ * 
+ * @author sangupta
+ *
+ */
+@SuppressWarnings("restriction")
+public class TestRetryPolicy {
+	
+	private static String url;
+	
+	private static LocalHttpServer server;
+	
+	private static FlakyHandler handler;
+	
+	private HttpExecutor executor;
+	
+	@BeforeClass
+	public static void setup() throws IOException {
+		server = LocalHttpServer.start();
+		handler = new FlakyHandler();
+		server.handle("/", handler);
+		url = server.url("/flaky");
+	}
+	
+	@AfterClass
+	public static void shutdown() {
+		server.stop();
+	}
+	
+	@Before
+	public void reset() {
+		handler.requests.set(0);
+		handler.failures = 0;
+		handler.delayMillis = 0;
+		handler.bodies.clear();
+		
+		this.executor = HttpExecutor.newInstance();
+	}
+	
+	private static RetryPolicy fastPolicy() {
+		return new RetryPolicy().backoff(1, 10, TimeUnit.MILLISECONDS);
+	}
+	
+	@Test
+	public void testTransientStatusRetried() throws IOException {
+		RetryPolicy policy = fastPolicy();
+		this.executor.setRetryPolicy(policy);
+		handler.failures = 2;
+		
+		WebResponse response = this.executor.execute(WebRequest.get(url)).webResponse();
+		Assert.assertEquals(200, response.getResponseCode());
+		Assert.assertEquals(3, handler.requests.get());
+		Assert.assertEquals(2, policy.getRetryCount());
+	}
+	
+	@Test
+	public void testMaxAttempts() throws IOException {
+		this.executor.setRetryPolicy(fastPolicy().maxAttempts(3));
+		handler.failures = 5;
+		
+		WebResponse response = this.executor.execute(WebRequest.get(url)).webResponse();
+		Assert.assertEquals(503, response.getResponseCode());
+		Assert.assertEquals(3, handler.requests.get());
+	}
+	
+	@Test
+	public void testNonIdempotentRequests() throws IOException {
+		this.executor.setRetryPolicy(fastPolicy());
+		handler.failures = 1;
+		
+		WebResponse response = this.executor.execute(WebRequest.post(url).bodyString("hello", "text/plain")).webResponse();
+		Assert.assertEquals(503, response.getResponseCode());
+		Assert.assertEquals(1, handler.requests.get());
+		
+		// opted in - the body is sent afresh with every attempt
+		handler.requests.set(0);
+		handler.failures = 2;
+		this.executor.setRetryPolicy(fastPolicy().retryNonIdempotent(true));
+		
+		response = this.executor.execute(WebRequest.post(url).bodyString("hello", "text/plain")).webResponse();
+		Assert.assertEquals(200, response.getResponseCode());
+		Assert.assertEquals(3, handler.requests.get());
+		for(String body : handler.bodies) {
+			Assert.assertEquals("hello", body);
+		}
+	}
+	
+	@Test
+	public void testNonRepeatableBodyNotRetried() throws IOException {
+		this.executor.setRetryPolicy(fastPolicy());
+		handler.failures = 1;
+		
+		WebRequest request = WebRequest.put(url).body(new InputStreamEntity(new ByteArrayInputStream("hello".getBytes(StandardCharsets.UTF_8))));
+		Assert.assertEquals(503, this.executor.execute(request).webResponse().getResponseCode());
+		Assert.assertEquals(1, handler.requests.get());
+	}
+	
+	@Test
+	public void testConnectionFailureRetried() throws IOException {
+		RetryPolicy policy = fastPolicy();
+		this.executor.setRetryPolicy(policy);
+		
+		try {
+			this.executor.execute(WebRequest.get(LocalHttpServer.refusedUrl("/nothing")));
+			Assert.assertTrue(false);
+		} catch(IOException e) {
+			Assert.assertTrue(true);
+		}
+		
+		Assert.assertEquals(2, policy.getRetryCount());
+	}
+	
+	@Test
+	public void testAbortedRequestNotRetried() throws Exception {
+		RetryPolicy policy = fastPolicy();
+		this.executor.setRetryPolicy(policy);
+		handler.delayMillis = 2000;
+		
+		final WebRequest request = WebRequest.get(url);
+		final AtomicReference<Throwable> failure = new AtomicReference<>();
+		Thread caller = new Thread(() -> {
+			try {
+				this.executor.execute(request).webResponse();
+			} catch(Throwable t) {
+				failure.set(t);
+			}
+		});
+		caller.start();
+		
+		// abort mid-flight, once the server has the request
+		for(int wait = 0; wait < 100 && handler.requests.get() == 0; wait++) {
+			Thread.sleep(10);
+		}
+		
+		request.abort();
+		caller.join(5000);
+		
+		Assert.assertTrue(failure.get() instanceof IOException);
+		Thread.sleep(100);
+		Assert.assertEquals(1, handler.requests.get());
+		Assert.assertEquals(0, policy.getRetryCount());
+	}
+	
+	@Test
+	public void testAbortsNotRetryable() {
+		RetryPolicy policy = fastPolicy();
+		Assert.assertFalse(policy.isRetryable(new RequestAbortedException("aborted")));
+		Assert.assertFalse(policy.isRetryable(new HttpDeadlineExceededException("deadline", null)));
+		Assert.assertFalse(policy.isRetryable(new InterruptedIOException()));
+		Assert.assertTrue(policy.isRetryable(new SocketTimeoutException()));
+	}
+	
+	@Test
+	public void testRequestPolicyOverrides() throws IOException {
+		this.executor.setRetryPolicy(fastPolicy());
+		handler.failures = 1;
+		
+		WebRequest request = WebRequest.get(url).retryPolicy(fastPolicy().maxAttempts(1));
+		Assert.assertEquals(503, this.executor.execute(request).webResponse().getResponseCode());
+		Assert.assertEquals(1, handler.requests.get());
+	}
+	
+	@Test
+	public void testRetryBudget() throws IOException {
+		// four tokens: the first failure leaves three and retries, the second leaves two and stops
+		this.executor.setRetryPolicy(fastPolicy().maxAttempts(10).budget(4, 0.5));
+		handler.failures = Integer.MAX_VALUE;
+		
+		Assert.assertEquals(503, this.executor.execute(WebRequest.get(url)).webResponse().getResponseCode());
+		Assert.assertEquals(2, handler.requests.get());
+		
+		// budget exhausted - the next failure is not retried
+		handler.requests.set(0);
+		Assert.assertEquals(503, this.executor.execute(WebRequest.get(url)).webResponse().getResponseCode());
+		Assert.assertEquals(1, handler.requests.get());
+		
+		// successes refill the budget, half a token each
+		handler.failures = 0;
+		for(int index = 0; index < 6; index++) {
+			this.executor.execute(WebRequest.get(url)).webResponse();
+		}
+		
+		handler.requests.set(0);
+		handler.failures = Integer.MAX_VALUE;
+		this.executor.execute(WebRequest.get(url)).webResponse();
+		Assert.assertEquals(2, handler.requests.get());
+	}
+	
+	@Test
+	public void testBackoff() {
+		RetryPolicy policy = new RetryPolicy().backoff(100, 1000, TimeUnit.MILLISECONDS);
+		for(int index = 0; index < 100; index++) {
+			Assert.assertTrue(policy.getBackoff(1) <= 100);
+			Assert.assertTrue(policy.getBackoff(3) <= 400);
+			Assert.assertTrue(policy.getBackoff(40) <= 1000);
+			Assert.assertTrue(policy.getBackoff(40) >= 0);
+		}
+	}
+	
+	@Test
+	public void testHttpService() {
+		DefaultHttpServiceImpl service = new DefaultHttpServiceImpl();
+		service.setRetryPolicy(fastPolicy());
+		handler.failures = 2;
+		
+		Assert.assertEquals("ok", service.getTextResponse(url));
+		Assert.assertEquals(3, handler.requests.get());
+	}
+	
+	static class FlakyHandler implements HttpHandler {
+		
+		final AtomicInteger requests = new AtomicInteger();
+		
+		final List<String> bodies = new CopyOnWriteArrayList<>();
+		
+		volatile int failures;
+		
+		volatile long delayMillis;
+		
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			int request = this.requests.incrementAndGet();
+			this.bodies.add(IOUtils.toString(exchange.getRequestBody(), StandardCharsets.UTF_8));
+			
+			if(this.delayMillis > 0) {
+				try {
+					Thread.sleep(this.delayMillis);
+				} catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			
+			if(request <= this.failures) {
+				exchange.sendResponseHeaders(503, -1);
+				exchange.close();
+				return;
+			}
+			
+			byte[] bytes = "ok".getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().add("Content-Type", "text/plain");
+			exchange.sendResponseHeaders(200, bytes.length);
+			try(OutputStream stream = exchange.getResponseBody()) {
+				stream.write(bytes);
+			}
+		}
+		
+	}
+
+}
@@ -0,0 +1,95 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link TokenBucketRateLimiter}.
+ * 
+ * @author sangupta
+ *
+ */
+public class TestTokenBucketRateLimiter {
+	
+	@Test
+	public void testInvalidValues() {
+		try {
+			new TokenBucketRateLimiter(0, 1, TimeUnit.SECONDS);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		
+		try {
+			new TokenBucketRateLimiter(1, 1, TimeUnit.SECONDS, 0);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+	}
+	
+	@Test
+	public void testBurst() {
+		TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(3, 1, TimeUnit.MINUTES);
+		Assert.assertTrue(limiter.tryAcquire());
+		Assert.assertTrue(limiter.tryAcquire());
+		Assert.assertTrue(limiter.tryAcquire());
+		Assert.assertFalse(limiter.tryAcquire());
+		
+		// next permit is twenty seconds away
+		Assert.assertEquals(-1, limiter.reserve(TimeUnit.SECONDS.toNanos(10)));
+		long wait = limiter.reserve(TimeUnit.SECONDS.toNanos(30));
+		Assert.assertTrue(wait > TimeUnit.SECONDS.toNanos(19) && wait <= TimeUnit.SECONDS.toNanos(20));
+	}
+	
+	@Test
+	public void testAcquireWaits() throws InterruptedException {
+		TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(10, 1, TimeUnit.SECONDS, 1);
+		Assert.assertTrue(limiter.tryAcquire());
+		Assert.assertFalse(limiter.acquire(10, TimeUnit.MILLISECONDS));
+		
+		long start = System.nanoTime();
+		Assert.assertTrue(limiter.acquire(1, TimeUnit.SECONDS));
+		Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+	}
+	
+	@Test
+	public void testAcquireAsync() throws InterruptedException, ExecutionException {
+		TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(10, 1, TimeUnit.SECONDS, 1);
+		Assert.assertTrue(limiter.acquireAsync(0, TimeUnit.MILLISECONDS).isDone());
+		
+		CompletableFuture<Void> future = limiter.acquireAsync(1, TimeUnit.SECONDS);
+		Assert.assertFalse(future.isDone());
+		future.get();
+		
+		limiter.tryAcquire();
+		future = limiter.acquireAsync(0, TimeUnit.MILLISECONDS);
+		Assert.assertTrue(future.isCompletedExceptionally());
+	}
+
+}
@@ -24,18 +24,29 @@ package com.sangupta.jerry.http;
 import java.io.File;
 import java.io.IOException;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 import java.util.Locale;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.apache.http.Header;
 import org.apache.http.HeaderIterator;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
 import org.apache.http.ProtocolVersion;
 import org.apache.http.StatusLine;
 import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.HttpResponseException;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHttpResponse;
 import org.apache.http.params.HttpParams;
 import org.apache.http.protocol.HttpContext;
 import org.junit.Assert;
@@ -133,6 +144,72 @@ public class TestWebRawResponse {
 		}
 	}
 
+	@Test
+	public void testTransferTo() throws IOException {
+		File file = File.createTempFile("test-jerry-http-", ".dat");
+		
+		// more than one buffer of content, written after an offset
+		byte[] body = new byte[5 * 512 * 1024 + 3];
+		for(int index = 0; index < body.length; index++) {
+			body[index] = (byte) index;
+		}
+		
+		try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+			Assert.assertEquals(body.length, WebRawResponse.transferTo(new ByteArrayEntity(body), channel, 10));
+		}
+		
+		byte[] written = FileUtils.readFileToByteArray(file);
+		Assert.assertEquals(body.length + 10, written.length);
+		Assert.assertArrayEquals(body, Arrays.copyOfRange(written, 10, written.length));
+		FileUtils.deleteQuietly(file);
+	}
+	
+	@Test
+	public void testStreamingResponse() throws IOException {
+		BasicHttpResponse hr = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+		hr.addHeader("ETag", "\"v1\"");
+		hr.setEntity(new StringEntity("hello streaming world", ContentType.TEXT_PLAIN));
+		
+		WebRawResponse response = new WebRawResponse(URI.create("http://localhost/hit"), hr, null);
+		try(StreamingWebResponse streaming = response.streamingResponse()) {
+			Assert.assertTrue(response.isConsumed());
+			Assert.assertTrue(streaming.isSuccess());
+			Assert.assertEquals(200, streaming.getResponseCode());
+			Assert.assertEquals("OK", streaming.getMessage());
+			Assert.assertEquals(21, streaming.getSize());
+			Assert.assertEquals("\"v1\"", streaming.getHeader("etag"));
+			Assert.assertEquals("http://localhost/hit", streaming.getURI().toString());
+			
+			ByteBuffer buffer = ByteBuffer.allocate(64);
+			ReadableByteChannel channel = streaming.getChannel();
+			while(channel.read(buffer) >= 0) {
+				// keep reading
+			}
+			
+			Assert.assertEquals("hello streaming world", new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8));
+		}
+		
+		try {
+			response.streamingResponse();
+			Assert.assertTrue(false);
+		} catch(IllegalStateException e) {
+			Assert.assertTrue(true);
+		}
+		
+		// already handled responses stream from memory
+		WebResponse webResponse = new WebResponse(URI.create("http://localhost/hit"), "buffered".getBytes(StandardCharsets.UTF_8));
+		StreamingWebResponse streaming = new HandledWebRawResponse(webResponse).streamingResponse();
+		Assert.assertEquals("buffered", IOUtils.toString(streaming.getStream(), StandardCharsets.UTF_8));
+		streaming.close();
+		
+		try {
+			streaming.getStream();
+			Assert.assertTrue(false);
+		} catch(IllegalStateException e) {
+			Assert.assertTrue(true);
+		}
+	}
+	
 	private class MyResponse implements HttpResponse {
 		
 		private int responseCode = -1;
@@ -30,6 +30,8 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import com.sangupta.jerry.constants.HttpStatusCode;
+import com.sangupta.jerry.http.LocalHttpServer;
+import com.sangupta.jerry.http.WebRequest;
 import com.sangupta.jerry.http.WebResponse;
 import com.sangupta.jerry.http.mock.MockHttpServiceImpl;
 import com.sangupta.jerry.http.mock.MockWebResponse;
@@ -155,4 +157,21 @@ public class TestHttpHelper {
 		};
 		Assert.assertFalse(HttpHelper.downloadToFile("http://localhost:8080/url", file, service));
 	}
+	
+	@Test
+	public void testStreamToFileFailure() throws IOException {
+		File file = File.createTempFile("test-jerry-http-", ".dat");
+		FileUtils.writeStringToFile(file, "partial");
+		
+		// nothing listens on this port - partial file is cleaned up
+		Assert.assertFalse(HttpHelper.streamToFile(WebRequest.get(LocalHttpServer.refusedUrl("/nothing")).connectTimeout(100), file));
+		Assert.assertFalse(file.exists());
+		
+		try {
+			HttpHelper.streamToFile(null, file);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+	}
 }
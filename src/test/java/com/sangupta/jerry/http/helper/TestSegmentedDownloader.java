@@ -0,0 +1,333 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http.helper;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.sangupta.jerry.http.LocalHttpServer;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+/**
+ * Unit tests for {@link SegmentedDownloader}.
+ * 
+ * @author sangupta
+ *
+ */
+@SuppressWarnings("restriction")
+public class TestSegmentedDownloader {
+	
+	private static String url;
+	
+	private static LocalHttpServer server;
+	
+	private static RangeHandler handler;
+	
+	@BeforeClass
+	public static void setup() throws IOException {
+		server = LocalHttpServer.start();
+		handler = new RangeHandler();
+		server.handle("/file", handler);
+		url = server.url("/file");
+	}
+	
+	@AfterClass
+	public static void shutdown() {
+		server.stop();
+	}
+	
+	@Before
+	public void reset() {
+		handler.body = new byte[100 * 1024];
+		for(int index = 0; index < handler.body.length; index++) {
+			handler.body[index] = (byte) (index * 31);
+		}
+		
+		handler.acceptRanges = true;
+		handler.etag = "\"v1\"";
+		handler.rangeRequests.set(0);
+		handler.failAfter = Integer.MAX_VALUE;
+		handler.ignoreRanges = false;
+		handler.stallMillis = 0;
+	}
+	
+	@Test
+	public void testSplit() {
+		List<long[]> ranges = SegmentedDownloader.split(100, 4, 10);
+		Assert.assertEquals(4, ranges.size());
+		Assert.assertArrayEquals(new long[] { 0, 24 }, ranges.get(0));
+		Assert.assertArrayEquals(new long[] { 75, 99 }, ranges.get(3));
+		
+		// never smaller than the minimum size
+		ranges = SegmentedDownloader.split(100, 8, 40);
+		Assert.assertEquals(2, ranges.size());
+		Assert.assertArrayEquals(new long[] { 50, 99 }, ranges.get(1));
+		
+		ranges = SegmentedDownloader.split(101, 2, 10);
+		Assert.assertArrayEquals(new long[] { 0, 50 }, ranges.get(0));
+		Assert.assertArrayEquals(new long[] { 51, 100 }, ranges.get(1));
+	}
+	
+	@Test
+	public void testSegmentedDownload() throws IOException {
+		File file = File.createTempFile("test-jerry-http-", ".dat");
+		
+		new SegmentedDownloader().segments(4).minSegmentSize(10 * 1024).download(url, file);
+		Assert.assertArrayEquals(handler.body, FileUtils.readFileToByteArray(file));
+		Assert.assertEquals(4, handler.rangeRequests.get());
+		
+		FileUtils.deleteQuietly(file);
+	}
+	
+	@Test
+	public void testFallbackWithoutRanges() throws IOException {
+		handler.acceptRanges = false;
+		File file = File.createTempFile("test-jerry-http-", ".dat");
+		
+		Assert.assertTrue(HttpHelper.downloadToFile(url, file, 4));
+		Assert.assertArrayEquals(handler.body, FileUtils.readFileToByteArray(file));
+		Assert.assertEquals(0, handler.rangeRequests.get());
+		
+		FileUtils.deleteQuietly(file);
+	}
+	
+	@Test
+	public void testChangedResource() throws IOException {
+		File file = File.createTempFile("test-jerry-http-", ".dat");
+		
+		// resource changes after the HEAD: segments get full responses, and
+		// the new version is fetched whole instead of being stitched
+		handler.changeAfterHead = true;
+		try {
+			new SegmentedDownloader().segments(2).minSegmentSize(10 * 1024).download(url, file);
+		} finally {
+			handler.changeAfterHead = false;
+		}
+		
+		Assert.assertArrayEquals(handler.body, FileUtils.readFileToByteArray(file));
+		Assert.assertEquals(0, handler.rangeRequests.get());
+		
+		FileUtils.deleteQuietly(file);
+	}
+	
+	@Test
+	public void testRangesIgnored() throws IOException {
+		File file = File.createTempFile("test-jerry-http-", ".dat");
+		
+		// ranges are advertised on HEAD but answered with the full body
+		handler.ignoreRanges = true;
+		new SegmentedDownloader().segments(4).minSegmentSize(10 * 1024).download(url, file);
+		Assert.assertArrayEquals(handler.body, FileUtils.readFileToByteArray(file));
+		
+		new SegmentedDownloader().segments(2).resumable(true).checkpointSize(10 * 1024).download(url, file);
+		Assert.assertArrayEquals(handler.body, FileUtils.readFileToByteArray(file));
+		Assert.assertFalse(DownloadJournal.journalFor(file).exists());
+		
+		FileUtils.deleteQuietly(file);
+	}
+	
+	@Test
+	public void testStalledSegment() throws IOException {
+		File file = File.createTempFile("test-jerry-http-", ".dat");
+		
+		handler.stallMillis = 5000;
+		long start = System.currentTimeMillis();
+		try {
+			new SegmentedDownloader().segments(2).minSegmentSize(10 * 1024).socketTimeout(300).download(url, file);
+			Assert.assertTrue(false);
+		} catch(IOException e) {
+			Assert.assertTrue(true);
+		}
+		
+		Assert.assertTrue(System.currentTimeMillis() - start < 4000);
+		Assert.assertFalse(file.exists());
+	}
+	
+	@Test
+	public void testPendingRanges() {
+		List<long[]> ranges = DownloadJournal.pendingRanges(100, 30, Collections.<long[]>emptyList());
+		Assert.assertEquals(4, ranges.size());
+		Assert.assertArrayEquals(new long[] { 90, 99 }, ranges.get(3));
+		
+		List<long[]> completed = new ArrayList<>();
+		completed.add(new long[] { 60, 89 });
+		completed.add(new long[] { 0, 29 });
+		ranges = DownloadJournal.pendingRanges(100, 30, completed);
+		Assert.assertEquals(2, ranges.size());
+		Assert.assertArrayEquals(new long[] { 30, 59 }, ranges.get(0));
+		Assert.assertArrayEquals(new long[] { 90, 99 }, ranges.get(1));
+	}
+	
+	@Test
+	public void testResumeDownload() throws IOException {
+		File file = File.createTempFile("test-jerry-http-", ".dat");
+		File journal = DownloadJournal.journalFor(file);
+		SegmentedDownloader downloader = new SegmentedDownloader().segments(1).resumable(true).checkpointSize(10 * 1024);
+		
+		// fails after four of the ten chunks
+		handler.failAfter = 4;
+		try {
+			downloader.download(url, file);
+			Assert.assertTrue(false);
+		} catch(IOException e) {
+			Assert.assertTrue(true);
+		}
+		
+		Assert.assertTrue(file.exists());
+		Assert.assertTrue(journal.exists());
+		
+		handler.failAfter = Integer.MAX_VALUE;
+		handler.rangeRequests.set(0);
+		downloader.download(url, file);
+		
+		Assert.assertArrayEquals(handler.body, FileUtils.readFileToByteArray(file));
+		Assert.assertEquals(6, handler.rangeRequests.get());
+		Assert.assertFalse(journal.exists());
+		
+		FileUtils.deleteQuietly(file);
+	}
+	
+	@Test
+	public void testResumeChangedResource() throws IOException {
+		File file = File.createTempFile("test-jerry-http-", ".dat");
+		File journal = DownloadJournal.journalFor(file);
+		
+		SegmentedDownloader downloader = new SegmentedDownloader().segments(1).resumable(true).checkpointSize(10 * 1024);
+		
+		handler.failAfter = 4;
+		try {
+			downloader.download(url, file);
+			Assert.assertTrue(false);
+		} catch(IOException e) {
+			Assert.assertTrue(true);
+		}
+		
+		Assert.assertTrue(journal.exists());
+		
+		// a new version of the resource must not be stitched onto the old one
+		for(int index = 0; index < handler.body.length; index++) {
+			handler.body[index] = (byte) (index * 17);
+		}
+		
+		handler.etag = "\"v2\"";
+		handler.failAfter = Integer.MAX_VALUE;
+		handler.rangeRequests.set(0);
+		downloader.download(url, file);
+		
+		Assert.assertArrayEquals(handler.body, FileUtils.readFileToByteArray(file));
+		Assert.assertEquals(10, handler.rangeRequests.get());
+		Assert.assertFalse(journal.exists());
+		
+		FileUtils.deleteQuietly(file);
+	}
+	
+	static class RangeHandler implements HttpHandler {
+		
+		volatile byte[] body;
+		
+		volatile boolean acceptRanges;
+		
+		volatile boolean changeAfterHead;
+		
+		volatile String etag;
+		
+		volatile int failAfter;
+		
+		volatile boolean ignoreRanges;
+		
+		volatile long stallMillis;
+		
+		final AtomicInteger rangeRequests = new AtomicInteger();
+		
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			if(this.acceptRanges) {
+				exchange.getResponseHeaders().add("Accept-Ranges", "bytes");
+			}
+			
+			if("HEAD".equalsIgnoreCase(exchange.getRequestMethod())) {
+				exchange.getResponseHeaders().add("ETag", this.etag);
+				exchange.getResponseHeaders().add("Content-Length", String.valueOf(this.body.length));
+				exchange.sendResponseHeaders(200, -1);
+				exchange.close();
+				return;
+			}
+			
+			String currentEtag = this.changeAfterHead ? "\"v2\"" : this.etag;
+			exchange.getResponseHeaders().add("ETag", currentEtag);
+			
+			String range = exchange.getRequestHeaders().getFirst("Range");
+			String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+			boolean honourRange = this.acceptRanges && !this.ignoreRanges && range != null && (ifRange == null || ifRange.equals(currentEtag));
+			
+			byte[] bytes = this.body;
+			int status = 200;
+			int start = 0;
+			int end = bytes.length - 1;
+			if(honourRange) {
+				if(this.rangeRequests.get() >= this.failAfter) {
+					exchange.sendResponseHeaders(500, -1);
+					exchange.close();
+					return;
+				}
+				
+				this.rangeRequests.incrementAndGet();
+				String[] parts = range.substring("bytes=".length()).split("-");
+				start = Integer.parseInt(parts[0]);
+				if(parts.length > 1 && !parts[1].isEmpty()) {
+					end = Math.min(end, Integer.parseInt(parts[1]));
+				}
+				
+				if(this.stallMillis > 0 && start > 0) {
+					try {
+						Thread.sleep(this.stallMillis);
+					} catch(InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				
+				status = 206;
+				exchange.getResponseHeaders().add("Content-Range", "bytes " + start + "-" + end + "/" + bytes.length);
+			}
+			
+			exchange.sendResponseHeaders(status, end - start + 1);
+			try(OutputStream stream = exchange.getResponseBody()) {
+				stream.write(bytes, start, end - start + 1);
+			}
+		}
+		
+	}
+
+}
@@ -0,0 +1,138 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+
+package com.sangupta.jerry.http.jmx;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.Attribute;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.RuntimeMBeanException;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.sangupta.jerry.http.HttpExecutor;
+import com.sangupta.jerry.http.RateLimitSnapshot;
+
+/**
+ * Unit tests for {@link HttpExecutorManagement}.
+ * 
+ * @author sangupta
+ *
+ */
+public class TestHttpExecutorManagement {
+	
+	@Test
+	public void testRegistration() throws Exception {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		HttpExecutor executor = HttpExecutor.builder().maxTotalConnections(12).build();
+		
+		ObjectName name = HttpExecutorManagement.register(executor, "test-registration");
+		try {
+			Assert.assertEquals(name, HttpExecutorManagement.getObjectName("test-registration"));
+			Assert.assertTrue(server.isRegistered(name));
+			Assert.assertEquals("HttpExecutor", name.getKeyProperty("type"));
+			
+			// the name can be used only once
+			try {
+				HttpExecutorManagement.register(executor, "test-registration");
+				Assert.assertTrue(false);
+			} catch(IllegalStateException e) {
+				Assert.assertTrue(true);
+			}
+		} finally {
+			Assert.assertTrue(HttpExecutorManagement.unregister("test-registration"));
+		}
+		
+		Assert.assertFalse(server.isRegistered(name));
+		Assert.assertFalse(HttpExecutorManagement.unregister("test-registration"));
+		
+		try {
+			HttpExecutorManagement.register(executor, null);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		
+		try {
+			HttpExecutorManagement.register(null, "test-null");
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+	}
+	
+	@Test
+	public void testAttributesAndOperations() throws Exception {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		HttpExecutor executor = HttpExecutor.builder().maxTotalConnections(12).maxConnectionsPerRoute(3).build();
+		executor.addRateLimiting("jmx.example.com", 10, TimeUnit.SECONDS);
+		
+		ObjectName name = HttpExecutorManagement.register(executor, "test-attributes");
+		try {
+			Assert.assertEquals(12, server.getAttribute(name, "MaxTotal"));
+			Assert.assertEquals(3, server.getAttribute(name, "DefaultMaxPerRoute"));
+			Assert.assertEquals(0, server.getAttribute(name, "Leased"));
+			Assert.assertEquals(0, server.getAttribute(name, "Pending"));
+			Assert.assertEquals(Boolean.TRUE, server.getAttribute(name, "OwnConnectionPool"));
+			Assert.assertEquals(0, ((CompositeData[]) server.getAttribute(name, "Routes")).length);
+			Assert.assertTrue(((TabularData) server.getAttribute(name, "ThrottledHosts")).isEmpty());
+			
+			// resize the pool
+			server.setAttribute(name, new Attribute("MaxTotal", 40));
+			server.setAttribute(name, new Attribute("DefaultMaxPerRoute", 8));
+			Assert.assertEquals(40, executor.getConnectionPoolSnapshot().getMax());
+			Assert.assertEquals(8, executor.getConnectionPoolSnapshot().getDefaultMaxPerRoute());
+			
+			server.invoke(name, "setMaxPerRoute", new Object[] { "http://jmx.example.com", 2 }, new String[] { "java.lang.String", "int" });
+			try {
+				server.invoke(name, "setMaxPerRoute", new Object[] { "/relative", 2 }, new String[] { "java.lang.String", "int" });
+				Assert.assertTrue(false);
+			} catch(RuntimeMBeanException e) {
+				Assert.assertTrue(e.getCause() instanceof IllegalArgumentException);
+			}
+			
+			// read and change the rate limits
+			CompositeData[] limits = (CompositeData[]) server.getAttribute(name, "RateLimits");
+			Assert.assertEquals(1, limits.length);
+			Assert.assertEquals("jmx.example.com", limits[0].get("host"));
+			Assert.assertEquals("FIXED_WINDOW", limits[0].get("type"));
+			Assert.assertEquals(10, limits[0].get("limit"));
+			
+			server.invoke(name, "setRateLimit", new Object[] { "jmx.example.com", 25, 500L }, new String[] { "java.lang.String", "int", "long" });
+			RateLimitSnapshot snapshot = executor.getRateLimitSnapshots().get(0);
+			Assert.assertEquals(25, snapshot.getLimit());
+			Assert.assertEquals(500, snapshot.getPeriodMillis());
+			
+			server.invoke(name, "removeRateLimit", new Object[] { "jmx.example.com" }, new String[] { "java.lang.String" });
+			Assert.assertTrue(executor.getRateLimitSnapshots().isEmpty());
+		} finally {
+			HttpExecutorManagement.unregister("test-attributes");
+		}
+	}
+	
+}
@@ -0,0 +1,187 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+
+package com.sangupta.jerry.http.metrics;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.sangupta.jerry.http.HttpExecutor;
+import com.sangupta.jerry.http.HttpRateLimitException;
+import com.sangupta.jerry.http.LocalHttpServer;
+import com.sangupta.jerry.http.WebRawResponse;
+import com.sangupta.jerry.http.WebRequest;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+/**
+ * Unit tests for {@link InMemoryHttpMetricsRegistry} as fed by the
+ * {@link HttpExecutor}.
+ * 
+ * @author sangupta
+ *
+ */
+@SuppressWarnings("restriction")
+public class TestInMemoryHttpMetricsRegistry {
+	
+	private static String url;
+	
+	private static LocalHttpServer server;
+	
+	@BeforeClass
+	public static void setup() throws IOException {
+		server = LocalHttpServer.start();
+		server.handle("/", new HttpHandler() {
+			
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				// drain the request body
+				try(InputStream stream = exchange.getRequestBody()) {
+					while(stream.read() >= 0) {
+						// ignore
+					}
+				}
+				
+				int status = exchange.getRequestURI().getPath().startsWith("/missing") ? 404 : 200;
+				byte[] bytes = new byte[100];
+				exchange.sendResponseHeaders(status, bytes.length);
+				try(OutputStream stream = exchange.getResponseBody()) {
+					stream.write(bytes);
+				}
+			}
+			
+		});
+		url = server.url("");
+	}
+	
+	@AfterClass
+	public static void shutdown() {
+		server.stop();
+	}
+	
+	@Test
+	public void testRequestMetrics() throws Exception {
+		InMemoryHttpMetricsRegistry registry = new InMemoryHttpMetricsRegistry();
+		HttpExecutor executor = HttpExecutor.builder().metricsRegistry(registry).build();
+		Assert.assertSame(registry, executor.getMetricsRegistry());
+		
+		for(int index = 0; index < 3; index++) {
+			Assert.assertEquals(100, executor.execute(WebRequest.get(url + "/ok")).webResponse().asBytes().length);
+		}
+		
+		executor.execute(WebRequest.get(url + "/missing")).webResponse();
+		executor.execute(WebRequest.post(url + "/post").bodyByteArray(new byte[50])).webResponse();
+		
+		Assert.assertTrue(registry.getHosts().contains("localhost"));
+		Assert.assertEquals(5, registry.getLatency("localhost").getCount());
+		Assert.assertEquals(4, registry.getLatency("localhost", 200).getCount());
+		Assert.assertEquals(1, registry.getLatency("LOCALHOST", 404).getCount());
+		Assert.assertTrue(registry.getStatusCodes("localhost").contains(404));
+		Assert.assertNull(registry.getLatency("localhost", 500));
+		
+		// every request leased a connection, at least one had to be opened
+		Assert.assertEquals(5, registry.getPoolLeaseWait("localhost").getCount());
+		Assert.assertTrue(registry.getConnect("localhost").getCount() >= 1);
+		
+		Assert.assertEquals(50, registry.getBytesSent("localhost"));
+		Assert.assertEquals(500, registry.getBytesReceived("localhost"));
+		Assert.assertEquals(0, registry.getErrorCount("localhost"));
+		
+		// streamed bodies are counted once closed
+		WebRawResponse response = executor.execute(WebRequest.get(url + "/stream"));
+		Assert.assertEquals(500, registry.getBytesReceived("localhost"));
+		response.discardContent();
+		Assert.assertTrue(registry.getBytesReceived("localhost") >= 500);
+		
+		registry.reset();
+		Assert.assertTrue(registry.getHosts().isEmpty());
+		Assert.assertNull(registry.getLatency("localhost"));
+	}
+	
+	@Test
+	public void testAsyncMetrics() throws Exception {
+		InMemoryHttpMetricsRegistry registry = new InMemoryHttpMetricsRegistry();
+		HttpExecutor executor = HttpExecutor.builder().build();
+		executor.setMetricsRegistry(registry);
+		
+		Assert.assertEquals(100, executor.executeAsync(WebRequest.get(url + "/async")).get().asBytes().length);
+		Assert.assertEquals(1, registry.getLatency("localhost", 200).getCount());
+		Assert.assertEquals(100, registry.getBytesReceived("localhost"));
+	}
+	
+	@Test
+	public void testErrors() {
+		InMemoryHttpMetricsRegistry registry = new InMemoryHttpMetricsRegistry();
+		HttpExecutor executor = HttpExecutor.builder().metricsRegistry(registry).build();
+		
+		try {
+			executor.execute(WebRequest.get(LocalHttpServer.refusedUrl("/down")));
+			Assert.assertTrue(false);
+		} catch(IOException e) {
+			Assert.assertTrue(true);
+		}
+		
+		Assert.assertEquals(1, registry.getErrorCount("localhost"));
+		Assert.assertEquals(1, registry.getErrorCounts("localhost").size());
+		Assert.assertEquals(0, registry.getLatency("localhost").getCount());
+		Assert.assertEquals(0, registry.getConnect("localhost").getCount());
+	}
+	
+	@Test
+	public void testRateLimitRejections() throws Exception {
+		InMemoryHttpMetricsRegistry registry = new InMemoryHttpMetricsRegistry();
+		HttpExecutor executor = HttpExecutor.builder().metricsRegistry(registry).build();
+		executor.addRateLimiting("127.0.0.1", 1, TimeUnit.MINUTES);
+		
+		executor.execute(WebRequest.get("http://127.0.0.1:" + server.getPort() + "/limited")).webResponse();
+		try {
+			executor.execute(WebRequest.get("http://127.0.0.1:" + server.getPort() + "/limited"));
+			Assert.assertTrue(false);
+		} catch(HttpRateLimitException e) {
+			Assert.assertTrue(true);
+		}
+		
+		Assert.assertEquals(1, registry.getRateLimitRejections("127.0.0.1"));
+		Assert.assertEquals(0, registry.getErrorCount("127.0.0.1"));
+		Assert.assertEquals(1, registry.getLatency("127.0.0.1").getCount());
+	}
+	
+	@Test
+	public void testDefaultsDoNothing() {
+		HttpMetricsRegistry registry = new HttpMetricsRegistry() { };
+		registry.recordLatency("host", 200, 1);
+		registry.recordError("host", new IOException());
+		
+		InMemoryHttpMetricsRegistry memory = new InMemoryHttpMetricsRegistry();
+		Assert.assertEquals(0, memory.getBytesSent("unknown"));
+		Assert.assertTrue(memory.getStatusCodes("unknown").isEmpty());
+		Assert.assertTrue(memory.getErrorCounts("unknown").isEmpty());
+	}
+	
+}
@@ -0,0 +1,120 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link LatencyHistogram}.
+ * 
+ * @author sangupta
+ *
+ */
+public class TestLatencyHistogram {
+	
+	@Test
+	public void testEmpty() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		Assert.assertEquals(0, histogram.getCount());
+		Assert.assertEquals(0, histogram.getMax());
+		Assert.assertEquals(0, histogram.getMean(), 0);
+		Assert.assertEquals(0, histogram.getValueAtPercentile(99));
+		
+		try {
+			histogram.getValueAtPercentile(101);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+	}
+	
+	@Test
+	public void testBuckets() {
+		// every value falls in a bucket that contains it
+		long[] values = { 0, 1, 31, 32, 63, 64, 65, 1000, 123456789L, 1L << 40 };
+		for(long value : values) {
+			int index = LatencyHistogram.bucketIndex(value);
+			Assert.assertTrue(LatencyHistogram.highestValueInBucket(index) >= value);
+			if(index > 0) {
+				Assert.assertTrue(LatencyHistogram.highestValueInBucket(index - 1) < value);
+			}
+		}
+		
+		// huge values are clamped into the last bucket
+		Assert.assertEquals(LatencyHistogram.bucketIndex(1L << 50), LatencyHistogram.bucketIndex(Long.MAX_VALUE));
+	}
+	
+	@Test
+	public void testPercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for(long value = 1; value <= 10000; value++) {
+			histogram.record(value * 1000);
+		}
+		
+		Assert.assertEquals(10000, histogram.getCount());
+		Assert.assertEquals(10000000, histogram.getMax());
+		Assert.assertEquals(5000500, histogram.getMean(), 1);
+		
+		// within the 1/32 precision of the histogram
+		assertNear(5000000, histogram.getValueAtPercentile(50));
+		assertNear(9900000, histogram.getValueAtPercentile(99));
+		Assert.assertEquals(10000000, histogram.getValueAtPercentile(100));
+		
+		histogram.reset();
+		Assert.assertEquals(0, histogram.getCount());
+		Assert.assertEquals(0, histogram.getValueAtPercentile(50));
+	}
+	
+	@Test
+	public void testConcurrentRecording() throws Exception {
+		final LatencyHistogram histogram = new LatencyHistogram();
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		List<Future<?>> futures = new ArrayList<>();
+		for(int thread = 0; thread < 4; thread++) {
+			futures.add(pool.submit(() -> {
+				for(int index = 0; index < 25000; index++) {
+					histogram.record(index);
+				}
+			}));
+		}
+		
+		for(Future<?> future : futures) {
+			future.get();
+		}
+		
+		pool.shutdown();
+		Assert.assertEquals(100000, histogram.getCount());
+		Assert.assertEquals(24999, histogram.getMax());
+	}
+	
+	private static void assertNear(long expected, long actual) {
+		Assert.assertTrue("expected about " + expected + " but was " + actual, Math.abs(expected - actual) <= expected / 32);
+	}
+	
+}
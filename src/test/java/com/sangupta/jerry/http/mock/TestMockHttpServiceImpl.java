@@ -24,6 +24,7 @@ package com.sangupta.jerry.http.mock;
 import java.io.File;
 import java.io.IOException;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
 
 import org.apache.commons.io.FileUtils;
 import org.junit.Assert;
@@ -246,4 +247,26 @@ public class TestMockHttpServiceImpl {
 		
 		FileUtils.deleteQuietly(file);
 	}
+	
+	@Test
+	public void testAsyncResponses() throws InterruptedException, ExecutionException {
+		MockWebResponse response = new MockWebResponse(RANDOM_STRING);
+		service.setNextResponse(response);
+		Assert.assertEquals(RANDOM_STRING, service.getTextResponseAsync(SOME_TEST_URL).get());
+		
+		service.setNextResponse(response);
+		Assert.assertEquals(response, service.doGETAsync(SOME_TEST_URL).get());
+		
+		service.setNextResponse(response);
+		Assert.assertEquals(response, service.doPOSTAsync(SOME_TEST_URL, RANDOM_STRING, HttpMimeType.BINARY).get());
+		
+		service.setNextResponse(response);
+		Assert.assertEquals(response, service.postJSONAsync(SOME_TEST_URL, RANDOM_STRING).get());
+		
+		service.setNextResponse(response);
+		Assert.assertEquals(response, service.executeAsync(service.getWebRequest(WebRequestMethod.GET, SOME_TEST_URL)).get());
+		
+		// nothing set
+		Assert.assertNull(service.doDELETEAsync(SOME_TEST_URL).get());
+	}
 }